@@ -0,0 +1,78 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonical instances of the keywords that commonly occur as values in a cue sheet, such as data types and file
+ * types. Storing the canonical instance rather than the instance from the input saves memory when many sheets are
+ * held.
+ *
+ * @author jwbroek
+ */
+final class CanonicalStrings {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CanonicalStrings.class);
+    /**
+     * The canonical instances, by themselves.
+     */
+    private final static Map<String, String> CANONICAL = new HashMap<String, String>();
+
+    static {
+        final String[] values = {
+                // Data types.
+                "AUDIO", "CDG", "MODE1/2048", "MODE1/2352", "MODE2/2336", "MODE2/2352", "CDI/2336", "CDI/2352",
+                // File types.
+                "BINARY", "MOTOROLA", "AIFF", "WAVE", "MP3"
+        };
+        for (String value : values) {
+            CanonicalStrings.CANONICAL.put(value, value);
+        }
+    }
+
+    /**
+     * Create a CanonicalStrings. Should never be used, as all properties and methods of this class are static.
+     */
+    private CanonicalStrings() {
+        // Intentionally left blank (besides logging). This class doesn't need to be instantiated.
+    }
+
+    /**
+     * Get the canonical instance of a value.
+     *
+     * @param value The value. May be null.
+     *
+     * @return The canonical instance of the value, or the value itself if it has no canonical instance.
+     */
+    static String canonicalize(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String canonical = CanonicalStrings.CANONICAL.get(value);
+        return canonical == null ? value : canonical;
+    }
+}
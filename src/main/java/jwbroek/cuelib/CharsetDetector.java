@@ -0,0 +1,193 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>Detects the encoding of a cue sheet from its raw bytes, without decoding it. Cue sheets found in the wild are
+ * typically encoded in UTF-8 (with or without byte order mark), UTF-16, windows-1252 or Shift_JIS.</p>
+ * <p>The detection is done as follows:</p>
+ * <ol>
+ * <li>A byte order mark determines the encoding.</li>
+ * <li>Many zero bytes at either the even or the odd positions indicate UTF-16 (big and little endian
+ * respectively), as cue sheets are mostly ASCII.</li>
+ * <li>Input that is valid UTF-8 is taken to be UTF-8. This includes pure ASCII.</li>
+ * <li>Input that is valid Shift_JIS, and where most double byte characters have a trail byte outside of the ASCII
+ * range, is taken to be Shift_JIS. (In windows-1252 text, an accented letter is usually followed by an ASCII
+ * letter.)</li>
+ * <li>Anything else is taken to be windows-1252.</li>
+ * </ol>
+ *
+ * @author jwbroek
+ */
+final public class CharsetDetector {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CharsetDetector.class);
+    /**
+     * UTF-8.
+     */
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * UTF-16, big endian.
+     */
+    private final static Charset UTF_16BE = Charset.forName("UTF-16BE");
+    /**
+     * UTF-16, little endian.
+     */
+    private final static Charset UTF_16LE = Charset.forName("UTF-16LE");
+    /**
+     * Shift_JIS, or null if not supported by this JVM.
+     */
+    private final static Charset SHIFT_JIS = CharsetDetector.forNameIfSupported("Shift_JIS", null);
+    /**
+     * windows-1252, or ISO-8859-1 if not supported by this JVM.
+     */
+    private final static Charset WINDOWS_1252 = CharsetDetector.forNameIfSupported("windows-1252", Charset.forName("ISO-8859-1"));
+
+    /**
+     * Create a CharsetDetector. Should never be used, as all properties and methods of this class are static.
+     */
+    private CharsetDetector() {
+        // Intentionally left blank (besides logging). This class doesn't need to be instantiated.
+    }
+
+    /**
+     * Detect the encoding of the remaining bytes in the buffer. If the bytes start with a byte order mark, then the
+     * position of the buffer is advanced past it. Otherwise the buffer is left untouched.
+     *
+     * @param bytes The bytes to detect the encoding of.
+     *
+     * @return The detected encoding.
+     */
+    public static Charset detect(final ByteBuffer bytes) {
+        final int start = bytes.position();
+        final int end = bytes.limit();
+
+        // Byte order marks.
+        if (end - start >= 3 && (bytes.get(start) & 0xFF) == 0xEF && (bytes.get(start + 1) & 0xFF) == 0xBB && (bytes.get(start + 2) & 0xFF) == 0xBF) {
+            bytes.position(start + 3);
+            return UTF_8;
+        }
+        if (end - start >= 2 && (bytes.get(start) & 0xFF) == 0xFE && (bytes.get(start + 1) & 0xFF) == 0xFF) {
+            bytes.position(start + 2);
+            return UTF_16BE;
+        }
+        if (end - start >= 2 && (bytes.get(start) & 0xFF) == 0xFF && (bytes.get(start + 1) & 0xFF) == 0xFE) {
+            bytes.position(start + 2);
+            return UTF_16LE;
+        }
+
+        // Gather statistics in a single pass.
+        int evenZeros = 0;
+        int oddZeros = 0;
+        boolean validUtf8 = true;
+        int utf8Continuations = 0;
+        boolean validShiftJis = true;
+        boolean shiftJisTrail = false;
+        int shiftJisPairs = 0;
+        int shiftJisHighTrails = 0;
+
+        for (int index = start; index < end; index++) {
+            final int value = bytes.get(index) & 0xFF;
+
+            if (value == 0) {
+                if (((index - start) & 1) == 0) {
+                    evenZeros++;
+                } else {
+                    oddZeros++;
+                }
+            }
+
+            if (validUtf8) {
+                if (utf8Continuations > 0) {
+                    if ((value & 0xC0) == 0x80) {
+                        utf8Continuations--;
+                    } else {
+                        validUtf8 = false;
+                    }
+                } else if (value >= 0xC2 && value <= 0xDF) {
+                    utf8Continuations = 1;
+                } else if (value >= 0xE0 && value <= 0xEF) {
+                    utf8Continuations = 2;
+                } else if (value >= 0xF0 && value <= 0xF4) {
+                    utf8Continuations = 3;
+                } else if (value >= 0x80) {
+                    validUtf8 = false;
+                }
+            }
+
+            if (validShiftJis) {
+                if (shiftJisTrail) {
+                    if (value >= 0x40 && value <= 0xFC && value != 0x7F) {
+                        shiftJisPairs++;
+                        if (value >= 0x80) {
+                            shiftJisHighTrails++;
+                        }
+                        shiftJisTrail = false;
+                    } else {
+                        validShiftJis = false;
+                    }
+                } else if (value >= 0x81 && value <= 0x9F || value >= 0xE0 && value <= 0xFC) {
+                    shiftJisTrail = true;
+                } else if (value == 0x80 || value == 0xA0 || value >= 0xFD) {
+                    validShiftJis = false;
+                }
+            }
+        }
+
+        final int pairs = (end - start) / 2;
+        if (pairs > 0 && Math.max(evenZeros, oddZeros) * 4 >= pairs && Math.min(evenZeros, oddZeros) * 4 < Math.max(evenZeros, oddZeros)) {
+            return evenZeros > oddZeros ? UTF_16BE : UTF_16LE;
+        }
+
+        if (validUtf8 && utf8Continuations == 0) {
+            return UTF_8;
+        }
+
+        if (SHIFT_JIS != null && validShiftJis && !shiftJisTrail && shiftJisPairs > 0 && shiftJisHighTrails * 2 >= shiftJisPairs) {
+            return SHIFT_JIS;
+        }
+
+        return WINDOWS_1252;
+    }
+
+    /**
+     * Get a charset by name, if it is supported by this JVM.
+     *
+     * @param name     The name of the charset.
+     * @param fallback The charset to return if the named charset is not supported.
+     *
+     * @return The named charset, or the fallback if it is not supported.
+     */
+    private static Charset forNameIfSupported(final String name, final Charset fallback) {
+        if (Charset.isSupported(name)) {
+            return Charset.forName(name);
+        }
+        CharsetDetector.logger.warn("Charset {} is not supported.", name);
+        return fallback;
+    }
+}
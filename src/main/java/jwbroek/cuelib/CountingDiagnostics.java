@@ -0,0 +1,99 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link ParseDiagnostics} that only counts the warnings, per kind of warning. This is thread safe and does not
+ * block, so a single instance can be shared by all threads of a bulk parse.
+ *
+ * @author jwbroek
+ */
+public class CountingDiagnostics implements ParseDiagnostics {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CountingDiagnostics.class);
+    /**
+     * All kinds of warnings. Cached, as {@link ParseWarning#values()} creates a new array on every call.
+     */
+    private final static ParseWarning[] WARNINGS = ParseWarning.values();
+    /**
+     * The counts, indexed by the ordinal of the warning.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(WARNINGS.length);
+
+    /**
+     * Create a new CountingDiagnostics instance, with all counts at 0.
+     */
+    public CountingDiagnostics() {
+        // Intentionally left blank (besides logging).
+    }
+
+    public void warning(final LineOfInput input, final ParseWarning warning) {
+        this.counts.incrementAndGet(warning.ordinal());
+    }
+
+    /**
+     * Get the number of times a kind of warning was raised.
+     *
+     * @param warning The kind of warning.
+     *
+     * @return The number of times the warning was raised.
+     */
+    public long getCount(final ParseWarning warning) {
+        return this.counts.get(warning.ordinal());
+    }
+
+    /**
+     * Get the total number of warnings raised.
+     *
+     * @return The total number of warnings raised.
+     */
+    public long getTotal() {
+        long result = 0;
+        for (int index = 0; index < this.counts.length(); index++) {
+            result += this.counts.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Get a snapshot of the counts of all kinds of warnings that were raised at least once.
+     *
+     * @return The counts of all kinds of warnings that were raised at least once.
+     */
+    public Map<ParseWarning, Long> getCounts() {
+        final Map<ParseWarning, Long> result = new EnumMap<ParseWarning, Long>(ParseWarning.class);
+        for (ParseWarning warning : WARNINGS) {
+            final long count = this.counts.get(warning.ordinal());
+            if (count > 0) {
+                result.put(warning, count);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.util.List;
+
+/**
+ * {@link CueEventHandler} that ignores all events. Extend this class and override the methods for the events you
+ * are interested in.
+ *
+ * @author jwbroek
+ */
+public abstract class CueEventAdapter implements CueEventHandler {
+
+    public void startSheet() {
+    }
+
+    public void endSheet() {
+    }
+
+    public void onCatalog(final LineOfInput input, final String catalog) {
+    }
+
+    public void onCdTextFile(final LineOfInput input, final String cdTextFile) {
+    }
+
+    public void onFile(final LineOfInput input, final String file, final String fileType) {
+    }
+
+    public void onTrack(final LineOfInput input, final int number, final String dataType) {
+    }
+
+    public void onFlags(final LineOfInput input, final List<String> flags) {
+    }
+
+    public void onIndex(final LineOfInput input, final int number, final Position position) {
+    }
+
+    public void onIsrc(final LineOfInput input, final String isrcCode) {
+    }
+
+    public void onPerformer(final LineOfInput input, final String performer, final boolean ofTrack) {
+    }
+
+    public void onSongwriter(final LineOfInput input, final String songwriter, final boolean ofTrack) {
+    }
+
+    public void onTitle(final LineOfInput input, final String title, final boolean ofTrack) {
+    }
+
+    public void onPregap(final LineOfInput input, final Position pregap) {
+    }
+
+    public void onPostgap(final LineOfInput input, final Position postgap) {
+    }
+
+    public void onComment(final LineOfInput input, final String comment) {
+    }
+
+    public void onDate(final LineOfInput input, final int year) {
+    }
+
+    public void onDiscid(final LineOfInput input, final String discid) {
+    }
+
+    public void onGenre(final LineOfInput input, final String genre) {
+    }
+
+    public void onRem(final LineOfInput input, final String comment) {
+    }
+
+    public void onWarning(final LineOfInput input, final String warning) {
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.util.List;
+
+/**
+ * <p>Receives the data of a cue sheet as it is being parsed by {@link CueParser}, in the order in which it appears
+ * in the input. This allows for processing a cue sheet without building a {@link CueSheet}. The
+ * {@link CueSheetBuilder} is the handler that does build one.</p>
+ * <p>The parser guarantees that there is a FILE before any TRACK, and a TRACK before any datum that belongs to a
+ * track. If the input lacks these, then the parser will report them as implied, after reporting a warning. Any
+ * values passed to the handler have already been unquoted.</p>
+ * <p>Warnings are reported both to a {@link ParseDiagnostics} and to the handler, in that order. A warning precedes
+ * the event for the input it pertains to, if any.</p>
+ * <p>Extend {@link CueEventAdapter} if you are only interested in some of the events.</p>
+ *
+ * @author jwbroek
+ */
+public interface CueEventHandler {
+
+    /**
+     * Called before any other method, when parsing starts.
+     */
+    public void startSheet();
+
+    /**
+     * Called after all other methods, when all input has been parsed.
+     */
+    public void endSheet();
+
+    /**
+     * Called for a CATALOG datum.
+     *
+     * @param input   The input that contains the datum.
+     * @param catalog The media catalog number.
+     */
+    public void onCatalog(LineOfInput input, String catalog);
+
+    /**
+     * Called for a CDTEXTFILE datum.
+     *
+     * @param input      The input that contains the datum.
+     * @param cdTextFile The CD-TEXT file.
+     */
+    public void onCdTextFile(LineOfInput input, String cdTextFile);
+
+    /**
+     * Called for a FILE datum. Everything up to the next call of this method belongs to this file.
+     *
+     * @param input    The input that contains the datum, or that required the file to be implied.
+     * @param file     The file. Null if the file is implied.
+     * @param fileType The type of the file. Null if the file is implied.
+     */
+    public void onFile(LineOfInput input, String file, String fileType);
+
+    /**
+     * Called for a TRACK datum. Everything up to the next call of this method or of
+     * {@link #onFile(LineOfInput, String, String)} belongs to this track.
+     *
+     * @param input    The input that contains the datum, or that required the track to be implied.
+     * @param number   The track number. -1 if the track is implied.
+     * @param dataType The data type of the track. Null if the track is implied.
+     */
+    public void onTrack(LineOfInput input, int number, String dataType);
+
+    /**
+     * Called for a FLAGS datum of the current track.
+     *
+     * @param input The input that contains the datum.
+     * @param flags The flags. Never empty. The list is only valid for the duration of the call.
+     */
+    public void onFlags(LineOfInput input, List<String> flags);
+
+    /**
+     * Called for an INDEX datum of the current track.
+     *
+     * @param input    The input that contains the datum.
+     * @param number   The index number.
+     * @param position The position of the index.
+     */
+    public void onIndex(LineOfInput input, int number, Position position);
+
+    /**
+     * Called for an ISRC datum of the current track.
+     *
+     * @param input    The input that contains the datum.
+     * @param isrcCode The ISRC code.
+     */
+    public void onIsrc(LineOfInput input, String isrcCode);
+
+    /**
+     * Called for a PERFORMER datum.
+     *
+     * @param input     The input that contains the datum.
+     * @param performer The performer.
+     * @param ofTrack   True if this is the performer of the current track; false if of the album.
+     */
+    public void onPerformer(LineOfInput input, String performer, boolean ofTrack);
+
+    /**
+     * Called for a SONGWRITER datum.
+     *
+     * @param input      The input that contains the datum.
+     * @param songwriter The songwriter.
+     * @param ofTrack    True if this is the songwriter of the current track; false if of the album.
+     */
+    public void onSongwriter(LineOfInput input, String songwriter, boolean ofTrack);
+
+    /**
+     * Called for a TITLE datum.
+     *
+     * @param input   The input that contains the datum.
+     * @param title   The title.
+     * @param ofTrack True if this is the title of the current track; false if of the album.
+     */
+    public void onTitle(LineOfInput input, String title, boolean ofTrack);
+
+    /**
+     * Called for a PREGAP datum of the current track.
+     *
+     * @param input  The input that contains the datum.
+     * @param pregap The pregap.
+     */
+    public void onPregap(LineOfInput input, Position pregap);
+
+    /**
+     * Called for a POSTGAP datum of the current track.
+     *
+     * @param input   The input that contains the datum.
+     * @param postgap The postgap.
+     */
+    public void onPostgap(LineOfInput input, Position postgap);
+
+    /**
+     * Called for a REM COMMENT datum.
+     *
+     * @param input   The input that contains the datum.
+     * @param comment The comment.
+     */
+    public void onComment(LineOfInput input, String comment);
+
+    /**
+     * Called for a REM DATE datum.
+     *
+     * @param input The input that contains the datum.
+     * @param year  The year.
+     */
+    public void onDate(LineOfInput input, int year);
+
+    /**
+     * Called for a REM DISCID datum.
+     *
+     * @param input  The input that contains the datum.
+     * @param discid The disc id.
+     */
+    public void onDiscid(LineOfInput input, String discid);
+
+    /**
+     * Called for a REM GENRE datum.
+     *
+     * @param input The input that contains the datum.
+     * @param genre The genre.
+     */
+    public void onGenre(LineOfInput input, String genre);
+
+    /**
+     * Called for any REM datum that is not one of the recognized non-standard commands, such as REM COMMENT.
+     *
+     * @param input   The input that contains the datum.
+     * @param comment The remark, without the REM keyword. May be empty.
+     */
+    public void onRem(LineOfInput input, String comment);
+
+    /**
+     * Called for every warning raised by the parser, after it has been reported to the {@link ParseDiagnostics}.
+     * The warning precedes the event for the input it pertains to, if any.
+     *
+     * @param input   The input that the warning pertains to.
+     * @param warning The warning.
+     */
+    public void onWarning(LineOfInput input, String warning);
+}
@@ -22,80 +22,69 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Parser for cue sheets.
+ * <p>Parser for cue sheets.</p>
+ * <p>Lines are recognized by one of two {@link CueParser.Engine engines}. Both produce exactly the same results,
+ * including the warnings raised, so the regular expression based engine can serve as a reference for the
+ * (default) lexer based engine.</p>
+ * <p>Besides building a {@link CueSheet}, the parser can report the contents of a cue sheet to a
+ * {@link CueEventHandler} as it goes, so that no CueSheet needs to be built if only part of the data is of
+ * interest.</p>
+ * <p>All rules of the spec are checked while parsing, unless fewer rules are selected through
+ * {@link ParserOptions#setRules(Set)}. Rules that are skipped can be checked afterward, on request, by a
+ * {@link CueSheetValidator}.</p>
  *
  * @author jwbroek
  */
 final public class CueParser {
 
+    /**
+     * Available engines for recognizing the lines of a cue sheet.
+     */
+    public enum Engine {
+        /**
+         * Scans every line once, character by character. This is the default.
+         */
+        LEXER,
+        /**
+         * Matches every line against regular expressions. Slower than {@link #LEXER}, but kept as a reference
+         * implementation, so that the results of both can be compared.
+         */
+        REGEX
+    }
+
     /**
      * Logger for this class.
      */
     private final static Logger logger = LoggerFactory.getLogger(CueParser.class);
 
-    // Constants for warning texts. Quick and dirty. Should really be a ResourceBundle.
-    private final static String WARNING_EMPTY_LINES = "Empty lines not allowed. Will ignore.";
-    private final static String WARNING_UNPARSEABLE_INPUT = "Unparseable line. Will ignore.";
-    private final static String WARNING_INVALID_CATALOG_NUMBER = "Invalid catalog number.";
-    private final static String WARNING_NONCOMPLIANT_FILE_TYPE = "Noncompliant file type.";
-    private final static String WARNING_NO_FLAGS = "No flags specified.";
-    private final static String WARNING_NONCOMPLIANT_FLAG = "Noncompliant flag(s) specified.";
-    private final static String WARNING_WRONG_NUMBER_OF_DIGITS = "Wrong number of digits in number.";
-    private final static String WARNING_NONCOMPLIANT_ISRC_CODE = "ISRC code has noncompliant format.";
-    private final static String WARNING_FIELD_LENGTH_OVER_80 = "The field is too long to burn as CD-TEXT. The maximum length is 80.";
-    private final static String WARNING_NONCOMPLIANT_DATA_TYPE = "Noncompliant data type specified.";
-    private final static String WARNING_TOKEN_NOT_UPPERCASE = "Token has wrong case. Uppercase was expected.";
-    private final static String WARNING_INVALID_FRAMES_VALUE = "Position has invalid frame value. Should be 00-74.";
-    private final static String WARNING_INVALID_SECONDS_VALUE = "Position has invalid seconds value. Should be 00-59.";
-    private final static String WARNING_DATUM_APPEARS_TOO_OFTEN = "Datum appears too often.";
-    private final static String WARNING_FILE_IN_WRONG_PLACE = "A FILE datum must come before everything else except REM and CATALOG.";
-    private final static String WARNING_FLAGS_IN_WRONG_PLACE = "A FLAGS datum must come after a TRACK, but before any INDEX of that TRACK.";
-    private final static String WARNING_NO_FILE_SPECIFIED = "Datum must appear in FILE, but no FILE specified.";
-    private final static String WARNING_NO_TRACK_SPECIFIED = "Datum must appear in TRACK, but no TRACK specified.";
-    private final static String WARNING_INVALID_INDEX_NUMBER = "Invalid index number. First number must be 0 or 1; all next ones sequential.";
-    private final static String WARNING_INVALID_FIRST_POSITION = "Invalid position. First index must have position 00:00:00";
-    private final static String WARNING_ISRC_IN_WRONG_PLACE = "An ISRC datum must come after TRACK, but before any INDEX of TRACK.";
-    private final static String WARNING_PREGAP_IN_WRONG_PLACE = "A PREGAP datum must come after TRACK, but before any INDEX of that TRACK.";
-    private final static String WARNING_INDEX_AFTER_POSTGAP = "A POSTGAP datum must come after all INDEX data of a TRACK.";
-    private final static String WARNING_INVALID_TRACK_NUMBER = "Invalid track number. First number must be 1; all next ones sequential.";
-    private final static String WARNING_INVALID_YEAR = "Invalid year. Should be a number from 1 to 9999 (inclusive).";
-
-    // Patterns used for parsing and validation. Quick and dirty. A formal grammar would be nicer.
-    private final static Pattern PATTERN_POSITION = Pattern.compile("^(\\d*):(\\d*):(\\d*)$");
-    private final static Pattern PATTERN_CATALOG_NUMBER = Pattern.compile("^\\d{13}$");
-    private final static Pattern PATTERN_FILE = Pattern.compile("^FILE\\s+((?:\"[^\"]*\")|\\S+)\\s+(\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_CDTEXTFILE = Pattern.compile("^CDTEXTFILE\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_FLAGS = Pattern.compile("^FLAGS(\\s+\\w+)*\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_INDEX = Pattern.compile("^INDEX\\s+(\\d+)\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_ISRC_CODE = Pattern.compile("^\\w{5}\\d{7}$");
-    private final static Pattern PATTERN_PERFORMER = Pattern.compile("^PERFORMER\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_POSTGAP = Pattern.compile("^POSTGAP\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_PREGAP = Pattern.compile("^PREGAP\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_REM_COMMENT = Pattern.compile("^(REM\\s+COMMENT)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_REM_DATE = Pattern.compile("^(REM\\s+DATE)\\s+(\\d+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_REM_DISCID = Pattern.compile("^(REM\\s+DISCID)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_REM_GENRE = Pattern.compile("^(REM\\s+GENRE)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_SONGWRITER = Pattern.compile("^SONGWRITER\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_TITLE = Pattern.compile("^TITLE\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private final static Pattern PATTERN_TRACK = Pattern.compile("TRACK\\s+(\\d+)\\s+(\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
-
+    /**
+     * Files larger than this number of bytes are memory-mapped rather than read into a buffer.
+     */
+    final static long MAP_THRESHOLD = 1024 * 1024;
     /**
      * A set of all file types that are allowed by the cue sheet spec.
      */
-    private final static Set<String> COMPLIANT_FILE_TYPES = new TreeSet<String>(Arrays.asList(new String[]{ "BINARY", "MOTOROLA", "AIFF", "WAVE", "MP3" }));
+    final static Set<String> COMPLIANT_FILE_TYPES = new TreeSet<String>(Arrays.asList(new String[]{ "BINARY", "MOTOROLA", "AIFF", "WAVE", "MP3" }));
     /**
      * A set of all flags that are allowed by the cue sheet spec.
      */
-    private final static Set<String> COMPLIANT_FLAGS = new TreeSet<String>(Arrays.asList(new String[]{ "DCP", "4CH", "PRE", "SCMS", "DATA" }));
+    final static Set<String> COMPLIANT_FLAGS = new TreeSet<String>(Arrays.asList(new String[]{ "DCP", "4CH", "PRE", "SCMS", "DATA" }));
     /**
      * A set of all data types that are allowed by the cue sheet spec.
      */
-    private final static Set<String> COMPLIANT_DATA_TYPES = new TreeSet<String>(Arrays.asList(new String[]{ "AUDIO", "CDG", "MODE1/2048", "MODE1/2352", "MODE2/2336", "MODE2/2352", "CDI/2336", "CDI/2352" }));
+    final static Set<String> COMPLIANT_DATA_TYPES = new TreeSet<String>(Arrays.asList(new String[]{ "AUDIO", "CDG", "MODE1/2048", "MODE1/2352", "MODE2/2336", "MODE2/2352", "CDI/2336", "CDI/2352" }));
 
     /**
      * Create a CueParser. Should never be used, as all properties and methods of this class are static.
@@ -116,12 +105,29 @@ final public class CueParser {
      */
     public static CueSheet parse(final InputStream inputStream) throws IOException {
 
-        final CueSheet result = CueParser.parse(new LineNumberReader(new InputStreamReader(inputStream)));
+        final CueSheet result = CueParser.parse(inputStream, Engine.LEXER);
 
 
         return result;
     }
 
+    /**
+     * Parse a cue sheet that will be read from the InputStream.
+     *
+     * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+     *                    afterward.
+     * @param engine      The engine to use for recognizing lines.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final InputStream inputStream, final Engine engine) throws IOException {
+
+        final CueSheet result = CueParser.newParser(engine, false, null, null).parse(inputStream);
+        return result;
+    }
+
     /**
      * Parse a cue sheet file.
      *
@@ -133,7 +139,23 @@ final public class CueParser {
      */
     public static CueSheet parse(final File file) throws IOException {
 
-        final CueSheet result = CueParser.parse(new LineNumberReader(new FileReader(file)));
+        final CueSheet result = CueParser.parse(file, Engine.LEXER);
+        return result;
+    }
+
+    /**
+     * Parse a cue sheet file.
+     *
+     * @param file   A cue sheet file.
+     * @param engine The engine to use for recognizing lines.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final File file, final Engine engine) throws IOException {
+
+        final CueSheet result = CueParser.newParser(engine, false, null, null).parse(file);
         return result;
     }
 
@@ -148,13 +170,321 @@ final public class CueParser {
      */
     public static CueSheet parse(final LineNumberReader reader) throws IOException {
 
+        final CueSheet result = CueParser.parse(reader, Engine.LEXER);
+        return result;
+    }
+
+    /**
+     * Parse a cue sheet.
+     *
+     * @param reader A reader for the cue sheet. This reader will be closed afterward.
+     * @param engine The engine to use for recognizing lines.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final LineNumberReader reader, final Engine engine) throws IOException {
+
+        return CueParser.newParser(engine, false, null, null).parse(reader);
+    }
+
+    /**
+     * Parse a cue sheet file, reporting warnings to the specified diagnostics rather than adding them to the
+     * cue sheet.
+     *
+     * @param file        A cue sheet file.
+     * @param diagnostics The diagnostics to report warnings to.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final File file, final ParseDiagnostics diagnostics) throws IOException {
+
+        return CueParser.newParser(Engine.LEXER, false, null, diagnostics).parse(file);
+    }
+
+    /**
+     * Parse a cue sheet, reporting warnings to the specified diagnostics rather than adding them to the cue sheet.
+     *
+     * @param reader      A reader for the cue sheet. This reader will be closed afterward.
+     * @param diagnostics The diagnostics to report warnings to.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final LineNumberReader reader, final ParseDiagnostics diagnostics) throws IOException {
+
+        return CueParser.newParser(Engine.LEXER, false, null, diagnostics).parse(reader);
+    }
+
+    /**
+     * Parse a cue sheet that will be read from the InputStream, reporting its contents to a handler.
+     *
+     * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+     *                    afterward.
+     * @param handler     The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public static void parse(final InputStream inputStream, final CueEventHandler handler) throws IOException {
+
+        CueParser.newParser(Engine.LEXER, false, null, null).parse(inputStream, handler);
+    }
+
+    /**
+     * Parse a cue sheet file, reporting its contents to a handler.
+     *
+     * @param file    A cue sheet file.
+     * @param handler The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public static void parse(final File file, final CueEventHandler handler) throws IOException {
+
+        CueParser.newParser(Engine.LEXER, false, null, null).parse(file, handler);
+    }
+
+    /**
+     * Parse a cue sheet, reporting its contents to a handler.
+     *
+     * @param reader  A reader for the cue sheet. This reader will be closed afterward.
+     * @param handler The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public static void parse(final LineNumberReader reader, final CueEventHandler handler) throws IOException {
+
+        CueParser.parse(reader, Engine.LEXER, handler);
+    }
+
+    /**
+     * Parse a cue sheet, reporting its contents to a handler. No {@link CueSheet} is built, unless the handler
+     * does so. Warnings are written to the logging.
+     *
+     * @param reader  A reader for the cue sheet. This reader will be closed afterward.
+     * @param engine  The engine to use for recognizing lines.
+     * @param handler The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public static void parse(final LineNumberReader reader, final Engine engine, final CueEventHandler handler) throws IOException {
+
+        CueParser.newParser(engine, false, null, null).parse(reader, handler);
+    }
+
+    /**
+     * Parse a cue sheet, reporting its contents to a handler and its warnings to the diagnostics.
+     *
+     * @param reader      A reader for the cue sheet. This reader will be closed afterward.
+     * @param handler     The handler to report the contents of the cue sheet to.
+     * @param diagnostics The diagnostics to report warnings to.
+     *
+     * @throws IOException
+     */
+    public static void parse(final LineNumberReader reader, final CueEventHandler handler, final ParseDiagnostics diagnostics) throws IOException {
+
+        CueParser.newParser(Engine.LEXER, false, null, diagnostics).parse(reader, handler);
+    }
+
+    /**
+     * Parse a cue sheet file, stopping as soon as the limit is reached.
+     *
+     * @param file  A cue sheet file.
+     * @param limit The conditions under which to stop parsing.
+     *
+     * @return A representation of the cue sheet, as far as it was parsed.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final File file, final ParseLimit limit) throws IOException {
+
+        return CueParser.newParser(Engine.LEXER, false, limit, null).parse(file);
+    }
+
+    /**
+     * Parse a cue sheet, stopping as soon as the limit is reached.
+     *
+     * @param reader A reader for the cue sheet. This reader will be closed afterward, which may be before all input
+     *               has been read.
+     * @param limit  The conditions under which to stop parsing.
+     *
+     * @return A representation of the cue sheet, as far as it was parsed.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parse(final LineNumberReader reader, final ParseLimit limit) throws IOException {
+
+        return CueParser.newParser(Engine.LEXER, false, limit, null).parse(reader);
+    }
+
+    /**
+     * Parse a cue sheet, reporting its contents to a handler and stopping as soon as the limit is reached. Warnings
+     * are written to the logging.
+     *
+     * @param reader  A reader for the cue sheet. This reader will be closed afterward, which may be before all input
+     *                has been read.
+     * @param handler The handler to report the contents of the cue sheet to.
+     * @param limit   The conditions under which to stop parsing.
+     *
+     * @throws IOException
+     */
+    public static void parse(final LineNumberReader reader, final CueEventHandler handler, final ParseLimit limit) throws IOException {
+
+        CueParser.newParser(Engine.LEXER, false, limit, null).parse(reader, handler);
+    }
+
+    /**
+     * Parse a cue sheet file, detecting its encoding by means of {@link CharsetDetector}. The file is read with a
+     * single read from a {@link FileChannel} (or memory-mapped if it is very large) and decoded only once.
+     *
+     * @param file A cue sheet file.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public static CueSheet parseDetectingCharset(final File file) throws IOException {
+
+        return CueParser.newParser(Engine.LEXER, true, null, null).parse(file);
+    }
+
+    /**
+     * Parse a cue sheet from its raw bytes, detecting its encoding by means of {@link CharsetDetector}. The bytes
+     * are decoded only once.
+     *
+     * @param bytes The bytes of the cue sheet, from the position to the limit of the buffer. The position will be
+     *              advanced to the limit.
+     *
+     * @return A representation of the cue sheet.
+     */
+    public static CueSheet parse(final ByteBuffer bytes) {
+
+        return CueParser.newParser(Engine.LEXER, true, null, null).parse(bytes);
+    }
+
+    /**
+     * Parse a cue sheet from its raw bytes, detecting its encoding by means of {@link CharsetDetector}, and report
+     * its contents to a handler. The bytes are decoded only once. Warnings are written to the logging.
+     *
+     * @param bytes   The bytes of the cue sheet, from the position to the limit of the buffer. The position will be
+     *                advanced to the limit.
+     * @param handler The handler to report the contents of the cue sheet to.
+     */
+    public static void parse(final ByteBuffer bytes, final CueEventHandler handler) {
+
+        CueParser.newParser(Engine.LEXER, true, null, null).parse(bytes, handler);
+    }
+
+    /**
+     * Parse many cue sheet files in parallel. Each file is parsed by one of a fixed number of threads, which reuse
+     * a {@link ReusableCueParser} each from file to file. Unless {@link ParallelOptions#setDetectCharset}
+     * is set, files are decoded using the platform's default encoding, as with {@link #parse(File)}. A file that
+     * cannot be parsed does not affect the parsing of the others. Neither does an exception thrown by the handler;
+     * it is logged, and the file is counted as failed.
+     *
+     * @param files   The cue sheet files to parse. Will be iterated over once, by the parsing threads.
+     * @param options Options for the parsing.
+     * @param handler The handler for the results. Is called for every file in the order in which parsing completes.
+     *
+     * @return Statistics of the parsing, including the throughput.
+     *
+     * @throws InterruptedException When interrupted while waiting for parsing to complete. Parsing will be aborted.
+     */
+    public static ParseStatistics parseAll(final Iterable<File> files, final ParallelOptions options, final ParseResultHandler handler) throws InterruptedException {
+
+        CueParser.logger.debug("Parsing cue sheets using {} threads.", options.getThreads());
+
+        final long start = System.nanoTime();
+        final Iterator<File> fileIterator = files.iterator();
+        final ParseWorker[] workers = new ParseWorker[options.getThreads()];
+        final ExecutorService executor = Executors.newFixedThreadPool(workers.length);
+
+        try {
+            for (int index = 0; index < workers.length; index++) {
+                workers[index] = new ParseWorker(fileIterator, new ReusableCueParser(options), handler);
+                executor.execute(workers[index]);
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long parsed = 0;
+        long failed = 0;
+        long bytes = 0;
+        for (ParseWorker worker : workers) {
+            parsed += worker.parsed;
+            failed += worker.failed;
+            bytes += worker.parser.bytesRead;
+        }
+
+        final ParseStatistics result = new ParseStatistics(parsed, failed, bytes, System.nanoTime() - start);
+        CueParser.logger.info("Parsed {}.", result);
+        return result;
+    }
+
+    /**
+     * Create a parser that can be used for many cue sheets, reusing its buffers, recognizer and other scratch state
+     * from one cue sheet to the next. The parser is not thread safe; use a separate parser per thread.
+     *
+     * @param options The options for the parser. These are copied, so later changes to them do not affect the
+     *                parser.
+     *
+     * @return A new parser.
+     */
+    public static ReusableCueParser newParser(final ParserOptions options) {
+        return new ReusableCueParser(options);
+    }
+
+    /**
+     * Create a parser for a single call of one of the static parse methods.
+     *
+     * @param engine        The engine to use for recognizing lines.
+     * @param detectCharset Whether to detect the encoding of the input.
+     * @param limit         The conditions under which to stop parsing. May be null.
+     * @param diagnostics   The diagnostics to report warnings to. May be null.
+     *
+     * @return A new parser.
+     */
+    private static ReusableCueParser newParser(final Engine engine, final boolean detectCharset, final ParseLimit limit, final ParseDiagnostics diagnostics) {
+        final ParserOptions options = new ParserOptions();
+        options.setEngine(engine);
+        options.setDetectCharset(detectCharset);
+        options.setLimit(limit);
+        options.setDiagnostics(diagnostics);
+        return new ReusableCueParser(options);
+    }
+
+    /**
+     * Parse a cue sheet, reporting its contents to a handler.
+     *
+     * @param reader         A reader for the cue sheet. This reader will be closed afterward.
+     * @param recognizer     The recognizer for the input. May be reused for other cue sheets afterward, but not
+     *                       concurrently.
+     * @param handler        The handler to report the contents of the cue sheet to.
+     * @param limit          The conditions under which to stop parsing. May be null.
+     * @param diagnostics    The diagnostics to report warnings to.
+     * @param rules          The rules to check. Warnings for other rules are not raised.
+     * @param reusedPosition The position to reuse for every position reported to the handler. Null if a new
+     *                       position is to be reported every time.
+     *
+     * @throws IOException
+     */
+    static void parse(final LineNumberReader reader, final LineRecognizer recognizer, final CueEventHandler handler, final ParseLimit limit, final ParseDiagnostics diagnostics, final Set<ParseWarning> rules, final Position reusedPosition) throws IOException {
+
         CueParser.logger.trace("Parsing cue sheet.");
 
-        final CueSheet result = new CueSheet();
+        final ParseState state = new ParseState(recognizer, handler, limit, diagnostics, rules, reusedPosition);
 
         try {
-            // Go through all lines of input.
-            String inputLine = reader.readLine();
+            handler.startSheet();
+
+            // Go through all lines of input, or until the limit is reached.
+            String inputLine = state.isDone() ? null : reader.readLine();
 
             while (inputLine != null) {
                 CueParser.logger.trace("Processing input line.");
@@ -162,144 +492,264 @@ final public class CueParser {
                 // Normalize by removing left and right whitespace.
                 inputLine = inputLine.trim();
 
-                final LineOfInput input = new LineOfInput(reader.getLineNumber(), inputLine, result);
+                CueParser.parseLine(new LineOfInput(reader.getLineNumber(), inputLine), state);
 
-                // Do some validation. If there are no problems, then parse the line.
-                if (inputLine.length() == 0) {
-                    // File should not contain empty lines.
-                    addWarning(input, WARNING_EMPTY_LINES);
-                } else if (inputLine.length() < 2) {
-                    // No token in the spec has length smaller than 2. Unknown token.
-                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                } else {
-                    // Use first 1-2 characters to guide parsing. These two characters are enough to determine how to
-                    // proceed.
-                    switch (inputLine.charAt(0)) {
-                        case 'c':
-                        case 'C':
-                            switch (inputLine.charAt(1)) {
-                                case 'a':
-                                case 'A':
-                                    CueParser.parseCatalog(input);
-                                    break;
-                                case 'd':
-                                case 'D':
-                                    CueParser.parseCdTextFile(input);
-                                    break;
-                                default:
-                                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                                    break;
-                            }
+                // And on to the next line...
+                inputLine = state.isDone() ? null : reader.readLine();
+            }
+
+            handler.endSheet();
+        } finally {
+            CueParser.logger.trace("Closing input reader.");
+            CueParser.flushDiagnostics(diagnostics);
+            reader.close();
+        }
+    }
+
+    /**
+     * Parse a decoded cue sheet, reporting its contents to a handler. Lines are taken from the buffer directly,
+     * breaking them exactly as {@link BufferedReader#readLine()} would.
+     *
+     * @param chars          The cue sheet, from the position to the limit of the buffer. Must be backed by an
+     *                       array. The position will be advanced to the limit, even if parsing stops early.
+     * @param recognizer     The recognizer for the input. May be reused for other cue sheets afterward, but not
+     *                       concurrently.
+     * @param handler        The handler to report the contents of the cue sheet to.
+     * @param limit          The conditions under which to stop parsing. May be null.
+     * @param diagnostics    The diagnostics to report warnings to.
+     * @param rules          The rules to check. Warnings for other rules are not raised.
+     * @param reusedPosition The position to reuse for every position reported to the handler. Null if a new
+     *                       position is to be reported every time.
+     */
+    static void parse(final CharBuffer chars, final LineRecognizer recognizer, final CueEventHandler handler, final ParseLimit limit, final ParseDiagnostics diagnostics, final Set<ParseWarning> rules, final Position reusedPosition) {
+
+        CueParser.logger.trace("Parsing cue sheet.");
+
+        final ParseState state = new ParseState(recognizer, handler, limit, diagnostics, rules, reusedPosition);
+        final char[] array = chars.array();
+        final int offset = chars.arrayOffset();
+        final int end = chars.limit();
+        int position = chars.position();
+        int lineNumber = 0;
+
+        handler.startSheet();
+
+        // Go through all lines of input, or until the limit is reached.
+        while (position < end && !state.isDone()) {
+            CueParser.logger.trace("Processing input line.");
+
+            int lineStart = position;
+            while (position < end && array[offset + position] != '\n' && array[offset + position] != '\r') {
+                position++;
+            }
+            int lineEnd = position;
+
+            // Skip the line terminator.
+            if (position < end) {
+                if (array[offset + position] == '\r' && position + 1 < end && array[offset + position + 1] == '\n') {
+                    position++;
+                }
+                position++;
+            }
+            lineNumber++;
+
+            // Normalize by removing left and right whitespace, as String.trim() would.
+            while (lineStart < lineEnd && array[offset + lineStart] <= ' ') {
+                lineStart++;
+            }
+            while (lineEnd > lineStart && array[offset + lineEnd - 1] <= ' ') {
+                lineEnd--;
+            }
+
+            CueParser.parseLine(new LineOfInput(lineNumber, new String(array, offset + lineStart, lineEnd - lineStart)), state);
+        }
+
+        chars.position(end);
+        CueParser.flushDiagnostics(diagnostics);
+        handler.endSheet();
+    }
+
+    /**
+     * Report any warnings that the diagnostics held back, now that parsing has ended.
+     *
+     * @param diagnostics The diagnostics. May be null.
+     */
+    private static void flushDiagnostics(final ParseDiagnostics diagnostics) {
+        if (diagnostics instanceof LoggingDiagnostics) {
+            ((LoggingDiagnostics) diagnostics).flush();
+        }
+    }
+
+    /**
+     * Create a decoder that replaces malformed and unmappable input, as {@link InputStreamReader} does.
+     *
+     * @param charset The charset to create a decoder for.
+     *
+     * @return A new decoder for the charset.
+     */
+    static CharsetDecoder createDecoder(final Charset charset) {
+        return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Decode bytes in a single pass.
+     *
+     * @param bytes   The bytes to decode, from the position to the limit of the buffer. The position will be advanced
+     *                to the limit.
+     * @param decoder The decoder to use. Will be reset first.
+     * @param reuse   A buffer to decode into, if it is large enough. May be null.
+     *
+     * @return The decoded characters, ready to be read. Either the reused buffer, or a new one backed by an array.
+     */
+    static CharBuffer decode(final ByteBuffer bytes, final CharsetDecoder decoder, final CharBuffer reuse) {
+
+        final int maxChars = (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte());
+        final CharBuffer result = reuse != null && reuse.capacity() >= maxChars ? reuse : CharBuffer.allocate(maxChars);
+
+        result.clear();
+        decoder.reset();
+        decoder.decode(bytes, result, true);
+        decoder.flush(result);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Parse a single line of input.
+     *
+     * @param input The input, with left and right whitespace removed.
+     * @param state The state of the parse.
+     */
+    private static void parseLine(final LineOfInput input, final ParseState state) {
+
+        final String inputLine = input.getInput();
+
+        // Do some validation. If there are no problems, then parse the line.
+        if (inputLine.length() == 0) {
+            // File should not contain empty lines.
+            addWarning(input, state, ParseWarning.EMPTY_LINES);
+        } else if (inputLine.length() < 2) {
+            // No token in the spec has length smaller than 2. Unknown token.
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
+        } else {
+            // Use first 1-2 characters to guide parsing. These two characters are enough to determine how to
+            // proceed.
+            switch (inputLine.charAt(0)) {
+                case 'c':
+                case 'C':
+                    switch (inputLine.charAt(1)) {
+                        case 'a':
+                        case 'A':
+                            CueParser.parseCatalog(input, state);
                             break;
-                        case 'f':
-                        case 'F':
-                            switch (inputLine.charAt(1)) {
-                                case 'i':
-                                case 'I':
-                                    CueParser.parseFile(input);
-                                    break;
-                                case 'l':
-                                case 'L':
-                                    CueParser.parseFlags(input);
-                                    break;
-                                default:
-                                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                                    break;
-                            }
+                        case 'd':
+                        case 'D':
+                            CueParser.parseCdTextFile(input, state);
+                            break;
+                        default:
+                            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
                             break;
+                    }
+                    break;
+                case 'f':
+                case 'F':
+                    switch (inputLine.charAt(1)) {
                         case 'i':
                         case 'I':
-                            switch (inputLine.charAt(1)) {
-                                case 'n':
-                                case 'N':
-                                    CueParser.parseIndex(input);
-                                    break;
-                                case 's':
-                                case 'S':
-                                    CueParser.parseIsrc(input);
-                                    break;
-                                default:
-                                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                                    break;
-                            }
+                            CueParser.parseFile(input, state);
                             break;
-                        case 'p':
-                        case 'P':
-                            switch (inputLine.charAt(1)) {
-                                case 'e':
-                                case 'E':
-                                    CueParser.parsePerformer(input);
-                                    break;
-                                case 'o':
-                                case 'O':
-                                    CueParser.parsePostgap(input);
-                                    break;
-                                case 'r':
-                                case 'R':
-                                    CueParser.parsePregap(input);
-                                    break;
-                                default:
-                                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                                    break;
-                            }
+                        case 'l':
+                        case 'L':
+                            CueParser.parseFlags(input, state);
                             break;
-                        case 'r':
-                        case 'R':
-                            CueParser.parseRem(input);
+                        default:
+                            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
+                            break;
+                    }
+                    break;
+                case 'i':
+                case 'I':
+                    switch (inputLine.charAt(1)) {
+                        case 'n':
+                        case 'N':
+                            CueParser.parseIndex(input, state);
                             break;
                         case 's':
                         case 'S':
-                            CueParser.parseSongwriter(input);
+                            CueParser.parseIsrc(input, state);
                             break;
-                        case 't':
-                        case 'T':
-                            switch (inputLine.charAt(1)) {
-                                case 'i':
-                                case 'I':
-                                    CueParser.parseTitle(input);
-                                    break;
-                                case 'r':
-                                case 'R':
-                                    CueParser.parseTrack(input);
-                                    break;
-                                default:
-                                    addWarning(input, WARNING_UNPARSEABLE_INPUT);
-                                    break;
-                            }
+                        default:
+                            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
+                            break;
+                    }
+                    break;
+                case 'p':
+                case 'P':
+                    switch (inputLine.charAt(1)) {
+                        case 'e':
+                        case 'E':
+                            CueParser.parsePerformer(input, state);
+                            break;
+                        case 'o':
+                        case 'O':
+                            CueParser.parsePostgap(input, state);
+                            break;
+                        case 'r':
+                        case 'R':
+                            CueParser.parsePregap(input, state);
                             break;
                         default:
-                            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+                            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
                             break;
                     }
-                }
-
-                // And on to the next line...
-                inputLine = reader.readLine();
+                    break;
+                case 'r':
+                case 'R':
+                    CueParser.parseRem(input, state);
+                    break;
+                case 's':
+                case 'S':
+                    CueParser.parseSongwriter(input, state);
+                    break;
+                case 't':
+                case 'T':
+                    switch (inputLine.charAt(1)) {
+                        case 'i':
+                        case 'I':
+                            CueParser.parseTitle(input, state);
+                            break;
+                        case 'r':
+                        case 'R':
+                            CueParser.parseTrack(input, state);
+                            break;
+                        default:
+                            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
+                            break;
+                    }
+                    break;
+                default:
+                    addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
+                    break;
             }
-        } finally {
-            CueParser.logger.trace("Closing input reader.");
-            reader.close();
         }
 
-
-        return result;
     }
 
     /**
      * Determine if the input starts with some string. Will return true if it matches, regardless of case. If there is
-     * a match, but the case differs, then a "TOKEN NOT UPPERCASE" warning will be added to the cue sheet associated
-     * with the input.
+     * a match, but the case differs, then a "TOKEN NOT UPPERCASE" warning will be raised.
      *
      * @param input The input to check.
+     * @param state The state of the parse.
      * @param start The starting string to check for. Should be uppercase, or else the warning will not make sense.
      *
      * @return True if there is a match. False otherwise.
      */
-    private static boolean startsWith(final LineOfInput input, final String start) {
+    private static boolean startsWith(final LineOfInput input, final ParseState state, final String start) {
         if (input.getInput().startsWith(start)) {
             return true;
-        } else if (input.getInput().substring(0, start.length()).equalsIgnoreCase(start)) {
-            addWarning(input, WARNING_TOKEN_NOT_UPPERCASE);
+        } else if (input.getInput().regionMatches(true, 0, start, 0, start.length())) {
+            addWarning(input, state, ParseWarning.TOKEN_NOT_UPPERCASE);
             return true;
         } else {
             return false;
@@ -307,28 +757,17 @@ final public class CueParser {
     }
 
     /**
-     * Determine if the input contains the specified pattern. Will return true if it matches. If there is a match and
-     * and there is a capturing group, then the first such group will be checked for case. If it is not uppercase,
-     * then a "TOKEN NOT UPPERCASE" warning will be added to the cue sheet associated with the input.
+     * Remove the double quotes that enclose a value, if any.
      *
-     * @param input   The input to check.
-     * @param pattern {@link java.util.regex.Pattern} to check for. If it contains a capturing group, then on a match,
-     *                this group will be
-     *                checked for case as per the method description.
+     * @param value The value to unquote.
      *
-     * @return True if there is a match. False otherwise.
+     * @return The value without enclosing quotes.
      */
-    private static boolean contains(final LineOfInput input, final Pattern pattern) {
-        final Matcher matcher = pattern.matcher(input.getInput());
-
-        if (matcher.find()) {
-            if (matcher.groupCount() > 0 && !matcher.group(1).equals(matcher.group(1).toUpperCase())) {
-                addWarning(input, WARNING_TOKEN_NOT_UPPERCASE);
-            }
-            return true;
-        } else {
-            return false;
+    private static String unquote(final String value) {
+        if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
         }
+        return value;
     }
 
     /**
@@ -339,21 +778,23 @@ final public class CueParser {
      * Usually the first command, but this is not required. Not a mandatory command.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseCatalog(final LineOfInput input) {
-        if (startsWith(input, "CATALOG")) {
+    private static void parseCatalog(final LineOfInput input, final ParseState state) {
+        if (startsWith(input, state, "CATALOG")) {
             String catalogNumber = input.getInput().substring("CATALOG".length()).trim();
-            if (!PATTERN_CATALOG_NUMBER.matcher(catalogNumber).matches()) {
-                addWarning(input, WARNING_INVALID_CATALOG_NUMBER);
+            if (state.checks(ParseWarning.INVALID_CATALOG_NUMBER) && !state.recognizer.isCatalogNumber(catalogNumber)) {
+                addWarning(input, state, ParseWarning.INVALID_CATALOG_NUMBER);
             }
 
-            if (input.getAssociatedSheet().getCatalog() != null) {
-                addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+            if (state.catalogSet) {
+                addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
             }
 
-            input.getAssociatedSheet().setCatalog(catalogNumber);
+            state.catalogSet = true;
+            state.handler.onCatalog(input, catalogNumber);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
     }
 
@@ -367,17 +808,18 @@ final public class CueParser {
      * a warning when this rule is broken.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseFile(final LineOfInput input) {
+    private static void parseFile(final LineOfInput input, final ParseState state) {
 
-        Matcher fileMatcher = PATTERN_FILE.matcher(input.getInput());
+        final LineRecognizer recognizer = state.recognizer;
 
-        if (startsWith(input, "FILE") && fileMatcher.matches()) {
-            if (!COMPLIANT_FILE_TYPES.contains(fileMatcher.group(2))) {
-                if (COMPLIANT_FILE_TYPES.contains(fileMatcher.group(2).toUpperCase())) {
-                    addWarning(input, WARNING_TOKEN_NOT_UPPERCASE);
+        if (startsWith(input, state, "FILE") && recognizer.recognizeFile(input.getInput())) {
+            if ((state.checks(ParseWarning.TOKEN_NOT_UPPERCASE) || state.checks(ParseWarning.NONCOMPLIANT_FILE_TYPE)) && !COMPLIANT_FILE_TYPES.contains(recognizer.secondValue)) {
+                if (COMPLIANT_FILE_TYPES.contains(recognizer.secondValue.toUpperCase())) {
+                    addWarning(input, state, ParseWarning.TOKEN_NOT_UPPERCASE);
                 } else {
-                    addWarning(input, WARNING_NONCOMPLIANT_FILE_TYPE);
+                    addWarning(input, state, ParseWarning.NONCOMPLIANT_FILE_TYPE);
                 }
 
             }
@@ -406,14 +848,16 @@ final public class CueParser {
        */
 
             // If the file name is enclosed in quotes, remove those.
-            String file = fileMatcher.group(1);
-            if (file.length() > 0 && file.charAt(0) == '"' && file.charAt(file.length() - 1) == '"') {
-                file = file.substring(1, file.length() - 1);
-            }
+            String file = unquote(recognizer.value);
 
-            input.getAssociatedSheet().getFileData().add(new FileData(input.getAssociatedSheet(), file, fileMatcher.group(2).toUpperCase()));
+            state.startFile();
+            state.handler.onFile(input, file, recognizer.secondValue.toUpperCase());
+
+            if (state.limit != null && state.limit.isStopAfterFirstFile()) {
+                state.stopped = true;
+            }
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -425,26 +869,22 @@ final public class CueParser {
      * File that contains cd text data. Not mandatory.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseCdTextFile(final LineOfInput input) {
+    private static void parseCdTextFile(final LineOfInput input, final ParseState state) {
 
-        Matcher cdTextFileMatcher = PATTERN_CDTEXTFILE.matcher(input.getInput());
-
-        if (startsWith(input, "CDTEXTFILE") && cdTextFileMatcher.matches()) {
-            if (input.getAssociatedSheet().getCdTextFile() != null) {
-                CueParser.logger.warn(WARNING_DATUM_APPEARS_TOO_OFTEN);
-                input.getAssociatedSheet().addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+        if (startsWith(input, state, "CDTEXTFILE") && state.recognizer.recognizeCdTextFile(input.getInput())) {
+            if (state.cdTextFileSet) {
+                addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
             }
 
             // If the file name is enclosed in quotes, remove those.
-            String file = cdTextFileMatcher.group(1);
-            if (file.length() > 0 && file.charAt(0) == '"' && file.charAt(file.length() - 1) == '"') {
-                file = file.substring(1, file.length() - 1);
-            }
+            String file = unquote(state.recognizer.value);
 
-            input.getAssociatedSheet().setCdTextFile(file);
+            state.cdTextFileSet = true;
+            state.handler.onCdTextFile(input, file);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -456,38 +896,39 @@ final public class CueParser {
      * Track subcode flags. Rarely used according to spec.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseFlags(final LineOfInput input) {
+    private static void parseFlags(final LineOfInput input, final ParseState state) {
 
-        Matcher flagsMatcher = PATTERN_FLAGS.matcher(input.getInput());
+        final LineRecognizer recognizer = state.recognizer;
 
-        if (startsWith(input, "FLAGS") && flagsMatcher.matches()) {
-            if (null == flagsMatcher.group(1)) {
-                addWarning(input, WARNING_NO_FLAGS);
+        if (startsWith(input, state, "FLAGS") && recognizer.recognizeFlags(input.getInput())) {
+            if (recognizer.flags.isEmpty()) {
+                addWarning(input, state, ParseWarning.NO_FLAGS);
             } else {
-                TrackData trackData = getLastTrackData(input);
+                ensureTrack(input, state);
 
-                if (trackData.getIndices().size() > 0) {
-                    addWarning(input, WARNING_FLAGS_IN_WRONG_PLACE);
+                if (state.trackIndexCount > 0) {
+                    addWarning(input, state, ParseWarning.FLAGS_IN_WRONG_PLACE);
                 }
 
-                Set<String> flagCollection = trackData.getFlags();
-
-                if (!flagCollection.isEmpty()) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.trackFlagsSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                Scanner flagScanner = new Scanner(flagsMatcher.group(1));
-                while (flagScanner.hasNext()) {
-                    String flag = flagScanner.next();
-                    if (!COMPLIANT_FLAGS.contains(flag)) {
-                        addWarning(input, WARNING_NONCOMPLIANT_FLAG);
+                if (state.checks(ParseWarning.NONCOMPLIANT_FLAG)) {
+                    for (String flag : recognizer.flags) {
+                        if (!COMPLIANT_FLAGS.contains(flag)) {
+                            addWarning(input, state, ParseWarning.NONCOMPLIANT_FLAG);
+                        }
                     }
-                    flagCollection.add(flag);
                 }
+
+                state.trackFlagsSet = true;
+                state.handler.onFlags(input, recognizer.flags);
             }
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -505,45 +946,46 @@ final public class CueParser {
      * > 1 is subindex within track.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseIndex(final LineOfInput input) {
+    private static void parseIndex(final LineOfInput input, final ParseState state) {
 
-        Matcher indexMatcher = PATTERN_INDEX.matcher(input.getInput());
+        final LineRecognizer recognizer = state.recognizer;
 
-        if (startsWith(input, "INDEX") && indexMatcher.matches()) {
-            if (indexMatcher.group(1).length() != 2) {
-                addWarning(input, WARNING_WRONG_NUMBER_OF_DIGITS);
+        if (startsWith(input, state, "INDEX") && recognizer.recognizeIndex(input.getInput())) {
+            if (recognizer.numberDigits != 2) {
+                addWarning(input, state, ParseWarning.WRONG_NUMBER_OF_DIGITS);
             }
 
-            TrackData trackData = getLastTrackData(input);
-            List<Index> trackIndices = trackData.getIndices();
+            ensureTrack(input, state);
 
             // Postgap data must come after all index data. Only check for first index. No need to repeat this warning for
             // all indices that follow.
-            if (trackIndices.isEmpty() && trackData.getPostgap() != null) {
-                addWarning(input, WARNING_INDEX_AFTER_POSTGAP);
+            if (state.trackIndexCount == 0 && state.trackPostgapSet) {
+                addWarning(input, state, ParseWarning.INDEX_AFTER_POSTGAP);
             }
 
-            int indexNumber = Integer.parseInt(indexMatcher.group(1));
+            int indexNumber = recognizer.number;
 
             // If first index of track, then number must be 0 or 1; if not first index of track, then number must be 1
             // higher than last one.
-            if (trackIndices.isEmpty() && indexNumber > 1 || !trackIndices.isEmpty() && trackIndices.get(trackIndices.size() - 1).getNumber() != indexNumber - 1) {
-                addWarning(input, WARNING_INVALID_INDEX_NUMBER);
+            if (state.trackIndexCount == 0 && indexNumber > 1 || state.trackIndexCount > 0 && state.indexNumber != indexNumber - 1) {
+                addWarning(input, state, ParseWarning.INVALID_INDEX_NUMBER);
             }
 
-            List<Index> fileIndices = getLastFileData(input).getAllIndices();
-
-            Position position = parsePosition(input, indexMatcher.group(2));
+            Position position = parsePosition(input, state);
 
             // Position of first index of file must be 00:00:00.
-            if (fileIndices.isEmpty() && !(position.getMinutes() == 0 && position.getSeconds() == 0 && position.getFrames() == 0)) {
-                addWarning(input, WARNING_INVALID_FIRST_POSITION);
+            if (state.fileIndexCount == 0 && !(position.getMinutes() == 0 && position.getSeconds() == 0 && position.getFrames() == 0)) {
+                addWarning(input, state, ParseWarning.INVALID_FIRST_POSITION);
             }
 
-            trackIndices.add(new Index(indexNumber, position));
+            state.trackIndexCount++;
+            state.fileIndexCount++;
+            state.indexNumber = indexNumber;
+            state.handler.onIndex(input, indexNumber, position);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -555,28 +997,30 @@ final public class CueParser {
      * International Standard Recording Code of track. Must come after TRACK, but before INDEX.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseIsrc(final LineOfInput input) {
+    private static void parseIsrc(final LineOfInput input, final ParseState state) {
 
-        if (startsWith(input, "ISRC")) {
+        if (startsWith(input, state, "ISRC")) {
             String isrcCode = input.getInput().substring("ISRC".length()).trim();
-            if (!PATTERN_ISRC_CODE.matcher(isrcCode).matches()) {
-                addWarning(input, WARNING_NONCOMPLIANT_ISRC_CODE);
+            if (state.checks(ParseWarning.NONCOMPLIANT_ISRC_CODE) && !state.recognizer.isIsrcCode(isrcCode)) {
+                addWarning(input, state, ParseWarning.NONCOMPLIANT_ISRC_CODE);
             }
 
-            TrackData trackData = getLastTrackData(input);
+            ensureTrack(input, state);
 
-            if (trackData.getIndices().size() > 0) {
-                addWarning(input, WARNING_ISRC_IN_WRONG_PLACE);
+            if (state.trackIndexCount > 0) {
+                addWarning(input, state, ParseWarning.ISRC_IN_WRONG_PLACE);
             }
 
-            if (trackData.getIsrcCode() != null) {
-                addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+            if (state.trackIsrcSet) {
+                addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
             }
 
-            trackData.setIsrcCode(isrcCode);
+            state.trackIsrcSet = true;
+            state.handler.onIsrc(input, isrcCode);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -592,42 +1036,36 @@ final public class CueParser {
      * it is the performer of that track.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parsePerformer(final LineOfInput input) {
+    private static void parsePerformer(final LineOfInput input, final ParseState state) {
 
-        Matcher performerMatcher = PATTERN_PERFORMER.matcher(input.getInput());
-
-        if (startsWith(input, "PERFORMER") && performerMatcher.matches()) {
-            String performer = performerMatcher.group(1);
-
-            if (performer.charAt(0) == '\"') {
-                performer = performer.substring(1, performer.length() - 1);
-            }
+        if (startsWith(input, state, "PERFORMER") && state.recognizer.recognizePerformer(input.getInput())) {
+            String performer = unquote(state.recognizer.value);
 
             if (performer.length() > 80) {
-                addWarning(input, WARNING_FIELD_LENGTH_OVER_80);
+                addWarning(input, state, ParseWarning.FIELD_LENGTH_OVER_80);
             }
 
-            // First check file data, as getLastFileData will create a FileData instance if there is none
-            // and we don't actually want to create such an instance.
-            if (input.getAssociatedSheet().getFileData().size() == 0 || getLastFileData(input).getTrackData().size() == 0) {
+            if (state.fileTrackCount == 0) {
                 // Performer of album.
-                if (input.getAssociatedSheet().getPerformer() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.performerSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                input.getAssociatedSheet().setPerformer(performer);
+                state.performerSet = true;
+                state.handler.onPerformer(input, performer, false);
             } else {
                 // Performer of track.
-                TrackData trackData = getLastTrackData(input);
-                if (trackData.getPerformer() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.trackPerformerSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                trackData.setPerformer(performer);
+                state.trackPerformerSet = true;
+                state.handler.onPerformer(input, performer, true);
             }
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -639,20 +1077,23 @@ final public class CueParser {
      * Must come after all INDEX fields for a track. Only one per track allowed.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parsePostgap(final LineOfInput input) {
+    private static void parsePostgap(final LineOfInput input, final ParseState state) {
 
-        Matcher postgapMatcher = PATTERN_POSTGAP.matcher(input.getInput());
+        if (startsWith(input, state, "POSTGAP") && state.recognizer.recognizePostgap(input.getInput())) {
+            ensureTrack(input, state);
 
-        if (startsWith(input, "POSTGAP") && postgapMatcher.matches()) {
-            TrackData trackData = getLastTrackData(input);
-            if (trackData.getPostgap() != null) {
-                addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+            if (state.trackPostgapSet) {
+                addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
             }
 
-            trackData.setPostgap(parsePosition(input, postgapMatcher.group(1)));
+            Position postgap = parsePosition(input, state);
+
+            state.trackPostgapSet = true;
+            state.handler.onPostgap(input, postgap);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -664,116 +1105,27 @@ final public class CueParser {
      * Must come after TRACK, but before INDEX fields for that track.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parsePregap(final LineOfInput input) {
-
-        Matcher pregapMatcher = PATTERN_PREGAP.matcher(input.getInput());
-
-        if (startsWith(input, "PREGAP") && pregapMatcher.matches()) {
-            TrackData trackData = getLastTrackData(input);
-            if (trackData.getPregap() != null) {
-                addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
-            }
-
-            if (trackData.getIndices().size() > 0) {
-                addWarning(input, WARNING_PREGAP_IN_WRONG_PLACE);
-            }
-
-            trackData.setPregap(parsePosition(input, pregapMatcher.group(1)));
-        } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
-        }
-
-    }
-
-    /**
-     * Parse the non-standard REM COMMENT command.
-     * <p/>
-     * REM COMMENT [comment]
-     *
-     * @param input
-     */
-    private static void parseRemComment(final LineOfInput input) {
-
-        Matcher matcher = PATTERN_REM_COMMENT.matcher(input.getInput());
-
-        if (matcher.find()) {
-            String comment = matcher.group(2);
-            if (comment.charAt(0) == '"' && comment.charAt(comment.length() - 1) == '"') {
-                comment = comment.substring(1, comment.length() - 1);
-            }
-            input.getAssociatedSheet().setComment(comment);
-        } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
-        }
-
-    }
-
-    /**
-     * Parse the non-standard REM DATE command.
-     * <p/>
-     * REM DATE [year]
-     *
-     * @param input
-     */
-    private static void parseRemDate(final LineOfInput input) {
+    private static void parsePregap(final LineOfInput input, final ParseState state) {
 
-        Matcher matcher = PATTERN_REM_DATE.matcher(input.getInput());
+        if (startsWith(input, state, "PREGAP") && state.recognizer.recognizePregap(input.getInput())) {
+            ensureTrack(input, state);
 
-        if (matcher.find()) {
-            int year = Integer.parseInt(matcher.group(2));
-            if (year < 1 || year > 9999) {
-                addWarning(input, WARNING_INVALID_YEAR);
+            if (state.trackPregapSet) {
+                addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
             }
-            input.getAssociatedSheet().setYear(year);
-        } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
-        }
 
-    }
-
-    /**
-     * Parse the non-standard REM DISCID command.
-     * <p/>
-     * REM DISCID [discid]
-     *
-     * @param input
-     */
-    private static void parseRemDiscid(final LineOfInput input) {
-
-        Matcher matcher = PATTERN_REM_DISCID.matcher(input.getInput());
-
-        if (matcher.find()) {
-            String discid = matcher.group(2);
-            if (discid.charAt(0) == '"' && discid.charAt(discid.length() - 1) == '"') {
-                discid = discid.substring(1, discid.length() - 1);
+            if (state.trackIndexCount > 0) {
+                addWarning(input, state, ParseWarning.PREGAP_IN_WRONG_PLACE);
             }
-            input.getAssociatedSheet().setDiscid(discid);
-        } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
-        }
 
-    }
+            Position pregap = parsePosition(input, state);
 
-    /**
-     * Parse the non-standard REM GENRE command.
-     * <p/>
-     * REM GENRE [genre]
-     *
-     * @param input
-     */
-    private static void parseRemGenre(final LineOfInput input) {
-
-        Matcher matcher = PATTERN_REM_GENRE.matcher(input.getInput());
-
-        if (matcher.find()) {
-            String genre = matcher.group(2);
-            if (genre.charAt(0) == '"' && genre.charAt(genre.length() - 1) == '"') {
-                genre = genre.substring(1, genre.length() - 1);
-            }
-            input.getAssociatedSheet().setGenre(genre);
+            state.trackPregapSet = true;
+            state.handler.onPregap(input, pregap);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -791,44 +1143,85 @@ final public class CueParser {
      * REM GENRE [genre]
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseRem(final LineOfInput input) {
+    private static void parseRem(final LineOfInput input, final ParseState state) {
 
-        if (startsWith(input, "REM")) {
+        if (startsWith(input, state, "REM")) {
             // This is a comment, but popular implementation like Exact Audio Copy may still
             // embed information here. We'll try to parse this, but we'll silently accept anything.
             // There will be no warnings or errors, except for case mismatches.
 
-            String comment = input.getInput().substring("REM".length()).trim();
+            final LineRecognizer recognizer = state.recognizer;
+            final String line = input.getInput();
 
-            switch (comment.charAt(0)) {
-                case 'c':
-                case 'C':
-                    if (contains(input, PATTERN_REM_COMMENT)) {
-                        parseRemComment(input);
-                    }
-                    break;
-                case 'd':
-                case 'D':
-                    if (contains(input, PATTERN_REM_DATE)) {
-                        parseRemDate(input);
-                    } else if (contains(input, PATTERN_REM_DISCID)) {
-                        parseRemDiscid(input);
-                    }
-                    break;
-                case 'g':
-                case 'G':
-                    if (contains(input, PATTERN_REM_GENRE)) {
-                        parseRemGenre(input);
-                    }
-                    break;
+            // Find the start of the comment, skipping whitespace as String.trim() would.
+            int commentStart = "REM".length();
+            while (commentStart < line.length() && line.charAt(commentStart) <= ' ') {
+                commentStart++;
+            }
+
+            if (commentStart < line.length()) {
+                switch (line.charAt(commentStart)) {
+                    case 'c':
+                    case 'C':
+                        if (recognizer.recognizeRemComment(line)) {
+                            warnIfKeywordNotUppercase(input, state);
+                            state.commentSet = true;
+                            state.handler.onComment(input, unquote(recognizer.value));
+                            return;
+                        }
+                        break;
+                    case 'd':
+                    case 'D':
+                        if (recognizer.recognizeRemDate(line)) {
+                            warnIfKeywordNotUppercase(input, state);
+                            if (recognizer.number < 1 || recognizer.number > 9999) {
+                                addWarning(input, state, ParseWarning.INVALID_YEAR);
+                            }
+                            state.yearSet = true;
+                            state.handler.onDate(input, recognizer.number);
+                            return;
+                        } else if (recognizer.recognizeRemDiscid(line)) {
+                            warnIfKeywordNotUppercase(input, state);
+                            state.discidSet = true;
+                            state.handler.onDiscid(input, unquote(recognizer.value));
+                            return;
+                        }
+                        break;
+                    case 'g':
+                    case 'G':
+                        if (recognizer.recognizeRemGenre(line)) {
+                            warnIfKeywordNotUppercase(input, state);
+                            state.genreSet = true;
+                            state.handler.onGenre(input, unquote(recognizer.value));
+                            return;
+                        }
+                        break;
+                }
             }
+
+            // Just a comment.
+            state.handler.onRem(input, line.substring(commentStart));
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
 
+    /**
+     * Raise a "TOKEN NOT UPPERCASE" warning if the keywords of the last recognized REM command were not
+     * in uppercase.
+     *
+     * @param input The input that was recognized.
+     * @param state The state of the parse.
+     */
+    private static void warnIfKeywordNotUppercase(final LineOfInput input, final ParseState state) {
+        if (!state.recognizer.keywordUppercase) {
+            addWarning(input, state, ParseWarning.TOKEN_NOT_UPPERCASE);
+        }
+    }
+
     /**
      * Parse the SONGWRITER command.
      * <p/>
@@ -839,42 +1232,36 @@ final public class CueParser {
      * it is the writer of that track.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseSongwriter(final LineOfInput input) {
+    private static void parseSongwriter(final LineOfInput input, final ParseState state) {
 
-        Matcher songwriterMatcher = PATTERN_SONGWRITER.matcher(input.getInput());
-
-        if (startsWith(input, "SONGWRITER") && songwriterMatcher.matches()) {
-            String songwriter = songwriterMatcher.group(1);
-
-            if (songwriter.charAt(0) == '\"') {
-                songwriter = songwriter.substring(1, songwriter.length() - 1);
-            }
+        if (startsWith(input, state, "SONGWRITER") && state.recognizer.recognizeSongwriter(input.getInput())) {
+            String songwriter = unquote(state.recognizer.value);
 
             if (songwriter.length() > 80) {
-                addWarning(input, WARNING_FIELD_LENGTH_OVER_80);
+                addWarning(input, state, ParseWarning.FIELD_LENGTH_OVER_80);
             }
 
-            // First check file data, as getLastFileData will create a FileData instance if there is none
-            // and we don't actually want to create such an instance.
-            if (input.getAssociatedSheet().getFileData().size() == 0 || getLastFileData(input).getTrackData().size() == 0) {
+            if (state.fileTrackCount == 0) {
                 // Songwriter of album.
-                if (input.getAssociatedSheet().getSongwriter() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.songwriterSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                input.getAssociatedSheet().setSongwriter(songwriter);
+                state.songwriterSet = true;
+                state.handler.onSongwriter(input, songwriter, false);
             } else {
                 // Songwriter of track.
-                TrackData trackData = getLastTrackData(input);
-                if (trackData.getSongwriter() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.trackSongwriterSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                trackData.setSongwriter(songwriter);
+                state.trackSongwriterSet = true;
+                state.handler.onSongwriter(input, songwriter, true);
             }
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -889,42 +1276,36 @@ final public class CueParser {
      * it is the title of that track.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseTitle(final LineOfInput input) {
-
-        Matcher titleMatcher = PATTERN_TITLE.matcher(input.getInput());
-
-        if (startsWith(input, "TITLE") && titleMatcher.matches()) {
-            String title = titleMatcher.group(1);
+    private static void parseTitle(final LineOfInput input, final ParseState state) {
 
-            if (title.charAt(0) == '\"') {
-                title = title.substring(1, title.length() - 1);
-            }
+        if (startsWith(input, state, "TITLE") && state.recognizer.recognizeTitle(input.getInput())) {
+            String title = unquote(state.recognizer.value);
 
             if (title.length() > 80) {
-                addWarning(input, WARNING_FIELD_LENGTH_OVER_80);
+                addWarning(input, state, ParseWarning.FIELD_LENGTH_OVER_80);
             }
 
-            // First check file data, as getLastFileData will create a FileData instance if there is none
-            // and we don't actually want to create such an instance.
-            if (input.getAssociatedSheet().getFileData().size() == 0 || getLastFileData(input).getTrackData().size() == 0) {
+            if (state.fileTrackCount == 0) {
                 // Title of album.
-                if (input.getAssociatedSheet().getTitle() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.titleSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                input.getAssociatedSheet().setTitle(title);
+                state.titleSet = true;
+                state.handler.onTitle(input, title, false);
             } else {
                 // Title of track.
-                TrackData trackData = getLastTrackData(input);
-                if (trackData.getTitle() != null) {
-                    addWarning(input, WARNING_DATUM_APPEARS_TOO_OFTEN);
+                if (state.trackTitleSet) {
+                    addWarning(input, state, ParseWarning.DATUM_APPEARS_TOO_OFTEN);
                 }
 
-                trackData.setTitle(title);
+                state.trackTitleSet = true;
+                state.handler.onTitle(input, title, true);
             }
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -948,33 +1329,39 @@ final public class CueParser {
      * CDI/2352 - CDI Mode2 Data
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static void parseTrack(final LineOfInput input) {
+    private static void parseTrack(final LineOfInput input, final ParseState state) {
+
+        if (state.limit != null && state.limit.isStopAtFirstTrack() && input.getInput().regionMatches(true, 0, "TRACK", 0, "TRACK".length())) {
+            state.stopped = true;
+            return;
+        }
 
-        Matcher trackMatcher = PATTERN_TRACK.matcher(input.getInput());
+        final LineRecognizer recognizer = state.recognizer;
 
-        if (startsWith(input, "TRACK") && trackMatcher.matches()) {
-            if (trackMatcher.group(1).length() != 2) {
-                addWarning(input, WARNING_WRONG_NUMBER_OF_DIGITS);
+        if (startsWith(input, state, "TRACK") && recognizer.recognizeTrack(input.getInput())) {
+            if (recognizer.numberDigits != 2) {
+                addWarning(input, state, ParseWarning.WRONG_NUMBER_OF_DIGITS);
             }
-            int trackNumber = Integer.parseInt(trackMatcher.group(1));
+            int trackNumber = recognizer.number;
 
-            String dataType = trackMatcher.group(2);
-            if (!COMPLIANT_DATA_TYPES.contains(dataType)) {
-                addWarning(input, WARNING_NONCOMPLIANT_DATA_TYPE);
+            String dataType = recognizer.value;
+            if (state.checks(ParseWarning.NONCOMPLIANT_DATA_TYPE) && !COMPLIANT_DATA_TYPES.contains(dataType)) {
+                addWarning(input, state, ParseWarning.NONCOMPLIANT_DATA_TYPE);
             }
 
-            List<TrackData> trackDataList = input.getAssociatedSheet().getAllTrackData();
-
             // First track must have number 1; all next ones sequential.
-            if (trackDataList.isEmpty() && trackNumber != 1 || !trackDataList.isEmpty() && trackDataList.get(trackDataList.size() - 1).getNumber() != trackNumber - 1) {
-                addWarning(input, WARNING_INVALID_TRACK_NUMBER);
+            if (state.trackCount == 0 && trackNumber != 1 || state.trackCount > 0 && state.trackNumber != trackNumber - 1) {
+                addWarning(input, state, ParseWarning.INVALID_TRACK_NUMBER);
             }
 
-            FileData lastFileData = getLastFileData(input);
-            lastFileData.getTrackData().add(new TrackData(lastFileData, trackNumber, dataType));
+            ensureFile(input, state);
+
+            state.startTrack(trackNumber);
+            state.handler.onTrack(input, trackNumber, dataType);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
+            addWarning(input, state, ParseWarning.UNPARSEABLE_INPUT);
         }
 
     }
@@ -986,97 +1373,417 @@ final public class CueParser {
      * mm = minutes
      * ss = seconds
      * ff = frames (75 per second)
+     * <p/>
+     * The position itself must already have been recognized.
      *
      * @param input
+     * @param state The state of the parse.
      */
-    private static Position parsePosition(final LineOfInput input, final String position) {
+    private static Position parsePosition(final LineOfInput input, final ParseState state) {
 
-        Matcher positionMatcher = PATTERN_POSITION.matcher(position);
+        final LineRecognizer recognizer = state.recognizer;
 
-        if (positionMatcher.matches()) {
-            String minutesString = positionMatcher.group(1);
-            String secondsString = positionMatcher.group(2);
-            String framesString = positionMatcher.group(3);
-            int minutes = Integer.parseInt(minutesString);
-            int seconds = Integer.parseInt(secondsString);
-            int frames = Integer.parseInt(framesString);
-
-            if (!(minutesString.length() == 2 && secondsString.length() == 2 && framesString.length() == 2)) {
-                addWarning(input, WARNING_WRONG_NUMBER_OF_DIGITS);
-            }
+        if (!(recognizer.minutesDigits == 2 && recognizer.secondsDigits == 2 && recognizer.framesDigits == 2)) {
+            addWarning(input, state, ParseWarning.WRONG_NUMBER_OF_DIGITS);
+        }
 
-            if (seconds > 59) {
-                addWarning(input, WARNING_INVALID_SECONDS_VALUE);
-            }
+        if (recognizer.seconds > 59) {
+            addWarning(input, state, ParseWarning.INVALID_SECONDS_VALUE);
+        }
 
-            if (frames > 74) {
-                addWarning(input, WARNING_INVALID_FRAMES_VALUE);
-            }
+        if (recognizer.frames > 74) {
+            addWarning(input, state, ParseWarning.INVALID_FRAMES_VALUE);
+        }
 
-            Position result = new Position(minutes, seconds, frames);
-            return result;
+        Position result = state.position;
+        if (result == null) {
+            result = new Position(recognizer.minutes, recognizer.seconds, recognizer.frames);
         } else {
-            addWarning(input, WARNING_UNPARSEABLE_INPUT);
-            Position result = new Position();
-            return result;
+            result.setMinutes(recognizer.minutes);
+            result.setSeconds(recognizer.seconds);
+            result.setFrames(recognizer.frames);
         }
+        return result;
     }
 
     /**
-     * Get the last {@link jwbroek.cuelib.TrackData} element. If none exist, an empty one is created and a warning
-     * added.
+     * Make sure that there is a current track. If there is none, a warning is raised and an implied track is
+     * reported to the handler.
      *
      * @param input
-     *
-     * @return The last {@link jwbroek.cuelib.TrackData} element. If none exist, an empty one is created and a
-     * warning added.
+     * @param state The state of the parse.
      */
-    private static TrackData getLastTrackData(final LineOfInput input) {
+    private static void ensureTrack(final LineOfInput input, final ParseState state) {
 
-        FileData lastFileData = getLastFileData(input);
-        List<TrackData> trackDataList = lastFileData.getTrackData();
+        ensureFile(input, state);
 
-        if (trackDataList.size() == 0) {
-            trackDataList.add(new TrackData(lastFileData));
-            addWarning(input, WARNING_NO_TRACK_SPECIFIED);
+        if (state.fileTrackCount == 0) {
+            addWarning(input, state, ParseWarning.NO_TRACK_SPECIFIED);
+            state.startTrack(-1);
+            state.handler.onTrack(input, -1, null);
         }
-
-        TrackData result = trackDataList.get(trackDataList.size() - 1);
-        return result;
     }
 
     /**
-     * Get the last {@link jwbroek.cuelib.FileData} element. If none exist, an empty one is created and a warning
-     * added.
+     * Make sure that there is a current file. If there is none, a warning is raised and an implied file is
+     * reported to the handler.
      *
      * @param input
+     * @param state The state of the parse.
+     */
+    private static void ensureFile(final LineOfInput input, final ParseState state) {
+
+        if (!state.fileStarted) {
+            addWarning(input, state, ParseWarning.NO_FILE_SPECIFIED);
+            state.startFile();
+            state.handler.onFile(input, null, null);
+        }
+    }
+
+    /**
+     * Report a warning to the diagnostics and the handler, if the rule for the warning is to be checked. Checks that
+     * take more than comparing a few numbers are skipped altogether when their rule is not to be checked; see
+     * {@link ParseState#checks(ParseWarning)}.
      *
-     * @return The last {@link jwbroek.cuelib.FileData} element. If none exist, an empty one is created and a warning
-     * added.
+     * @param input   The {@link jwbroek.cuelib.LineOfInput} the warning pertains to.
+     * @param state   The state of the parse.
+     * @param warning The warning to report.
      */
-    private static FileData getLastFileData(final LineOfInput input) {
+    private static void addWarning(final LineOfInput input, final ParseState state, final ParseWarning warning) {
+        if (state.checks(warning)) {
+            state.diagnostics.warning(input, warning);
+            state.handler.onWarning(input, warning.getMessage());
+        }
+    }
 
-        List<FileData> fileDataList = input.getAssociatedSheet().getFileData();
+    /**
+     * The state of a parse. Keeps track of just enough of what has been parsed to raise the proper warnings,
+     * so that no {@link CueSheet} needs to be built for that purpose.
+     */
+    private final static class ParseState {
+
+        /**
+         * The recognizer for the input.
+         */
+        final LineRecognizer recognizer;
+        /**
+         * The handler to report to.
+         */
+        final CueEventHandler handler;
+        /**
+         * The conditions under which to stop parsing. May be null.
+         */
+        final ParseLimit limit;
+        /**
+         * The diagnostics to report warnings to.
+         */
+        final ParseDiagnostics diagnostics;
+        /**
+         * The rules to check, identified by the warnings they raise.
+         */
+        final Set<ParseWarning> rules;
+        /**
+         * The position to reuse for every position reported. Null if a new position is to be reported every time.
+         */
+        final Position position;
+        /**
+         * Whether parsing was stopped because of the limit.
+         */
+        boolean stopped = false;
+        /**
+         * Whether the CATALOG has been set.
+         */
+        boolean catalogSet = false;
+        /**
+         * Whether the CDTEXTFILE has been set.
+         */
+        boolean cdTextFileSet = false;
+        /**
+         * Whether the album PERFORMER has been set.
+         */
+        boolean performerSet = false;
+        /**
+         * Whether the album SONGWRITER has been set.
+         */
+        boolean songwriterSet = false;
+        /**
+         * Whether the album TITLE has been set.
+         */
+        boolean titleSet = false;
+        /**
+         * Whether the REM COMMENT has been set.
+         */
+        boolean commentSet = false;
+        /**
+         * Whether the REM DATE has been set.
+         */
+        boolean yearSet = false;
+        /**
+         * Whether the REM DISCID has been set.
+         */
+        boolean discidSet = false;
+        /**
+         * Whether the REM GENRE has been set.
+         */
+        boolean genreSet = false;
+        /**
+         * Whether there is a current file.
+         */
+        boolean fileStarted = false;
+        /**
+         * Number of tracks in the current file.
+         */
+        int fileTrackCount = 0;
+        /**
+         * Number of indices in the current file.
+         */
+        int fileIndexCount = 0;
+        /**
+         * Number of tracks in the sheet.
+         */
+        int trackCount = 0;
+        /**
+         * Number of the current track.
+         */
+        int trackNumber = -1;
+        /**
+         * Number of indices in the current track.
+         */
+        int trackIndexCount = 0;
+        /**
+         * Number of the last index of the current track.
+         */
+        int indexNumber = -1;
+        /**
+         * Whether the FLAGS of the current track have been set.
+         */
+        boolean trackFlagsSet = false;
+        /**
+         * Whether the ISRC of the current track has been set.
+         */
+        boolean trackIsrcSet = false;
+        /**
+         * Whether the PERFORMER of the current track has been set.
+         */
+        boolean trackPerformerSet = false;
+        /**
+         * Whether the SONGWRITER of the current track has been set.
+         */
+        boolean trackSongwriterSet = false;
+        /**
+         * Whether the TITLE of the current track has been set.
+         */
+        boolean trackTitleSet = false;
+        /**
+         * Whether the PREGAP of the current track has been set.
+         */
+        boolean trackPregapSet = false;
+        /**
+         * Whether the POSTGAP of the current track has been set.
+         */
+        boolean trackPostgapSet = false;
+
+        /**
+         * Create a new ParseState.
+         *
+         * @param recognizer  The recognizer for the input.
+         * @param handler     The handler to report to.
+         * @param limit       The conditions under which to stop parsing. May be null.
+         * @param diagnostics The diagnostics to report warnings to.
+         * @param rules       The rules to check.
+         * @param position    The position to reuse for every position reported. Null if a new position is to be
+         *                    reported every time.
+         */
+        ParseState(final LineRecognizer recognizer, final CueEventHandler handler, final ParseLimit limit, final ParseDiagnostics diagnostics, final Set<ParseWarning> rules, final Position position) {
+            this.recognizer = recognizer;
+            this.handler = handler;
+            this.limit = limit;
+            this.diagnostics = diagnostics;
+            this.rules = rules;
+            this.position = position;
+        }
 
-        if (fileDataList.size() == 0) {
-            fileDataList.add(new FileData(input.getAssociatedSheet()));
-            addWarning(input, WARNING_NO_FILE_SPECIFIED);
+        /**
+         * Determine whether a rule is to be checked.
+         *
+         * @param rule The rule, identified by the warning it raises.
+         *
+         * @return True if the rule is to be checked. False otherwise.
+         */
+        boolean checks(final ParseWarning rule) {
+            return this.rules.contains(rule);
         }
 
-        FileData result = fileDataList.get(fileDataList.size() - 1);
-        return result;
+        /**
+         * Determine whether parsing should stop because the limit has been reached.
+         *
+         * @return True if parsing should stop. False otherwise.
+         */
+        boolean isDone() {
+            if (this.stopped) {
+                return true;
+            }
+            if (this.limit == null || this.limit.getFields() == null) {
+                return false;
+            }
+            for (CueSheet.MetaDataField field : this.limit.getFields()) {
+                if (!isSet(field)) {
+                    return false;
+                }
+            }
+            this.stopped = true;
+            return true;
+        }
+
+        /**
+         * Determine whether a disc level field has been set.
+         *
+         * @param field The field to check. Must apply to the disc as a whole.
+         *
+         * @return True if the field has been set. False otherwise.
+         */
+        private boolean isSet(final CueSheet.MetaDataField field) {
+            switch (field) {
+                case ALBUMPERFORMER:
+                case PERFORMER:
+                    return this.performerSet;
+                case ALBUMSONGWRITER:
+                case SONGWRITER:
+                    return this.songwriterSet;
+                case ALBUMTITLE:
+                case TITLE:
+                    return this.titleSet;
+                case CATALOG:
+                    return this.catalogSet;
+                case CDTEXTFILE:
+                    return this.cdTextFileSet;
+                case COMMENT:
+                    return this.commentSet;
+                case DISCID:
+                    return this.discidSet;
+                case GENRE:
+                    return this.genreSet;
+                case YEAR:
+                    return this.yearSet;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Record the start of a new file.
+         */
+        void startFile() {
+            this.fileStarted = true;
+            this.fileTrackCount = 0;
+            this.fileIndexCount = 0;
+        }
+
+        /**
+         * Record the start of a new track in the current file.
+         *
+         * @param number The number of the track. -1 if implied.
+         */
+        void startTrack(final int number) {
+            this.fileTrackCount++;
+            this.trackCount++;
+            this.trackNumber = number;
+            this.trackIndexCount = 0;
+            this.indexNumber = -1;
+            this.trackFlagsSet = false;
+            this.trackIsrcSet = false;
+            this.trackPerformerSet = false;
+            this.trackSongwriterSet = false;
+            this.trackTitleSet = false;
+            this.trackPregapSet = false;
+            this.trackPostgapSet = false;
+        }
     }
 
     /**
-     * Write a warning to the logging and the {@link jwbroek.cuelib.CueSheet} associated with the
-     * {@link jwbroek.cuelib.LineOfInput}.
-     *
-     * @param input   The {@link jwbroek.cuelib.LineOfInput} the warning pertains to.
-     * @param warning The warning to write.
+     * Parses files for {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)} until there are
+     * none left. Every worker has its own {@link ReusableCueParser}, which it reuses for all files it parses.
      */
-    private static void addWarning(final LineOfInput input, final String warning) {
-        CueParser.logger.warn(warning);
-        input.getAssociatedSheet().addWarning(input, warning);
+    private final static class ParseWorker implements Runnable {
+
+        /**
+         * The files to parse. Shared between all workers.
+         */
+        private final Iterator<File> files;
+        /**
+         * The parser for the files.
+         */
+        final ReusableCueParser parser;
+        /**
+         * The handler for the results. Shared between all workers.
+         */
+        private final ParseResultHandler handler;
+        /**
+         * Number of files that were parsed successfully.
+         */
+        long parsed = 0;
+        /**
+         * Number of files that could not be parsed.
+         */
+        long failed = 0;
+
+        /**
+         * Create a new ParseWorker.
+         *
+         * @param files   The files to parse. Shared between all workers.
+         * @param parser  The parser for the files.
+         * @param handler The handler for the results. Shared between all workers.
+         */
+        ParseWorker(final Iterator<File> files, final ReusableCueParser parser, final ParseResultHandler handler) {
+            this.files = files;
+            this.parser = parser;
+            this.handler = handler;
+        }
+
+        public void run() {
+            File file;
+            // Check for interruption first, so that no file is taken from the iterator without being handled.
+            while (!Thread.currentThread().isInterrupted() && (file = nextFile()) != null) {
+                CueSheet sheet = null;
+                Exception failure = null;
+
+                try {
+                    sheet = this.parser.parse(file);
+                    this.parsed++;
+                } catch (Exception e) {
+                    CueParser.logger.warn("Could not parse cue sheet '" + file + "'.", e);
+                    failure = e;
+                    this.failed++;
+                }
+
+                try {
+                    synchronized (this.handler) {
+                        if (failure == null) {
+                            this.handler.onCueSheet(file, sheet);
+                        } else {
+                            this.handler.onFailure(file, failure);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    CueParser.logger.error("Handler failed for cue sheet '" + file + "'.", e);
+                    if (failure == null) {
+                        this.parsed--;
+                        this.failed++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get the next file to parse.
+         *
+         * @return The next file to parse, or null if there are none left.
+         */
+        private File nextFile() {
+            synchronized (this.files) {
+                return this.files.hasNext() ? this.files.next() : null;
+            }
+        }
     }
 
     /**
@@ -155,6 +155,14 @@ public class CueSheet {
      * The genre of the album. May be null.
      */
     private String genre = null;
+    /**
+     * Number of changes to the metadata of this sheet. Used to detect that resolved metadata is out of date.
+     */
+    private int metaDataVersion = 0;
+    /**
+     * The resolved metadata of this sheet. Null if not resolved since the last change.
+     */
+    private ResolvedMetaData resolvedMetaData = null;
 
     /**
      * The logger for this class.
@@ -178,6 +186,60 @@ public class CueSheet {
      * @return The specified metadata.
      */
     public String getMetaData(MetaDataField metaDataField) throws IllegalArgumentException {
+        return getResolvedMetaData().get(metaDataField);
+    }
+
+    /**
+     * Get a snapshot of all metadata of this cue sheet, as by {@link #getMetaData(MetaDataField)}. The snapshot is
+     * cached until the metadata of this sheet changes.
+     *
+     * @return A snapshot of all metadata of this cue sheet.
+     */
+    public ResolvedMetaData getResolvedMetaData() {
+        ResolvedMetaData result = this.resolvedMetaData;
+        if (result == null) {
+            result = ResolvedMetaData.resolve(this);
+            this.resolvedMetaData = result;
+        }
+        return result;
+    }
+
+    /**
+     * Take an immutable snapshot of this cue sheet, which can be shared between threads without locking. Later
+     * changes to this sheet are not reflected in the snapshot. Use {@link ImmutableCueSheet#toCueSheet()} to get a
+     * mutable copy again.
+     *
+     * @return An immutable snapshot of this cue sheet.
+     */
+    public ImmutableCueSheet toImmutable() {
+        return new ImmutableCueSheet(this);
+    }
+
+    /**
+     * Get the number of changes to the metadata of this sheet.
+     *
+     * @return The number of changes to the metadata of this sheet.
+     */
+    int getMetaDataVersion() {
+        return this.metaDataVersion;
+    }
+
+    /**
+     * Signal a change to the metadata of this sheet, so that resolved metadata is no longer used.
+     */
+    private void metaDataChanged() {
+        this.metaDataVersion++;
+        this.resolvedMetaData = null;
+    }
+
+    /**
+     * Resolve a single metadata field.
+     *
+     * @param metaDataField The field.
+     *
+     * @return The value of the field, or {@link ResolvedMetaData#UNSUPPORTED} if the field is not supported.
+     */
+    String resolveMetaData(final MetaDataField metaDataField) {
         String result;
 
         switch (metaDataField) {
@@ -212,9 +274,8 @@ public class CueSheet {
                 result = this.getYear() == -1 ? "" : "" + this.getYear();
                 break;
             default:
-                IllegalArgumentException exception = new IllegalArgumentException("Unsupported field: " + metaDataField.toString());
-                CueSheet.logger.error("Unsupported field in getMetaData", exception);
-                throw exception;
+                result = ResolvedMetaData.UNSUPPORTED;
+                break;
         }
         return result;
     }
@@ -274,6 +335,7 @@ public class CueSheet {
      */
     public void setCatalog(final String catalog) {
         this.catalog = catalog;
+        metaDataChanged();
     }
 
     /**
@@ -292,6 +354,7 @@ public class CueSheet {
      */
     public void setCdTextFile(final String cdTextFile) {
         this.cdTextFile = cdTextFile;
+        metaDataChanged();
     }
 
     /**
@@ -312,6 +375,7 @@ public class CueSheet {
      */
     public void setPerformer(final String performer) {
         this.performer = performer;
+        metaDataChanged();
     }
 
     /**
@@ -332,6 +396,7 @@ public class CueSheet {
      */
     public void setSongwriter(final String songwriter) {
         this.songwriter = songwriter;
+        metaDataChanged();
     }
 
     /**
@@ -352,6 +417,7 @@ public class CueSheet {
      */
     public void setTitle(final String title) {
         this.title = title;
+        metaDataChanged();
     }
 
     /**
@@ -370,6 +436,7 @@ public class CueSheet {
      */
     public void setDiscid(final String discid) {
         this.discid = discid;
+        metaDataChanged();
     }
 
     /**
@@ -388,6 +455,7 @@ public class CueSheet {
      */
     public void setGenre(final String genre) {
         this.genre = genre;
+        metaDataChanged();
     }
 
     /**
@@ -406,6 +474,7 @@ public class CueSheet {
      */
     public void setYear(final int year) {
         this.year = year;
+        metaDataChanged();
     }
 
     /**
@@ -424,6 +493,7 @@ public class CueSheet {
      */
     public void setComment(final String comment) {
         this.comment = comment;
+        metaDataChanged();
     }
 
     /**
@@ -0,0 +1,195 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CueEventHandler} that builds a {@link CueSheet}. This is what {@link CueParser} uses when asked to return
+ * a CueSheet. Warnings are added to the sheet by a {@link MessageDiagnostics} for this builder.
+ *
+ * @author jwbroek
+ */
+public class CueSheetBuilder implements CueEventHandler {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetBuilder.class);
+    /**
+     * The sheet being built. Null if no sheet was started.
+     */
+    private CueSheet sheet = null;
+    /**
+     * The file data that is currently being built. Null if there is none yet.
+     */
+    private FileData fileData = null;
+    /**
+     * The track data that is currently being built. Null if there is none yet.
+     */
+    private TrackData trackData = null;
+    /**
+     * The performers and songwriters of the sheet being built, by themselves. Used to share a single instance
+     * between all tracks that have the same performer or songwriter.
+     */
+    private final Map<String, String> names = new HashMap<String, String>();
+
+    /**
+     * Create a new CueSheetBuilder.
+     */
+    public CueSheetBuilder() {
+        // Intentionally left blank (besides logging).
+    }
+
+    /**
+     * Get the cue sheet that was built.
+     *
+     * @return The cue sheet that was built. Null if no sheet was started.
+     */
+    public CueSheet getCueSheet() {
+        return this.sheet;
+    }
+
+    public void startSheet() {
+        this.sheet = new CueSheet();
+        this.fileData = null;
+        this.trackData = null;
+        this.names.clear();
+    }
+
+    public void endSheet() {
+        // Intentionally left blank. The sheet is complete.
+    }
+
+    public void onCatalog(final LineOfInput input, final String catalog) {
+        this.sheet.setCatalog(catalog);
+    }
+
+    public void onCdTextFile(final LineOfInput input, final String cdTextFile) {
+        this.sheet.setCdTextFile(cdTextFile);
+    }
+
+    public void onFile(final LineOfInput input, final String file, final String fileType) {
+        if (file == null) {
+            this.fileData = new FileData(this.sheet);
+        } else {
+            this.fileData = new FileData(this.sheet, file, fileType);
+        }
+        this.trackData = null;
+        this.sheet.getFileData().add(this.fileData);
+    }
+
+    public void onTrack(final LineOfInput input, final int number, final String dataType) {
+        if (dataType == null) {
+            this.trackData = new TrackData(this.fileData);
+        } else {
+            this.trackData = new TrackData(this.fileData, number, dataType);
+        }
+        this.fileData.getTrackData().add(this.trackData);
+    }
+
+    public void onFlags(final LineOfInput input, final List<String> flags) {
+        this.trackData.getFlags().addAll(flags);
+    }
+
+    public void onIndex(final LineOfInput input, final int number, final Position position) {
+        this.trackData.getIndices().add(new Index(number, position));
+    }
+
+    public void onIsrc(final LineOfInput input, final String isrcCode) {
+        this.trackData.setIsrcCode(isrcCode);
+    }
+
+    public void onPerformer(final LineOfInput input, final String performer, final boolean ofTrack) {
+        if (ofTrack) {
+            this.trackData.setPerformer(share(performer));
+        } else {
+            this.sheet.setPerformer(share(performer));
+        }
+    }
+
+    public void onSongwriter(final LineOfInput input, final String songwriter, final boolean ofTrack) {
+        if (ofTrack) {
+            this.trackData.setSongwriter(share(songwriter));
+        } else {
+            this.sheet.setSongwriter(share(songwriter));
+        }
+    }
+
+    public void onTitle(final LineOfInput input, final String title, final boolean ofTrack) {
+        if (ofTrack) {
+            this.trackData.setTitle(title);
+        } else {
+            this.sheet.setTitle(title);
+        }
+    }
+
+    public void onPregap(final LineOfInput input, final Position pregap) {
+        this.trackData.setPregap(pregap);
+    }
+
+    public void onPostgap(final LineOfInput input, final Position postgap) {
+        this.trackData.setPostgap(postgap);
+    }
+
+    public void onComment(final LineOfInput input, final String comment) {
+        this.sheet.setComment(comment);
+    }
+
+    public void onDate(final LineOfInput input, final int year) {
+        this.sheet.setYear(year);
+    }
+
+    public void onDiscid(final LineOfInput input, final String discid) {
+        this.sheet.setDiscid(discid);
+    }
+
+    public void onGenre(final LineOfInput input, final String genre) {
+        this.sheet.setGenre(genre);
+    }
+
+    public void onRem(final LineOfInput input, final String comment) {
+        // Plain comments are not part of the model.
+    }
+
+    public void onWarning(final LineOfInput input, final String warning) {
+        // Warnings are added to the sheet by the MessageDiagnostics for this builder, if any.
+    }
+
+    /**
+     * Get the instance of a performer or songwriter that is shared within the sheet being built.
+     *
+     * @param name The performer or songwriter.
+     *
+     * @return The shared instance of the performer or songwriter.
+     */
+    private String share(final String name) {
+        final String shared = this.names.get(name);
+        if (shared != null) {
+            return shared;
+        }
+        this.names.put(name, name);
+        return name;
+    }
+}
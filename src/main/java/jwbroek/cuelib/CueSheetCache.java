@@ -0,0 +1,544 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Cache for cue sheets parsed by {@link CueParser#parse(File)}, so that unchanged files need not be parsed
+ * again. There are two tiers: a bounded in-memory tier that evicts the least recently used sheet, and an optional
+ * disk store that keeps every sheet across runs, encoded by {@link CueSheetCodec}.</p>
+ * <p>Sheets are keyed by the canonical path of the file, and are valid for as long as the size and last modification
+ * time of the file are unchanged. Hence, a lookup of an unchanged file costs no more than a stat of that file. As a
+ * file may be changed within the resolution of the modification time without changing size, a content hash can be
+ * verified as well, at the cost of reading the file on every lookup.</p>
+ * <p>Sheets are cached as {@link ImmutableCueSheet} snapshots, which are shared between all callers that look up the
+ * same file by {@link #parseImmutable(File)}. {@link #parse(File)} returns a copy of the snapshot instead, which is
+ * the caller's own to modify. This class is thread safe.</p>
+ *
+ * @author jwbroek
+ */
+public class CueSheetCache {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetCache.class);
+    /**
+     * Magic number at the start of every entry in the disk store.
+     */
+    private final static int MAGIC = 0x43554543;
+    /**
+     * Version of the format of the entries in the disk store. Entries of other versions are ignored.
+     */
+    private final static int VERSION = 2;
+    /**
+     * Suffix of the entries in the disk store.
+     */
+    private final static String SUFFIX = ".cache";
+    /**
+     * Maximum length of a content hash in an entry. SHA-1 hashes are 20 bytes.
+     */
+    private final static int MAX_HASH_LENGTH = 64;
+    /**
+     * Characters for hexadecimal notation.
+     */
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * The directory of the disk store. Null if there is no disk store.
+     */
+    private final File directory;
+    /**
+     * Whether to verify a hash of the contents of the file, in addition to its size and modification time.
+     */
+    private final boolean verifyContentHash;
+    /**
+     * The in-memory tier, by canonical path, in order of access.
+     */
+    private final Map<String, CachedSheet> memory;
+    /**
+     * Number of lookups served from memory.
+     */
+    private final AtomicLong memoryHits = new AtomicLong();
+    /**
+     * Number of lookups served from the disk store.
+     */
+    private final AtomicLong diskHits = new AtomicLong();
+    /**
+     * Number of lookups that required the file to be parsed.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * Number of lookups for which a sheet was cached, but the file had changed since.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    /**
+     * Number of sheets evicted from memory.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new CueSheetCache that only keeps sheets in memory.
+     *
+     * @param maxEntries The maximum number of sheets to keep in memory.
+     */
+    public CueSheetCache(final int maxEntries) {
+        this(null, maxEntries, false);
+    }
+
+    /**
+     * Create a new CueSheetCache.
+     *
+     * @param directory         The directory of the disk store. Will be created if it does not exist. Null if there
+     *                          is to be no disk store.
+     * @param maxEntries        The maximum number of sheets to keep in memory.
+     * @param verifyContentHash Whether to verify a hash of the contents of the file, in addition to its size and
+     *                          modification time.
+     *
+     * @throws IllegalArgumentException When the directory does not exist and could not be created.
+     */
+    public CueSheetCache(final File directory, final int maxEntries, final boolean verifyContentHash) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be at least 1.");
+        }
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Could not create cache directory '" + directory + "'.");
+        }
+        this.directory = directory;
+        this.verifyContentHash = verifyContentHash;
+        this.memory = new LinkedHashMap<String, CachedSheet>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedSheet> eldest) {
+                if (size() > maxEntries) {
+                    CueSheetCache.this.evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the cue sheet in the specified file, parsing it only if there is no valid cached sheet.
+     *
+     * @param file A cue sheet file.
+     *
+     * @return A representation of the cue sheet. This is a new copy for every call, so it may be modified without
+     *         affecting the cache or other callers.
+     *
+     * @throws IOException
+     */
+    public CueSheet parse(final File file) throws IOException {
+        return parseImmutable(file).toCueSheet();
+    }
+
+    /**
+     * Get the cue sheet in the specified file as an immutable snapshot, parsing it only if there is no valid cached
+     * sheet. This is cheaper than {@link #parse(File)}, as the cached snapshot is returned without copying it.
+     *
+     * @param file A cue sheet file.
+     *
+     * @return An immutable snapshot of the cue sheet, which may be shared with other callers.
+     *
+     * @throws IOException
+     */
+    public ImmutableCueSheet parseImmutable(final File file) throws IOException {
+        final File canonicalFile = file.getCanonicalFile();
+        final String path = canonicalFile.getPath();
+        final long size = canonicalFile.length();
+        final long lastModified = canonicalFile.lastModified();
+        if (lastModified == 0L && !canonicalFile.isFile()) {
+            throw new FileNotFoundException(path);
+        }
+        final byte[] hash = this.verifyContentHash ? CueSheetCache.hash(canonicalFile) : null;
+
+        CachedSheet entry;
+        synchronized (this.memory) {
+            entry = this.memory.get(path);
+        }
+        if (entry != null) {
+            if (entry.matches(size, lastModified, hash)) {
+                this.memoryHits.incrementAndGet();
+                return entry.snapshot;
+            }
+        } else {
+            entry = readEntry(path);
+            if (entry != null && entry.matches(size, lastModified, hash)) {
+                this.diskHits.incrementAndGet();
+                synchronized (this.memory) {
+                    this.memory.put(path, entry);
+                }
+                return entry.snapshot;
+            }
+        }
+
+        if (entry != null) {
+            CueSheetCache.logger.debug("Cached cue sheet for '{}' is out of date.", path);
+            this.invalidations.incrementAndGet();
+        }
+        this.misses.incrementAndGet();
+
+        final CueSheet sheet = CueParser.parse(canonicalFile);
+        entry = new CachedSheet(path, size, lastModified, hash, sheet.toImmutable());
+        synchronized (this.memory) {
+            this.memory.put(path, entry);
+        }
+        writeEntry(entry, sheet);
+        return entry.snapshot;
+    }
+
+    /**
+     * Remove the sheet for the specified file from both memory and the disk store, if present.
+     *
+     * @param file A cue sheet file.
+     *
+     * @throws IOException
+     */
+    public void invalidate(final File file) throws IOException {
+        final String path = file.getCanonicalPath();
+        synchronized (this.memory) {
+            this.memory.remove(path);
+        }
+        if (this.directory != null) {
+            final File entryFile = getEntryFile(path);
+            if (entryFile.exists() && !entryFile.delete()) {
+                CueSheetCache.logger.warn("Could not delete cache entry '{}'.", entryFile);
+            }
+        }
+    }
+
+    /**
+     * Remove all sheets from memory. The disk store is left as it is.
+     */
+    public void clearMemory() {
+        synchronized (this.memory) {
+            this.memory.clear();
+        }
+    }
+
+    /**
+     * Get the number of lookups served from memory.
+     *
+     * @return The number of lookups served from memory.
+     */
+    public long getMemoryHits() {
+        return this.memoryHits.get();
+    }
+
+    /**
+     * Get the number of lookups served from the disk store.
+     *
+     * @return The number of lookups served from the disk store.
+     */
+    public long getDiskHits() {
+        return this.diskHits.get();
+    }
+
+    /**
+     * Get the number of lookups that required the file to be parsed, including invalidations.
+     *
+     * @return The number of lookups that required the file to be parsed.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Get the number of lookups for which a sheet was cached, but the file had changed since.
+     *
+     * @return The number of lookups for which a sheet was cached, but the file had changed since.
+     */
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Get the number of sheets evicted from memory.
+     *
+     * @return The number of sheets evicted from memory.
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Get the number of sheets currently in memory.
+     *
+     * @return The number of sheets currently in memory.
+     */
+    public int getMemorySize() {
+        synchronized (this.memory) {
+            return this.memory.size();
+        }
+    }
+
+    /**
+     * Get the file in the disk store for the specified path.
+     *
+     * @param path The canonical path of a cue sheet file.
+     *
+     * @return The file in the disk store for the specified path.
+     */
+    private File getEntryFile(final String path) {
+        try {
+            return new File(this.directory, CueSheetCache.toHex(MessageDigest.getInstance("SHA-1").digest(path.getBytes("UTF-8"))) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported.", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported.", e);
+        }
+    }
+
+    /**
+     * Read the entry for the specified path from the disk store. Entries that cannot be read are ignored, and
+     * deleted.
+     *
+     * @param path The canonical path of a cue sheet file.
+     *
+     * @return The entry for the specified path, or null if there is none.
+     */
+    private CachedSheet readEntry(final String path) {
+        if (this.directory == null) {
+            return null;
+        }
+
+        final File entryFile = getEntryFile(path);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        boolean unreadable = false;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || !path.equals(input.readUTF())) {
+                CueSheetCache.logger.debug("Ignoring incompatible cache entry '{}'.", entryFile);
+                return null;
+            }
+            final long size = input.readLong();
+            final long lastModified = input.readLong();
+            byte[] hash = null;
+            final int hashLength = input.readInt();
+            if (hashLength < -1 || hashLength > MAX_HASH_LENGTH) {
+                throw new IOException("Invalid hash length: " + hashLength);
+            }
+            if (hashLength >= 0) {
+                hash = new byte[hashLength];
+                input.readFully(hash);
+            }
+            return new CachedSheet(path, size, lastModified, hash, CueSheetCodec.decode(input).toImmutable());
+        } catch (IOException e) {
+            CueSheetCache.logger.warn("Ignoring unreadable cache entry '" + entryFile + "'.", e);
+            unreadable = true;
+            return null;
+        } catch (RuntimeException e) {
+            // A corrupt entry can make the decoder fail in other ways than with an IOException.
+            CueSheetCache.logger.warn("Ignoring corrupt cache entry '" + entryFile + "'.", e);
+            unreadable = true;
+            return null;
+        } finally {
+            CueSheetCache.close(input);
+            if (unreadable && !entryFile.delete()) {
+                CueSheetCache.logger.debug("Could not delete cache entry '{}'.", entryFile);
+            }
+        }
+    }
+
+    /**
+     * Write an entry to the disk store. The entry is written to a temporary file first, so that a crash cannot
+     * leave a partial entry behind. Failures are logged, but otherwise ignored.
+     *
+     * @param entry The entry to write.
+     * @param sheet The cue sheet of the entry, as parsed.
+     */
+    private void writeEntry(final CachedSheet entry, final CueSheet sheet) {
+        if (this.directory == null) {
+            return;
+        }
+
+        final File entryFile = getEntryFile(entry.path);
+        final File tempFile = new File(this.directory, entryFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(entry.path);
+            output.writeLong(entry.size);
+            output.writeLong(entry.lastModified);
+            if (entry.hash == null) {
+                output.writeInt(-1);
+            } else {
+                output.writeInt(entry.hash.length);
+                output.write(entry.hash);
+            }
+            CueSheetCodec.encode(sheet, output);
+            output.close();
+            output = null;
+
+            // Renaming over an existing file is not supported on all platforms.
+            if (!tempFile.renameTo(entryFile) && !(entryFile.delete() && tempFile.renameTo(entryFile))) {
+                throw new IOException("Could not rename '" + tempFile + "' to '" + entryFile + "'.");
+            }
+        } catch (IOException e) {
+            CueSheetCache.logger.warn("Could not write cache entry '" + entryFile + "'.", e);
+            tempFile.delete();
+        } finally {
+            CueSheetCache.close(output);
+        }
+    }
+
+    /**
+     * Compute a hash of the contents of a file.
+     *
+     * @param file The file to hash.
+     *
+     * @return The SHA-1 hash of the contents of the file.
+     *
+     * @throws IOException
+     */
+    private static byte[] hash(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported.", e);
+        }
+
+        final InputStream input = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Get the hexadecimal notation of some bytes.
+     *
+     * @param bytes The bytes.
+     *
+     * @return The hexadecimal notation of the bytes.
+     */
+    private static String toHex(final byte[] bytes) {
+        final char[] result = new char[bytes.length * 2];
+        for (int index = 0; index < bytes.length; index++) {
+            result[index * 2] = HEX[(bytes[index] >> 4) & 0xF];
+            result[index * 2 + 1] = HEX[bytes[index] & 0xF];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Close a stream, logging rather than throwing any exception.
+     *
+     * @param stream The stream to close. May be null.
+     */
+    private static void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                CueSheetCache.logger.warn("Could not close stream.", e);
+            }
+        }
+    }
+
+    /**
+     * A cached cue sheet, along with the identity of the file it was parsed from.
+     */
+    private final static class CachedSheet {
+
+        /**
+         * The canonical path of the file.
+         */
+        final String path;
+        /**
+         * The size of the file.
+         */
+        final long size;
+        /**
+         * The last modification time of the file.
+         */
+        final long lastModified;
+        /**
+         * The hash of the contents of the file. Null if not known.
+         */
+        final byte[] hash;
+        /**
+         * A snapshot of the cue sheet in the file.
+         */
+        final ImmutableCueSheet snapshot;
+
+        /**
+         * Create a new CachedSheet.
+         *
+         * @param path         The canonical path of the file.
+         * @param size         The size of the file.
+         * @param lastModified The last modification time of the file.
+         * @param hash         The hash of the contents of the file. Null if not known.
+         * @param snapshot     A snapshot of the cue sheet in the file.
+         */
+        CachedSheet(final String path, final long size, final long lastModified, final byte[] hash, final ImmutableCueSheet snapshot) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Determine whether this entry is valid for a file with the specified identity.
+         *
+         * @param size         The size of the file.
+         * @param lastModified The last modification time of the file.
+         * @param hash         The hash of the contents of the file. Null if not to be verified.
+         *
+         * @return True if this entry is valid for the file. False otherwise.
+         */
+        boolean matches(final long size, final long lastModified, final byte[] hash) {
+            return this.size == size && this.lastModified == lastModified && (hash == null || Arrays.equals(this.hash, hash));
+        }
+    }
+}
@@ -0,0 +1,579 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Compact binary encoding of a complete {@link CueSheet}, including all file data, track data, indices, flags
+ * and messages. Decoding does not involve any tokenizing of text, so this is well suited for storing large numbers
+ * of parsed sheets.</p>
+ * <p>The encoding starts with a magic number and a version. Numbers are written as variable length integers, and
+ * positions as their total number of frames where possible. Every distinct string is written only once per sheet,
+ * and is referred to by its index in a string table afterward.</p>
+ *
+ * @author jwbroek
+ */
+final public class CueSheetCodec {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetCodec.class);
+    /**
+     * Magic number at the start of every encoded sheet: "CUEB".
+     */
+    private final static int MAGIC = 0x43554542;
+    /**
+     * Version of the encoding. Only this version can be decoded.
+     */
+    private final static int VERSION = 1;
+    /**
+     * Name of the encoding of strings.
+     */
+    private final static String UTF_8 = "UTF-8";
+    /**
+     * Maximum length of an encoded string, in bytes. Far beyond any string in a real cue sheet, but it keeps a
+     * corrupt length from allocating gigabytes.
+     */
+    private final static int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Create a CueSheetCodec. Should never be used, as all properties and methods of this class are static.
+     */
+    private CueSheetCodec() {
+        // Intentionally left blank (besides logging). This class doesn't need to be instantiated.
+    }
+
+    /**
+     * Encode a cue sheet to the output.
+     *
+     * @param sheet  The cue sheet to encode.
+     * @param output The output to write to.
+     *
+     * @throws IOException
+     */
+    public static void encode(final CueSheet sheet, final DataOutput output) throws IOException {
+        new Encoder(new Sink() {
+            void writeByte(final int value) throws IOException {
+                output.write(value);
+            }
+
+            void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                output.write(bytes, offset, length);
+            }
+        }).writeSheet(sheet);
+    }
+
+    /**
+     * Encode a cue sheet to the buffer, starting at its position. The position will be advanced past the encoded
+     * sheet.
+     *
+     * @param sheet  The cue sheet to encode.
+     * @param buffer The buffer to write to.
+     *
+     * @throws java.nio.BufferOverflowException When the buffer is too small.
+     */
+    public static void encode(final CueSheet sheet, final ByteBuffer buffer) {
+        try {
+            new Encoder(new Sink() {
+                void writeByte(final int value) {
+                    buffer.put((byte) value);
+                }
+
+                void write(final byte[] bytes, final int offset, final int length) {
+                    buffer.put(bytes, offset, length);
+                }
+            }).writeSheet(sheet);
+        } catch (IOException e) {
+            // Cannot happen, as buffers do not throw IOExceptions.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a cue sheet from the input.
+     *
+     * @param input The input to read from.
+     *
+     * @return The decoded cue sheet.
+     *
+     * @throws IOException When the input could not be read, or does not contain an encoded sheet of the supported
+     *                     version.
+     */
+    public static CueSheet decode(final DataInput input) throws IOException {
+        return new Decoder(new Source() {
+            int readByte() throws IOException {
+                return input.readByte() & 0xFF;
+            }
+
+            void readFully(final byte[] bytes, final int offset, final int length) throws IOException {
+                input.readFully(bytes, offset, length);
+            }
+        }).readSheet();
+    }
+
+    /**
+     * Decode a cue sheet from the buffer, starting at its position. The position will be advanced past the encoded
+     * sheet.
+     *
+     * @param buffer The buffer to read from.
+     *
+     * @return The decoded cue sheet.
+     *
+     * @throws IOException                      When the buffer does not contain an encoded sheet of the supported
+     *                                          version.
+     * @throws java.nio.BufferUnderflowException When the buffer ends before the encoded sheet does.
+     */
+    public static CueSheet decode(final ByteBuffer buffer) throws IOException {
+        return new Decoder(new Source() {
+            int readByte() {
+                return buffer.get() & 0xFF;
+            }
+
+            void readFully(final byte[] bytes, final int offset, final int length) {
+                buffer.get(bytes, offset, length);
+            }
+
+            @Override
+            int remaining() {
+                return buffer.remaining();
+            }
+        }).readSheet();
+    }
+
+    /**
+     * Destination of encoded bytes.
+     */
+    private static abstract class Sink {
+
+        /**
+         * Write a single byte.
+         *
+         * @param value The byte to write, in the lowest 8 bits.
+         *
+         * @throws IOException
+         */
+        abstract void writeByte(int value) throws IOException;
+
+        /**
+         * Write a range of bytes.
+         *
+         * @param bytes  The bytes to write.
+         * @param offset The offset of the first byte to write.
+         * @param length The number of bytes to write.
+         *
+         * @throws IOException
+         */
+        abstract void write(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Origin of encoded bytes.
+     */
+    private static abstract class Source {
+
+        /**
+         * Read a single byte.
+         *
+         * @return The byte, as a value from 0 to 255.
+         *
+         * @throws IOException
+         */
+        abstract int readByte() throws IOException;
+
+        /**
+         * Read a range of bytes.
+         *
+         * @param bytes  The array to read into.
+         * @param offset The offset of the first byte to read into.
+         * @param length The number of bytes to read.
+         *
+         * @throws IOException
+         */
+        abstract void readFully(byte[] bytes, int offset, int length) throws IOException;
+
+        /**
+         * Get the number of bytes that remain.
+         *
+         * @return The number of bytes that remain, or -1 if unknown.
+         */
+        int remaining() {
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes a single sheet. Holds the string table of that sheet.
+     */
+    private final static class Encoder {
+
+        /**
+         * Destination of the encoded bytes.
+         */
+        private final Sink sink;
+        /**
+         * Index in the string table, by string.
+         */
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        /**
+         * Create a new Encoder.
+         *
+         * @param sink Destination of the encoded bytes.
+         */
+        Encoder(final Sink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Write a complete sheet, including magic number and version.
+         *
+         * @param sheet The sheet to write.
+         *
+         * @throws IOException
+         */
+        void writeSheet(final CueSheet sheet) throws IOException {
+            this.sink.writeByte(MAGIC >>> 24);
+            this.sink.writeByte(MAGIC >>> 16);
+            this.sink.writeByte(MAGIC >>> 8);
+            this.sink.writeByte(MAGIC);
+            writeVarint(VERSION);
+
+            writeString(sheet.getCatalog());
+            writeString(sheet.getCdTextFile());
+            writeString(sheet.getPerformer());
+            writeString(sheet.getTitle());
+            writeString(sheet.getSongwriter());
+            writeString(sheet.getComment());
+            writeSigned(sheet.getYear());
+            writeString(sheet.getDiscid());
+            writeString(sheet.getGenre());
+
+            writeVarint(sheet.getMessages().size());
+            for (Message message : sheet.getMessages()) {
+                writeVarint(message instanceof Error ? 1 : 0);
+                writeString(message.getInput());
+                writeSigned(message.getLineNumber());
+                writeString(message.getMessage());
+            }
+
+            writeVarint(sheet.getFileData().size());
+            for (FileData fileData : sheet.getFileData()) {
+                writeString(fileData.getFile());
+                writeString(fileData.getFileType());
+
+                writeVarint(fileData.getTrackData().size());
+                for (TrackData trackData : fileData.getTrackData()) {
+                    writeSigned(trackData.getNumber());
+                    writeString(trackData.getDataType());
+                    writeString(trackData.getIsrcCode());
+                    writeString(trackData.getPerformer());
+                    writeString(trackData.getTitle());
+                    writeString(trackData.getSongwriter());
+                    writePosition(trackData.getPregap());
+                    writePosition(trackData.getPostgap());
+
+                    writeVarint(trackData.getFlags().size());
+                    for (String flag : trackData.getFlags()) {
+                        writeString(flag);
+                    }
+
+                    writeVarint(trackData.getIndices().size());
+                    for (Index index : trackData.getIndices()) {
+                        writeSigned(index.getNumber());
+                        writePosition(index.getPosition());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write a string that may be null. 0 stands for null, and n for the (n-1)th string of the table. A string
+         * that is not yet in the table is written in full, preceded by the index it will have in the table.
+         *
+         * @param value The string to write. May be null.
+         *
+         * @throws IOException
+         */
+        private void writeString(final String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+
+            final Integer index = this.strings.get(value);
+            if (index != null) {
+                writeVarint(index.intValue() + 1);
+                return;
+            }
+
+            final int newIndex = this.strings.size();
+            this.strings.put(value, Integer.valueOf(newIndex));
+            writeVarint(newIndex + 1);
+            final byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length);
+            this.sink.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Write a position that may be null. 0 stands for null. An odd value n stands for a normalized position of
+         * (n-1)/2 frames in total. 2 stands for a position that is not normalized, and is followed by its minutes,
+         * seconds and frames.
+         *
+         * @param position The position to write. May be null.
+         *
+         * @throws IOException
+         */
+        private void writePosition(final Position position) throws IOException {
+            if (position == null) {
+                writeVarint(0);
+            } else if (position.getMinutes() >= 0 && position.getSeconds() >= 0 && position.getSeconds() < 60
+                    && position.getFrames() >= 0 && position.getFrames() < 75
+                    && position.getMinutes() < (Integer.MAX_VALUE / 2 - 75 * 60) / (75 * 60)) {
+                writeVarint(position.getTotalFrames() * 2 + 1);
+            } else {
+                writeVarint(2);
+                writeSigned(position.getMinutes());
+                writeSigned(position.getSeconds());
+                writeSigned(position.getFrames());
+            }
+        }
+
+        /**
+         * Write a signed value, using zigzag encoding so that small negative values remain small.
+         *
+         * @param value The value to write.
+         *
+         * @throws IOException
+         */
+        private void writeSigned(final int value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Write an unsigned value in 7 bit groups, least significant group first. The high bit of every byte but the
+         * last is set.
+         *
+         * @param value The value to write, taken to be unsigned.
+         *
+         * @throws IOException
+         */
+        private void writeVarint(final int value) throws IOException {
+            int remainder = value;
+            while ((remainder & ~0x7F) != 0) {
+                this.sink.writeByte((remainder & 0x7F) | 0x80);
+                remainder >>>= 7;
+            }
+            this.sink.writeByte(remainder);
+        }
+    }
+
+    /**
+     * Decodes a single sheet. Holds the string table of that sheet.
+     */
+    private final static class Decoder {
+
+        /**
+         * Origin of the encoded bytes.
+         */
+        private final Source source;
+        /**
+         * The string table.
+         */
+        private final List<String> strings = new ArrayList<String>();
+        /**
+         * Buffer for the bytes of strings. Grows as needed.
+         */
+        private byte[] bytes = new byte[64];
+
+        /**
+         * Create a new Decoder.
+         *
+         * @param source Origin of the encoded bytes.
+         */
+        Decoder(final Source source) {
+            this.source = source;
+        }
+
+        /**
+         * Read a complete sheet, including magic number and version.
+         *
+         * @return The sheet.
+         *
+         * @throws IOException
+         */
+        CueSheet readSheet() throws IOException {
+            int magic = 0;
+            for (int index = 0; index < 4; index++) {
+                magic = (magic << 8) | this.source.readByte();
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Input is not an encoded cue sheet.");
+            }
+            final int version = readVarint();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of encoded cue sheet: " + version + ".");
+            }
+
+            final CueSheet sheet = new CueSheet();
+            sheet.setCatalog(readString());
+            sheet.setCdTextFile(readString());
+            sheet.setPerformer(readString());
+            sheet.setTitle(readString());
+            sheet.setSongwriter(readString());
+            sheet.setComment(readString());
+            sheet.setYear(readSigned());
+            sheet.setDiscid(readString());
+            sheet.setGenre(readString());
+
+            for (int messageCount = readVarint(); messageCount > 0; messageCount--) {
+                final boolean error = readVarint() == 1;
+                final String input = readString();
+                final int lineNumber = readSigned();
+                final String message = readString();
+                sheet.getMessages().add(error ? new Error(input, lineNumber, message) : new Warning(input, lineNumber, message));
+            }
+
+            for (int fileCount = readVarint(); fileCount > 0; fileCount--) {
+                final String file = readString();
+                final FileData fileData = new FileData(sheet, file, readString());
+                sheet.getFileData().add(fileData);
+
+                for (int trackCount = readVarint(); trackCount > 0; trackCount--) {
+                    final int number = readSigned();
+                    final TrackData trackData = new TrackData(fileData, number, readString());
+                    fileData.getTrackData().add(trackData);
+                    trackData.setIsrcCode(readString());
+                    trackData.setPerformer(readString());
+                    trackData.setTitle(readString());
+                    trackData.setSongwriter(readString());
+                    trackData.setPregap(readPosition());
+                    trackData.setPostgap(readPosition());
+
+                    for (int flagCount = readVarint(); flagCount > 0; flagCount--) {
+                        trackData.getFlags().add(readString());
+                    }
+
+                    for (int indexCount = readVarint(); indexCount > 0; indexCount--) {
+                        final int indexNumber = readSigned();
+                        trackData.getIndices().add(new Index(indexNumber, readPosition()));
+                    }
+                }
+            }
+
+            return sheet;
+        }
+
+        /**
+         * Read a string that may be null, as written by {@link Encoder#writeString(String)}.
+         *
+         * @return The string. May be null.
+         *
+         * @throws IOException
+         */
+        private String readString() throws IOException {
+            final int reference = readVarint();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference <= this.strings.size()) {
+                return this.strings.get(reference - 1);
+            }
+            if (reference != this.strings.size() + 1) {
+                throw new IOException("Invalid string reference in encoded cue sheet: " + reference + ".");
+            }
+
+            final int length = readVarint();
+            final int remaining = this.source.remaining();
+            if (length < 0 || length > MAX_STRING_LENGTH || (remaining >= 0 && length > remaining)) {
+                throw new IOException("Invalid string length in encoded cue sheet: " + length + ".");
+            }
+            if (length > this.bytes.length) {
+                this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+            }
+            this.source.readFully(this.bytes, 0, length);
+            final String value = new String(this.bytes, 0, length, UTF_8);
+            this.strings.add(value);
+            return value;
+        }
+
+        /**
+         * Read a position that may be null, as written by {@link Encoder#writePosition(Position)}.
+         *
+         * @return The position. May be null.
+         *
+         * @throws IOException
+         */
+        private Position readPosition() throws IOException {
+            final int value = readVarint();
+            if (value == 0) {
+                return null;
+            }
+            if ((value & 1) == 1) {
+                final int totalFrames = value >>> 1;
+                return new Position(totalFrames / (75 * 60), (totalFrames / 75) % 60, totalFrames % 75);
+            }
+            final int minutes = readSigned();
+            final int seconds = readSigned();
+            return new Position(minutes, seconds, readSigned());
+        }
+
+        /**
+         * Read a signed value, as written by {@link Encoder#writeSigned(int)}.
+         *
+         * @return The value.
+         *
+         * @throws IOException
+         */
+        private int readSigned() throws IOException {
+            final int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Read an unsigned value, as written by {@link Encoder#writeVarint(int)}.
+         *
+         * @return The value, taken to be unsigned.
+         *
+         * @throws IOException
+         */
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int current = this.source.readByte();
+                value |= (current & 0x7F) << shift;
+                if ((current & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable length integer in encoded cue sheet.");
+        }
+    }
+}
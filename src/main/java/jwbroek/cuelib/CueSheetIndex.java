@@ -0,0 +1,728 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * <p>In-memory index over many cue sheets, for finding sheets by their contents without scanning them all. The
+ * sheets are held as {@link ImmutableCueSheet} snapshots, and can be added one at a time, or directly from
+ * {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)}, as this index is a
+ * {@link ParseResultHandler}.</p>
+ * <p>Text fields are indexed by normalized tokens: words in lower case, without accents. Codes such as the catalog
+ * number and ISRC code are indexed as a whole, in upper case and without separators. The year of a sheet and the
+ * durations of its tracks are indexed for range queries.</p>
+ * <p>Sheets may be queried while others are being added. Queries do not lock, and see the sheets that were added
+ * before they started iterating. Results are produced one by one while iterating, by walking the sorted lists of
+ * matching sheets in step, so no intermediate lists are built.</p>
+ *
+ * @author jwbroek
+ */
+final public class CueSheetIndex implements ParseResultHandler {
+
+    /**
+     * The fields by which sheets can be found through {@link Query#matching(Field, String)}.
+     */
+    public enum Field {
+        /**
+         * Performer of the album or of any of its tracks. Indexed by token.
+         */
+        PERFORMER(true),
+        /**
+         * Songwriter of the album or of any of its tracks. Indexed by token.
+         */
+        SONGWRITER(true),
+        /**
+         * Title of the album or of any of its tracks. Indexed by token.
+         */
+        TITLE(true),
+        /**
+         * Genre of the album. Indexed by token.
+         */
+        GENRE(true),
+        /**
+         * The disc's media catalog number (UPC/EAN). Indexed as a whole.
+         */
+        CATALOG(false),
+        /**
+         * ISRC code of any of the tracks. Indexed as a whole.
+         */
+        ISRC(false),
+        /**
+         * Id of the disc, typically the freedb disc id. Indexed as a whole.
+         */
+        DISCID(false);
+
+        /**
+         * Whether the field is indexed by token, rather than as a whole.
+         */
+        private final boolean tokenized;
+
+        /**
+         * Create a new Field.
+         *
+         * @param tokenized Whether the field is indexed by token, rather than as a whole.
+         */
+        private Field(final boolean tokenized) {
+            this.tokenized = tokenized;
+        }
+
+        /**
+         * Get whether the field is indexed by token, rather than as a whole.
+         *
+         * @return Whether the field is indexed by token, rather than as a whole.
+         */
+        public boolean isTokenized() {
+            return this.tokenized;
+        }
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetIndex.class);
+    /**
+     * Returned by cursors when there are no more matching sheets.
+     */
+    private final static int NO_MORE = Integer.MAX_VALUE;
+    /**
+     * The indexed sheets, by id. Only the first {@link #size} entries are valid. Replaced by a larger copy when full.
+     */
+    private volatile ImmutableCueSheet[] sheets = new ImmutableCueSheet[64];
+    /**
+     * The number of indexed sheets. Written after the sheet and its postings, so that readers see them complete.
+     */
+    private volatile int size = 0;
+    /**
+     * The postings of every field, by normalized token or value.
+     */
+    private final Map<Field, ConcurrentMap<String, Postings>> postings = new EnumMap<Field, ConcurrentMap<String, Postings>>(Field.class);
+    /**
+     * The postings of every year.
+     */
+    private final ConcurrentNavigableMap<Integer, Postings> years = new ConcurrentSkipListMap<Integer, Postings>();
+    /**
+     * The postings of every track duration, in frames.
+     */
+    private final ConcurrentNavigableMap<Integer, Postings> durations = new ConcurrentSkipListMap<Integer, Postings>();
+
+    /**
+     * Create a new, empty CueSheetIndex.
+     */
+    public CueSheetIndex() {
+        for (Field field : Field.values()) {
+            this.postings.put(field, new ConcurrentHashMap<String, Postings>());
+        }
+    }
+
+    /**
+     * Add a cue sheet to this index. An immutable snapshot of the sheet is indexed, so later changes to the sheet
+     * are not reflected.
+     *
+     * @param sheet The sheet to add.
+     *
+     * @return The id of the sheet in this index.
+     */
+    public int add(final CueSheet sheet) {
+        return add(sheet.toImmutable());
+    }
+
+    /**
+     * Add a cue sheet to this index. Sheets are added one at a time; concurrent calls wait for each other.
+     *
+     * @param sheet The sheet to add.
+     *
+     * @return The id of the sheet in this index.
+     */
+    public synchronized int add(final ImmutableCueSheet sheet) {
+        final int id = this.size;
+
+        addText(Field.PERFORMER, sheet.getPerformer(), id);
+        addText(Field.SONGWRITER, sheet.getSongwriter(), id);
+        addText(Field.TITLE, sheet.getTitle(), id);
+        addText(Field.GENRE, sheet.getGenre(), id);
+        addText(Field.CATALOG, sheet.getCatalog(), id);
+        addText(Field.DISCID, sheet.getDiscid(), id);
+        for (ImmutableTrackData track : sheet.getAllTrackData()) {
+            addText(Field.PERFORMER, track.getPerformer(), id);
+            addText(Field.SONGWRITER, track.getSongwriter(), id);
+            addText(Field.TITLE, track.getTitle(), id);
+            addText(Field.ISRC, track.getIsrcCode(), id);
+            if (track.getDuration() != -1) {
+                CueSheetIndex.getPostings(this.durations, Integer.valueOf(track.getDuration())).add(id);
+            }
+        }
+        if (sheet.getYear() != -1) {
+            CueSheetIndex.getPostings(this.years, Integer.valueOf(sheet.getYear())).add(id);
+        }
+
+        ImmutableCueSheet[] currentSheets = this.sheets;
+        if (id == currentSheets.length) {
+            final ImmutableCueSheet[] largerSheets = new ImmutableCueSheet[currentSheets.length * 2];
+            System.arraycopy(currentSheets, 0, largerSheets, 0, id);
+            this.sheets = largerSheets;
+            currentSheets = largerSheets;
+        }
+        currentSheets[id] = sheet;
+        this.size = id + 1;
+        return id;
+    }
+
+    public void onCueSheet(final File file, final CueSheet sheet) {
+        add(sheet);
+    }
+
+    public void onFailure(final File file, final Exception exception) {
+        CueSheetIndex.logger.debug("Not indexing cue sheet '{}', as it could not be parsed.", file);
+    }
+
+    /**
+     * Get the number of sheets in this index.
+     *
+     * @return The number of sheets in this index.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get a sheet by its id.
+     *
+     * @param id The id of the sheet, as returned when it was added.
+     *
+     * @return The sheet with the specified id.
+     *
+     * @throws IndexOutOfBoundsException When there is no sheet with the specified id.
+     */
+    public ImmutableCueSheet get(final int id) {
+        final int currentSize = this.size;
+        if (id < 0 || id >= currentSize) {
+            throw new IndexOutOfBoundsException("No sheet with id " + id + "; there are " + currentSize + " sheets.");
+        }
+        return this.sheets[id];
+    }
+
+    /**
+     * Start a new query. Without further criteria, the query matches all sheets.
+     *
+     * @return A new query.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Index the normalized tokens or value of a field.
+     *
+     * @param field The field.
+     * @param text  The text of the field. May be null.
+     * @param id    The id of the sheet.
+     */
+    private void addText(final Field field, final String text, final int id) {
+        if (text == null) {
+            return;
+        }
+        final ConcurrentMap<String, Postings> fieldPostings = this.postings.get(field);
+        for (String token : CueSheetIndex.normalize(field, text)) {
+            CueSheetIndex.getPostings(fieldPostings, token).add(id);
+        }
+    }
+
+    /**
+     * Get the postings for a key, creating them if necessary. Must only be called by the writer.
+     *
+     * @param map The postings by key.
+     * @param key The key.
+     *
+     * @return The postings for the key.
+     */
+    private static <K> Postings getPostings(final ConcurrentMap<K, Postings> map, final K key) {
+        Postings result = map.get(key);
+        if (result == null) {
+            result = new Postings();
+            map.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Normalize the text of a field into the tokens by which it is indexed. Tokens of tokenized fields are the runs
+     * of letters and digits, in lower case and without accents. Other fields give a single token: all their letters
+     * and digits, in upper case.
+     *
+     * @param field The field.
+     * @param text  The text.
+     *
+     * @return The tokens of the text. Empty if the text has no letters or digits.
+     */
+    static List<String> normalize(final Field field, final String text) {
+        final List<String> result = new ArrayList<String>(field.isTokenized() ? 4 : 1);
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final StringBuilder token = new StringBuilder(decomposed.length());
+
+        for (int index = 0; index < decomposed.length(); index++) {
+            final char character = decomposed.charAt(index);
+            if (Character.isLetterOrDigit(character)) {
+                token.append(field.isTokenized() ? Character.toLowerCase(character) : Character.toUpperCase(character));
+            } else if (Character.getType(character) == Character.NON_SPACING_MARK) {
+                // Accents are dropped, but do not split tokens.
+            } else if (field.isTokenized() && token.length() > 0) {
+                result.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            result.add(token.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Query over the sheets of a {@link CueSheetIndex}. All criteria must be met. The results are the matching
+     * sheets in the order in which they were added, and are computed while iterating. A query is not thread safe,
+     * but any number of queries may run concurrently.
+     */
+    public final class Query implements Iterable<ImmutableCueSheet> {
+
+        /**
+         * The criteria. Their postings are looked up anew for every iteration, so that keys that first appear
+         * after the query was built are matched as well.
+         */
+        private final List<Criterion> criteria = new ArrayList<Criterion>();
+
+        /**
+         * Create a new Query.
+         */
+        private Query() {
+            // Intentionally left blank (besides logging). Criteria are added later.
+        }
+
+        /**
+         * Only match sheets that have all tokens of a text in a field. For fields that are not tokenized, the whole
+         * value must match. Case, accents and punctuation are ignored. A text without letters or digits does not
+         * restrict the results.
+         *
+         * @param field The field.
+         * @param text  The text to match.
+         *
+         * @return This query.
+         */
+        public Query matching(final Field field, final String text) {
+            final ConcurrentMap<String, Postings> fieldPostings = CueSheetIndex.this.postings.get(field);
+            for (final String token : CueSheetIndex.normalize(field, text)) {
+                this.criteria.add(new Criterion() {
+                    @Override
+                    Cursor createCursor() {
+                        return new PostingsCursor(fieldPostings.get(token));
+                    }
+                });
+            }
+            return this;
+        }
+
+        /**
+         * Only match sheets with a year in a range.
+         *
+         * @param from The first year of the range.
+         * @param to   The last year of the range.
+         *
+         * @return This query.
+         */
+        public Query withYear(final int from, final int to) {
+            this.criteria.add(new RangeCriterion(CueSheetIndex.this.years, from, to));
+            return this;
+        }
+
+        /**
+         * Only match sheets with a track of a duration in a range. Tracks without a known duration, such as the last
+         * track of every file, do not match. See {@link ImmutableTrackData#getDuration()}.
+         *
+         * @param minFrames The minimum duration, in frames.
+         * @param maxFrames The maximum duration, in frames.
+         *
+         * @return This query.
+         */
+        public Query withTrackDuration(final int minFrames, final int maxFrames) {
+            this.criteria.add(new RangeCriterion(CueSheetIndex.this.durations, minFrames, maxFrames));
+            return this;
+        }
+
+        /**
+         * Get the matching sheets.
+         *
+         * @return An iterator over the matching sheets, in the order in which they were added. Sheets that are added
+         *         after this call are not included.
+         */
+        public Iterator<ImmutableCueSheet> iterator() {
+            final int limit = CueSheetIndex.this.size;
+            final ImmutableCueSheet[] currentSheets = CueSheetIndex.this.sheets;
+            final Cursor cursor = createCursor(limit);
+
+            return new Iterator<ImmutableCueSheet>() {
+                private int next = cursor.advance(0);
+
+                public boolean hasNext() {
+                    return this.next < limit;
+                }
+
+                public ImmutableCueSheet next() {
+                    if (this.next >= limit) {
+                        throw new NoSuchElementException();
+                    }
+                    final ImmutableCueSheet result = currentSheets[this.next];
+                    this.next = cursor.advance(this.next + 1);
+                    return result;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException("The results of a query cannot be removed.");
+                }
+            };
+        }
+
+        /**
+         * Count the matching sheets, without retrieving them.
+         *
+         * @return The number of matching sheets.
+         */
+        public int count() {
+            final int limit = CueSheetIndex.this.size;
+            final Cursor cursor = createCursor(limit);
+            int result = 0;
+            for (int id = cursor.advance(0); id < limit; id = cursor.advance(id + 1)) {
+                result++;
+            }
+            return result;
+        }
+
+        /**
+         * Create a cursor over the sheets that meet all criteria. Cursors are created anew for every iteration, as
+         * they keep their position, and as keys may have been added since the previous iteration.
+         *
+         * @param limit The number of sheets to consider.
+         *
+         * @return A cursor over the sheets that meet all criteria.
+         */
+        private Cursor createCursor(final int limit) {
+            if (this.criteria.isEmpty()) {
+                return new AllCursor(limit);
+            }
+            if (this.criteria.size() == 1) {
+                return this.criteria.get(0).createCursor();
+            }
+            final Cursor[] cursors = new Cursor[this.criteria.size()];
+            for (int index = 0; index < cursors.length; index++) {
+                cursors[index] = this.criteria.get(index).createCursor();
+            }
+            return new AndCursor(cursors);
+        }
+    }
+
+    /**
+     * A criterion of a {@link Query}.
+     */
+    private abstract static class Criterion {
+
+        /**
+         * Create a cursor over the sheets that meet this criterion, looking up the postings as they are now.
+         *
+         * @return A new cursor over the sheets that meet this criterion.
+         */
+        abstract Cursor createCursor();
+    }
+
+    /**
+     * Criterion that matches sheets with a key in a range.
+     */
+    private final static class RangeCriterion extends Criterion {
+
+        /**
+         * The postings by key.
+         */
+        private final ConcurrentNavigableMap<Integer, Postings> map;
+        /**
+         * The first key of the range.
+         */
+        private final int from;
+        /**
+         * The last key of the range.
+         */
+        private final int to;
+
+        /**
+         * Create a new RangeCriterion.
+         *
+         * @param map  The postings by key.
+         * @param from The first key of the range.
+         * @param to   The last key of the range.
+         */
+        RangeCriterion(final ConcurrentNavigableMap<Integer, Postings> map, final int from, final int to) {
+            this.map = map;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        Cursor createCursor() {
+            if (this.from > this.to) {
+                return new PostingsCursor(null);
+            }
+            final List<Cursor> cursors = new ArrayList<Cursor>();
+            final Map<Integer, Postings> range = this.map.subMap(Integer.valueOf(this.from), true, Integer.valueOf(this.to), true);
+            for (Postings rangePostings : range.values()) {
+                cursors.add(new PostingsCursor(rangePostings));
+            }
+            if (cursors.size() == 1) {
+                return cursors.get(0);
+            }
+            return new OrCursor(cursors.toArray(new Cursor[cursors.size()]));
+        }
+    }
+
+    /**
+     * The ids of the sheets that contain a key, in ascending order. Written by one thread at a time, and read
+     * concurrently without locking. The ids and the array holding them are written before the size, so a reader
+     * that reads the size first sees all ids up to that size.
+     */
+    private final static class Postings {
+
+        /**
+         * The ids. Only the first {@link #size} entries are valid. Replaced by a larger copy when full.
+         */
+        private volatile int[] ids = new int[2];
+        /**
+         * The number of ids.
+         */
+        private volatile int size = 0;
+
+        /**
+         * Add an id. Ids must be added in ascending order. Adding the last id again has no effect.
+         *
+         * @param id The id to add.
+         */
+        void add(final int id) {
+            final int currentSize = this.size;
+            int[] currentIds = this.ids;
+            if (currentSize > 0 && currentIds[currentSize - 1] == id) {
+                return;
+            }
+            if (currentSize == currentIds.length) {
+                final int[] largerIds = new int[currentIds.length * 2];
+                System.arraycopy(currentIds, 0, largerIds, 0, currentSize);
+                this.ids = largerIds;
+                currentIds = largerIds;
+            }
+            currentIds[currentSize] = id;
+            this.size = currentSize + 1;
+        }
+    }
+
+    /**
+     * Walks over the ids of matching sheets in ascending order.
+     */
+    private abstract static class Cursor {
+
+        /**
+         * Advance to the first matching id that is at least the target. The target must not be smaller than in
+         * the previous call.
+         *
+         * @param target The target.
+         *
+         * @return The first matching id that is at least the target, or {@link CueSheetIndex#NO_MORE} if there is
+         *         none.
+         */
+        abstract int advance(int target);
+    }
+
+    /**
+     * Cursor over all ids below a limit.
+     */
+    private final static class AllCursor extends Cursor {
+
+        /**
+         * The limit.
+         */
+        private final int limit;
+
+        /**
+         * Create a new AllCursor.
+         *
+         * @param limit The limit.
+         */
+        AllCursor(final int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        int advance(final int target) {
+            return target < this.limit ? target : NO_MORE;
+        }
+    }
+
+    /**
+     * Cursor over the ids of one key.
+     */
+    private final static class PostingsCursor extends Cursor {
+
+        /**
+         * The postings of the key. Null if no sheet has the key.
+         */
+        private final Postings postings;
+        /**
+         * The ids, as seen when this cursor started.
+         */
+        private int[] ids = null;
+        /**
+         * The number of ids, as seen when this cursor started.
+         */
+        private int size = -1;
+        /**
+         * The position of the current id in {@link #ids}.
+         */
+        private int position = 0;
+
+        /**
+         * Create a new PostingsCursor.
+         *
+         * @param postings The postings of the key. Null if no sheet has the key.
+         */
+        PostingsCursor(final Postings postings) {
+            this.postings = postings;
+        }
+
+        @Override
+        int advance(final int target) {
+            if (this.size == -1) {
+                // Read the size before the ids, so that the ids up to the size are complete.
+                this.size = this.postings == null ? 0 : this.postings.size;
+                this.ids = this.postings == null ? null : this.postings.ids;
+            }
+
+            // Gallop forward, then search the last step.
+            int low = this.position;
+            int step = 1;
+            while (low + step < this.size && this.ids[low + step] < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, this.size);
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (this.ids[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            this.position = low;
+            return low < this.size ? this.ids[low] : NO_MORE;
+        }
+    }
+
+    /**
+     * Cursor over the ids that all of its cursors have in common.
+     */
+    private final static class AndCursor extends Cursor {
+
+        /**
+         * The cursors.
+         */
+        private final Cursor[] cursors;
+
+        /**
+         * Create a new AndCursor.
+         *
+         * @param cursors The cursors. Owned by the new cursor.
+         */
+        AndCursor(final Cursor[] cursors) {
+            this.cursors = cursors;
+        }
+
+        @Override
+        int advance(final int target) {
+            int candidate = this.cursors[0].advance(target);
+            int agreeing = 1;
+            int index = 1;
+            while (candidate != NO_MORE && agreeing < this.cursors.length) {
+                final int found = this.cursors[index].advance(candidate);
+                if (found == candidate) {
+                    agreeing++;
+                } else {
+                    candidate = found;
+                    agreeing = 1;
+                }
+                index = (index + 1) % this.cursors.length;
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Cursor over the ids that any of its cursors has.
+     */
+    private final static class OrCursor extends Cursor {
+
+        /**
+         * The cursors.
+         */
+        private final Cursor[] cursors;
+        /**
+         * The current id of every cursor. -1 if not started.
+         */
+        private final int[] current;
+
+        /**
+         * Create a new OrCursor.
+         *
+         * @param cursors The cursors. Owned by the new cursor.
+         */
+        OrCursor(final Cursor[] cursors) {
+            this.cursors = cursors;
+            this.current = new int[cursors.length];
+            Arrays.fill(this.current, -1);
+        }
+
+        @Override
+        int advance(final int target) {
+            int result = NO_MORE;
+            for (int index = 0; index < this.cursors.length; index++) {
+                if (this.current[index] < target) {
+                    this.current[index] = this.cursors[index].advance(target);
+                }
+                result = Math.min(result, this.current[index]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,675 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>Reads cue sheets from JSON, as written by {@link CueSheetJsonWriter}. The input is read as a stream of tokens,
+ * directly into the {@link CueSheet} model. No intermediate tree is built.</p>
+ * <p>Every call to {@link #read()} reads the next JSON object, so the reader handles a single sheet as well as
+ * newline delimited JSON (NDJSON) with a sheet per line, which it reads sheet by sheet. Unknown fields are ignored.
+ * Of a position, the "time" is used when present, as it also represents positions that are not normalized, and the
+ * total "frames" otherwise.</p>
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @author jwbroek
+ */
+public class CueSheetJsonReader {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetJsonReader.class);
+    /**
+     * Size of the input buffer, in chars.
+     */
+    private final static int BUFFER_SIZE = 8192;
+    /**
+     * The input to read from.
+     */
+    private final Reader input;
+    /**
+     * Buffer of input.
+     */
+    private final char[] buffer = new char[CueSheetJsonReader.BUFFER_SIZE];
+    /**
+     * Position of the next char in the buffer.
+     */
+    private int position = 0;
+    /**
+     * Number of chars in the buffer.
+     */
+    private int limit = 0;
+    /**
+     * Offset in the input of the start of the buffer, for error messages.
+     */
+    private long bufferOffset = 0;
+    /**
+     * Builder for string values. Reused between strings.
+     */
+    private final StringBuilder stringBuilder = new StringBuilder();
+
+    /**
+     * Create a new CueSheetJsonReader.
+     *
+     * @param input The input to read from. Is not closed by this reader.
+     */
+    public CueSheetJsonReader(final Reader input) {
+        this.input = input;
+    }
+
+    /**
+     * Read the next cue sheet.
+     *
+     * @return The next cue sheet, or null if the end of the input has been reached.
+     *
+     * @throws IOException When the input could not be read, or is not valid JSON of a cue sheet.
+     */
+    public CueSheet read() throws IOException {
+        if (peek() == -1) {
+            return null;
+        }
+        CueSheetJsonReader.logger.trace("Reading cue sheet from JSON.");
+
+        final CueSheet sheet = new CueSheet();
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("genre".equals(key)) {
+                sheet.setGenre(readString());
+            } else if ("date".equals(key)) {
+                sheet.setYear(readInt());
+            } else if ("discid".equals(key)) {
+                sheet.setDiscid(readString());
+            } else if ("comment".equals(key)) {
+                sheet.setComment(readString());
+            } else if ("catalog".equals(key)) {
+                sheet.setCatalog(readString());
+            } else if ("performer".equals(key)) {
+                sheet.setPerformer(readString());
+            } else if ("title".equals(key)) {
+                sheet.setTitle(readString());
+            } else if ("songwriter".equals(key)) {
+                sheet.setSongwriter(readString());
+            } else if ("cdtextfile".equals(key)) {
+                sheet.setCdTextFile(readString());
+            } else if ("files".equals(key)) {
+                if (!readNull()) {
+                    expect('[');
+                    for (boolean more = firstElement(); more; more = nextElement()) {
+                        readFileData(sheet);
+                    }
+                }
+            } else if ("messages".equals(key)) {
+                if (!readNull()) {
+                    expect('[');
+                    for (boolean more = firstElement(); more; more = nextElement()) {
+                        readMessage(sheet);
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+        return sheet;
+    }
+
+    /**
+     * Read a FileData object, and add it to the sheet.
+     *
+     * @param sheet The sheet to add the FileData to.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private void readFileData(final CueSheet sheet) throws IOException {
+        final FileData fileData = new FileData(sheet);
+        sheet.getFileData().add(fileData);
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("file".equals(key)) {
+                fileData.setFile(readString());
+            } else if ("type".equals(key)) {
+                fileData.setFileType(readString());
+            } else if ("tracks".equals(key)) {
+                if (!readNull()) {
+                    expect('[');
+                    for (boolean more = firstElement(); more; more = nextElement()) {
+                        readTrackData(fileData);
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    /**
+     * Read a TrackData object, and add it to the FileData.
+     *
+     * @param fileData The FileData to add the TrackData to.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private void readTrackData(final FileData fileData) throws IOException {
+        final TrackData trackData = new TrackData(fileData);
+        fileData.getTrackData().add(trackData);
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("number".equals(key)) {
+                trackData.setNumber(readInt());
+            } else if ("type".equals(key)) {
+                trackData.setDataType(readString());
+            } else if ("isrc".equals(key)) {
+                trackData.setIsrcCode(readString());
+            } else if ("performer".equals(key)) {
+                trackData.setPerformer(readString());
+            } else if ("title".equals(key)) {
+                trackData.setTitle(readString());
+            } else if ("songwriter".equals(key)) {
+                trackData.setSongwriter(readString());
+            } else if ("pregap".equals(key)) {
+                trackData.setPregap(readPosition());
+            } else if ("postgap".equals(key)) {
+                trackData.setPostgap(readPosition());
+            } else if ("flags".equals(key)) {
+                if (!readNull()) {
+                    expect('[');
+                    for (boolean more = firstElement(); more; more = nextElement()) {
+                        trackData.getFlags().add(readString());
+                    }
+                }
+            } else if ("indices".equals(key)) {
+                if (!readNull()) {
+                    expect('[');
+                    for (boolean more = firstElement(); more; more = nextElement()) {
+                        trackData.getIndices().add(readIndex());
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    /**
+     * Read an Index object.
+     *
+     * @return The Index that was read.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private Index readIndex() throws IOException {
+        int number = -1;
+        String time = null;
+        int frames = -1;
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("number".equals(key)) {
+                number = readInt();
+            } else if ("time".equals(key)) {
+                time = readString();
+            } else if ("frames".equals(key)) {
+                frames = readInt();
+            } else {
+                skipValue();
+            }
+        }
+        return new Index(number, toPosition(time, frames));
+    }
+
+    /**
+     * Read a position object, or null.
+     *
+     * @return The position that was read, or null if the value was null.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private Position readPosition() throws IOException {
+        if (readNull()) {
+            return null;
+        }
+        String time = null;
+        int frames = -1;
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("time".equals(key)) {
+                time = readString();
+            } else if ("frames".equals(key)) {
+                frames = readInt();
+            } else {
+                skipValue();
+            }
+        }
+        return toPosition(time, frames);
+    }
+
+    /**
+     * Read a message object, and add it to the sheet.
+     *
+     * @param sheet The sheet to add the message to.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private void readMessage(final CueSheet sheet) throws IOException {
+        boolean error = false;
+        int line = -1;
+        String messageInput = null;
+        String message = null;
+        expect('{');
+        for (String key = firstKey(); key != null; key = nextKey()) {
+            if ("type".equals(key)) {
+                error = "error".equals(readString());
+            } else if ("line".equals(key)) {
+                line = readInt();
+            } else if ("input".equals(key)) {
+                messageInput = readString();
+            } else if ("message".equals(key)) {
+                message = readString();
+            } else {
+                skipValue();
+            }
+        }
+        sheet.getMessages().add(error
+                ? new Error(messageInput, line, message)
+                : new Warning(messageInput, line, message));
+    }
+
+    /**
+     * Convert the fields of a position to a position.
+     *
+     * @param time   The time in mm:ss:ff format. Null if absent.
+     * @param frames The total frames. -1 if absent.
+     *
+     * @return The position, or null if both fields are absent.
+     *
+     * @throws IOException When the time is not valid.
+     */
+    private Position toPosition(final String time, final int frames) throws IOException {
+        if (time != null) {
+            final int firstColon = time.indexOf(':');
+            final int secondColon = time.indexOf(':', firstColon + 1);
+            if (firstColon < 0 || secondColon < 0) {
+                throw error("Invalid time: '" + time + "'");
+            }
+            try {
+                return new Position(Integer.parseInt(time.substring(0, firstColon)),
+                        Integer.parseInt(time.substring(firstColon + 1, secondColon)),
+                        Integer.parseInt(time.substring(secondColon + 1)));
+            } catch (NumberFormatException e) {
+                throw error("Invalid time: '" + time + "'");
+            }
+        }
+        if (frames >= 0) {
+            return new Position(frames / (75 * 60), (frames / 75) % 60, frames % 75);
+        }
+        return null;
+    }
+
+    /**
+     * Start reading the fields of an object, after its opening brace.
+     *
+     * @return The key of the first field, or null if the object is empty.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private String firstKey() throws IOException {
+        if (peek() == '}') {
+            this.position++;
+            return null;
+        }
+        return readKey();
+    }
+
+    /**
+     * Continue reading the fields of an object, after the value of a field.
+     *
+     * @return The key of the next field, or null if the end of the object was reached.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private String nextKey() throws IOException {
+        if (peek() == ',') {
+            this.position++;
+            return readKey();
+        }
+        expect('}');
+        return null;
+    }
+
+    /**
+     * Read the key of a field, and the colon after it.
+     *
+     * @return The key.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private String readKey() throws IOException {
+        if (peek() != '"') {
+            throw error("Expected key");
+        }
+        final String key = readString();
+        expect(':');
+        return key;
+    }
+
+    /**
+     * Start reading the elements of an array, after its opening bracket.
+     *
+     * @return True if there is a first element. False if the array is empty.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private boolean firstElement() throws IOException {
+        if (peek() == ']') {
+            this.position++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Continue reading the elements of an array, after an element.
+     *
+     * @return True if there is a next element. False if the end of the array was reached.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private boolean nextElement() throws IOException {
+        if (peek() == ',') {
+            this.position++;
+            return true;
+        }
+        expect(']');
+        return false;
+    }
+
+    /**
+     * Read a string value, or null.
+     *
+     * @return The string, or null if the value was null.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private String readString() throws IOException {
+        if (readNull()) {
+            return null;
+        }
+        expect('"');
+        final StringBuilder builder = this.stringBuilder;
+        builder.setLength(0);
+        while (true) {
+            // Copy runs of plain characters at once.
+            int start = this.position;
+            while (this.position < this.limit && this.buffer[this.position] != '"'
+                    && this.buffer[this.position] != '\\') {
+                this.position++;
+            }
+            builder.append(this.buffer, start, this.position - start);
+
+            final int character = next();
+            if (character == '"') {
+                return builder.toString();
+            } else if (character == '\\') {
+                final int escaped = next();
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        builder.append((char) escaped);
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        int value = 0;
+                        for (int digit = 0; digit < 4; digit++) {
+                            final int hex = Character.digit(next(), 16);
+                            if (hex < 0) {
+                                throw error("Invalid unicode escape");
+                            }
+                            value = value * 16 + hex;
+                        }
+                        builder.append((char) value);
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            } else if (character == -1) {
+                throw error("Unterminated string");
+            } else {
+                // The buffer was refilled by next(), and the character is a plain one.
+                builder.append((char) character);
+            }
+        }
+    }
+
+    /**
+     * Read an integer value, or null.
+     *
+     * @return The integer, or -1 if the value was null.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private int readInt() throws IOException {
+        if (readNull()) {
+            return -1;
+        }
+        peek();
+        boolean negative = false;
+        if (this.position < this.limit && this.buffer[this.position] == '-') {
+            negative = true;
+            this.position++;
+        }
+        long value = 0;
+        int digits = 0;
+        for (int character = peekRaw(); character >= '0' && character <= '9'; character = peekRaw()) {
+            value = value * 10 + (character - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error("Integer out of range");
+            }
+            this.position++;
+            digits++;
+        }
+        final int following = peekRaw();
+        if (digits == 0 || following == '.' || following == 'e' || following == 'E') {
+            throw error("Expected integer");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw error("Integer out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read a null value, if the next value is null.
+     *
+     * @return True if a null value was read. False if the next value is not null, in which case nothing is read.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private boolean readNull() throws IOException {
+        if (peek() != 'n') {
+            return false;
+        }
+        expectLiteral("null");
+        return true;
+    }
+
+    /**
+     * Skip a value of any type.
+     *
+     * @throws IOException When the input could not be read, or is not valid.
+     */
+    private void skipValue() throws IOException {
+        final int character = peek();
+        if (character == '{') {
+            this.position++;
+            for (String key = firstKey(); key != null; key = nextKey()) {
+                skipValue();
+            }
+        } else if (character == '[') {
+            this.position++;
+            for (boolean more = firstElement(); more; more = nextElement()) {
+                skipValue();
+            }
+        } else if (character == '"') {
+            readString();
+        } else if (character == 't') {
+            expectLiteral("true");
+        } else if (character == 'f') {
+            expectLiteral("false");
+        } else if (character == 'n') {
+            expectLiteral("null");
+        } else if (character == '-' || (character >= '0' && character <= '9')) {
+            this.position++;
+            for (int next = peekRaw(); (next >= '0' && next <= '9') || next == '.' || next == 'e' || next == 'E'
+                    || next == '+' || next == '-'; next = peekRaw()) {
+                this.position++;
+            }
+        } else {
+            throw error("Expected value");
+        }
+    }
+
+    /**
+     * Read a literal, such as "true".
+     *
+     * @param literal The expected literal.
+     *
+     * @throws IOException When the input could not be read, or does not contain the literal.
+     */
+    private void expectLiteral(final String literal) throws IOException {
+        peek();
+        for (int index = 0; index < literal.length(); index++) {
+            if (next() != literal.charAt(index)) {
+                throw error("Expected " + literal);
+            }
+        }
+    }
+
+    /**
+     * Skip whitespace, and read the expected character.
+     *
+     * @param expected The expected character.
+     *
+     * @throws IOException When the input could not be read, or the next character is not the expected one.
+     */
+    private void expect(final char expected) throws IOException {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        this.position++;
+    }
+
+    /**
+     * Skip whitespace, and get the next character without reading it.
+     *
+     * @return The next character that is not whitespace, or -1 at the end of the input.
+     *
+     * @throws IOException When the input could not be read.
+     */
+    private int peek() throws IOException {
+        while (true) {
+            final int character = peekRaw();
+            if (character != ' ' && character != '\n' && character != '\r' && character != '\t') {
+                return character;
+            }
+            this.position++;
+        }
+    }
+
+    /**
+     * Get the next character without reading it.
+     *
+     * @return The next character, or -1 at the end of the input.
+     *
+     * @throws IOException When the input could not be read.
+     */
+    private int peekRaw() throws IOException {
+        if (this.position == this.limit && !fill()) {
+            return -1;
+        }
+        return this.buffer[this.position];
+    }
+
+    /**
+     * Read the next character.
+     *
+     * @return The next character, or -1 at the end of the input.
+     *
+     * @throws IOException When the input could not be read.
+     */
+    private int next() throws IOException {
+        final int character = peekRaw();
+        if (character != -1) {
+            this.position++;
+        }
+        return character;
+    }
+
+    /**
+     * Fill the buffer with the next input. Only to be called when all of the buffer has been read.
+     *
+     * @return True if input was read. False at the end of the input.
+     *
+     * @throws IOException When the input could not be read.
+     */
+    private boolean fill() throws IOException {
+        this.bufferOffset += this.limit;
+        this.position = 0;
+        this.limit = 0;
+        int count;
+        do {
+            count = this.input.read(this.buffer, 0, this.buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        this.limit = count;
+        return true;
+    }
+
+    /**
+     * Create an exception for invalid input at the current position.
+     *
+     * @param message Description of the problem.
+     *
+     * @return The exception.
+     */
+    private IOException error(final String message) {
+        return new IOException(message + " at offset " + (this.bufferOffset + this.position) + " of JSON input.");
+    }
+}
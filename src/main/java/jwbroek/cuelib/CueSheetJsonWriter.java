@@ -0,0 +1,372 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * <p>Writes cue sheets as JSON, directly to an Appendable such as a Writer. No intermediate tree is built. The
+ * output can be read back with {@link CueSheetJsonReader}.</p>
+ * <p>A sheet is written as an object with the fields of the sheet ("genre", "date", "discid", "comment", "catalog",
+ * "performer", "title", "songwriter", "cdtextfile"), an array of "files", and an array of "messages". Files have
+ * "file", "type" and "tracks"; tracks have "number", "type", "isrc", "performer", "title", "songwriter", "pregap",
+ * "postgap", "flags" and "indices"; indices have a "number" and the position. A position is written both as "time",
+ * in mm:ss:ff format, and as total "frames". Messages have a "type" of "error" or "warning", a "line", the "input"
+ * and the "message". Fields that are not set are left out.</p>
+ * <p>{@link #writeLine(CueSheet)} writes newline delimited JSON (NDJSON): every sheet on a line of its own. This is
+ * well suited for very large exports, as {@link CueSheetJsonReader} can read such output back sheet by sheet.</p>
+ *
+ * @author jwbroek
+ */
+public class CueSheetJsonWriter {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetJsonWriter.class);
+    /**
+     * Hexadecimal digits, for escaping characters.
+     */
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /**
+     * The output to write to.
+     */
+    private final Appendable output;
+
+    /**
+     * Create a new CueSheetJsonWriter.
+     *
+     * @param output The output to write to. Is not flushed or closed by this writer.
+     */
+    public CueSheetJsonWriter(final Appendable output) {
+        this.output = output;
+    }
+
+    /**
+     * Write a cue sheet as a JSON object.
+     *
+     * @param cueSheet The cue sheet to write.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    public void write(final CueSheet cueSheet) throws IOException {
+        CueSheetJsonWriter.logger.trace("Serializing cue sheet to JSON.");
+        final Appendable out = this.output;
+        out.append('{');
+        boolean first = true;
+        first = writeField("genre", cueSheet.getGenre(), first);
+        first = writeField("date", cueSheet.getYear(), first);
+        first = writeField("discid", cueSheet.getDiscid(), first);
+        first = writeField("comment", cueSheet.getComment(), first);
+        first = writeField("catalog", cueSheet.getCatalog(), first);
+        first = writeField("performer", cueSheet.getPerformer(), first);
+        first = writeField("title", cueSheet.getTitle(), first);
+        first = writeField("songwriter", cueSheet.getSongwriter(), first);
+        first = writeField("cdtextfile", cueSheet.getCdTextFile(), first);
+
+        writeKey("files", first);
+        out.append('[');
+        boolean firstFile = true;
+        for (FileData fileData : cueSheet.getFileData()) {
+            if (!firstFile) {
+                out.append(',');
+            }
+            firstFile = false;
+            writeFileData(fileData);
+        }
+        out.append(']');
+
+        if (cueSheet.getMessages().size() > 0) {
+            writeKey("messages", false);
+            out.append('[');
+            boolean firstMessage = true;
+            for (Message message : cueSheet.getMessages()) {
+                if (!firstMessage) {
+                    out.append(',');
+                }
+                firstMessage = false;
+                out.append('{');
+                writeField("type", message instanceof Error ? "error" : "warning", true);
+                writeField("line", message.getLineNumber(), false);
+                writeField("input", message.getInput(), false);
+                writeField("message", message.getMessage(), false);
+                out.append('}');
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    /**
+     * Write a cue sheet as a JSON object on a line of its own, for newline delimited JSON. The JSON contains no line
+     * breaks, as these are always escaped in strings.
+     *
+     * @param cueSheet The cue sheet to write.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    public void writeLine(final CueSheet cueSheet) throws IOException {
+        write(cueSheet);
+        this.output.append('\n');
+    }
+
+    /**
+     * Write the FileData as a JSON object.
+     *
+     * @param fileData The FileData to write.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writeFileData(final FileData fileData) throws IOException {
+        final Appendable out = this.output;
+        out.append('{');
+        boolean first = true;
+        first = writeField("file", fileData.getFile(), first);
+        first = writeField("type", fileData.getFileType(), first);
+        writeKey("tracks", first);
+        out.append('[');
+        boolean firstTrack = true;
+        for (TrackData trackData : fileData.getTrackData()) {
+            if (!firstTrack) {
+                out.append(',');
+            }
+            firstTrack = false;
+            writeTrackData(trackData);
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Write the TrackData as a JSON object.
+     *
+     * @param trackData The TrackData to write.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writeTrackData(final TrackData trackData) throws IOException {
+        final Appendable out = this.output;
+        out.append('{');
+        boolean first = true;
+        first = writeField("number", trackData.getNumber(), first);
+        first = writeField("type", trackData.getDataType(), first);
+        first = writeField("isrc", trackData.getIsrcCode(), first);
+        first = writeField("performer", trackData.getPerformer(), first);
+        first = writeField("title", trackData.getTitle(), first);
+        first = writeField("songwriter", trackData.getSongwriter(), first);
+        first = writeField("pregap", trackData.getPregap(), first);
+        first = writeField("postgap", trackData.getPostgap(), first);
+
+        if (trackData.getFlags().size() > 0) {
+            writeKey("flags", first);
+            first = false;
+            out.append('[');
+            boolean firstFlag = true;
+            for (String flag : trackData.getFlags()) {
+                if (!firstFlag) {
+                    out.append(',');
+                }
+                firstFlag = false;
+                writeString(flag);
+            }
+            out.append(']');
+        }
+
+        writeKey("indices", first);
+        out.append('[');
+        boolean firstIndex = true;
+        for (Index index : trackData.getIndices()) {
+            if (!firstIndex) {
+                out.append(',');
+            }
+            firstIndex = false;
+            out.append('{');
+            final boolean empty = writeField("number", index.getNumber(), true);
+            final Position position = index.getPosition();
+            if (position != null) {
+                writePositionFields(position, empty);
+            }
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Write the key of a field.
+     *
+     * @param key   The key.
+     * @param first Whether or not this is the first field of the object.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writeKey(final String key, final boolean first) throws IOException {
+        if (!first) {
+            this.output.append(',');
+        }
+        this.output.append('"').append(key).append("\":");
+    }
+
+    /**
+     * Write a string field. The field is only written if the value is != null.
+     *
+     * @param key   The key of the field.
+     * @param value The value of the field.
+     * @param first Whether or not this would be the first field of the object.
+     *
+     * @return Whether or not the next field would be the first field of the object.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private boolean writeField(final String key, final String value, final boolean first) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        writeKey(key, first);
+        writeString(value);
+        return false;
+    }
+
+    /**
+     * Write an integer field. The field is only written if the value is > -1.
+     *
+     * @param key   The key of the field.
+     * @param value The value of the field.
+     * @param first Whether or not this would be the first field of the object.
+     *
+     * @return Whether or not the next field would be the first field of the object.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private boolean writeField(final String key, final int value, final boolean first) throws IOException {
+        if (value < 0) {
+            return first;
+        }
+        writeKey(key, first);
+        this.output.append(Integer.toString(value));
+        return false;
+    }
+
+    /**
+     * Write a position field, as an object with "time" and "frames". The field is only written if the value is !=
+     * null.
+     *
+     * @param key   The key of the field.
+     * @param value The value of the field.
+     * @param first Whether or not this would be the first field of the object.
+     *
+     * @return Whether or not the next field would be the first field of the object.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private boolean writeField(final String key, final Position value, final boolean first) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        writeKey(key, first);
+        this.output.append('{');
+        writePositionFields(value, true);
+        this.output.append('}');
+        return false;
+    }
+
+    /**
+     * Write the "time" and "frames" fields of a position.
+     *
+     * @param position The position.
+     * @param first    Whether or not "time" would be the first field of the object.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writePositionFields(final Position position, final boolean first) throws IOException {
+        final Appendable out = this.output;
+        writeKey("time", first);
+        out.append('"');
+        writeTimeComponent(position.getMinutes());
+        out.append(':');
+        writeTimeComponent(position.getSeconds());
+        out.append(':');
+        writeTimeComponent(position.getFrames());
+        out.append("\",\"frames\":").append(Integer.toString(position.getTotalFrames()));
+    }
+
+    /**
+     * Write a component of a time, padded to two digits.
+     *
+     * @param value The component.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writeTimeComponent(final int value) throws IOException {
+        if (value >= 0 && value < 10) {
+            this.output.append('0');
+        }
+        this.output.append(Integer.toString(value));
+    }
+
+    /**
+     * Write a JSON string. Quotes, backslashes and control characters are escaped, as are the Unicode line and
+     * paragraph separators, so that the output never contains a line break.
+     *
+     * @param value The string to write.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void writeString(final String value) throws IOException {
+        final Appendable out = this.output;
+        out.append('"');
+        int start = 0;
+        for (int index = 0; index < value.length(); index++) {
+            final char character = value.charAt(index);
+            if (character >= ' ' && character != '"' && character != '\\' && character != '\u2028'
+                    && character != '\u2029') {
+                continue;
+            }
+            out.append(value, start, index);
+            start = index + 1;
+            switch (character) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append("\\u")
+                            .append(CueSheetJsonWriter.HEX_DIGITS[(character >> 12) & 0xF])
+                            .append(CueSheetJsonWriter.HEX_DIGITS[(character >> 8) & 0xF])
+                            .append(CueSheetJsonWriter.HEX_DIGITS[(character >> 4) & 0xF])
+                            .append(CueSheetJsonWriter.HEX_DIGITS[character & 0xF]);
+                    break;
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+}
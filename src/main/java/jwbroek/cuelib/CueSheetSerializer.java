@@ -21,20 +21,61 @@ package jwbroek.cuelib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
- * Class for serializing a {@link jwbroek.cuelib.CueSheet CueSheet} back to a string representation. Does the
- * inverse job of CueParser.
+ * <p>Class for serializing a {@link jwbroek.cuelib.CueSheet CueSheet} back to a string representation. Does the
+ * inverse job of CueParser.</p>
+ * <p>Besides serializing to a String, a sheet can be written directly to any Appendable (such as a Writer), or be
+ * encoded directly to a channel or stream. The latter reuses its encoder and buffers between calls, which makes it
+ * cheap to rewrite many sheets with the same serializer. For that reason, instances of this class are not
+ * thread-safe.</p>
  *
  * @author jwbroek
  */
 public class CueSheetSerializer {
 
+    /**
+     * The Unicode byte order mark.
+     */
+    private final static char BYTE_ORDER_MARK = '\uFEFF';
+    /**
+     * Size of the buffers used for encoding, in chars.
+     */
+    private final static int BUFFER_SIZE = 4096;
     /**
      * Character sequence for a single indentation level.
      */
     private String indentationValue = "  ";
+    /**
+     * Character sequence that ends every line.
+     */
+    private String lineSeparator = "\n";
+    /**
+     * Whether or not to start the output with a byte order mark.
+     */
+    private boolean writeByteOrderMark = false;
+    /**
+     * The encoder that was used last, for reuse. Null if none was used yet.
+     */
+    private CharsetEncoder encoder = null;
+    /**
+     * Buffer of chars to encode, for reuse. Null if none was used yet.
+     */
+    private CharBuffer charBuffer = null;
+    /**
+     * Buffer of encoded bytes, for reuse. Null if none was used yet.
+     */
+    private ByteBuffer byteBuffer = null;
     /**
      * The logger for this class.
      */
@@ -60,7 +101,7 @@ public class CueSheetSerializer {
      * Get a textual representation of the cue sheet. If the cue sheet was parsed, then the output
      * of this method is not necessarily identical to the parsed sheet, though it will contain the
      * same data. Fields may appear in a different order, whitespace may change, comments may be
-     * gone, etc.
+     * gone, etc. The result never starts with a byte order mark, as it is not encoded yet.
      *
      * @param cueSheet The CueSheet to serialize.
      *
@@ -69,35 +110,119 @@ public class CueSheetSerializer {
     public String serializeCueSheet(final CueSheet cueSheet) {
         StringBuilder builder = new StringBuilder();
 
-        serializeCueSheet(builder, cueSheet, "");
+        try {
+            serializeCueSheet(builder, cueSheet, 0);
+        } catch (IOException e) {
+            // Cannot happen, as a StringBuilder does not throw IOExceptions.
+            throw new IllegalStateException(e);
+        }
 
         String result = builder.toString();
         return result;
     }
 
+    /**
+     * Write a textual representation of the cue sheet to the specified Appendable, such as a Writer. The output is
+     * the same as that of {@link #serializeCueSheet(CueSheet)}, preceded by a byte order mark if
+     * {@link #isWriteByteOrderMark()}, but is not built in memory first.
+     *
+     * @param cueSheet The CueSheet to serialize.
+     * @param output   The Appendable to write to. Is not flushed or closed.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    public void serializeCueSheet(final CueSheet cueSheet, final Appendable output) throws IOException {
+        if (this.isWriteByteOrderMark()) {
+            output.append(CueSheetSerializer.BYTE_ORDER_MARK);
+        }
+        serializeCueSheet(output, cueSheet, 0);
+    }
+
+    /**
+     * Write a textual representation of the cue sheet to the specified channel, encoded in the specified charset.
+     * Characters that cannot be encoded in the charset are replaced by the replacement of the charset. The encoder
+     * and buffers are kept for subsequent calls.
+     *
+     * @param cueSheet The CueSheet to serialize.
+     * @param channel  The channel to write to. Is not closed.
+     * @param charset  The charset to encode the output in.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    public void serializeCueSheet(final CueSheet cueSheet, final WritableByteChannel channel, final Charset charset)
+            throws IOException {
+        final ChannelOutput output = new ChannelOutput(channel, getEncoder(charset));
+        serializeCueSheet(cueSheet, output);
+        output.finish();
+    }
+
+    /**
+     * Write a textual representation of the cue sheet to the specified stream, encoded in the specified charset.
+     * Characters that cannot be encoded in the charset are replaced by the replacement of the charset. The encoder
+     * and buffers are kept for subsequent calls.
+     *
+     * @param cueSheet     The CueSheet to serialize.
+     * @param outputStream The stream to write to. Is not flushed or closed.
+     * @param charset      The charset to encode the output in.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    public void serializeCueSheet(final CueSheet cueSheet, final OutputStream outputStream, final Charset charset)
+            throws IOException {
+        serializeCueSheet(cueSheet, Channels.newChannel(outputStream), charset);
+    }
+
+    /**
+     * Get an encoder for the specified charset, reusing the previous one if it is for the same charset.
+     *
+     * @param charset The charset.
+     *
+     * @return A reset encoder for the charset.
+     */
+    private CharsetEncoder getEncoder(final Charset charset) {
+        if (this.encoder == null || !this.encoder.charset().equals(charset)) {
+            CueSheetSerializer.logger.debug("Creating encoder for charset: '{}'", charset);
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.byteBuffer = ByteBuffer.allocate(
+                    (int) Math.ceil(CueSheetSerializer.BUFFER_SIZE * this.encoder.maxBytesPerChar()));
+        }
+        if (this.charBuffer == null) {
+            this.charBuffer = CharBuffer.allocate(CueSheetSerializer.BUFFER_SIZE);
+        }
+        this.encoder.reset();
+        this.charBuffer.clear();
+        this.byteBuffer.clear();
+        return this.encoder;
+    }
+
     /**
      * Serialize the CueSheet.
      *
-     * @param builder     The StringBuilder to serialize to.
-     * @param cueSheet    The CueSheet to serialize.
-     * @param indentation The current indentation.
+     * @param output   The Appendable to serialize to.
+     * @param cueSheet The CueSheet to serialize.
+     * @param depth    The current indentation level.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void serializeCueSheet(final StringBuilder builder, final CueSheet cueSheet, final String indentation) {
+    private void serializeCueSheet(final Appendable output, final CueSheet cueSheet, final int depth)
+            throws IOException {
 
         CueSheetSerializer.logger.trace("Serializing cue sheet to cue format.");
 
-        addField(builder, "REM GENRE", indentation, cueSheet.getGenre());
-        addField(builder, "REM DATE", indentation, cueSheet.getYear());
-        addField(builder, "REM DISCID", indentation, cueSheet.getDiscid());
-        addField(builder, "REM COMMENT", indentation, cueSheet.getComment());
-        addField(builder, "CATALOG", indentation, cueSheet.getCatalog());
-        addField(builder, "PERFORMER", indentation, cueSheet.getPerformer());
-        addField(builder, "TITLE", indentation, cueSheet.getTitle());
-        addField(builder, "SONGWRITER", indentation, cueSheet.getSongwriter());
-        addField(builder, "CDTEXTFILE", indentation, cueSheet.getCdTextFile());
+        addField(output, "REM GENRE", depth, cueSheet.getGenre());
+        addField(output, "REM DATE", depth, cueSheet.getYear());
+        addField(output, "REM DISCID", depth, cueSheet.getDiscid());
+        addField(output, "REM COMMENT", depth, cueSheet.getComment());
+        addField(output, "CATALOG", depth, cueSheet.getCatalog());
+        addField(output, "PERFORMER", depth, cueSheet.getPerformer());
+        addField(output, "TITLE", depth, cueSheet.getTitle());
+        addField(output, "SONGWRITER", depth, cueSheet.getSongwriter());
+        addField(output, "CDTEXTFILE", depth, cueSheet.getCdTextFile());
 
         for (FileData fileData : cueSheet.getFileData()) {
-            serializeFileData(builder, fileData, indentation);
+            serializeFileData(output, fileData, depth);
         }
 
     }
@@ -105,26 +230,32 @@ public class CueSheetSerializer {
     /**
      * Serialize the FileData.
      *
-     * @param builder     The StringBuilder to serialize to.
-     * @param fileData    The FileData to serialize.
-     * @param indentation The current indentation.
+     * @param output   The Appendable to serialize to.
+     * @param fileData The FileData to serialize.
+     * @param depth    The current indentation level.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void serializeFileData(final StringBuilder builder, final FileData fileData, final String indentation) {
+    private void serializeFileData(final Appendable output, final FileData fileData, final int depth)
+            throws IOException {
 
-        builder.append(indentation).append("FILE");
+        appendIndentation(output, depth);
+        output.append("FILE");
 
         if (fileData.getFile() != null) {
-            builder.append(' ').append(quoteIfNecessary(fileData.getFile()));
+            output.append(' ');
+            appendQuotedIfNecessary(output, fileData.getFile());
         }
 
         if (fileData.getFileType() != null) {
-            builder.append(' ').append(quoteIfNecessary(fileData.getFileType()));
+            output.append(' ');
+            appendQuotedIfNecessary(output, fileData.getFileType());
         }
 
-        builder.append('\n');
+        output.append(this.getLineSeparator());
 
         for (TrackData trackData : fileData.getTrackData()) {
-            serializeTrackData(builder, trackData, indentation + this.getIndentationValue());
+            serializeTrackData(output, trackData, depth + 1);
         }
 
     }
@@ -132,39 +263,45 @@ public class CueSheetSerializer {
     /**
      * Serialize the TrackData.
      *
-     * @param builder     The StringBuilder to serialize to.
-     * @param trackData   The TrackData to serialize.
-     * @param indentation The current indentation.
+     * @param output    The Appendable to serialize to.
+     * @param trackData The TrackData to serialize.
+     * @param depth     The current indentation level.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void serializeTrackData(final StringBuilder builder, final TrackData trackData, final String indentation) {
+    private void serializeTrackData(final Appendable output, final TrackData trackData, final int depth)
+            throws IOException {
 
-        builder.append(indentation).append("TRACK");
+        appendIndentation(output, depth);
+        output.append("TRACK");
 
         if (trackData.getNumber() > -1) {
-            builder.append(' ').append(String.format("%1$02d", trackData.getNumber()));
+            output.append(' ');
+            appendNumber(output, trackData.getNumber(), 2);
         }
 
         if (trackData.getDataType() != null) {
-            builder.append(' ').append(quoteIfNecessary(trackData.getDataType()));
+            output.append(' ');
+            appendQuotedIfNecessary(output, trackData.getDataType());
         }
 
-        builder.append('\n');
+        output.append(this.getLineSeparator());
 
-        String childIndentation = indentation + this.getIndentationValue();
+        final int childDepth = depth + 1;
 
-        addField(builder, "ISRC", childIndentation, trackData.getIsrcCode());
-        addField(builder, "PERFORMER", childIndentation, trackData.getPerformer());
-        addField(builder, "TITLE", childIndentation, trackData.getTitle());
-        addField(builder, "SONGWRITER", childIndentation, trackData.getSongwriter());
-        addField(builder, "PREGAP", childIndentation, trackData.getPregap());
-        addField(builder, "POSTGAP", childIndentation, trackData.getPostgap());
+        addField(output, "ISRC", childDepth, trackData.getIsrcCode());
+        addField(output, "PERFORMER", childDepth, trackData.getPerformer());
+        addField(output, "TITLE", childDepth, trackData.getTitle());
+        addField(output, "SONGWRITER", childDepth, trackData.getSongwriter());
+        addField(output, "PREGAP", childDepth, trackData.getPregap());
+        addField(output, "POSTGAP", childDepth, trackData.getPostgap());
 
         if (trackData.getFlags().size() > 0) {
-            serializeFlags(builder, trackData.getFlags(), childIndentation);
+            serializeFlags(output, trackData, childDepth);
         }
 
         for (Index index : trackData.getIndices()) {
-            serializeIndex(builder, index, childIndentation);
+            serializeIndex(output, index, childDepth);
         }
 
     }
@@ -172,118 +309,201 @@ public class CueSheetSerializer {
     /**
      * Serialize the flags.
      *
-     * @param builder     The StringBuilder to serialize to.
-     * @param flags       The flags to serialize.
-     * @param indentation The current indentation.
+     * @param output    The Appendable to serialize to.
+     * @param trackData The TrackData whose flags to serialize.
+     * @param depth     The current indentation level.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void serializeFlags(final StringBuilder builder, final Set<String> flags, final String indentation) {
-
-        builder.append(indentation).append("FLAGS");
-        for (String flag : flags) {
-            builder.append(' ').append(quoteIfNecessary(flag));
+    private void serializeFlags(final Appendable output, final TrackData trackData, final int depth)
+            throws IOException {
+
+        appendIndentation(output, depth);
+        output.append("FLAGS");
+        for (String flag : trackData.getFlags()) {
+            output.append(' ');
+            appendQuotedIfNecessary(output, flag);
         }
-        builder.append('\n');
+        output.append(this.getLineSeparator());
 
     }
 
     /**
      * Serialize the index.
      *
-     * @param builder     The StringBuilder to serialize to.
-     * @param index       The Index to serialize.
-     * @param indentation The current indentation.
+     * @param output The Appendable to serialize to.
+     * @param index  The Index to serialize.
+     * @param depth  The current indentation level.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void serializeIndex(final StringBuilder builder, final Index index, final String indentation) {
+    private void serializeIndex(final Appendable output, final Index index, final int depth) throws IOException {
 
-        builder.append(indentation).append("INDEX");
+        appendIndentation(output, depth);
+        output.append("INDEX");
         if (index.getNumber() > -1) {
-            builder.append(' ').append(String.format("%1$02d", index.getNumber()));
+            output.append(' ');
+            appendNumber(output, index.getNumber(), 2);
         }
 
-        if (index.getPosition() != null) {
-            builder.append(' ').append(formatPosition(index.getPosition()));
+        final Position position = index.getPosition();
+        if (position != null) {
+            output.append(' ');
+            appendPosition(output, position);
         }
 
-        builder.append('\n');
+        output.append(this.getLineSeparator());
 
     }
 
     /**
-     * Format the specified position.
+     * Append the specified position, in mm:ss:ff format.
      *
-     * @param position
+     * @param output   The Appendable to append to.
+     * @param position The position to append.
      *
-     * @return The formatted position.
+     * @throws IOException When the output could not be written.
      */
-    private String formatPosition(final Position position) {
-        String result = String.format("%1$02d:%2$02d:%3$02d", position.getMinutes(), position.getSeconds(), position.getFrames());
-        return result;
+    private void appendPosition(final Appendable output, final Position position) throws IOException {
+        appendNumber(output, position.getMinutes(), 2);
+        output.append(':');
+        appendNumber(output, position.getSeconds(), 2);
+        output.append(':');
+        appendNumber(output, position.getFrames(), 2);
     }
 
     /**
-     * Add a field to the builder. The field is only added if the value is != null.
+     * Append the decimal representation of a number, padded with zeroes to the specified width, without creating
+     * any intermediate objects. The result is the same as that of String.format with a "%0<i>width</i>d" pattern.
+     *
+     * @param output The Appendable to append to.
+     * @param value  The number to append.
+     * @param width  The minimum width of the representation, including the sign.
      *
-     * @param cueBuilder
-     * @param command     The command to add.
-     * @param value       The value to add. Will be formatted as per formatPosition(Position).
-     * @param indentation The indentation for this field.
+     * @throws IOException When the output could not be written.
      */
-    private void addField(final StringBuilder cueBuilder, final String command, final String indentation, final Position value) {
+    private static void appendNumber(final Appendable output, final int value, final int width) throws IOException {
+        // Use a long, so that the magnitude of Integer.MIN_VALUE can be represented.
+        long magnitude = value;
+        int length = 1;
+        if (value < 0) {
+            output.append('-');
+            magnitude = -magnitude;
+            length++;
+        }
+
+        long divisor = 1;
+        while (divisor * 10 <= magnitude) {
+            divisor *= 10;
+            length++;
+        }
+
+        for (; length < width; length++) {
+            output.append('0');
+        }
+
+        for (; divisor > 0; divisor /= 10) {
+            output.append((char) ('0' + magnitude / divisor % 10));
+        }
+    }
+
+    /**
+     * Append the indentation for the specified level.
+     *
+     * @param output The Appendable to append to.
+     * @param depth  The indentation level.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void appendIndentation(final Appendable output, final int depth) throws IOException {
+        for (int level = 0; level < depth; level++) {
+            output.append(this.getIndentationValue());
+        }
+    }
+
+    /**
+     * Add a field to the output. The field is only added if the value is != null.
+     *
+     * @param output  The Appendable to add the field to.
+     * @param command The command to add.
+     * @param depth   The indentation level for this field.
+     * @param value   The value to add. Will be formatted as mm:ss:ff.
+     *
+     * @throws IOException When the output could not be written.
+     */
+    private void addField(final Appendable output, final String command, final int depth, final Position value)
+            throws IOException {
         if (value != null) {
-            cueBuilder.append(indentation).append(command).append(' ').append(formatPosition(value)).append('\n');
+            appendIndentation(output, depth);
+            output.append(command).append(' ');
+            appendPosition(output, value);
+            output.append(this.getLineSeparator());
         }
     }
 
     /**
-     * Add a field to the builder. The field is only added if the value is != null.
+     * Add a field to the output. The field is only added if the value is != null.
      *
-     * @param cueBuilder
-     * @param command     The command to add.
-     * @param value       The value to add.
-     * @param indentation The indentation for this field.
+     * @param output  The Appendable to add the field to.
+     * @param command The command to add.
+     * @param depth   The indentation level for this field.
+     * @param value   The value to add.
+     *
+     * @throws IOException When the output could not be written.
      */
-    private void addField(final StringBuilder cueBuilder, final String command, final String indentation, final String value) {
+    private void addField(final Appendable output, final String command, final int depth, final String value)
+            throws IOException {
 
         if (value != null) {
-            cueBuilder.append(indentation).append(command).append(' ').append(quoteIfNecessary(value)).append('\n');
+            appendIndentation(output, depth);
+            output.append(command).append(' ');
+            appendQuotedIfNecessary(output, value);
+            output.append(this.getLineSeparator());
         }
 
     }
 
     /**
-     * Add a field to the builder. The field is only added if the value is > -1.
+     * Add a field to the output. The field is only added if the value is > -1.
+     *
+     * @param output  The Appendable to add the field to.
+     * @param command The command to add.
+     * @param depth   The indentation level for this field.
+     * @param value   The value to add.
      *
-     * @param cueBuilder
-     * @param command     The command to add.
-     * @param value       The value to add.
-     * @param indentation The indentation for this field.
+     * @throws IOException When the output could not be written.
      */
-    private void addField(final StringBuilder cueBuilder, final String command, final String indentation, final int value) {
+    private void addField(final Appendable output, final String command, final int depth, final int value)
+            throws IOException {
 
         if (value > -1) {
-            cueBuilder.append(indentation).append(command).append(' ').append("" + value).append('\n');
+            appendIndentation(output, depth);
+            output.append(command).append(' ');
+            appendNumber(output, value, 1);
+            output.append(this.getLineSeparator());
         }
 
     }
 
     /**
-     * Enclose the string in double quotes if it contains whitespace.
+     * Append the string, enclosed in double quotes if it contains whitespace.
      *
-     * @param input
+     * @param output The Appendable to append to.
+     * @param input  The string to append.
      *
-     * @return The input string, which will be surrounded in double quotes if it contains any whitespace.
+     * @throws IOException When the output could not be written.
      */
-    private String quoteIfNecessary(final String input) {
+    private static void appendQuotedIfNecessary(final Appendable output, final String input) throws IOException {
 
         // Search for whitespace
         for (int index = 0; index < input.length(); index++) {
             if (Character.isWhitespace(input.charAt(index))) {
-                String result = '"' + input + '"';
-                return result;
+                output.append('"').append(input).append('"');
+                return;
             }
         }
 
-        return input;
+        output.append(input);
     }
 
     /**
@@ -303,4 +523,145 @@ public class CueSheetSerializer {
     public void setIndentationValue(final String indentationValue) {
         this.indentationValue = indentationValue;
     }
+
+    /**
+     * Get the character sequence that ends every line. Default is "\n".
+     *
+     * @return The character sequence that ends every line.
+     */
+    public String getLineSeparator() {
+        return this.lineSeparator;
+    }
+
+    /**
+     * Set the character sequence that ends every line, such as "\r\n" for sheets that are to be read on Windows.
+     *
+     * @param lineSeparator The character sequence that ends every line.
+     */
+    public void setLineSeparator(final String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+
+    /**
+     * Determine whether or not the output starts with a byte order mark. Default is false. Does not apply to
+     * {@link #serializeCueSheet(CueSheet)}.
+     *
+     * @return Whether or not the output starts with a byte order mark.
+     */
+    public boolean isWriteByteOrderMark() {
+        return this.writeByteOrderMark;
+    }
+
+    /**
+     * Set whether or not the output starts with a byte order mark. Some players need one to recognize UTF-8 sheets.
+     * Note that some charsets, such as UTF-16, write a byte order mark of their own. Does not apply to
+     * {@link #serializeCueSheet(CueSheet)}.
+     *
+     * @param writeByteOrderMark Whether or not the output starts with a byte order mark.
+     */
+    public void setWriteByteOrderMark(final boolean writeByteOrderMark) {
+        this.writeByteOrderMark = writeByteOrderMark;
+    }
+
+    /**
+     * Appendable that encodes its input into the buffers of the serializer, and writes them to a channel when full.
+     */
+    private class ChannelOutput implements Appendable {
+
+        /**
+         * The channel to write to.
+         */
+        private final WritableByteChannel channel;
+        /**
+         * The encoder to use.
+         */
+        private final CharsetEncoder encoder;
+
+        /**
+         * Create a new ChannelOutput.
+         *
+         * @param channel The channel to write to.
+         * @param encoder The encoder to use. Must be reset.
+         */
+        ChannelOutput(final WritableByteChannel channel, final CharsetEncoder encoder) {
+            this.channel = channel;
+            this.encoder = encoder;
+        }
+
+        public Appendable append(final CharSequence input) throws IOException {
+            return append(input, 0, input.length());
+        }
+
+        public Appendable append(final CharSequence input, final int start, final int end) throws IOException {
+            final CharBuffer chars = CueSheetSerializer.this.charBuffer;
+            for (int index = start; index < end; index++) {
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+                chars.put(input.charAt(index));
+            }
+            return this;
+        }
+
+        public Appendable append(final char input) throws IOException {
+            final CharBuffer chars = CueSheetSerializer.this.charBuffer;
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put(input);
+            return this;
+        }
+
+        /**
+         * Encode and write all remaining input, and flush the encoder.
+         *
+         * @throws IOException When the output could not be written.
+         */
+        void finish() throws IOException {
+            encode(true);
+            final ByteBuffer bytes = CueSheetSerializer.this.byteBuffer;
+            CoderResult result;
+            do {
+                result = this.encoder.flush(bytes);
+                drain();
+            } while (result.isOverflow());
+        }
+
+        /**
+         * Encode the buffered chars, writing the encoded bytes to the channel. Chars that cannot be encoded yet, such
+         * as the first half of a surrogate pair, are kept in the buffer unless this is the end of the input.
+         *
+         * @param endOfInput Whether or not this is the end of the input.
+         *
+         * @throws IOException When the output could not be written.
+         */
+        private void encode(final boolean endOfInput) throws IOException {
+            final CharBuffer chars = CueSheetSerializer.this.charBuffer;
+            chars.flip();
+            CoderResult result;
+            do {
+                result = this.encoder.encode(chars, CueSheetSerializer.this.byteBuffer, endOfInput);
+                if (result.isError()) {
+                    // Cannot happen with the REPLACE action, but report it properly regardless.
+                    result.throwException();
+                }
+                drain();
+            } while (result.isOverflow());
+            chars.compact();
+        }
+
+        /**
+         * Write all encoded bytes to the channel.
+         *
+         * @throws IOException When the output could not be written.
+         */
+        private void drain() throws IOException {
+            final ByteBuffer bytes = CueSheetSerializer.this.byteBuffer;
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                this.channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
 }
@@ -26,10 +26,15 @@ import org.w3c.dom.Element;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Set;
@@ -50,6 +55,14 @@ import java.util.Set;
  * <p/>
  * <xsd:element name="cuesheet" type="tns:cuesheet"/>
  * <p/>
+ * <xsd:element name="cuesheets" type="tns:cuesheets"/>
+ * <p/>
+ * <xsd:complexType name="cuesheets">
+ * <xsd:sequence>
+ * <xsd:element ref="tns:cuesheet" minOccurs="0" maxOccurs="unbounded"/>
+ * </xsd:sequence>
+ * </xsd:complexType>
+ * <p/>
  * <xsd:complexType name="cuesheet">
  * <xsd:sequence>
  * <xsd:element name="file" type="tns:file" minOccurs="0" maxOccurs="unbounded"/>
@@ -114,6 +127,11 @@ import java.util.Set;
  * </xsd:complexType>
  * <p/>
  * </xsd:schema>}
+ * <p>The XML is written directly with an {@link XMLStreamWriter} when serializing to a Writer, OutputStream or File,
+ * without building a DOM tree. Use {@link CueSheetXmlWriter} to write many cue sheets into a single "cuesheets"
+ * document.</p>
+ * <p>The document builder, XML stream writer factory and transformer are kept and reused between calls. For that
+ * reason, instances of this class are not thread-safe.</p>
  *
  * @author jwbroek
  */
@@ -127,6 +145,14 @@ public class CueSheetToXmlSerializer {
      * The namespace for the elements in the XML document.
      */
     private String namespace = "http://jwbroek/cuelib/2008/cuesheet/1";
+    /**
+     * The factory for creating XML stream writers. Created when first needed.
+     */
+    private XMLOutputFactory outputFactory = null;
+    /**
+     * The transformer for writing XML DOM trees. Created when first needed.
+     */
+    private Transformer identityTransformer = null;
     /**
      * The logger for this class.
      */
@@ -147,40 +173,66 @@ public class CueSheetToXmlSerializer {
      * Write an XML representation of the cue sheet.
      *
      * @param cueSheet The CueSheet to serialize.
-     * @param writer   The Writer to write the XML representation to.
+     * @param writer   The Writer to write the XML representation to. Is flushed, but not closed.
      *
-     * @throws TransformerException
+     * @throws TransformerException When the XML representation could not be written.
      */
     public void serializeCueSheet(final CueSheet cueSheet, final Writer writer) throws TransformerException {
-        serializeCueSheet(cueSheet, new StreamResult(writer));
+        try {
+            final XMLStreamWriter xmlWriter = getOutputFactory().createXMLStreamWriter(writer);
+            writeDocument(cueSheet, xmlWriter);
+        } catch (XMLStreamException e) {
+            throw new TransformerException(e);
+        }
     }
 
     /**
      * Write an XML representation of the cue sheet.
      *
      * @param cueSheet     The CueSheet to serialize.
-     * @param outputStream The OutputStream to write the XML representation to.
+     * @param outputStream The OutputStream to write the XML representation to. Is flushed, but not closed. The
+     *                     representation is encoded in UTF-8.
      *
-     * @throws TransformerException
+     * @throws TransformerException When the XML representation could not be written.
      */
     public void serializeCueSheet(final CueSheet cueSheet, final OutputStream outputStream) throws TransformerException {
-        serializeCueSheet(cueSheet, new StreamResult(outputStream));
+        try {
+            final XMLStreamWriter xmlWriter = getOutputFactory().createXMLStreamWriter(outputStream, "UTF-8");
+            writeDocument(cueSheet, xmlWriter);
+        } catch (XMLStreamException e) {
+            throw new TransformerException(e);
+        }
     }
 
     /**
      * Write an XML representation of the cue sheet.
      *
      * @param cueSheet The CueSheet to serialize.
-     * @param file     The File to write the XML representation to.
+     * @param file     The File to write the XML representation to. The representation is encoded in UTF-8.
      *
-     * @throws TransformerException
+     * @throws TransformerException When the XML representation could not be written.
      */
     public void serializeCueSheet(final CueSheet cueSheet, final File file) throws TransformerException {
-        serializeCueSheet(cueSheet, new StreamResult(file));
+        OutputStream outputStream = null;
+        try {
+            outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            serializeCueSheet(cueSheet, outputStream);
+        } catch (IOException e) {
+            throw new TransformerException(e);
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    CueSheetToXmlSerializer.logger.warn("Could not close file: '" + file.toString() + "'", e);
+                }
+            }
+        }
     }
 
     /**
-     * Write an XML representation of the cue sheet.
+     * Write an XML representation of the cue sheet. Builds an XML DOM tree, so prefer the Writer and OutputStream
+     * variants for large amounts of output.
      *
      * @param cueSheet The CueSheet to serialize.
      * @param result   The Result to write the XML representation to.
@@ -188,10 +240,82 @@ public class CueSheetToXmlSerializer {
      * @throws TransformerException
      */
     public void serializeCueSheet(final CueSheet cueSheet, final Result result) throws TransformerException {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer identityTransformer = transformerFactory.newTransformer();
+        if (this.identityTransformer == null) {
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            this.identityTransformer = transformerFactory.newTransformer();
+        }
         Source cueSheetSource = new DOMSource(serializeCueSheet(cueSheet));
-        identityTransformer.transform(cueSheetSource, result);
+        this.identityTransformer.transform(cueSheetSource, result);
+    }
+
+    /**
+     * Write an XML representation of the cue sheet as a "cuesheet" element at the current position of the writer.
+     * The element declares the namespace as default namespace. Does not start or end a document, so this method can
+     * be used to write any number of cue sheets into a larger document.
+     *
+     * @param cueSheet  The CueSheet to serialize.
+     * @param xmlWriter The XMLStreamWriter to write the XML representation to.
+     *
+     * @throws XMLStreamException When the XML representation could not be written.
+     */
+    public void serializeCueSheet(final CueSheet cueSheet, final XMLStreamWriter xmlWriter) throws XMLStreamException {
+        xmlWriter.writeStartElement("cuesheet");
+        xmlWriter.writeDefaultNamespace(this.namespace);
+
+        writeAttribute(xmlWriter, "genre", cueSheet.getGenre());
+        writeAttribute(xmlWriter, "date", cueSheet.getYear());
+        writeAttribute(xmlWriter, "discid", cueSheet.getDiscid());
+        writeAttribute(xmlWriter, "comment", cueSheet.getComment());
+        writeAttribute(xmlWriter, "catalog", cueSheet.getCatalog());
+        writeAttribute(xmlWriter, "performer", cueSheet.getPerformer());
+        writeAttribute(xmlWriter, "title", cueSheet.getTitle());
+        writeAttribute(xmlWriter, "songwriter", cueSheet.getSongwriter());
+        writeAttribute(xmlWriter, "cdtextfile", cueSheet.getCdTextFile());
+
+        for (FileData fileData : cueSheet.getFileData()) {
+            writeFileData(xmlWriter, fileData);
+        }
+
+        xmlWriter.writeEndElement();
+    }
+
+    /**
+     * Get the namespace for the elements in the XML document.
+     *
+     * @return The namespace for the elements in the XML document.
+     */
+    public String getNamespace() {
+        return this.namespace;
+    }
+
+    /**
+     * Get the factory for creating XML stream writers.
+     *
+     * @return The factory for creating XML stream writers.
+     */
+    XMLOutputFactory getOutputFactory() {
+        if (this.outputFactory == null) {
+            this.outputFactory = XMLOutputFactory.newInstance();
+        }
+        return this.outputFactory;
+    }
+
+    /**
+     * Write an XML document that consists of the representation of the cue sheet. Flushes, but does not close, the
+     * underlying output.
+     *
+     * @param cueSheet  The CueSheet to serialize.
+     * @param xmlWriter The XMLStreamWriter to write the document to.
+     *
+     * @throws XMLStreamException When the document could not be written.
+     */
+    private void writeDocument(final CueSheet cueSheet, final XMLStreamWriter xmlWriter) throws XMLStreamException {
+        CueSheetToXmlSerializer.logger.trace("Serializing cue sheet to XML stream.");
+        xmlWriter.writeStartDocument("UTF-8", "1.0");
+        serializeCueSheet(cueSheet, xmlWriter);
+        xmlWriter.writeEndDocument();
+        xmlWriter.flush();
+        xmlWriter.close();
     }
 
     /**
@@ -409,4 +533,133 @@ public class CueSheetToXmlSerializer {
             parentElement.setAttribute(attributeName, "" + value);
         }
     }
+
+    /**
+     * Write the FileData.
+     *
+     * @param xmlWriter The XMLStreamWriter to write to.
+     * @param fileData  The FileData to write.
+     *
+     * @throws XMLStreamException When the FileData could not be written.
+     */
+    private void writeFileData(final XMLStreamWriter xmlWriter, final FileData fileData) throws XMLStreamException {
+        xmlWriter.writeStartElement("file");
+
+        writeAttribute(xmlWriter, "file", fileData.getFile());
+        writeAttribute(xmlWriter, "type", fileData.getFileType());
+
+        for (TrackData trackData : fileData.getTrackData()) {
+            writeTrackData(xmlWriter, trackData);
+        }
+
+        xmlWriter.writeEndElement();
+    }
+
+    /**
+     * Write the TrackData.
+     *
+     * @param xmlWriter The XMLStreamWriter to write to.
+     * @param trackData The TrackData to write.
+     *
+     * @throws XMLStreamException When the TrackData could not be written.
+     */
+    private void writeTrackData(final XMLStreamWriter xmlWriter, final TrackData trackData) throws XMLStreamException {
+        xmlWriter.writeStartElement("track");
+
+        writeAttribute(xmlWriter, "number", trackData.getNumber());
+        writeAttribute(xmlWriter, "type", trackData.getDataType());
+
+        writeAttribute(xmlWriter, "isrc", trackData.getIsrcCode());
+        writeAttribute(xmlWriter, "performer", trackData.getPerformer());
+        writeAttribute(xmlWriter, "title", trackData.getTitle());
+        writeAttribute(xmlWriter, "songwriter", trackData.getSongwriter());
+
+        writePosition(xmlWriter, "pregap", trackData.getPregap());
+        writePosition(xmlWriter, "postgap", trackData.getPostgap());
+
+        if (trackData.getFlags().size() > 0) {
+            xmlWriter.writeStartElement("flags");
+            for (String flag : trackData.getFlags()) {
+                xmlWriter.writeStartElement("flag");
+                xmlWriter.writeCharacters(flag);
+                xmlWriter.writeEndElement();
+            }
+            xmlWriter.writeEndElement();
+        }
+
+        for (Index index : trackData.getIndices()) {
+            xmlWriter.writeEmptyElement("index");
+            writePositionAttributes(xmlWriter, index.getPosition());
+            writeAttribute(xmlWriter, "number", index.getNumber());
+        }
+
+        xmlWriter.writeEndElement();
+    }
+
+    /**
+     * Write a position element. The element is only written if the position is != null.
+     *
+     * @param xmlWriter   The XMLStreamWriter to write to.
+     * @param elementName The name for the position element.
+     * @param position    The position to write.
+     *
+     * @throws XMLStreamException When the position could not be written.
+     */
+    private void writePosition(final XMLStreamWriter xmlWriter, final String elementName, final Position position)
+            throws XMLStreamException {
+        if (position != null) {
+            xmlWriter.writeEmptyElement(elementName);
+            writePositionAttributes(xmlWriter, position);
+        }
+    }
+
+    /**
+     * Write the attributes with position data of the current element. The attributes are only written if the
+     * position is != null.
+     *
+     * @param xmlWriter The XMLStreamWriter to write to.
+     * @param position  The position to write.
+     *
+     * @throws XMLStreamException When the position could not be written.
+     */
+    private void writePositionAttributes(final XMLStreamWriter xmlWriter, final Position position)
+            throws XMLStreamException {
+        if (position != null) {
+            xmlWriter.writeAttribute("minutes", Integer.toString(position.getMinutes()));
+            xmlWriter.writeAttribute("seconds", Integer.toString(position.getSeconds()));
+            xmlWriter.writeAttribute("frames", Integer.toString(position.getFrames()));
+        }
+    }
+
+    /**
+     * Write an attribute of the current element. The attribute is only written if the value is != null.
+     *
+     * @param xmlWriter     The XMLStreamWriter to write to.
+     * @param attributeName The name for the attribute.
+     * @param value         The value for the attribute.
+     *
+     * @throws XMLStreamException When the attribute could not be written.
+     */
+    private void writeAttribute(final XMLStreamWriter xmlWriter, final String attributeName, final String value)
+            throws XMLStreamException {
+        if (value != null) {
+            xmlWriter.writeAttribute(attributeName, value);
+        }
+    }
+
+    /**
+     * Write an attribute of the current element. The attribute is only written if the value is > -1.
+     *
+     * @param xmlWriter     The XMLStreamWriter to write to.
+     * @param attributeName The name for the attribute.
+     * @param value         The value for the attribute.
+     *
+     * @throws XMLStreamException When the attribute could not be written.
+     */
+    private void writeAttribute(final XMLStreamWriter xmlWriter, final String attributeName, final int value)
+            throws XMLStreamException {
+        if (value > -1) {
+            xmlWriter.writeAttribute(attributeName, Integer.toString(value));
+        }
+    }
 }
@@ -0,0 +1,433 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Checks the rules of the cue sheet spec on request, rather than while parsing. Every rule is identified by the
+ * {@link ParseWarning} it raises, and can be enabled or disabled individually.</p>
+ * <p>This complements parsing with no rules at all (see {@link ParserOptions#setRules(Set)}), which only builds the
+ * cue sheet. Most rules, such as the format of catalog numbers and ISRC codes, the length of CD-TEXT fields, the
+ * numbering of tracks and indices and the range of positions, are checked against the {@link CueSheet} itself. This
+ * works for any sheet, whether parsed, decoded, read from JSON or XML, or edited. As the sheet does not retain the
+ * lines of input, these warnings have line number -1, and the offending datum as {@link CueSheetSerializer} would
+ * write it as input. They are reported once for every offending value in the sheet, grouped by rule. They are
+ * therefore exactly the warnings that {@link CueParser} raises when parsing the serialized sheet, except for the
+ * line numbers and the order. A value that was repeated in the original input, but is only kept once in the sheet,
+ * such as a repeated TITLE, is only reported once, and a datum that was written differently, such as an unquoted
+ * value with spaces, is reported as it would be serialized.</p>
+ * <p>The remaining rules, listed in {@link #INPUT_RULES}, are about the input itself: the case of tokens, empty
+ * lines, the number of digits, and data that are repeated or in the wrong place. These can only be checked by
+ * reading the input again, using {@link #validate(CueSheet, File)} or {@link #validate(CueSheet, LineNumberReader)},
+ * which check both kinds of rules. The warnings of these rules are exactly those that parsing would have raised,
+ * with the same line numbers and input, in the same order.</p>
+ * <p>Instances are immutable, and may be shared between threads.</p>
+ *
+ * @author jwbroek
+ */
+final public class CueSheetValidator {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetValidator.class);
+    /**
+     * The rules that can only be checked against the input of a cue sheet, rather than the sheet itself.
+     */
+    public final static Set<ParseWarning> INPUT_RULES = CueSheetValidator.createInputRules();
+    /**
+     * Handler that ignores the contents of the cue sheets, as only the warnings are of interest.
+     */
+    private final static CueEventHandler IGNORE_CONTENTS = new CueEventAdapter() {
+    };
+    /**
+     * The rules to check, identified by the warnings they raise.
+     */
+    private final Set<ParseWarning> rules;
+    /**
+     * The rules to check against the sheet itself.
+     */
+    private final List<SheetRule> sheetRules = new ArrayList<SheetRule>();
+    /**
+     * The rules to check against the input of the sheet.
+     */
+    private final Set<ParseWarning> inputRules;
+
+    /**
+     * Create a new CueSheetValidator that checks all rules.
+     */
+    public CueSheetValidator() {
+        this(EnumSet.allOf(ParseWarning.class));
+    }
+
+    /**
+     * Create a new CueSheetValidator that checks the specified rules.
+     *
+     * @param rules The rules to check, identified by the warnings they raise. Copied.
+     */
+    public CueSheetValidator(final Set<ParseWarning> rules) {
+        final Set<ParseWarning> copy = EnumSet.noneOf(ParseWarning.class);
+        copy.addAll(rules);
+        this.rules = Collections.unmodifiableSet(copy);
+
+        final Set<ParseWarning> inputRules = EnumSet.noneOf(ParseWarning.class);
+        for (ParseWarning rule : copy) {
+            if (CueSheetValidator.INPUT_RULES.contains(rule)) {
+                inputRules.add(rule);
+            } else {
+                this.sheetRules.add(SheetRule.RULES.get(rule));
+            }
+        }
+        this.inputRules = Collections.unmodifiableSet(inputRules);
+    }
+
+    /**
+     * Get the rules that are checked.
+     *
+     * @return An unmodifiable set of the rules that are checked, identified by the warnings they raise.
+     */
+    public Set<ParseWarning> getRules() {
+        return this.rules;
+    }
+
+    /**
+     * Check the rules that apply to the cue sheet itself, and add the warnings to the sheet. Rules in
+     * {@link #INPUT_RULES} are not checked.
+     *
+     * @param sheet The cue sheet.
+     */
+    public void validate(final CueSheet sheet) {
+        validate(sheet, new SheetDiagnostics(sheet));
+    }
+
+    /**
+     * Check the rules that apply to the cue sheet itself, and report the warnings to the diagnostics. Rules in
+     * {@link #INPUT_RULES} are not checked.
+     *
+     * @param sheet       The cue sheet.
+     * @param diagnostics The diagnostics to report the warnings to.
+     */
+    public void validate(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+        for (SheetRule rule : this.sheetRules) {
+            rule.check(sheet, diagnostics);
+        }
+    }
+
+    /**
+     * Check all rules for a cue sheet, and add the warnings to the sheet. The file is only read if rules in
+     * {@link #INPUT_RULES} are to be checked. It is decoded using the platform's default encoding, as by
+     * {@link CueParser#parse(File)}.
+     *
+     * @param sheet The cue sheet.
+     * @param file  The cue sheet file that the sheet was parsed from.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    public void validate(final CueSheet sheet, final File file) throws IOException {
+        final SheetDiagnostics diagnostics = new SheetDiagnostics(sheet);
+        validate(sheet, diagnostics);
+        if (!this.inputRules.isEmpty()) {
+            createInputParser(diagnostics).parse(file, CueSheetValidator.IGNORE_CONTENTS);
+        }
+    }
+
+    /**
+     * Check all rules for a cue sheet, and add the warnings to the sheet. The reader is only read if rules in
+     * {@link #INPUT_RULES} are to be checked, but is closed in any case.
+     *
+     * @param sheet  The cue sheet.
+     * @param reader A reader for the input that the sheet was parsed from. This reader will be closed afterward.
+     *
+     * @throws IOException When the input could not be read.
+     */
+    public void validate(final CueSheet sheet, final LineNumberReader reader) throws IOException {
+        final SheetDiagnostics diagnostics = new SheetDiagnostics(sheet);
+        validate(sheet, diagnostics);
+        if (this.inputRules.isEmpty()) {
+            reader.close();
+        } else {
+            createInputParser(diagnostics).parse(reader, CueSheetValidator.IGNORE_CONTENTS);
+        }
+    }
+
+    /**
+     * Check all rules against the input of a cue sheet file, without building a sheet, and report the warnings to
+     * the diagnostics, in the order of the input. The file is decoded using the platform's default encoding, as by
+     * {@link CueParser#parse(File)}.
+     *
+     * @param file        The cue sheet file.
+     * @param diagnostics The diagnostics to report the warnings to.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    public void checkInput(final File file, final ParseDiagnostics diagnostics) throws IOException {
+        createParser(this.rules, diagnostics).parse(file, CueSheetValidator.IGNORE_CONTENTS);
+    }
+
+    /**
+     * Check all rules against the input of a cue sheet, without building a sheet, and report the warnings to the
+     * diagnostics, in the order of the input.
+     *
+     * @param reader      A reader for the cue sheet. This reader will be closed afterward.
+     * @param diagnostics The diagnostics to report the warnings to.
+     *
+     * @throws IOException When the cue sheet could not be read.
+     */
+    public void checkInput(final LineNumberReader reader, final ParseDiagnostics diagnostics) throws IOException {
+        createParser(this.rules, diagnostics).parse(reader, CueSheetValidator.IGNORE_CONTENTS);
+    }
+
+    /**
+     * Check all rules for many cue sheets in parallel, as by {@link #validate(CueSheet, File)}, and add the warnings
+     * to the sheets. Each sheet is validated by one of a fixed number of threads, which reuse their parser from
+     * file to file. A file that cannot be read does not affect the validation of the others.
+     *
+     * @param sheets  The cue sheets to validate, by the files they were parsed from. Every sheet must be in the map
+     *                only once. The map must not be modified during validation.
+     * @param threads The number of threads to validate with. Must be at least 1.
+     *
+     * @return Statistics of the validation, including the throughput.
+     *
+     * @throws InterruptedException When interrupted while waiting for validation to complete. Validation will be
+     *                              aborted.
+     */
+    public ParseStatistics validateAll(final Map<File, CueSheet> sheets, final int threads) throws InterruptedException {
+        return validateAll(sheets.entrySet().iterator(), threads);
+    }
+
+    /**
+     * Check the rules that apply to the cue sheets themselves for many cue sheets in parallel, as by
+     * {@link #validate(CueSheet)}, and add the warnings to the sheets. Rules in {@link #INPUT_RULES} are not
+     * checked.
+     *
+     * @param sheets  The cue sheets to validate. Every sheet must be in the collection only once. The collection must
+     *                not be modified during validation.
+     * @param threads The number of threads to validate with. Must be at least 1.
+     *
+     * @return Statistics of the validation, including the throughput.
+     *
+     * @throws InterruptedException When interrupted while waiting for validation to complete. Validation will be
+     *                              aborted.
+     */
+    public ParseStatistics validateAll(final Collection<CueSheet> sheets, final int threads) throws InterruptedException {
+        final List<Map.Entry<File, CueSheet>> entries = new ArrayList<Map.Entry<File, CueSheet>>(sheets.size());
+        for (CueSheet sheet : sheets) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<File, CueSheet>(null, sheet));
+        }
+        return validateAll(entries.iterator(), threads);
+    }
+
+    /**
+     * Validate cue sheets in parallel.
+     *
+     * @param entries The cue sheets to validate, by the files they were parsed from. The file is null for sheets
+     *                that are only to be checked against the rules that apply to the sheets themselves.
+     * @param threads The number of threads to validate with. Must be at least 1.
+     *
+     * @return Statistics of the validation, including the throughput.
+     *
+     * @throws InterruptedException When interrupted while waiting for validation to complete. Validation will be
+     *                              aborted.
+     */
+    private ParseStatistics validateAll(final Iterator<Map.Entry<File, CueSheet>> entries, final int threads) throws InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+
+        CueSheetValidator.logger.debug("Validating cue sheets using {} threads.", threads);
+
+        final long start = System.nanoTime();
+        final ValidationWorker[] workers = new ValidationWorker[threads];
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int index = 0; index < workers.length; index++) {
+                workers[index] = new ValidationWorker(entries);
+                executor.execute(workers[index]);
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long validated = 0;
+        long failed = 0;
+        long bytes = 0;
+        for (ValidationWorker worker : workers) {
+            validated += worker.validated;
+            failed += worker.failed;
+            bytes += worker.parser.bytesRead;
+        }
+
+        final ParseStatistics result = new ParseStatistics(validated, failed, bytes, System.nanoTime() - start);
+        CueSheetValidator.logger.info("Validated {}.", result);
+        return result;
+    }
+
+    /**
+     * Create a parser that checks the rules of this validator that apply to the input only.
+     *
+     * @param diagnostics The diagnostics to report the warnings to.
+     *
+     * @return A new parser that checks the rules of this validator that apply to the input only.
+     */
+    private ReusableCueParser createInputParser(final ParseDiagnostics diagnostics) {
+        return CueSheetValidator.createParser(this.inputRules, diagnostics);
+    }
+
+    /**
+     * Create a parser that checks the specified rules.
+     *
+     * @param rules       The rules to check.
+     * @param diagnostics The diagnostics to report the warnings to.
+     *
+     * @return A new parser that checks the specified rules.
+     */
+    private static ReusableCueParser createParser(final Set<ParseWarning> rules, final ParseDiagnostics diagnostics) {
+        final ParserOptions options = new ParserOptions();
+        options.setRules(rules);
+        options.setDiagnostics(diagnostics);
+        options.setReusePositions(true);
+        return new ReusableCueParser(options);
+    }
+
+    /**
+     * Create the set of rules that can only be checked against the input of a cue sheet.
+     *
+     * @return An unmodifiable set of all rules that are not checked against the sheet itself.
+     */
+    private static Set<ParseWarning> createInputRules() {
+        final Set<ParseWarning> result = EnumSet.allOf(ParseWarning.class);
+        result.removeAll(SheetRule.RULES.keySet());
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Diagnostics that add warnings to a cue sheet, as {@link MessageDiagnostics} does for the sheet being built.
+     */
+    private final static class SheetDiagnostics implements ParseDiagnostics {
+
+        /**
+         * The sheet to add the warnings to.
+         */
+        CueSheet sheet;
+
+        /**
+         * Create a new SheetDiagnostics.
+         *
+         * @param sheet The sheet to add the warnings to. May be null if set later.
+         */
+        SheetDiagnostics(final CueSheet sheet) {
+            this.sheet = sheet;
+        }
+
+        public void warning(final LineOfInput input, final ParseWarning warning) {
+            CueSheetValidator.logger.warn(warning.getMessage());
+            this.sheet.addWarning(input, warning.getMessage());
+        }
+    }
+
+    /**
+     * Validates cue sheets for {@link CueSheetValidator#validateAll(Map, int)} until there are none left. Every
+     * worker has its own parser, which it reuses for all files it reads.
+     */
+    private final class ValidationWorker implements Runnable {
+
+        /**
+         * The sheets to validate, by file. Shared between all workers.
+         */
+        private final Iterator<Map.Entry<File, CueSheet>> entries;
+        /**
+         * The diagnostics that add warnings to the sheet being validated.
+         */
+        private final SheetDiagnostics diagnostics = new SheetDiagnostics(null);
+        /**
+         * The parser that checks the rules that apply to the input only.
+         */
+        final ReusableCueParser parser = createInputParser(this.diagnostics);
+        /**
+         * Number of sheets that were validated.
+         */
+        long validated = 0;
+        /**
+         * Number of sheets that could not be validated, mostly as their file could not be read.
+         */
+        long failed = 0;
+
+        /**
+         * Create a new ValidationWorker.
+         *
+         * @param entries The sheets to validate, by file. Shared between all workers.
+         */
+        ValidationWorker(final Iterator<Map.Entry<File, CueSheet>> entries) {
+            this.entries = entries;
+        }
+
+        public void run() {
+            Map.Entry<File, CueSheet> entry;
+            // Check for interruption first, so that no sheet is taken from the iterator without being validated.
+            while (!Thread.currentThread().isInterrupted() && (entry = nextEntry()) != null) {
+                this.diagnostics.sheet = entry.getValue();
+                try {
+                    validate(entry.getValue(), this.diagnostics);
+                    if (entry.getKey() != null && !CueSheetValidator.this.inputRules.isEmpty()) {
+                        this.parser.parse(entry.getKey(), CueSheetValidator.IGNORE_CONTENTS);
+                    }
+                    this.validated++;
+                } catch (IOException e) {
+                    CueSheetValidator.logger.warn("Could not validate cue sheet '" + entry.getKey() + "'.", e);
+                    this.failed++;
+                } catch (RuntimeException e) {
+                    CueSheetValidator.logger.warn("Could not validate cue sheet '" + entry.getKey() + "'.", e);
+                    this.failed++;
+                }
+            }
+        }
+
+        /**
+         * Get the next sheet to validate.
+         *
+         * @return The next sheet to validate, or null if there are none left.
+         */
+        private Map.Entry<File, CueSheet> nextEntry() {
+            synchronized (this.entries) {
+                return this.entries.hasNext() ? this.entries.next() : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Reads the XML representation of cue sheets, as written by {@link CueSheetToXmlSerializer} and
+ * {@link CueSheetXmlWriter}, straight back into {@link CueSheet} instances. Every "cuesheet" element in the cue sheet
+ * namespace is read, so both single sheet documents and documents with many sheets are supported.</p>
+ * <p>The input is read as a stream, and can optionally be validated against a schema while it is read. Each
+ * "cuesheet" element is validated by itself, so the schema from {@link CueSheetToXmlSerializer} can also be used for
+ * documents with many sheets. Without validation, unknown elements and attributes are ignored.</p>
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @author jwbroek
+ */
+public class CueSheetXmlReader {
+
+    /**
+     * The namespace of the cue sheet elements.
+     */
+    public final static String NAMESPACE = "http://jwbroek/cuelib/2008/cuesheet/1";
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetXmlReader.class);
+    /**
+     * The schema to validate against. Null if the input is not validated.
+     */
+    private final Schema schema;
+    /**
+     * The factory for creating XML stream readers. Created when first needed.
+     */
+    private XMLInputFactory inputFactory = null;
+
+    /**
+     * Create a CueSheetXmlReader that does not validate its input.
+     */
+    public CueSheetXmlReader() {
+        this(null);
+    }
+
+    /**
+     * Create a CueSheetXmlReader that validates every cue sheet against the specified schema. The schema for the
+     * cue sheet namespace is in doc/xsd/cuesheet-2008-1.xsd, and can be loaded with a
+     * {@link javax.xml.validation.SchemaFactory SchemaFactory}.
+     *
+     * @param schema The schema to validate against. Null if the input is not to be validated.
+     */
+    public CueSheetXmlReader(final Schema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Read all cue sheets in a document.
+     *
+     * @param file The file containing the document.
+     *
+     * @return All cue sheets in the document, in document order.
+     *
+     * @throws IOException        When the file could not be read.
+     * @throws XMLStreamException When the document is not well-formed, does not conform to the schema, or contains
+     *                            invalid values.
+     */
+    public List<CueSheet> read(final File file) throws IOException, XMLStreamException {
+        CueSheetXmlReader.logger.info("Reading XML cue sheets from file: '{}'", file);
+        final InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read all cue sheets in a document.
+     *
+     * @param inputStream The stream containing the document. Is not closed.
+     *
+     * @return All cue sheets in the document, in document order.
+     *
+     * @throws XMLStreamException When the document is not well-formed, does not conform to the schema, or contains
+     *                            invalid values.
+     */
+    public List<CueSheet> read(final InputStream inputStream) throws XMLStreamException {
+        final XMLStreamReader reader = getInputFactory().createXMLStreamReader(inputStream);
+        try {
+            final List<CueSheet> result = new ArrayList<CueSheet>();
+            for (CueSheet sheet = readNext(reader); sheet != null; sheet = readNext(reader)) {
+                result.add(sheet);
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the next cue sheet from the reader. Any content before the next "cuesheet" element is skipped. This allows
+     * the sheets in a document of any size to be processed one by one.
+     *
+     * @param reader The reader to read from. After this method returns, it is positioned at the end of the sheet
+     *               that was read, or at the end of the document if there was none.
+     *
+     * @return The next cue sheet, or null if there are no more sheets in the document.
+     *
+     * @throws XMLStreamException When the document is not well-formed, the sheet does not conform to the schema, or
+     *                            the sheet contains invalid values.
+     */
+    public CueSheet readNext(final XMLStreamReader reader) throws XMLStreamException {
+        int event = reader.getEventType();
+        while (!(event == XMLStreamConstants.START_ELEMENT && isElement(reader, "cuesheet"))) {
+            if (!reader.hasNext()) {
+                return null;
+            }
+            event = reader.next();
+        }
+
+        final ValidatorHandler validator = this.schema == null ? null : this.schema.newValidatorHandler();
+        try {
+            if (validator != null) {
+                validator.startDocument();
+            }
+            final CueSheet sheet = readCueSheet(reader, validator);
+            if (validator != null) {
+                validator.endDocument();
+            }
+            return sheet;
+        } catch (SAXException e) {
+            throw new XMLStreamException("Cue sheet does not conform to schema: " + e.getMessage(),
+                    reader.getLocation(), e);
+        }
+    }
+
+    /**
+     * Read the cue sheet element that the reader is positioned at.
+     *
+     * @param reader    The reader, positioned at the start of a "cuesheet" element. Will be positioned at the end of
+     *                  that element.
+     * @param validator The validator to pass all events to. Null if the sheet is not to be validated.
+     *
+     * @return The cue sheet that was read.
+     *
+     * @throws XMLStreamException When the document is not well-formed, or the sheet contains invalid values.
+     * @throws SAXException       When the sheet does not conform to the schema.
+     */
+    private CueSheet readCueSheet(final XMLStreamReader reader, final ValidatorHandler validator)
+            throws XMLStreamException, SAXException {
+        final CueSheet sheet = new CueSheet();
+        FileData fileData = null;
+        TrackData trackData = null;
+        StringBuilder flag = null;
+        // Depth of the current element, relative to the cuesheet element.
+        int depth = 0;
+        // Depth of the unknown element that is being skipped. 0 if none.
+        int skipDepth = 0;
+
+        int event = XMLStreamConstants.START_ELEMENT;
+        do {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (validator != null) {
+                        startElement(reader, validator);
+                    }
+                    if (skipDepth > 0) {
+                        break;
+                    }
+                    if (depth == 1) {
+                        sheet.setGenre(reader.getAttributeValue(null, "genre"));
+                        sheet.setYear(getIntAttribute(reader, "date"));
+                        sheet.setDiscid(reader.getAttributeValue(null, "discid"));
+                        sheet.setComment(reader.getAttributeValue(null, "comment"));
+                        sheet.setCatalog(reader.getAttributeValue(null, "catalog"));
+                        sheet.setPerformer(reader.getAttributeValue(null, "performer"));
+                        sheet.setTitle(reader.getAttributeValue(null, "title"));
+                        sheet.setSongwriter(reader.getAttributeValue(null, "songwriter"));
+                        sheet.setCdTextFile(reader.getAttributeValue(null, "cdtextfile"));
+                    } else if (depth == 2 && isElement(reader, "file")) {
+                        fileData = new FileData(sheet, reader.getAttributeValue(null, "file"),
+                                reader.getAttributeValue(null, "type"));
+                        sheet.getFileData().add(fileData);
+                    } else if (depth == 3 && isElement(reader, "track")) {
+                        trackData = new TrackData(fileData, getIntAttribute(reader, "number"),
+                                reader.getAttributeValue(null, "type"));
+                        trackData.setIsrcCode(reader.getAttributeValue(null, "isrc"));
+                        trackData.setPerformer(reader.getAttributeValue(null, "performer"));
+                        trackData.setTitle(reader.getAttributeValue(null, "title"));
+                        trackData.setSongwriter(reader.getAttributeValue(null, "songwriter"));
+                        fileData.getTrackData().add(trackData);
+                    } else if (depth == 4 && isElement(reader, "pregap")) {
+                        trackData.setPregap(getPosition(reader));
+                    } else if (depth == 4 && isElement(reader, "postgap")) {
+                        trackData.setPostgap(getPosition(reader));
+                    } else if (depth == 4 && isElement(reader, "index")) {
+                        trackData.getIndices().add(new Index(getIntAttribute(reader, "number"), getPosition(reader)));
+                    } else if (depth == 4 && isElement(reader, "flags")) {
+                        // Nothing to do; the flags are in the child elements.
+                    } else if (depth == 5 && isElement(reader, "flag")) {
+                        flag = new StringBuilder();
+                    } else {
+                        CueSheetXmlReader.logger.debug("Skipping unknown element: '{}'", reader.getName());
+                        skipDepth = depth;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (validator != null) {
+                        endElement(reader, validator);
+                    }
+                    if (skipDepth == depth) {
+                        skipDepth = 0;
+                    } else if (skipDepth == 0 && depth == 5 && flag != null) {
+                        trackData.getFlags().add(flag.toString());
+                        flag = null;
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (validator != null) {
+                        validator.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    if (flag != null && skipDepth == 0) {
+                        flag.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                default:
+                    // Comments, processing instructions and such do not contain data.
+                    break;
+            }
+            if (depth > 0) {
+                event = reader.next();
+            }
+        } while (depth > 0);
+
+        return sheet;
+    }
+
+    /**
+     * Pass the start of the current element to the validator.
+     *
+     * @param reader    The reader, positioned at the start of an element.
+     * @param validator The validator.
+     *
+     * @throws SAXException When the element does not conform to the schema.
+     */
+    private void startElement(final XMLStreamReader reader, final ValidatorHandler validator) throws SAXException {
+        for (int namespace = 0; namespace < reader.getNamespaceCount(); namespace++) {
+            validator.startPrefixMapping(CueSheetXmlReader.nonNull(reader.getNamespacePrefix(namespace)),
+                    CueSheetXmlReader.nonNull(reader.getNamespaceURI(namespace)));
+        }
+        final AttributesImpl attributes = new AttributesImpl();
+        for (int attribute = 0; attribute < reader.getAttributeCount(); attribute++) {
+            final String prefix = CueSheetXmlReader.nonNull(reader.getAttributePrefix(attribute));
+            final String localName = reader.getAttributeLocalName(attribute);
+            attributes.addAttribute(CueSheetXmlReader.nonNull(reader.getAttributeNamespace(attribute)), localName,
+                    prefix.length() == 0 ? localName : prefix + ":" + localName,
+                    "CDATA", reader.getAttributeValue(attribute));
+        }
+        validator.startElement(CueSheetXmlReader.nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                getQualifiedName(reader), attributes);
+    }
+
+    /**
+     * Pass the end of the current element to the validator.
+     *
+     * @param reader    The reader, positioned at the end of an element.
+     * @param validator The validator.
+     *
+     * @throws SAXException When the element does not conform to the schema.
+     */
+    private void endElement(final XMLStreamReader reader, final ValidatorHandler validator) throws SAXException {
+        validator.endElement(CueSheetXmlReader.nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                getQualifiedName(reader));
+        for (int namespace = 0; namespace < reader.getNamespaceCount(); namespace++) {
+            validator.endPrefixMapping(CueSheetXmlReader.nonNull(reader.getNamespacePrefix(namespace)));
+        }
+    }
+
+    /**
+     * Get the qualified name of the current element.
+     *
+     * @param reader The reader, positioned at the start or end of an element.
+     *
+     * @return The qualified name of the current element.
+     */
+    private String getQualifiedName(final XMLStreamReader reader) {
+        final String prefix = CueSheetXmlReader.nonNull(reader.getPrefix());
+        return prefix.length() == 0 ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
+
+    /**
+     * Determine whether the current element is the specified element in the cue sheet namespace.
+     *
+     * @param reader    The reader, positioned at the start of an element.
+     * @param localName The local name of the element.
+     *
+     * @return True if the current element is the specified element. False otherwise.
+     */
+    private boolean isElement(final XMLStreamReader reader, final String localName) {
+        return localName.equals(reader.getLocalName()) && CueSheetXmlReader.NAMESPACE.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Get the position from the attributes of the current element.
+     *
+     * @param reader The reader, positioned at the start of an element.
+     *
+     * @return The position, or null if the element does not have all position attributes.
+     *
+     * @throws XMLStreamException When a position attribute is not a valid integer.
+     */
+    private Position getPosition(final XMLStreamReader reader) throws XMLStreamException {
+        final int minutes = getIntAttribute(reader, "minutes");
+        final int seconds = getIntAttribute(reader, "seconds");
+        final int frames = getIntAttribute(reader, "frames");
+        if (reader.getAttributeValue(null, "minutes") == null
+                || reader.getAttributeValue(null, "seconds") == null
+                || reader.getAttributeValue(null, "frames") == null) {
+            return null;
+        }
+        return new Position(minutes, seconds, frames);
+    }
+
+    /**
+     * Get the value of an integer attribute of the current element.
+     *
+     * @param reader        The reader, positioned at the start of an element.
+     * @param attributeName The name of the attribute.
+     *
+     * @return The value of the attribute, or -1 if the element does not have the attribute.
+     *
+     * @throws XMLStreamException When the attribute is not a valid integer.
+     */
+    private int getIntAttribute(final XMLStreamReader reader, final String attributeName) throws XMLStreamException {
+        final String value = reader.getAttributeValue(null, attributeName);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid value for attribute '" + attributeName + "': '" + value + "'",
+                    reader.getLocation(), e);
+        }
+    }
+
+    /**
+     * Get the factory for creating XML stream readers. Support for DTDs and external entities is disabled, as the
+     * cue sheet format does not use them.
+     *
+     * @return The factory for creating XML stream readers.
+     */
+    private XMLInputFactory getInputFactory() {
+        if (this.inputFactory == null) {
+            this.inputFactory = XMLInputFactory.newInstance();
+            this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        }
+        return this.inputFactory;
+    }
+
+    /**
+     * Replace null by the empty string, as SAX does not allow null names.
+     *
+     * @param value The value.
+     *
+     * @return The value, or the empty string if the value is null.
+     */
+    private static String nonNull(final String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+
+/**
+ * <p>Writes any number of cue sheets into a single XML document, as a stream. The document element is a "cuesheets"
+ * element in the cue sheet namespace, which contains a "cuesheet" element for every sheet written. Every "cuesheet"
+ * element conforms to the schema documented in {@link CueSheetToXmlSerializer}. The document is encoded in
+ * UTF-8.</p>
+ * <p>Nothing is kept in memory for sheets that have been written, so documents can be of any size. Typical use:</p>
+ * <pre>
+ * CueSheetXmlWriter writer = new CueSheetXmlWriter(outputStream);
+ * for (CueSheet sheet : sheets) {
+ *   writer.write(sheet);
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * @author jwbroek
+ */
+public class CueSheetXmlWriter {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(CueSheetXmlWriter.class);
+    /**
+     * The serializer that writes the individual sheets.
+     */
+    private final CueSheetToXmlSerializer serializer;
+    /**
+     * The writer to write the document to.
+     */
+    private final XMLStreamWriter xmlWriter;
+    /**
+     * The number of sheets written so far.
+     */
+    private int count = 0;
+    /**
+     * Whether or not the document has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a new CueSheetXmlWriter, and start the document.
+     *
+     * @param outputStream The OutputStream to write the document to. Is flushed, but not closed, when this writer is
+     *                     closed.
+     *
+     * @throws XMLStreamException When the document could not be started.
+     */
+    public CueSheetXmlWriter(final OutputStream outputStream) throws XMLStreamException {
+        this(outputStream, CueSheetXmlWriter.createSerializer());
+    }
+
+    /**
+     * Create a new CueSheetXmlWriter, and start the document.
+     *
+     * @param outputStream The OutputStream to write the document to. Is flushed, but not closed, when this writer is
+     *                     closed.
+     * @param serializer   The serializer that writes the individual sheets.
+     *
+     * @throws XMLStreamException When the document could not be started.
+     */
+    public CueSheetXmlWriter(final OutputStream outputStream, final CueSheetToXmlSerializer serializer)
+            throws XMLStreamException {
+        this.serializer = serializer;
+        this.xmlWriter = serializer.getOutputFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        this.xmlWriter.writeStartDocument("UTF-8", "1.0");
+        this.xmlWriter.writeStartElement("cuesheets");
+        this.xmlWriter.writeDefaultNamespace(serializer.getNamespace());
+    }
+
+    /**
+     * Create a default serializer.
+     *
+     * @return A default serializer.
+     *
+     * @throws XMLStreamException When the serializer could not be created.
+     */
+    private static CueSheetToXmlSerializer createSerializer() throws XMLStreamException {
+        try {
+            return new CueSheetToXmlSerializer();
+        } catch (ParserConfigurationException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /**
+     * Write a cue sheet to the document.
+     *
+     * @param cueSheet The CueSheet to write.
+     *
+     * @throws XMLStreamException    When the sheet could not be written.
+     * @throws IllegalStateException When this writer has been closed.
+     */
+    public void write(final CueSheet cueSheet) throws XMLStreamException, IllegalStateException {
+        if (this.closed) {
+            throw new IllegalStateException("CueSheetXmlWriter has been closed.");
+        }
+        this.serializer.serializeCueSheet(cueSheet, this.xmlWriter);
+        this.count++;
+    }
+
+    /**
+     * Get the number of sheets written so far.
+     *
+     * @return The number of sheets written so far.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * End the document and flush it to the underlying stream. Has no effect if this writer has already been closed.
+     *
+     * @throws XMLStreamException When the document could not be ended.
+     */
+    public void close() throws XMLStreamException {
+        if (!this.closed) {
+            this.closed = true;
+            this.xmlWriter.writeEndElement();
+            this.xmlWriter.writeEndDocument();
+            this.xmlWriter.flush();
+            this.xmlWriter.close();
+            CueSheetXmlWriter.logger.debug("Wrote {} cue sheets to XML document.", Integer.valueOf(this.count));
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Builds the {@link DiscToc} of cue sheets, for computing their FreeDB and MusicBrainz disc ids. The offset of
+ * every track is the start of the track in its file (its INDEX 01), plus the lengths of all files before it, plus
+ * the PREGAP of the track and the PREGAP and POSTGAP of all tracks before it, as these gaps are silence that is
+ * written to the disc but not contained in the files. The lead-out is the total length of all files and gaps.</p>
+ * <p>The length of an audio file is read from its header only. Lengths are cached by the identity of the file (its
+ * canonical path, size and modification time), so computing ids again for the same files does not open them. A
+ * single calculator can be shared by any number of threads.</p>
+ *
+ * @author jwbroek
+ */
+final public class DiscIdCalculator {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(DiscIdCalculator.class);
+    /**
+     * The number of bytes in a frame of raw CD audio.
+     */
+    private final static int BYTES_PER_FRAME = 2352;
+    /**
+     * The lengths of audio files in frames, by identity of the file.
+     */
+    private final ConcurrentMap<AudioFileKey, Integer> lengths = new ConcurrentHashMap<AudioFileKey, Integer>();
+
+    /**
+     * Create a new DiscIdCalculator, with an empty cache.
+     */
+    public DiscIdCalculator() {
+        // Intentionally left blank (besides logging). The cache is filled on demand.
+    }
+
+    /**
+     * Build the table of contents of a cue sheet.
+     *
+     * @param sheet     The cue sheet.
+     * @param directory The directory that audio files with a relative path are relative to; normally the directory
+     *                  of the cue sheet.
+     *
+     * @return The table of contents of the cue sheet.
+     *
+     * @throws IOException              When the length of an audio file could not be determined.
+     * @throws IllegalArgumentException When the sheet does not describe a valid disc, for instance because a track
+     *                                  has no position.
+     */
+    public DiscToc createToc(final CueSheet sheet, final File directory) throws IOException, IllegalArgumentException {
+        return createToc(sheet.getFileData(), directory);
+    }
+
+    /**
+     * Build the table of contents of a single file of a cue sheet, as if it were a disc of its own.
+     *
+     * @param fileData  The file data.
+     * @param directory The directory that the audio file is relative to if it has a relative path; normally the
+     *                  directory of the cue sheet.
+     *
+     * @return The table of contents of the file.
+     *
+     * @throws IOException              When the length of the audio file could not be determined.
+     * @throws IllegalArgumentException When the file data does not describe a valid disc, for instance because a
+     *                                  track has no position.
+     */
+    public DiscToc createToc(final FileData fileData, final File directory) throws IOException, IllegalArgumentException {
+        return createToc(Collections.singletonList(fileData), directory);
+    }
+
+    /**
+     * Build the tables of contents of many cue sheets in parallel. Each sheet is handled by one of a fixed number of
+     * threads. A sheet that fails does not affect the others; it is logged and left out of the result.
+     *
+     * @param sheets  The cue sheets, by the files they were parsed from. Audio files with a relative path are taken
+     *                to be relative to the directory of the cue sheet file. The map must not be modified meanwhile.
+     * @param threads The number of threads to use. Must be at least 1.
+     *
+     * @return The tables of contents of the sheets that succeeded, by the files they were parsed from.
+     *
+     * @throws InterruptedException When interrupted while waiting for completion. Remaining sheets are skipped.
+     */
+    public Map<File, DiscToc> createTocs(final Map<File, CueSheet> sheets, final int threads) throws InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+
+        DiscIdCalculator.logger.debug("Computing tables of contents using {} threads.", threads);
+
+        final Iterator<Map.Entry<File, CueSheet>> entries = sheets.entrySet().iterator();
+        final Map<File, DiscToc> result = new ConcurrentHashMap<File, DiscToc>();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int index = 0; index < threads; index++) {
+                executor.execute(new TocWorker(entries, result));
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        DiscIdCalculator.logger.info("Computed {} tables of contents of {} sheets.", result.size(), sheets.size());
+        return result;
+    }
+
+    /**
+     * Get the length of an audio file, from the cache if possible.
+     *
+     * @param fileData  The file data of the audio file.
+     * @param directory The directory that the audio file is relative to if it has a relative path.
+     *
+     * @return The length of the audio file, in frames.
+     *
+     * @throws IOException When the length of the audio file could not be determined.
+     */
+    public int getLength(final FileData fileData, final File directory) throws IOException {
+        File file = new File(fileData.getFile());
+        if (!file.isAbsolute() && directory != null) {
+            file = new File(directory, fileData.getFile());
+        }
+        if (!file.isFile()) {
+            throw new IOException("Audio file '" + file + "' does not exist.");
+        }
+
+        final AudioFileKey key = new AudioFileKey(file.getCanonicalPath(), file.length(), file.lastModified());
+        final Integer cached = this.lengths.get(key);
+        if (cached != null) {
+            return cached.intValue();
+        }
+
+        final int result = DiscIdCalculator.readLength(file, fileData.getFileType());
+        this.lengths.put(key, Integer.valueOf(result));
+        return result;
+    }
+
+    /**
+     * Clear the cache of audio file lengths.
+     */
+    public void clearCache() {
+        this.lengths.clear();
+    }
+
+    /**
+     * Build the table of contents of a list of files.
+     *
+     * @param fileDataList The files, in the order in which they are on the disc.
+     * @param directory    The directory that audio files with a relative path are relative to.
+     *
+     * @return The table of contents of the files.
+     *
+     * @throws IOException              When the length of an audio file could not be determined.
+     * @throws IllegalArgumentException When the files do not describe a valid disc.
+     */
+    private DiscToc createToc(final List<FileData> fileDataList, final File directory)
+            throws IOException, IllegalArgumentException {
+        final List<TrackData> tracks = new ArrayList<TrackData>();
+        final List<Integer> offsets = new ArrayList<Integer>();
+        int fileOffset = DiscToc.LEAD_IN;
+        int gaps = 0;
+
+        for (FileData fileData : fileDataList) {
+            final FilePositionIndex positionIndex = fileData.getPositionIndex();
+            for (TrackData trackData : fileData.getTrackData()) {
+                final int start = positionIndex.getTrackStart(trackData);
+                if (start == -1) {
+                    throw new IllegalArgumentException("Track " + trackData.getNumber() + " has no position.");
+                }
+                if (!tracks.isEmpty() && trackData.getNumber() != tracks.get(tracks.size() - 1).getNumber() + 1) {
+                    throw new IllegalArgumentException("Track " + trackData.getNumber() + " does not follow track "
+                            + tracks.get(tracks.size() - 1).getNumber() + ".");
+                }
+                tracks.add(trackData);
+                final Position pregap = trackData.getPregap();
+                if (pregap != null) {
+                    gaps += pregap.getTotalFrames();
+                }
+                offsets.add(Integer.valueOf(fileOffset + gaps + start));
+                final Position postgap = trackData.getPostgap();
+                if (postgap != null) {
+                    gaps += postgap.getTotalFrames();
+                }
+            }
+            fileOffset += getLength(fileData, directory);
+        }
+
+        if (tracks.isEmpty()) {
+            throw new IllegalArgumentException("There are no tracks.");
+        }
+        final int[] trackOffsets = new int[offsets.size()];
+        for (int index = 0; index < trackOffsets.length; index++) {
+            trackOffsets[index] = offsets.get(index).intValue();
+        }
+        return new DiscToc(tracks.get(0).getNumber(), trackOffsets, fileOffset + gaps);
+    }
+
+    /**
+     * Read the length of an audio file from its header. Raw (BINARY and MOTOROLA) files have no header, so their
+     * length follows from their size.
+     *
+     * @param file     The audio file.
+     * @param fileType The type of the file, as in the FILE command. May be null.
+     *
+     * @return The length of the audio file, in frames.
+     *
+     * @throws IOException When the length could not be determined.
+     */
+    private static int readLength(final File file, final String fileType) throws IOException {
+        if ("BINARY".equals(fileType) || "MOTOROLA".equals(fileType)) {
+            return (int) (file.length() / DiscIdCalculator.BYTES_PER_FRAME);
+        }
+
+        final AudioFileFormat format;
+        try {
+            format = AudioSystem.getAudioFileFormat(file);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio file '" + file + "': " + e.getMessage());
+        }
+        final float sampleRate = format.getFormat().getFrameRate();
+        if (format.getFrameLength() == AudioSystem.NOT_SPECIFIED || sampleRate <= 0) {
+            throw new IOException("The header of audio file '" + file + "' does not specify its length.");
+        }
+        return (int) (format.getFrameLength() * 75L / Math.round(sampleRate));
+    }
+
+    /**
+     * Identity of an audio file. A file that is changed gets a new identity, so that its length is read again.
+     */
+    private final static class AudioFileKey {
+
+        /**
+         * The canonical path of the file.
+         */
+        private final String path;
+        /**
+         * The size of the file.
+         */
+        private final long size;
+        /**
+         * The modification time of the file.
+         */
+        private final long lastModified;
+
+        /**
+         * Create a new AudioFileKey.
+         *
+         * @param path         The canonical path of the file.
+         * @param size         The size of the file.
+         * @param lastModified The modification time of the file.
+         */
+        AudioFileKey(final String path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof AudioFileKey)) {
+                return false;
+            }
+            final AudioFileKey otherKey = (AudioFileKey) other;
+            return this.path.equals(otherKey.path) && this.size == otherKey.size
+                    && this.lastModified == otherKey.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.path.hashCode() * 31 + (int) (this.size ^ (this.lastModified >>> 7));
+        }
+    }
+
+    /**
+     * Builds tables of contents for {@link DiscIdCalculator#createTocs(Map, int)} until there are no sheets left.
+     */
+    private final class TocWorker implements Runnable {
+
+        /**
+         * The sheets, by file. Shared between all workers.
+         */
+        private final Iterator<Map.Entry<File, CueSheet>> entries;
+        /**
+         * The tables of contents, by file. Shared between all workers.
+         */
+        private final Map<File, DiscToc> result;
+
+        /**
+         * Create a new TocWorker.
+         *
+         * @param entries The sheets, by file. Shared between all workers.
+         * @param result  The tables of contents, by file. Shared between all workers.
+         */
+        TocWorker(final Iterator<Map.Entry<File, CueSheet>> entries, final Map<File, DiscToc> result) {
+            this.entries = entries;
+            this.result = result;
+        }
+
+        public void run() {
+            Map.Entry<File, CueSheet> entry;
+            // Check for interruption first, so that no sheet is taken from the others only to be skipped.
+            while (!Thread.currentThread().isInterrupted() && (entry = nextEntry()) != null) {
+                try {
+                    this.result.put(entry.getKey(), createToc(entry.getValue(), entry.getKey().getAbsoluteFile().getParentFile()));
+                } catch (IOException e) {
+                    DiscIdCalculator.logger.warn("Could not compute table of contents of '" + entry.getKey() + "'.", e);
+                } catch (IllegalArgumentException e) {
+                    DiscIdCalculator.logger.warn("Could not compute table of contents of '" + entry.getKey() + "'.", e);
+                }
+            }
+        }
+
+        /**
+         * Get the next sheet.
+         *
+         * @return The next sheet, or null if there are none left.
+         */
+        private Map.Entry<File, CueSheet> nextEntry() {
+            synchronized (this.entries) {
+                return this.entries.hasNext() ? this.entries.next() : null;
+            }
+        }
+    }
+}
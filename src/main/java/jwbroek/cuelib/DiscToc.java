@@ -0,0 +1,242 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>Immutable table of contents of a disc, from which the FreeDB (CDDB) and MusicBrainz disc ids are computed.
+ * Use {@link DiscIdCalculator} to build one from a cue sheet.</p>
+ * <p>All offsets are in frames (sectors) of 1/75 second from the start of the disc, so they include the standard
+ * lead-in of {@link #LEAD_IN} frames.</p>
+ *
+ * @author jwbroek
+ */
+final public class DiscToc {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(DiscToc.class);
+    /**
+     * The standard lead-in of a disc, in frames. The first track of a disc starts at this offset.
+     */
+    public final static int LEAD_IN = 150;
+    /**
+     * The highest track number on a disc.
+     */
+    private final static int MAX_TRACK = 99;
+    /**
+     * The characters of the MusicBrainz variant of base64, by value.
+     */
+    private final static char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789._".toCharArray();
+    /**
+     * The number of the first track.
+     */
+    private final int firstTrack;
+    /**
+     * The offsets of the tracks, in frames, by track number minus the number of the first track.
+     */
+    private final int[] offsets;
+    /**
+     * The offset of the lead-out, in frames.
+     */
+    private final int leadOut;
+
+    /**
+     * Create a new DiscToc.
+     *
+     * @param firstTrack The number of the first track.
+     * @param offsets    The offsets of the tracks in frames, including the lead-in, in ascending order. Copied.
+     * @param leadOut    The offset of the lead-out in frames, including the lead-in.
+     *
+     * @throws IllegalArgumentException When the track numbers or offsets are not valid for a disc.
+     */
+    public DiscToc(final int firstTrack, final int[] offsets, final int leadOut) throws IllegalArgumentException {
+        if (offsets.length == 0 || firstTrack < 1 || firstTrack + offsets.length - 1 > DiscToc.MAX_TRACK) {
+            throw new IllegalArgumentException("A disc must have tracks numbered from 1 to " + DiscToc.MAX_TRACK + ".");
+        }
+        for (int index = 0; index < offsets.length; index++) {
+            if (offsets[index] < 0 || (index > 0 && offsets[index] <= offsets[index - 1])) {
+                throw new IllegalArgumentException("Track offsets must be ascending, but offset of track "
+                        + (firstTrack + index) + " is " + offsets[index] + ".");
+            }
+        }
+        if (leadOut <= offsets[offsets.length - 1]) {
+            throw new IllegalArgumentException("The lead-out must be after the last track, but is at " + leadOut + ".");
+        }
+        this.firstTrack = firstTrack;
+        this.offsets = new int[offsets.length];
+        System.arraycopy(offsets, 0, this.offsets, 0, offsets.length);
+        this.leadOut = leadOut;
+    }
+
+    /**
+     * Get the number of the first track.
+     *
+     * @return The number of the first track.
+     */
+    public int getFirstTrack() {
+        return this.firstTrack;
+    }
+
+    /**
+     * Get the number of the last track.
+     *
+     * @return The number of the last track.
+     */
+    public int getLastTrack() {
+        return this.firstTrack + this.offsets.length - 1;
+    }
+
+    /**
+     * Get the number of tracks.
+     *
+     * @return The number of tracks.
+     */
+    public int getTrackCount() {
+        return this.offsets.length;
+    }
+
+    /**
+     * Get the offset of a track.
+     *
+     * @param trackNumber The number of the track.
+     *
+     * @return The offset of the track in frames, including the lead-in.
+     *
+     * @throws IndexOutOfBoundsException When there is no track with the specified number.
+     */
+    public int getOffset(final int trackNumber) throws IndexOutOfBoundsException {
+        return this.offsets[trackNumber - this.firstTrack];
+    }
+
+    /**
+     * Get the offset of the lead-out, which is the length of the disc.
+     *
+     * @return The offset of the lead-out in frames, including the lead-in.
+     */
+    public int getLeadOut() {
+        return this.leadOut;
+    }
+
+    /**
+     * Get the FreeDB (CDDB) disc id, as found in REM DISCID in cue sheets.
+     *
+     * @return The FreeDB disc id: 8 hexadecimal digits, in upper case.
+     */
+    public String getFreedbId() {
+        int checksum = 0;
+        for (int offset : this.offsets) {
+            for (int seconds = offset / 75; seconds > 0; seconds /= 10) {
+                checksum += seconds % 10;
+            }
+        }
+        final int length = this.leadOut / 75 - this.offsets[0] / 75;
+        final long id = ((long) (checksum % 255) << 24) | ((long) length << 8) | this.offsets.length;
+        final String hex = Long.toHexString(id & 0xFFFFFFFFL).toUpperCase();
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Get the MusicBrainz disc id: the SHA-1 hash of the table of contents, in a variant of base64 that is safe
+     * in URLs.
+     *
+     * @return The MusicBrainz disc id: 28 characters.
+     */
+    public String getMusicBrainzId() {
+        final StringBuilder toc = new StringBuilder(2 + 2 + 8 * (DiscToc.MAX_TRACK + 1));
+        DiscToc.appendHex(toc, this.firstTrack, 2);
+        DiscToc.appendHex(toc, getLastTrack(), 2);
+        DiscToc.appendHex(toc, this.leadOut, 8);
+        for (int track = 1; track <= DiscToc.MAX_TRACK; track++) {
+            final int index = track - this.firstTrack;
+            DiscToc.appendHex(toc, index >= 0 && index < this.offsets.length ? this.offsets[index] : 0, 8);
+        }
+
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(toc.toString().getBytes("US-ASCII"));
+        } catch (NoSuchAlgorithmException e) {
+            DiscToc.logger.error("SHA-1 is not supported.", e);
+            throw new IllegalStateException("SHA-1 is not supported.", e);
+        } catch (UnsupportedEncodingException e) {
+            DiscToc.logger.error("US-ASCII is not supported.", e);
+            throw new IllegalStateException("US-ASCII is not supported.", e);
+        }
+        return DiscToc.encodeBase64(hash);
+    }
+
+    /**
+     * Append a value in upper case hexadecimal, padded with zeros.
+     *
+     * @param builder The builder to append to.
+     * @param value   The value. Must not be negative.
+     * @param digits  The number of digits.
+     */
+    private static void appendHex(final StringBuilder builder, final int value, final int digits) {
+        final String hex = Integer.toHexString(value).toUpperCase();
+        for (int padding = hex.length(); padding < digits; padding++) {
+            builder.append('0');
+        }
+        builder.append(hex);
+    }
+
+    /**
+     * Encode bytes in the MusicBrainz variant of base64, which has '.', '_' and '-' where standard base64 has '+',
+     * '/' and '='.
+     *
+     * @param bytes The bytes to encode.
+     *
+     * @return The encoded bytes.
+     */
+    private static String encodeBase64(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int index = 0; index < bytes.length; index += 3) {
+            final int remaining = Math.min(3, bytes.length - index);
+            int group = (bytes[index] & 0xFF) << 16;
+            if (remaining > 1) {
+                group |= (bytes[index + 1] & 0xFF) << 8;
+            }
+            if (remaining > 2) {
+                group |= bytes[index + 2] & 0xFF;
+            }
+            for (int character = 0; character < 4; character++) {
+                builder.append(character <= remaining ? DiscToc.BASE64[(group >> (18 - 6 * character)) & 0x3F] : '-');
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(this.firstTrack).append(' ').append(getLastTrack()).append(' ').append(this.leadOut);
+        for (int offset : this.offsets) {
+            builder.append(' ').append(offset);
+        }
+        return builder.toString();
+    }
+}
@@ -38,7 +38,7 @@ public class FileData {
     /**
      * The track data for this file data.
      */
-    private final List<TrackData> trackData = new ArrayList<TrackData>();
+    private final TrackList trackData = new TrackList();
     /**
      * The file for this file data. May be null, though this is not compliant.
      */
@@ -51,6 +51,15 @@ public class FileData {
      * The CueSheet that this FileData belongs to.
      */
     private CueSheet parent;
+    /**
+     * Number of changes to the tracks of this file data that are not reflected in the modification count of the
+     * track list.
+     */
+    private int modifications = 0;
+    /**
+     * The position index for the tracks of this file data. Null if not built yet.
+     */
+    private FilePositionIndex positionIndex = null;
 
     /**
      * Create a new FileData instance.
@@ -72,7 +81,7 @@ public class FileData {
     public FileData(final CueSheet parent, final String file, final String fileType) {
         this.parent = parent;
         this.file = file;
-        this.fileType = fileType;
+        this.fileType = CanonicalStrings.canonicalize(fileType);
     }
 
     /**
@@ -127,7 +136,7 @@ public class FileData {
      *                 compliant.
      */
     public void setFileType(final String fileType) {
-        this.fileType = fileType;
+        this.fileType = CanonicalStrings.canonicalize(fileType);
     }
 
     /**
@@ -139,6 +148,29 @@ public class FileData {
         return this.trackData;
     }
 
+    /**
+     * Get the position index for the tracks of this file data. The index is built on first use, and is rebuilt
+     * on the next use after the tracks, their indices or the positions of those indices have changed.
+     *
+     * @return The position index for the tracks of this file data.
+     */
+    public FilePositionIndex getPositionIndex() {
+        final int version = this.trackData.getModificationCount() + this.modifications;
+        FilePositionIndex result = this.positionIndex;
+        if (result == null || result.getVersion() != version) {
+            result = new FilePositionIndex(this, version);
+            this.positionIndex = result;
+        }
+        return result;
+    }
+
+    /**
+     * Signal that one of the tracks of this file data, or one of their indices, has changed.
+     */
+    void modified() {
+        this.modifications++;
+    }
+
     /**
      * Get the CueSheet that this FileData belongs to.
      *
@@ -156,4 +188,30 @@ public class FileData {
     public void setParent(final CueSheet parent) {
         this.parent = parent;
     }
+
+    /**
+     * List of tracks that counts all changes, including replacements of elements.
+     */
+    private final class TrackList extends ArrayList<TrackData> {
+
+        /**
+         * Generated UID to comply with the contract of {@linkplain java.io.Serializable}.
+         */
+        private static final long serialVersionUID = 7312946082193675441L;
+
+        @Override
+        public TrackData set(final int index, final TrackData element) {
+            FileData.this.modified();
+            return super.set(index, element);
+        }
+
+        /**
+         * Get the number of structural changes to this list.
+         *
+         * @return The number of structural changes to this list.
+         */
+        int getModificationCount() {
+            return this.modCount;
+        }
+    }
 }
@@ -0,0 +1,297 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Immutable index of the positions of all tracks and indices in a single {@link FileData}, for mapping a position
+ * in the file to the track and index that are playing there. Lookups are binary searches over sorted arrays, and do
+ * not allocate any objects.</p>
+ * <p>The index reflects the file data at the time it was built. Use {@link FileData#getPositionIndex()} to get an
+ * index that is rebuilt whenever the file data has changed.</p>
+ * <p>All positions are in total frames, as per {@link Position#getTotalFrames()}. As on a CD player, the pregap of a
+ * track (its INDEX 00) is taken to belong to that track, rather than to the previous one. Indices without a
+ * position are ignored.</p>
+ *
+ * @author jwbroek
+ */
+final public class FilePositionIndex {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(FilePositionIndex.class);
+    /**
+     * The version of the file data that this index was built for.
+     */
+    private final int version;
+    /**
+     * The positions of all indices, in ascending order.
+     */
+    private final int[] indexPositions;
+    /**
+     * The indices, in the order of {@link #indexPositions}.
+     */
+    private final Index[] indices;
+    /**
+     * The tracks of the indices, in the order of {@link #indexPositions}.
+     */
+    private final TrackData[] indexTracks;
+    /**
+     * The start of every track, being the position of its INDEX 01, or of its first index if it has no INDEX 01.
+     */
+    private final int[] trackStarts;
+    /**
+     * The end of every track, being the position of the first index of the next track. -1 for the last track, as
+     * its end is the end of the file.
+     */
+    private final int[] trackEnds;
+    /**
+     * The ordinals of the tracks in {@link #trackStarts} and {@link #trackEnds}.
+     */
+    private final Map<TrackData, Integer> trackOrdinals = new IdentityHashMap<TrackData, Integer>();
+
+    /**
+     * Build a new FilePositionIndex.
+     *
+     * @param fileData The file data to index.
+     * @param version  The version of the file data.
+     */
+    FilePositionIndex(final FileData fileData, final int version) {
+        this.version = version;
+        final List<TrackData> tracks = fileData.getTrackData();
+
+        int count = 0;
+        for (TrackData trackData : tracks) {
+            count += trackData.getIndices().size();
+        }
+
+        // Gather all indices with a position, and sort them by position. Sheets are normally sorted already, so
+        // insertion sort is linear in practice. It is also stable, so equal positions remain in sheet order.
+        int[] positions = new int[count];
+        Index[] sortedIndices = new Index[count];
+        TrackData[] sortedTracks = new TrackData[count];
+        int size = 0;
+        final int[] starts = new int[tracks.size()];
+        final int[] firsts = new int[tracks.size()];
+        final TrackData[] startTracks = new TrackData[tracks.size()];
+        int trackCount = 0;
+
+        for (TrackData trackData : tracks) {
+            int start = -1;
+            int first = -1;
+            for (Index index : trackData.getIndices()) {
+                if (index == null || index.getPosition() == null) {
+                    continue;
+                }
+                final int position = index.getPosition().getTotalFrames();
+                if (index.getNumber() == 1 && start == -1) {
+                    start = position;
+                }
+                if (first == -1 || position < first) {
+                    first = position;
+                }
+
+                int insertAt = size;
+                while (insertAt > 0 && positions[insertAt - 1] > position) {
+                    positions[insertAt] = positions[insertAt - 1];
+                    sortedIndices[insertAt] = sortedIndices[insertAt - 1];
+                    sortedTracks[insertAt] = sortedTracks[insertAt - 1];
+                    insertAt--;
+                }
+                positions[insertAt] = position;
+                sortedIndices[insertAt] = index;
+                sortedTracks[insertAt] = trackData;
+                size++;
+            }
+
+            if (first != -1) {
+                if (start == -1) {
+                    start = first;
+                }
+                int insertAt = trackCount;
+                while (insertAt > 0 && starts[insertAt - 1] > start) {
+                    starts[insertAt] = starts[insertAt - 1];
+                    firsts[insertAt] = firsts[insertAt - 1];
+                    startTracks[insertAt] = startTracks[insertAt - 1];
+                    insertAt--;
+                }
+                starts[insertAt] = start;
+                firsts[insertAt] = first;
+                startTracks[insertAt] = trackData;
+                trackCount++;
+            }
+        }
+
+        if (size < count) {
+            positions = FilePositionIndex.copyOf(positions, size);
+            final Index[] trimmedIndices = new Index[size];
+            System.arraycopy(sortedIndices, 0, trimmedIndices, 0, size);
+            sortedIndices = trimmedIndices;
+            final TrackData[] trimmedTracks = new TrackData[size];
+            System.arraycopy(sortedTracks, 0, trimmedTracks, 0, size);
+            sortedTracks = trimmedTracks;
+        }
+        this.indexPositions = positions;
+        this.indices = sortedIndices;
+        this.indexTracks = sortedTracks;
+
+        this.trackStarts = FilePositionIndex.copyOf(starts, trackCount);
+        this.trackEnds = new int[trackCount];
+        for (int ordinal = 0; ordinal < trackCount; ordinal++) {
+            this.trackEnds[ordinal] = ordinal + 1 < trackCount ? firsts[ordinal + 1] : -1;
+            this.trackOrdinals.put(startTracks[ordinal], Integer.valueOf(ordinal));
+        }
+    }
+
+    /**
+     * Get the version of the file data that this index was built for.
+     *
+     * @return The version of the file data that this index was built for.
+     */
+    int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Get the track that is playing at the specified position.
+     *
+     * @param position A position in the file, in total frames.
+     *
+     * @return The track that is playing at the specified position, or null if the position is before the first index.
+     */
+    public TrackData getTrackAt(final int position) {
+        final int entry = findAtOrBefore(position);
+        return entry < 0 ? null : this.indexTracks[entry];
+    }
+
+    /**
+     * Get the index that is playing at the specified position.
+     *
+     * @param position A position in the file, in total frames.
+     *
+     * @return The index that is playing at the specified position, or null if the position is before the first
+     *         index.
+     */
+    public Index getIndexAt(final int position) {
+        final int entry = findAtOrBefore(position);
+        return entry < 0 ? null : this.indices[entry];
+    }
+
+    /**
+     * Get the start of a track: the position of its INDEX 01, or of its first index if it has no INDEX 01.
+     *
+     * @param trackData A track in the file.
+     *
+     * @return The start of the track, in total frames, or -1 if the track is not in the file or has no positions.
+     */
+    public int getTrackStart(final TrackData trackData) {
+        final Integer ordinal = this.trackOrdinals.get(trackData);
+        return ordinal == null ? -1 : this.trackStarts[ordinal.intValue()];
+    }
+
+    /**
+     * Get the end of a track: the position of the first index of the next track, which is where the pregap of the
+     * next track starts.
+     *
+     * @param trackData A track in the file.
+     *
+     * @return The end of the track, in total frames, or -1 if the track is the last in the file, is not in the file,
+     *         or has no positions.
+     */
+    public int getTrackEnd(final TrackData trackData) {
+        final Integer ordinal = this.trackOrdinals.get(trackData);
+        return ordinal == null ? -1 : this.trackEnds[ordinal.intValue()];
+    }
+
+    /**
+     * Get the first boundary after the specified position, a boundary being the position of any index.
+     *
+     * @param position A position in the file, in total frames.
+     *
+     * @return The first boundary after the specified position, or -1 if there is none.
+     */
+    public int getNextBoundary(final int position) {
+        final int entry = findAtOrBefore(position) + 1;
+        return entry < this.indexPositions.length ? this.indexPositions[entry] : -1;
+    }
+
+    /**
+     * Get the last boundary before the specified position, a boundary being the position of any index.
+     *
+     * @param position A position in the file, in total frames.
+     *
+     * @return The last boundary before the specified position, or -1 if there is none.
+     */
+    public int getPreviousBoundary(final int position) {
+        final int entry = findAtOrBefore(position - 1);
+        return entry < 0 ? -1 : this.indexPositions[entry];
+    }
+
+    /**
+     * Get the number of indices with a position in the file.
+     *
+     * @return The number of indices with a position in the file.
+     */
+    public int size() {
+        return this.indexPositions.length;
+    }
+
+    /**
+     * Find the last index at or before the specified position. Of several indices at the same position, the last
+     * one in the sheet is found.
+     *
+     * @param position A position in the file, in total frames.
+     *
+     * @return The entry of the last index at or before the position, or -1 if there is none.
+     */
+    private int findAtOrBefore(final int position) {
+        int low = 0;
+        int high = this.indexPositions.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (this.indexPositions[middle] <= position) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Copy the start of an array.
+     *
+     * @param values The array to copy.
+     * @param length The number of elements to copy.
+     *
+     * @return A new array with the first elements of the array.
+     */
+    private static int[] copyOf(final int[] values, final int length) {
+        final int[] result = new int[length];
+        System.arraycopy(values, 0, result, 0, length);
+        return result;
+    }
+}
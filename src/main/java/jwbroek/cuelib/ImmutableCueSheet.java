@@ -0,0 +1,362 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import jwbroek.cuelib.CueSheet.MetaDataField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Deeply immutable snapshot of a {@link CueSheet}, as created by {@link CueSheet#toImmutable()}. All data is
+ * held in final fields, so a snapshot can be shared between threads without locking, even when it is published
+ * through a data race. Lists are unmodifiable, and positions are returned as new objects.</p>
+ * <p>Data that is derived from the sheet, such as the list of all tracks, the resolved metadata and the durations
+ * of the tracks, is computed once when the snapshot is taken. Use {@link #toCueSheet()} to get a mutable copy for
+ * editing.</p>
+ *
+ * @author jwbroek
+ */
+final public class ImmutableCueSheet {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ImmutableCueSheet.class);
+    /**
+     * The disc's media catalog number. May be null.
+     */
+    private final String catalog;
+    /**
+     * The file containing the cd text data. May be null.
+     */
+    private final String cdTextFile;
+    /**
+     * The performer of the album. May be null.
+     */
+    private final String performer;
+    /**
+     * The title of the album. May be null.
+     */
+    private final String title;
+    /**
+     * The songwriter of the album. May be null.
+     */
+    private final String songwriter;
+    /**
+     * A comment as is typically copied to ID3 tags. May be null.
+     */
+    private final String comment;
+    /**
+     * The year of the album. -1 signifies that it has not been specified.
+     */
+    private final int year;
+    /**
+     * An id for the disc. Typically the freedb disc id. May be null.
+     */
+    private final String discid;
+    /**
+     * The genre of the album. May be null.
+     */
+    private final String genre;
+    /**
+     * The file components of the cue sheet.
+     */
+    private final List<ImmutableFileData> fileData;
+    /**
+     * All tracks of all files of the cue sheet.
+     */
+    private final List<ImmutableTrackData> allTrackData;
+    /**
+     * The parsing messages of the cue sheet.
+     */
+    private final List<Message> messages;
+    /**
+     * The resolved metadata of the cue sheet.
+     */
+    private final ResolvedMetaData resolvedMetaData;
+
+    /**
+     * Create a new ImmutableCueSheet.
+     *
+     * @param sheet The cue sheet to take a snapshot of. All of its file data and tracks must belong to it.
+     */
+    ImmutableCueSheet(final CueSheet sheet) {
+        this.catalog = sheet.getCatalog();
+        this.cdTextFile = sheet.getCdTextFile();
+        this.performer = sheet.getPerformer();
+        this.title = sheet.getTitle();
+        this.songwriter = sheet.getSongwriter();
+        this.comment = sheet.getComment();
+        this.year = sheet.getYear();
+        this.discid = sheet.getDiscid();
+        this.genre = sheet.getGenre();
+        this.resolvedMetaData = sheet.getResolvedMetaData().detach();
+
+        final List<FileData> files = sheet.getFileData();
+        final ImmutableFileData[] fileArray = new ImmutableFileData[files.size()];
+        int trackCount = 0;
+        for (int file = 0; file < fileArray.length; file++) {
+            fileArray[file] = new ImmutableFileData(files.get(file), this);
+            trackCount += fileArray[file].getTrackData().size();
+        }
+        this.fileData = Collections.unmodifiableList(Arrays.asList(fileArray));
+
+        final ImmutableTrackData[] trackArray = new ImmutableTrackData[trackCount];
+        int trackNumber = 0;
+        for (ImmutableFileData file : fileArray) {
+            for (ImmutableTrackData track : file.getTrackData()) {
+                trackArray[trackNumber++] = track;
+            }
+        }
+        this.allTrackData = Collections.unmodifiableList(Arrays.asList(trackArray));
+
+        final List<Message> sheetMessages = sheet.getMessages();
+        final Message[] messageArray = new Message[sheetMessages.size()];
+        for (int message = 0; message < messageArray.length; message++) {
+            messageArray[message] = new ImmutableMessage(sheetMessages.get(message));
+        }
+        this.messages = Collections.unmodifiableList(Arrays.asList(messageArray));
+    }
+
+    /**
+     * Get the value of a metadata field, as by {@link CueSheet#getMetaData(MetaDataField)}.
+     *
+     * @param metaDataField The field.
+     *
+     * @return The value of the field.
+     *
+     * @throws IllegalArgumentException When the field is not supported for cue sheets.
+     */
+    public String getMetaData(final MetaDataField metaDataField) throws IllegalArgumentException {
+        return this.resolvedMetaData.get(metaDataField);
+    }
+
+    /**
+     * Get all metadata of this cue sheet, as by {@link CueSheet#getResolvedMetaData()}.
+     *
+     * @return All metadata of this cue sheet.
+     */
+    public ResolvedMetaData getResolvedMetaData() {
+        return this.resolvedMetaData;
+    }
+
+    /**
+     * Get all tracks of all files of this cue sheet.
+     *
+     * @return An unmodifiable list of all tracks of all files of this cue sheet.
+     */
+    public List<ImmutableTrackData> getAllTrackData() {
+        return this.allTrackData;
+    }
+
+    /**
+     * Get the disc's media catalog number.
+     *
+     * @return The disc's media catalog number. Null signifies that it has not been specified.
+     */
+    public String getCatalog() {
+        return this.catalog;
+    }
+
+    /**
+     * Get the file containing the cd text data.
+     *
+     * @return The file containing the cd text data. Null signifies that it has not been specified.
+     */
+    public String getCdTextFile() {
+        return this.cdTextFile;
+    }
+
+    /**
+     * Get the performer of the album.
+     *
+     * @return The performer of the album. Null signifies that it has not been specified.
+     */
+    public String getPerformer() {
+        return this.performer;
+    }
+
+    /**
+     * Get the songwriter of the album.
+     *
+     * @return The songwriter of the album. Null signifies that it has not been specified.
+     */
+    public String getSongwriter() {
+        return this.songwriter;
+    }
+
+    /**
+     * Get the title of the album.
+     *
+     * @return The title of the album. Null signifies that it has not been specified.
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Get the id of the disc.
+     *
+     * @return The id of the disc. Typically the freedb disc id. Null signifies that it has not been specified.
+     */
+    public String getDiscid() {
+        return this.discid;
+    }
+
+    /**
+     * Get the genre of the album.
+     *
+     * @return The genre of the album. Null signifies that it has not been specified.
+     */
+    public String getGenre() {
+        return this.genre;
+    }
+
+    /**
+     * Get the year of the album.
+     *
+     * @return The year of the album. -1 signifies that it has not been specified.
+     */
+    public int getYear() {
+        return this.year;
+    }
+
+    /**
+     * Get the comment of the album.
+     *
+     * @return The comment of the album. Null signifies that it has not been specified.
+     */
+    public String getComment() {
+        return this.comment;
+    }
+
+    /**
+     * Get the file components of this cue sheet.
+     *
+     * @return An unmodifiable list of the file components of this cue sheet.
+     */
+    public List<ImmutableFileData> getFileData() {
+        return this.fileData;
+    }
+
+    /**
+     * Get the parsing messages of this cue sheet.
+     *
+     * @return An unmodifiable list of the parsing messages of this cue sheet.
+     */
+    public List<Message> getMessages() {
+        return this.messages;
+    }
+
+    /**
+     * Create a mutable copy of this cue sheet, for editing. The copy is made from the snapshot directly, without
+     * serializing or parsing.
+     *
+     * @return A new mutable cue sheet that is equal to this cue sheet, including its messages.
+     */
+    public CueSheet toCueSheet() {
+        final CueSheet result = new CueSheet();
+        result.setCatalog(this.catalog);
+        result.setCdTextFile(this.cdTextFile);
+        result.setPerformer(this.performer);
+        result.setTitle(this.title);
+        result.setSongwriter(this.songwriter);
+        result.setComment(this.comment);
+        result.setYear(this.year);
+        result.setDiscid(this.discid);
+        result.setGenre(this.genre);
+        for (ImmutableFileData file : this.fileData) {
+            result.getFileData().add(file.toFileData(result));
+        }
+        for (Message message : this.messages) {
+            result.getMessages().add(((ImmutableMessage) message).toMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Immutable copy of a {@link Message}.
+     */
+    private final static class ImmutableMessage implements Message {
+
+        /**
+         * The message text.
+         */
+        private final String message;
+        /**
+         * The line number of the input that this message applies to.
+         */
+        private final int lineNumber;
+        /**
+         * The input that this message applies to.
+         */
+        private final String input;
+        /**
+         * The textual representation of this message.
+         */
+        private final String text;
+        /**
+         * Whether the message is an {@link Error}, rather than a {@link Warning}.
+         */
+        private final boolean error;
+
+        /**
+         * Create a new ImmutableMessage.
+         *
+         * @param message The message to copy.
+         */
+        ImmutableMessage(final Message message) {
+            this.message = message.getMessage();
+            this.lineNumber = message.getLineNumber();
+            this.input = message.getInput();
+            this.text = message.toString();
+            this.error = message instanceof Error;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+
+        public int getLineNumber() {
+            return this.lineNumber;
+        }
+
+        public String getInput() {
+            return this.input;
+        }
+
+        @Override
+        public String toString() {
+            return this.text;
+        }
+
+        /**
+         * Create a mutable copy of this message.
+         *
+         * @return A new {@link Error} or {@link Warning} that is equal to this message.
+         */
+        Message toMessage() {
+            return this.error ? new Error(this.input, this.lineNumber, this.message) : new Warning(this.input, this.lineNumber, this.message);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a {@link FileData}, as part of an {@link ImmutableCueSheet}.
+ *
+ * @author jwbroek
+ */
+final public class ImmutableFileData {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ImmutableFileData.class);
+    /**
+     * The file that this file data applies to. May be null.
+     */
+    private final String file;
+    /**
+     * The file type of this file data. May be null.
+     */
+    private final String fileType;
+    /**
+     * The tracks of this file data.
+     */
+    private final List<ImmutableTrackData> trackData;
+    /**
+     * All indices of all tracks of this file data.
+     */
+    private final List<ImmutableIndex> allIndices;
+    /**
+     * The cue sheet that this file data belongs to.
+     */
+    private final ImmutableCueSheet parent;
+
+    /**
+     * Create a new ImmutableFileData.
+     *
+     * @param fileData The file data to take a snapshot of.
+     * @param parent   The cue sheet that this file data belongs to.
+     */
+    ImmutableFileData(final FileData fileData, final ImmutableCueSheet parent) {
+        this.file = fileData.getFile();
+        this.fileType = fileData.getFileType();
+        this.parent = parent;
+
+        final FilePositionIndex positionIndex = fileData.getPositionIndex();
+        final List<TrackData> tracks = fileData.getTrackData();
+        final ImmutableTrackData[] trackArray = new ImmutableTrackData[tracks.size()];
+        int indexCount = 0;
+        for (int track = 0; track < trackArray.length; track++) {
+            trackArray[track] = new ImmutableTrackData(tracks.get(track), this, positionIndex);
+            indexCount += trackArray[track].getIndices().size();
+        }
+        this.trackData = Collections.unmodifiableList(Arrays.asList(trackArray));
+
+        final ImmutableIndex[] indexArray = new ImmutableIndex[indexCount];
+        int indexNumber = 0;
+        for (ImmutableTrackData track : trackArray) {
+            for (ImmutableIndex index : track.getIndices()) {
+                indexArray[indexNumber++] = index;
+            }
+        }
+        this.allIndices = Collections.unmodifiableList(Arrays.asList(indexArray));
+    }
+
+    /**
+     * Get all indices of all tracks that belong to this file data.
+     *
+     * @return An unmodifiable list of all indices of all tracks that belong to this file data.
+     */
+    public List<ImmutableIndex> getAllIndices() {
+        return this.allIndices;
+    }
+
+    /**
+     * Get the file that this file data applies to.
+     *
+     * @return The file that this file data applies to. May be null, though this is not compliant.
+     */
+    public String getFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the file type of this file data.
+     *
+     * @return The file type of this file data. May be null, or any string value, though this is not necessarily
+     *         compliant.
+     */
+    public String getFileType() {
+        return this.fileType;
+    }
+
+    /**
+     * Get the tracks of this file data.
+     *
+     * @return An unmodifiable list of the tracks of this file data.
+     */
+    public List<ImmutableTrackData> getTrackData() {
+        return this.trackData;
+    }
+
+    /**
+     * Get the cue sheet that this file data belongs to.
+     *
+     * @return The cue sheet that this file data belongs to.
+     */
+    public ImmutableCueSheet getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Create a mutable copy of this file data, including its tracks.
+     *
+     * @param parent The cue sheet that the copy is to belong to. The copy is not added to it.
+     *
+     * @return A new mutable file data that is equal to this file data.
+     */
+    public FileData toFileData(final CueSheet parent) {
+        final FileData result = new FileData(parent, this.file, this.fileType);
+        for (ImmutableTrackData track : this.trackData) {
+            result.getTrackData().add(track.toTrackData(result));
+        }
+        return result;
+    }
+}
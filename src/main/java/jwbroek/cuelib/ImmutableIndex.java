@@ -0,0 +1,102 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable snapshot of an {@link Index}, as part of an {@link ImmutableCueSheet}.
+ *
+ * @author jwbroek
+ */
+final public class ImmutableIndex {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ImmutableIndex.class);
+    /**
+     * The index number.
+     */
+    private final int number;
+    /**
+     * The position of this index, as packed by {@link Position#pack(Position)}.
+     */
+    private final int packedPosition;
+    /**
+     * The position of this index if it could not be packed. Null otherwise.
+     */
+    private final Position unpackablePosition;
+    /**
+     * The track that this index belongs to.
+     */
+    private final ImmutableTrackData parent;
+
+    /**
+     * Create a new ImmutableIndex.
+     *
+     * @param index  The index to take a snapshot of.
+     * @param parent The track that this index belongs to.
+     */
+    ImmutableIndex(final Index index, final ImmutableTrackData parent) {
+        final Position position = index.getPosition();
+        this.number = index.getNumber();
+        this.packedPosition = Position.pack(position);
+        this.unpackablePosition = Position.keepUnpackable(this.packedPosition, position);
+        this.parent = parent;
+    }
+
+    /**
+     * Get the index number.
+     *
+     * @return The index number.
+     */
+    public int getNumber() {
+        return this.number;
+    }
+
+    /**
+     * Get the position of this index.
+     *
+     * @return A new position that is equal to the position of this index. Null if the position has not been set.
+     */
+    public Position getPosition() {
+        // Copy a position that could not be packed, so that this index cannot be changed through it.
+        return Position.unpack(this.packedPosition, Position.keepUnpackable(this.packedPosition, this.unpackablePosition));
+    }
+
+    /**
+     * Get the track that this index belongs to.
+     *
+     * @return The track that this index belongs to.
+     */
+    public ImmutableTrackData getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Create a mutable copy of this index.
+     *
+     * @return A new mutable index that is equal to this index.
+     */
+    public Index toIndex() {
+        return new Index(this.number, getPosition());
+    }
+}
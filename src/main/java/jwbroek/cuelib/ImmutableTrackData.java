@@ -0,0 +1,339 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import jwbroek.cuelib.CueSheet.MetaDataField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a {@link TrackData}, as part of an {@link ImmutableCueSheet}. Besides the data of the track,
+ * the snapshot holds its resolved metadata and its start, end and duration within its file, as these can be
+ * computed once for all readers.
+ *
+ * @author jwbroek
+ */
+final public class ImmutableTrackData {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ImmutableTrackData.class);
+    /**
+     * The track number. -1 if it has not been set.
+     */
+    private final int number;
+    /**
+     * The data type of this track. May be null.
+     */
+    private final String dataType;
+    /**
+     * The ISRC code of this track. May be null.
+     */
+    private final String isrcCode;
+    /**
+     * The performer of this track. May be null.
+     */
+    private final String performer;
+    /**
+     * The songwriter of this track. May be null.
+     */
+    private final String songwriter;
+    /**
+     * The title of this track. May be null.
+     */
+    private final String title;
+    /**
+     * The flags of this track.
+     */
+    private final Set<String> flags;
+    /**
+     * The pregap of this track, as packed by {@link Position#pack(Position)}.
+     */
+    private final int packedPregap;
+    /**
+     * The pregap of this track if it could not be packed. Null otherwise.
+     */
+    private final Position unpackablePregap;
+    /**
+     * The postgap of this track, as packed by {@link Position#pack(Position)}.
+     */
+    private final int packedPostgap;
+    /**
+     * The postgap of this track if it could not be packed. Null otherwise.
+     */
+    private final Position unpackablePostgap;
+    /**
+     * The indices of this track.
+     */
+    private final List<ImmutableIndex> indices;
+    /**
+     * The start of this track in its file, in total frames. -1 if unknown.
+     */
+    private final int start;
+    /**
+     * The end of this track in its file, in total frames. -1 if unknown.
+     */
+    private final int end;
+    /**
+     * The resolved metadata of this track.
+     */
+    private final ResolvedMetaData resolvedMetaData;
+    /**
+     * The file data that this track belongs to.
+     */
+    private final ImmutableFileData parent;
+
+    /**
+     * Create a new ImmutableTrackData.
+     *
+     * @param trackData     The track to take a snapshot of. Must belong to a cue sheet.
+     * @param parent        The file data that this track belongs to.
+     * @param positionIndex The position index of the file data of the track.
+     */
+    ImmutableTrackData(final TrackData trackData, final ImmutableFileData parent, final FilePositionIndex positionIndex) {
+        this.number = trackData.getNumber();
+        this.dataType = trackData.getDataType();
+        this.isrcCode = trackData.getIsrcCode();
+        this.performer = trackData.getPerformer();
+        this.songwriter = trackData.getSongwriter();
+        this.title = trackData.getTitle();
+        this.parent = parent;
+
+        final Set<String> trackFlags = trackData.getFlags();
+        this.flags = trackFlags.isEmpty() ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<String>(trackFlags));
+
+        final Position pregap = trackData.getPregap();
+        this.packedPregap = Position.pack(pregap);
+        this.unpackablePregap = Position.keepUnpackable(this.packedPregap, pregap);
+        final Position postgap = trackData.getPostgap();
+        this.packedPostgap = Position.pack(postgap);
+        this.unpackablePostgap = Position.keepUnpackable(this.packedPostgap, postgap);
+
+        final List<Index> trackIndices = trackData.getIndices();
+        final ImmutableIndex[] indexArray = new ImmutableIndex[trackIndices.size()];
+        for (int index = 0; index < indexArray.length; index++) {
+            indexArray[index] = new ImmutableIndex(trackIndices.get(index), this);
+        }
+        this.indices = Collections.unmodifiableList(Arrays.asList(indexArray));
+
+        this.start = positionIndex.getTrackStart(trackData);
+        this.end = positionIndex.getTrackEnd(trackData);
+        this.resolvedMetaData = trackData.getResolvedMetaData().detach();
+    }
+
+    /**
+     * Get the value of a metadata field, as by {@link TrackData#getMetaData(MetaDataField)}.
+     *
+     * @param metaDataField The field.
+     *
+     * @return The value of the field.
+     *
+     * @throws IllegalArgumentException When the field is not supported for tracks.
+     */
+    public String getMetaData(final MetaDataField metaDataField) throws IllegalArgumentException {
+        return this.resolvedMetaData.get(metaDataField);
+    }
+
+    /**
+     * Get all metadata of this track, as by {@link TrackData#getResolvedMetaData()}.
+     *
+     * @return All metadata of this track.
+     */
+    public ResolvedMetaData getResolvedMetaData() {
+        return this.resolvedMetaData;
+    }
+
+    /**
+     * Get the track number.
+     *
+     * @return The track number. -1 signifies that it has not been set.
+     */
+    public int getNumber() {
+        return this.number;
+    }
+
+    /**
+     * Get the data type of this track.
+     *
+     * @return The data type of this track. Null signifies that it has not been set.
+     */
+    public String getDataType() {
+        return this.dataType;
+    }
+
+    /**
+     * Get the ISRC code of this track.
+     *
+     * @return The ISRC code of this track. Null signifies that it has not been set.
+     */
+    public String getIsrcCode() {
+        return this.isrcCode;
+    }
+
+    /**
+     * Get the performer of this track.
+     *
+     * @return The performer of this track. Null signifies that it has not been set.
+     */
+    public String getPerformer() {
+        return this.performer;
+    }
+
+    /**
+     * Get the songwriter of this track.
+     *
+     * @return The songwriter of this track. Null signifies that it has not been set.
+     */
+    public String getSongwriter() {
+        return this.songwriter;
+    }
+
+    /**
+     * Get the title of this track.
+     *
+     * @return The title of this track. Null signifies that it has not been set.
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Get the flags of this track.
+     *
+     * @return An unmodifiable set of the flags of this track.
+     */
+    public Set<String> getFlags() {
+        return this.flags;
+    }
+
+    /**
+     * Get the pregap of this track.
+     *
+     * @return A new position that is equal to the pregap of this track. Null if the pregap has not been set.
+     */
+    public Position getPregap() {
+        // Copy a position that could not be packed, so that this track cannot be changed through it.
+        return Position.unpack(this.packedPregap, Position.keepUnpackable(this.packedPregap, this.unpackablePregap));
+    }
+
+    /**
+     * Get the postgap of this track.
+     *
+     * @return A new position that is equal to the postgap of this track. Null if the postgap has not been set.
+     */
+    public Position getPostgap() {
+        // Copy a position that could not be packed, so that this track cannot be changed through it.
+        return Position.unpack(this.packedPostgap, Position.keepUnpackable(this.packedPostgap, this.unpackablePostgap));
+    }
+
+    /**
+     * Get the indices of this track.
+     *
+     * @return An unmodifiable list of the indices of this track.
+     */
+    public List<ImmutableIndex> getIndices() {
+        return this.indices;
+    }
+
+    /**
+     * Get the index with the specified number.
+     *
+     * @param number The number of the index.
+     *
+     * @return The first index of this track with the specified number, or null if there is none.
+     */
+    public ImmutableIndex getIndex(final int number) {
+        for (ImmutableIndex index : this.indices) {
+            if (index.getNumber() == number) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the start of this track in its file, as by {@link FilePositionIndex#getTrackStart(TrackData)}.
+     *
+     * @return The start of this track, in total frames, or -1 if this track has no positions.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the end of this track in its file, as by {@link FilePositionIndex#getTrackEnd(TrackData)}.
+     *
+     * @return The end of this track, in total frames, or -1 if this track is the last in its file or has no
+     *         positions.
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Get the duration of this track, from its start to its end.
+     *
+     * @return The duration of this track, in frames, or -1 if it cannot be determined from the cue sheet, as is the
+     *         case for the last track of a file.
+     */
+    public int getDuration() {
+        return this.start == -1 || this.end == -1 ? -1 : this.end - this.start;
+    }
+
+    /**
+     * Get the file data that this track belongs to.
+     *
+     * @return The file data that this track belongs to.
+     */
+    public ImmutableFileData getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Create a mutable copy of this track, including its indices.
+     *
+     * @param parent The file data that the copy is to belong to. The copy is not added to it.
+     *
+     * @return A new mutable track that is equal to this track.
+     */
+    public TrackData toTrackData(final FileData parent) {
+        final TrackData result = new TrackData(parent);
+        result.setNumber(this.number);
+        result.setDataType(this.dataType);
+        result.setIsrcCode(this.isrcCode);
+        result.setPerformer(this.performer);
+        result.setSongwriter(this.songwriter);
+        result.setTitle(this.title);
+        result.getFlags().addAll(this.flags);
+        result.setPregap(getPregap());
+        result.setPostgap(getPostgap());
+        for (ImmutableIndex index : this.indices) {
+            result.getIndices().add(index.toIndex());
+        }
+        return result;
+    }
+}
@@ -37,9 +37,21 @@ public class Index {
      */
     private int number = -1;
     /**
-     * The position of this index. Null signifies that it was not specified.
+     * The position of this index, packed into its total number of frames by {@link Position#pack(Position)}.
      */
-    private Position position = null;
+    private int packedPosition = Position.PACKED_NONE;
+    /**
+     * The position of this index, if it could not be packed. Null otherwise.
+     */
+    private Position unpackablePosition = null;
+    /**
+     * Live view of the position of this index, as returned by {@link #getPosition()}. Null until first needed.
+     */
+    private Position positionView = null;
+    /**
+     * The track that this index was last added to. Null if none.
+     */
+    private TrackData track = null;
 
     /**
      * Create a new Index.
@@ -55,7 +67,7 @@ public class Index {
      */
     public Index(final int number, final Position position) {
         this.number = number;
-        this.position = position;
+        setPosition(position);
     }
 
     /**
@@ -74,15 +86,38 @@ public class Index {
      */
     public void setNumber(final int number) {
         this.number = number;
+        modified();
     }
 
     /**
-     * Get the position of this index. Null signifies that it was not specified.
+     * Get the position of this index. Null signifies that it was not specified. The position returned is a live view
+     * of the position of this index: changing it changes this index.
      *
      * @return The position of this index. Null signifies that it was not specified.
      */
     public Position getPosition() {
-        return this.position;
+        if (this.packedPosition == Position.PACKED_NONE) {
+            return null;
+        }
+        if (this.positionView == null) {
+            this.positionView = new PositionView() {
+                @Override
+                int getPacked() {
+                    return Index.this.packedPosition;
+                }
+
+                @Override
+                Position getUnpackable() {
+                    return Index.this.unpackablePosition;
+                }
+
+                @Override
+                void store(final Position position) {
+                    setPosition(position);
+                }
+            };
+        }
+        return this.positionView;
     }
 
     /**
@@ -91,6 +126,26 @@ public class Index {
      * @param position The position of this index. Null signifies that it was not specified.
      */
     public void setPosition(final Position position) {
-        this.position = position;
+        this.packedPosition = Position.pack(position);
+        this.unpackablePosition = Position.keepUnpackable(this.packedPosition, position);
+        modified();
+    }
+
+    /**
+     * Set the track that this index was added to, so that changes to this index can be signalled to it.
+     *
+     * @param track The track that this index was added to.
+     */
+    void setTrack(final TrackData track) {
+        this.track = track;
+    }
+
+    /**
+     * Signal a change to this index to its track, if any.
+     */
+    private void modified() {
+        if (this.track != null) {
+            this.track.modified();
+        }
     }
 }
@@ -0,0 +1,545 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+/**
+ * <p>{@link LineRecognizer} that scans each line once, character by character, without the use of regular
+ * expressions. Keywords, quoted strings, numbers and [mm:ss:ff] positions are recognized directly.</p>
+ * <p>The behaviour of this class is identical to that of {@link RegexLineRecognizer}, down to the character
+ * classes used (whitespace is [ \t\n\x0B\f\r], word characters are [a-zA-Z_0-9], digits are [0-9]), the
+ * US-ASCII only case insensitivity of keywords, and the backtracking of the regular expressions when a quoted
+ * value is not followed by what was expected.</p>
+ *
+ * @author jwbroek
+ */
+final class LexingLineRecognizer extends LineRecognizer {
+
+    /**
+     * The line being scanned.
+     */
+    private String line;
+    /**
+     * The length of the line being scanned.
+     */
+    private int length;
+    /**
+     * Current scanning position in the line.
+     */
+    private int pos;
+
+    boolean recognizeFile(final String line) {
+        if (!start(line, "FILE") || !skipWhitespace()) {
+            return false;
+        }
+
+        final int valueStart = this.pos;
+
+        // First try a quoted file name, as the regular expression would.
+        final int closingQuote = findClosingQuote(valueStart);
+        if (closingQuote >= 0) {
+            this.pos = closingQuote + 1;
+            if (skipWhitespace() && recognizeFileType()) {
+                this.value = line.substring(valueStart, closingQuote + 1);
+                return true;
+            }
+            this.pos = valueStart;
+        }
+
+        // Then fall back to a file name without whitespace.
+        if (skipNonWhitespace() == 0) {
+            return false;
+        }
+        final int valueEnd = this.pos;
+        if (skipWhitespace() && recognizeFileType()) {
+            this.value = line.substring(valueStart, valueEnd);
+            return true;
+        }
+        return false;
+    }
+
+    boolean recognizeCdTextFile(final String line) {
+        return start(line, "CDTEXTFILE") && skipWhitespace() && recognizeValueToEnd(false);
+    }
+
+    boolean recognizeFlags(final String line) {
+        if (!start(line, "FLAGS")) {
+            return false;
+        }
+
+        this.flags.clear();
+        while (true) {
+            // Every flag must be preceded by whitespace.
+            final boolean whitespaceSkipped = skipWhitespace();
+            if (this.pos == this.length) {
+                return true;
+            }
+            if (!whitespaceSkipped) {
+                return false;
+            }
+            final int wordStart = this.pos;
+            while (this.pos < this.length && isWordCharacter(this.line.charAt(this.pos))) {
+                this.pos++;
+            }
+            if (this.pos == wordStart) {
+                return false;
+            }
+            this.flags.add(this.line.substring(wordStart, this.pos));
+        }
+    }
+
+    boolean recognizeIndex(final String line) {
+        if (!start(line, "INDEX") || !skipWhitespace()) {
+            return false;
+        }
+
+        final int numberStart = this.pos;
+        if (skipDigits() == 0) {
+            return false;
+        }
+        final int numberEnd = this.pos;
+
+        if (!skipWhitespace() || !recognizePositionToEnd()) {
+            return false;
+        }
+
+        this.numberDigits = numberEnd - numberStart;
+        this.number = parseDigits(numberStart, numberEnd);
+        return true;
+    }
+
+    boolean recognizePerformer(final String line) {
+        return start(line, "PERFORMER") && skipWhitespace() && recognizeValueToEnd(false);
+    }
+
+    boolean recognizePostgap(final String line) {
+        return start(line, "POSTGAP") && skipWhitespace() && recognizePositionToEnd();
+    }
+
+    boolean recognizePregap(final String line) {
+        return start(line, "PREGAP") && skipWhitespace() && recognizePositionToEnd();
+    }
+
+    boolean recognizeRemComment(final String line) {
+        return startRem(line, "COMMENT") && skipWhitespace() && recognizeValueToEnd(true);
+    }
+
+    boolean recognizeRemDate(final String line) {
+        if (!startRem(line, "DATE") || !skipWhitespace()) {
+            return false;
+        }
+
+        final int numberStart = this.pos;
+        if (skipDigits() == 0) {
+            return false;
+        }
+        final int numberEnd = this.pos;
+        skipWhitespace();
+
+        if (!isAtEnd(true)) {
+            return false;
+        }
+
+        this.numberDigits = numberEnd - numberStart;
+        this.number = parseDigits(numberStart, numberEnd);
+        return true;
+    }
+
+    boolean recognizeRemDiscid(final String line) {
+        return startRem(line, "DISCID") && skipWhitespace() && recognizeValueToEnd(true);
+    }
+
+    boolean recognizeRemGenre(final String line) {
+        return startRem(line, "GENRE") && skipWhitespace() && recognizeValueToEnd(true);
+    }
+
+    boolean recognizeSongwriter(final String line) {
+        return start(line, "SONGWRITER") && skipWhitespace() && recognizeValueToEnd(false);
+    }
+
+    boolean recognizeTitle(final String line) {
+        return start(line, "TITLE") && skipWhitespace() && recognizeValueToEnd(false);
+    }
+
+    boolean recognizeTrack(final String line) {
+        if (!start(line, "TRACK") || !skipWhitespace()) {
+            return false;
+        }
+
+        final int numberStart = this.pos;
+        if (skipDigits() == 0) {
+            return false;
+        }
+        final int numberEnd = this.pos;
+
+        if (!skipWhitespace()) {
+            return false;
+        }
+
+        final int typeStart = this.pos;
+        if (skipNonWhitespace() == 0) {
+            return false;
+        }
+        final int typeEnd = this.pos;
+        skipWhitespace();
+
+        if (!isAtEnd(false)) {
+            return false;
+        }
+
+        this.numberDigits = numberEnd - numberStart;
+        this.number = parseDigits(numberStart, numberEnd);
+        this.value = line.substring(typeStart, typeEnd);
+        return true;
+    }
+
+    boolean isCatalogNumber(final String catalogNumber) {
+        if (catalogNumber.length() != 13) {
+            return false;
+        }
+        for (int index = 0; index < 13; index++) {
+            if (!isDigit(catalogNumber.charAt(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isIsrcCode(final String isrcCode) {
+        if (isrcCode.length() != 12) {
+            return false;
+        }
+        for (int index = 0; index < 5; index++) {
+            if (!isWordCharacter(isrcCode.charAt(index))) {
+                return false;
+            }
+        }
+        for (int index = 5; index < 12; index++) {
+            if (!isDigit(isrcCode.charAt(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start scanning a new line, and match the keyword at the start of it.
+     *
+     * @param line    The line to scan.
+     * @param keyword The keyword to match. Must be uppercase.
+     *
+     * @return True if the line starts with the keyword, regardless of (US-ASCII) case.
+     */
+    private boolean start(final String line, final String keyword) {
+        this.line = line;
+        this.length = line.length();
+        this.pos = 0;
+        this.keywordUppercase = true;
+        return matchKeyword(keyword);
+    }
+
+    /**
+     * Start scanning a new line, and match "REM", whitespace and the specified keyword at the start of it.
+     * {@link #keywordUppercase} will reflect whether both keywords were in uppercase.
+     *
+     * @param line    The line to scan.
+     * @param keyword The keyword that should follow "REM". Must be uppercase.
+     *
+     * @return True if the line starts with the keywords, regardless of (US-ASCII) case.
+     */
+    private boolean startRem(final String line, final String keyword) {
+        return start(line, "REM") && skipWhitespace() && matchKeyword(keyword);
+    }
+
+    /**
+     * Match the keyword at the current position, and advance past it if it matches.
+     *
+     * @param keyword The keyword to match. Must be uppercase.
+     *
+     * @return True if the keyword is at the current position, regardless of (US-ASCII) case.
+     */
+    private boolean matchKeyword(final String keyword) {
+        final int keywordLength = keyword.length();
+        if (this.length - this.pos < keywordLength) {
+            return false;
+        }
+        for (int index = 0; index < keywordLength; index++) {
+            final char actual = this.line.charAt(this.pos + index);
+            final char expected = keyword.charAt(index);
+            if (actual != expected) {
+                // Keywords are uppercase letters, so only US-ASCII lowercase letters may still match.
+                if (actual >= 'a' && actual <= 'z' && actual - ('a' - 'A') == expected) {
+                    this.keywordUppercase = false;
+                } else {
+                    return false;
+                }
+            }
+        }
+        this.pos += keywordLength;
+        return true;
+    }
+
+    /**
+     * Recognize a value that is either enclosed in double quotes, or does not contain whitespace, followed by
+     * optional whitespace and the end of the line. Stores the value (including quotes) in {@link #value}.
+     *
+     * @param lenientEnd Whether or not to accept a final line terminator as the end of the line. See
+     *                   {@link #isAtEnd(boolean)}.
+     *
+     * @return True if recognized.
+     */
+    private boolean recognizeValueToEnd(final boolean lenientEnd) {
+        final int valueStart = this.pos;
+
+        // First try a quoted value, as the regular expression would.
+        final int closingQuote = findClosingQuote(valueStart);
+        if (closingQuote >= 0) {
+            this.pos = closingQuote + 1;
+            skipWhitespace();
+            if (isAtEnd(lenientEnd)) {
+                this.value = this.line.substring(valueStart, closingQuote + 1);
+                return true;
+            }
+            this.pos = valueStart;
+        }
+
+        // Then fall back to a value without whitespace.
+        if (skipNonWhitespace() == 0) {
+            return false;
+        }
+        final int valueEnd = this.pos;
+        skipWhitespace();
+        if (isAtEnd(lenientEnd)) {
+            this.value = this.line.substring(valueStart, valueEnd);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recognize the file type of the FILE command, followed by optional whitespace and the end of the line.
+     * Stores the file type in {@link #secondValue}.
+     *
+     * @return True if recognized.
+     */
+    private boolean recognizeFileType() {
+        final int typeStart = this.pos;
+        if (skipNonWhitespace() == 0) {
+            return false;
+        }
+        final int typeEnd = this.pos;
+        skipWhitespace();
+        if (isAtEnd(false)) {
+            this.secondValue = this.line.substring(typeStart, typeEnd);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recognize a position of the form [mm:ss:ff], followed by optional whitespace and the end of the line. Any of
+     * the components may have any number of digits, including none at all.
+     *
+     * @return True if recognized.
+     *
+     * @throws NumberFormatException When a component is empty, or cannot be represented as an int.
+     */
+    private boolean recognizePositionToEnd() {
+        final int minutesStart = this.pos;
+        final int minutesDigits = skipDigits();
+        if (!skipColon()) {
+            return false;
+        }
+        final int secondsStart = this.pos;
+        final int secondsDigits = skipDigits();
+        if (!skipColon()) {
+            return false;
+        }
+        final int framesStart = this.pos;
+        final int framesDigits = skipDigits();
+        skipWhitespace();
+
+        if (!isAtEnd(false)) {
+            return false;
+        }
+
+        this.minutesDigits = minutesDigits;
+        this.secondsDigits = secondsDigits;
+        this.framesDigits = framesDigits;
+        this.minutes = parseDigits(minutesStart, minutesStart + minutesDigits);
+        this.seconds = parseDigits(secondsStart, secondsStart + secondsDigits);
+        this.frames = parseDigits(framesStart, framesStart + framesDigits);
+        return true;
+    }
+
+    /**
+     * Get the value of the digits in the specified range. Fails in the same situations as
+     * {@link Integer#parseInt(String)} would.
+     *
+     * @param start Start of the range (inclusive).
+     * @param end   End of the range (exclusive). All characters in the range must be digits.
+     *
+     * @return The value of the digits in the specified range.
+     *
+     * @throws NumberFormatException When the range is empty, or its value cannot be represented as an int.
+     */
+    private int parseDigits(final int start, final int end) {
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int result = 0;
+        for (int index = start; index < end; index++) {
+            final int digit = this.line.charAt(index) - '0';
+            if (result > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + this.line.substring(start, end) + "\"");
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Find the closing quote of a quoted value that starts at the specified position.
+     *
+     * @param valueStart Start of the value.
+     *
+     * @return The position of the closing quote, or -1 if there is no quoted value at the specified position.
+     */
+    private int findClosingQuote(final int valueStart) {
+        if (valueStart < this.length && this.line.charAt(valueStart) == '"') {
+            return this.line.indexOf('"', valueStart + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Determine whether the current position is at the end of the line.
+     *
+     * @param lenient Whether or not to accept a position just before a final line terminator as the end of the
+     *                line. The REM patterns of {@link RegexLineRecognizer} are matched using
+     *                {@link java.util.regex.Matcher#find()}, in which case "$" matches at such a position as well.
+     *                Lines are trimmed, so only the line terminators that trimming leaves alone need be considered.
+     *
+     * @return True if the current position is at the end of the line.
+     */
+    private boolean isAtEnd(final boolean lenient) {
+        if (this.pos == this.length) {
+            return true;
+        }
+        if (lenient && this.pos == this.length - 1) {
+            final char terminator = this.line.charAt(this.pos);
+            return terminator == '\u0085' || terminator == '\u2028' || terminator == '\u2029';
+        }
+        return false;
+    }
+
+    /**
+     * Advance past a colon, if there is one at the current position.
+     *
+     * @return True if a colon was skipped.
+     */
+    private boolean skipColon() {
+        if (this.pos < this.length && this.line.charAt(this.pos) == ':') {
+            this.pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance past all whitespace at the current position.
+     *
+     * @return True if any whitespace was skipped.
+     */
+    private boolean skipWhitespace() {
+        final int start = this.pos;
+        while (this.pos < this.length && isWhitespace(this.line.charAt(this.pos))) {
+            this.pos++;
+        }
+        return this.pos > start;
+    }
+
+    /**
+     * Advance past all non-whitespace characters at the current position.
+     *
+     * @return The number of characters skipped.
+     */
+    private int skipNonWhitespace() {
+        final int start = this.pos;
+        while (this.pos < this.length && !isWhitespace(this.line.charAt(this.pos))) {
+            this.pos++;
+        }
+        return this.pos - start;
+    }
+
+    /**
+     * Advance past all digits at the current position.
+     *
+     * @return The number of digits skipped.
+     */
+    private int skipDigits() {
+        final int start = this.pos;
+        while (this.pos < this.length && isDigit(this.line.charAt(this.pos))) {
+            this.pos++;
+        }
+        return this.pos - start;
+    }
+
+    /**
+     * Determine whether the character is whitespace, as per "\s" in {@link java.util.regex.Pattern}.
+     *
+     * @param character The character to check.
+     *
+     * @return True if the character is whitespace.
+     */
+    private static boolean isWhitespace(final char character) {
+        switch (character) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determine whether the character is a digit, as per "\d" in {@link java.util.regex.Pattern}.
+     *
+     * @param character The character to check.
+     *
+     * @return True if the character is a digit.
+     */
+    private static boolean isDigit(final char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    /**
+     * Determine whether the character is a word character, as per "\w" in {@link java.util.regex.Pattern}.
+     *
+     * @param character The character to check.
+     *
+     * @return True if the character is a word character.
+     */
+    private static boolean isWordCharacter(final char character) {
+        return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || isDigit(character) || character == '_';
+    }
+}
@@ -41,10 +41,20 @@ public class LineOfInput {
      */
     private final String input;
     /**
-     * The CueSheet associated with this input.
+     * The CueSheet associated with this input. Null if there is none.
      */
     private final CueSheet associatedSheet;
 
+    /**
+     * Create a new LineOfInput that is not associated with a CueSheet.
+     *
+     * @param lineNumber Number of this line.
+     * @param input      The input at this line.
+     */
+    public LineOfInput(final int lineNumber, final String input) {
+        this(lineNumber, input, null);
+    }
+
     /**
      * Create a new LineOfInput.
      *
@@ -61,7 +71,8 @@ public class LineOfInput {
     /**
      * Get the CueSheet associated with this input.
      *
-     * @return The CueSheet associated with this input.
+     * @return The CueSheet associated with this input. Null if there is none, as is the case for input that
+     * {@link CueParser} passes to a {@link CueEventHandler}.
      */
     public CueSheet getAssociatedSheet() {
         return this.associatedSheet;
@@ -0,0 +1,238 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Recognizes the syntax of single (trimmed) lines of a cue sheet on behalf of {@link CueParser}. A recognizer
+ * only determines whether a line has the form of a certain command, and extracts the operands of that command.
+ * All interpretation of those operands, including the raising of warnings, is left to {@link CueParser}, so that
+ * every implementation yields exactly the same result.</p>
+ * <p>The operands of the last successful recognition are stored in the fields of this class. A recognizer keeps
+ * state between calls, so an instance must not be shared between threads.</p>
+ *
+ * @author jwbroek
+ */
+abstract class LineRecognizer {
+
+    /**
+     * First textual operand. File name, title, performer, data type, etc., including any quotes.
+     */
+    String value;
+    /**
+     * Second textual operand. Only used for the file type of the FILE command.
+     */
+    String secondValue;
+    /**
+     * Numerical operand. Track number, index number or year.
+     */
+    int number;
+    /**
+     * Number of digits in the numerical operand.
+     */
+    int numberDigits;
+    /**
+     * Minutes of a position operand.
+     */
+    int minutes;
+    /**
+     * Seconds of a position operand.
+     */
+    int seconds;
+    /**
+     * Frames of a position operand.
+     */
+    int frames;
+    /**
+     * Number of digits in the minutes of a position operand.
+     */
+    int minutesDigits;
+    /**
+     * Number of digits in the seconds of a position operand.
+     */
+    int secondsDigits;
+    /**
+     * Number of digits in the frames of a position operand.
+     */
+    int framesDigits;
+    /**
+     * Whether the keywords of a recognized REM command were all in uppercase.
+     */
+    boolean keywordUppercase;
+    /**
+     * Flags of a FLAGS command. Empty if none were specified.
+     */
+    final List<String> flags = new ArrayList<String>();
+
+    /**
+     * Recognize "FILE [filename] [filetype]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operands will be in {@link #value} and {@link #secondValue}.
+     */
+    abstract boolean recognizeFile(String line);
+
+    /**
+     * Recognize "CDTEXTFILE [filename]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeCdTextFile(String line);
+
+    /**
+     * Recognize "FLAGS [flags]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The flags will be in {@link #flags}.
+     */
+    abstract boolean recognizeFlags(String line);
+
+    /**
+     * Recognize "INDEX [number] [mm:ss:ff]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operands will be in {@link #number} and the position fields.
+     *
+     * @throws NumberFormatException When a number in the line cannot be represented as an int.
+     */
+    abstract boolean recognizeIndex(String line);
+
+    /**
+     * Recognize "PERFORMER [performer-string]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizePerformer(String line);
+
+    /**
+     * Recognize "POSTGAP [mm:ss:ff]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in the position fields.
+     *
+     * @throws NumberFormatException When a number in the line cannot be represented as an int.
+     */
+    abstract boolean recognizePostgap(String line);
+
+    /**
+     * Recognize "PREGAP [mm:ss:ff]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in the position fields.
+     *
+     * @throws NumberFormatException When a number in the line cannot be represented as an int.
+     */
+    abstract boolean recognizePregap(String line);
+
+    /**
+     * Recognize "REM COMMENT [comment]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeRemComment(String line);
+
+    /**
+     * Recognize "REM DATE [year]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #number}.
+     *
+     * @throws NumberFormatException When the year cannot be represented as an int.
+     */
+    abstract boolean recognizeRemDate(String line);
+
+    /**
+     * Recognize "REM DISCID [discid]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeRemDiscid(String line);
+
+    /**
+     * Recognize "REM GENRE [genre]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeRemGenre(String line);
+
+    /**
+     * Recognize "SONGWRITER [songwriter-string]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeSongwriter(String line);
+
+    /**
+     * Recognize "TITLE [title-string]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operand will be in {@link #value}.
+     */
+    abstract boolean recognizeTitle(String line);
+
+    /**
+     * Recognize "TRACK [number] [datatype]".
+     *
+     * @param line The line to recognize.
+     *
+     * @return True if recognized. The operands will be in {@link #number} and {@link #value}.
+     *
+     * @throws NumberFormatException When the track number cannot be represented as an int.
+     */
+    abstract boolean recognizeTrack(String line);
+
+    /**
+     * Determine whether the value is a valid catalog number: exactly 13 digits.
+     *
+     * @param catalogNumber The value to check.
+     *
+     * @return True if the value is a valid catalog number.
+     */
+    abstract boolean isCatalogNumber(String catalogNumber);
+
+    /**
+     * Determine whether the value is a valid ISRC code: five alphanumeric characters followed by seven digits.
+     *
+     * @param isrcCode The value to check.
+     *
+     * @return True if the value is a valid ISRC code.
+     */
+    abstract boolean isIsrcCode(String isrcCode);
+}
@@ -0,0 +1,116 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ParseDiagnostics} that writes warnings to the logging, optionally limited to a maximum number of warnings
+ * per second. Warnings over the maximum are counted and reported in a single line when the next second starts, or
+ * when {@link #flush()} is called. The parser calls it when a parse ends. This is thread safe.
+ *
+ * @author jwbroek
+ */
+public class LoggingDiagnostics implements ParseDiagnostics {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(LoggingDiagnostics.class);
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private final static long NANOS_PER_SECOND = 1000000000L;
+    /**
+     * The maximum number of warnings to log per second.
+     */
+    private final int maxPerSecond;
+    /**
+     * Start of the current second, as per {@link System#nanoTime()}.
+     */
+    private long secondStart = System.nanoTime();
+    /**
+     * Number of warnings logged in the current second.
+     */
+    private int logged = 0;
+    /**
+     * Number of warnings suppressed in the current second.
+     */
+    private long suppressed = 0;
+
+    /**
+     * Create a new LoggingDiagnostics instance that logs every warning.
+     */
+    public LoggingDiagnostics() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new LoggingDiagnostics instance that logs at most the specified number of warnings per second.
+     *
+     * @param maxPerSecond The maximum number of warnings to log per second.
+     */
+    public LoggingDiagnostics(final int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public void warning(final LineOfInput input, final ParseWarning warning) {
+        if (!LoggingDiagnostics.logger.isWarnEnabled()) {
+            return;
+        }
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (now - this.secondStart >= NANOS_PER_SECOND) {
+                reportSuppressed();
+                this.secondStart = now;
+                this.logged = 0;
+                this.suppressed = 0;
+            }
+
+            if (this.logged >= this.maxPerSecond) {
+                this.suppressed++;
+                return;
+            }
+            this.logged++;
+        }
+
+        LoggingDiagnostics.logger.warn("[Line {}] {}", input.getLineNumber(), warning.getMessage());
+    }
+
+    /**
+     * Log the number of warnings that were suppressed and not yet reported, if any. The maximum for the current
+     * second still applies afterward.
+     */
+    public synchronized void flush() {
+        reportSuppressed();
+    }
+
+    /**
+     * Log the number of warnings that were suppressed and not yet reported, if any, and reset that number. Must be
+     * called while holding the lock on this instance.
+     */
+    private void reportSuppressed() {
+        if (this.suppressed > 0) {
+            LoggingDiagnostics.logger.warn("{} more warnings were suppressed.", this.suppressed);
+            this.suppressed = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ParseDiagnostics} that writes every warning to the logging and adds it as a {@link Warning} to the
+ * {@link CueSheet} that is being built. This is the default when parsing into a CueSheet.
+ *
+ * @author jwbroek
+ */
+public class MessageDiagnostics implements ParseDiagnostics {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(MessageDiagnostics.class);
+    /**
+     * The builder of the sheet to add the warnings to.
+     */
+    private final CueSheetBuilder builder;
+
+    /**
+     * Create a new MessageDiagnostics instance.
+     *
+     * @param builder The builder of the sheet to add the warnings to.
+     */
+    public MessageDiagnostics(final CueSheetBuilder builder) {
+        this.builder = builder;
+    }
+
+    public void warning(final LineOfInput input, final ParseWarning warning) {
+        MessageDiagnostics.logger.warn(warning.getMessage());
+        this.builder.getCueSheet().addWarning(input, warning.getMessage());
+    }
+}
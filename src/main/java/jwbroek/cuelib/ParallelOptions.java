@@ -0,0 +1,72 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Options for parsing many cue sheets in parallel through
+ * {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)}. Besides the number of threads, these are
+ * the options for the parser of every thread. Any diagnostics are shared between all parsing threads, so they must
+ * be thread safe. {@link CountingDiagnostics} is a cheap choice for large batches.
+ *
+ * @author jwbroek
+ */
+public class ParallelOptions extends ParserOptions {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ParallelOptions.class);
+    /**
+     * The number of threads to parse with.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create a new ParallelOptions instance, with default values. By default, there is one thread per available
+     * processor, the {@link CueParser.Engine#LEXER} engine is used and files are decoded using the platform's
+     * default encoding.
+     */
+    public ParallelOptions() {
+        // Intentionally left blank (besides logging). Defaults are set in the fields.
+    }
+
+    /**
+     * Get the number of threads to parse with.
+     *
+     * @return The number of threads to parse with.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Set the number of threads to parse with.
+     *
+     * @param threads The number of threads to parse with. Must be at least 1.
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+}
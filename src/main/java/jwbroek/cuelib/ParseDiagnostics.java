@@ -0,0 +1,49 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+/**
+ * <p>Receives the warnings raised by {@link CueParser}. The choice of implementation determines what a warning
+ * costs: nothing at all for {@link #NONE}, an atomic increment for {@link CountingDiagnostics}, a log statement for
+ * {@link LoggingDiagnostics}, and a log statement plus a {@link Warning} in the {@link CueSheet} for
+ * {@link MessageDiagnostics}. The latter is the default when parsing into a CueSheet.</p>
+ * <p>Implementations that are passed to {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)}
+ * must be thread safe.</p>
+ *
+ * @author jwbroek
+ */
+public interface ParseDiagnostics {
+
+    /**
+     * Diagnostics that ignore all warnings.
+     */
+    public final static ParseDiagnostics NONE = new ParseDiagnostics() {
+        public void warning(final LineOfInput input, final ParseWarning warning) {
+            // Intentionally left blank. Warnings are ignored.
+        }
+    };
+
+    /**
+     * Called for every warning raised by the parser.
+     *
+     * @param input   The input that the warning pertains to.
+     * @param warning The warning.
+     */
+    public void warning(LineOfInput input, ParseWarning warning);
+}
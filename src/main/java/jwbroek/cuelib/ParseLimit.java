@@ -0,0 +1,138 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * <p>Conditions under which {@link CueParser} stops parsing before the end of the input. This is useful when only
+ * part of a cue sheet is needed, such as the disc level data for a browse index. Parsing stops as soon as any of
+ * the conditions that are set is met, and the input is closed. By default, no conditions are set.</p>
+ * <p>Note that a sheet that was parsed with a limit generally lacks data, and may lack warnings, compared to a sheet
+ * that was parsed in full.</p>
+ *
+ * @author jwbroek
+ */
+public class ParseLimit {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ParseLimit.class);
+    /**
+     * The fields that can be waited for. These are the fields that apply to the disc as a whole.
+     */
+    private final static Set<CueSheet.MetaDataField> DISC_FIELDS = EnumSet.of(
+            CueSheet.MetaDataField.ALBUMPERFORMER, CueSheet.MetaDataField.ALBUMSONGWRITER,
+            CueSheet.MetaDataField.ALBUMTITLE, CueSheet.MetaDataField.CATALOG, CueSheet.MetaDataField.CDTEXTFILE,
+            CueSheet.MetaDataField.COMMENT, CueSheet.MetaDataField.DISCID, CueSheet.MetaDataField.GENRE,
+            CueSheet.MetaDataField.PERFORMER, CueSheet.MetaDataField.SONGWRITER, CueSheet.MetaDataField.TITLE,
+            CueSheet.MetaDataField.YEAR);
+    /**
+     * Whether to stop at the first TRACK, before parsing it.
+     */
+    private boolean stopAtFirstTrack = false;
+    /**
+     * Whether to stop right after the first FILE.
+     */
+    private boolean stopAfterFirstFile = false;
+    /**
+     * Stop as soon as all of these fields have been parsed. Null if not set.
+     */
+    private Set<CueSheet.MetaDataField> fields = null;
+
+    /**
+     * Create a new ParseLimit instance, without any conditions.
+     */
+    public ParseLimit() {
+        // Intentionally left blank (besides logging). Defaults are set in the fields.
+    }
+
+    /**
+     * Get whether to stop at the first TRACK, before parsing it.
+     *
+     * @return Whether to stop at the first TRACK.
+     */
+    public boolean isStopAtFirstTrack() {
+        return this.stopAtFirstTrack;
+    }
+
+    /**
+     * Set whether to stop at the first TRACK, before parsing it. All disc level data comes before that point, except
+     * for REM data and CDTEXTFILE, which may appear anywhere.
+     *
+     * @param stopAtFirstTrack Whether to stop at the first TRACK.
+     */
+    public void setStopAtFirstTrack(final boolean stopAtFirstTrack) {
+        this.stopAtFirstTrack = stopAtFirstTrack;
+    }
+
+    /**
+     * Get whether to stop right after the first FILE.
+     *
+     * @return Whether to stop right after the first FILE.
+     */
+    public boolean isStopAfterFirstFile() {
+        return this.stopAfterFirstFile;
+    }
+
+    /**
+     * Set whether to stop right after the first FILE.
+     *
+     * @param stopAfterFirstFile Whether to stop right after the first FILE.
+     */
+    public void setStopAfterFirstFile(final boolean stopAfterFirstFile) {
+        this.stopAfterFirstFile = stopAfterFirstFile;
+    }
+
+    /**
+     * Get the fields after which to stop.
+     *
+     * @return The fields after which to stop, or null if not set.
+     */
+    public Set<CueSheet.MetaDataField> getFields() {
+        return this.fields;
+    }
+
+    /**
+     * Stop as soon as all of the specified fields have been parsed. Only fields that apply to the disc as a whole
+     * are allowed: ALBUMPERFORMER, ALBUMSONGWRITER, ALBUMTITLE, CATALOG, CDTEXTFILE, COMMENT, DISCID, GENRE and YEAR.
+     * PERFORMER, SONGWRITER and TITLE are taken to mean the album fields.
+     *
+     * @param fields The fields after which to stop, or null to not stop on fields.
+     *
+     * @throws IllegalArgumentException When a field does not apply to the disc as a whole.
+     */
+    public void setFields(final Set<CueSheet.MetaDataField> fields) {
+        if (fields == null) {
+            this.fields = null;
+        } else {
+            for (CueSheet.MetaDataField field : fields) {
+                if (!DISC_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Field does not apply to the disc as a whole: " + field);
+                }
+            }
+            this.fields = fields.isEmpty() ? EnumSet.noneOf(CueSheet.MetaDataField.class) : EnumSet.copyOf(fields);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.io.File;
+
+/**
+ * Receives the results of {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)}, in the order
+ * in which parsing completes. Calls are made from the parsing threads, but never concurrently, so implementations
+ * need not be thread safe.
+ *
+ * @author jwbroek
+ */
+public interface ParseResultHandler {
+
+    /**
+     * Called when a cue sheet has been parsed.
+     *
+     * @param file  The cue sheet file.
+     * @param sheet The parsed cue sheet.
+     */
+    public void onCueSheet(File file, CueSheet sheet);
+
+    /**
+     * Called when a cue sheet could not be parsed. Parsing of the other files continues.
+     *
+     * @param file      The cue sheet file.
+     * @param exception The reason the file could not be parsed.
+     */
+    public void onFailure(File file, Exception exception);
+}
@@ -0,0 +1,145 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics of a run of {@link CueParser#parseAll(Iterable, ParallelOptions, ParseResultHandler)} or
+ * {@link CueSheetValidator#validateAll(java.util.Map, int)}.
+ *
+ * @author jwbroek
+ */
+public class ParseStatistics {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ParseStatistics.class);
+    /**
+     * Number of files that were parsed successfully.
+     */
+    private final long files;
+    /**
+     * Number of files that could not be parsed.
+     */
+    private final long failures;
+    /**
+     * Number of bytes read.
+     */
+    private final long bytes;
+    /**
+     * Elapsed wall clock time in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Create a new ParseStatistics instance.
+     *
+     * @param files        Number of files that were parsed successfully.
+     * @param failures     Number of files that could not be parsed.
+     * @param bytes        Number of bytes read.
+     * @param elapsedNanos Elapsed wall clock time in nanoseconds.
+     */
+    public ParseStatistics(final long files, final long failures, final long bytes, final long elapsedNanos) {
+        this.files = files;
+        this.failures = failures;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of files that were parsed successfully.
+     *
+     * @return The number of files that were parsed successfully.
+     */
+    public long getFiles() {
+        return this.files;
+    }
+
+    /**
+     * Get the number of files that could not be parsed.
+     *
+     * @return The number of files that could not be parsed.
+     */
+    public long getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Get the number of bytes read.
+     *
+     * @return The number of bytes read.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Get the elapsed wall clock time in nanoseconds.
+     *
+     * @return The elapsed wall clock time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Get the throughput in files per second, counting both successes and failures.
+     *
+     * @return The throughput in files per second.
+     */
+    public double getFilesPerSecond() {
+        return perSecond(this.files + this.failures);
+    }
+
+    /**
+     * Get the throughput in bytes per second.
+     *
+     * @return The throughput in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        return perSecond(this.bytes);
+    }
+
+    /**
+     * Get the rate of some amount over the elapsed time.
+     *
+     * @param amount The amount.
+     *
+     * @return The amount per second. 0 if no time has elapsed.
+     */
+    private double perSecond(final long amount) {
+        if (this.elapsedNanos <= 0) {
+            return 0;
+        }
+        return amount * 1000000000.0 / this.elapsedNanos;
+    }
+
+    /**
+     * Get a textual representation of these statistics.
+     *
+     * @return A textual representation of these statistics.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d files (%d failed), %d bytes in %.3f s: %.1f files/s, %.1f bytes/s", this.files + this.failures, this.failures, this.bytes, this.elapsedNanos / 1000000000.0, getFilesPerSecond(), getBytesPerSecond());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+/**
+ * Warnings that {@link CueParser} may raise, each with a human readable message. Warnings are reported to a
+ * {@link ParseDiagnostics} instance. Each warning also identifies the rule that raises it, so that rules can be
+ * selected through {@link ParserOptions#setRules(java.util.Set)} and {@link CueSheetValidator}.
+ *
+ * @author jwbroek
+ */
+public enum ParseWarning {
+
+    /**
+     * Empty lines not allowed. Will ignore.
+     */
+    EMPTY_LINES("Empty lines not allowed. Will ignore."),
+    /**
+     * Unparseable line. Will ignore.
+     */
+    UNPARSEABLE_INPUT("Unparseable line. Will ignore."),
+    /**
+     * Invalid catalog number.
+     */
+    INVALID_CATALOG_NUMBER("Invalid catalog number."),
+    /**
+     * Noncompliant file type.
+     */
+    NONCOMPLIANT_FILE_TYPE("Noncompliant file type."),
+    /**
+     * No flags specified.
+     */
+    NO_FLAGS("No flags specified."),
+    /**
+     * Noncompliant flag(s) specified.
+     */
+    NONCOMPLIANT_FLAG("Noncompliant flag(s) specified."),
+    /**
+     * Wrong number of digits in number.
+     */
+    WRONG_NUMBER_OF_DIGITS("Wrong number of digits in number."),
+    /**
+     * ISRC code has noncompliant format.
+     */
+    NONCOMPLIANT_ISRC_CODE("ISRC code has noncompliant format."),
+    /**
+     * The field is too long to burn as CD-TEXT. The maximum length is 80.
+     */
+    FIELD_LENGTH_OVER_80("The field is too long to burn as CD-TEXT. The maximum length is 80."),
+    /**
+     * Noncompliant data type specified.
+     */
+    NONCOMPLIANT_DATA_TYPE("Noncompliant data type specified."),
+    /**
+     * Token has wrong case. Uppercase was expected.
+     */
+    TOKEN_NOT_UPPERCASE("Token has wrong case. Uppercase was expected."),
+    /**
+     * Position has invalid frame value. Should be 00-74.
+     */
+    INVALID_FRAMES_VALUE("Position has invalid frame value. Should be 00-74."),
+    /**
+     * Position has invalid seconds value. Should be 00-59.
+     */
+    INVALID_SECONDS_VALUE("Position has invalid seconds value. Should be 00-59."),
+    /**
+     * Datum appears too often.
+     */
+    DATUM_APPEARS_TOO_OFTEN("Datum appears too often."),
+    /**
+     * A FILE datum must come before everything else except REM and CATALOG.
+     */
+    FILE_IN_WRONG_PLACE("A FILE datum must come before everything else except REM and CATALOG."),
+    /**
+     * A FLAGS datum must come after a TRACK, but before any INDEX of that TRACK.
+     */
+    FLAGS_IN_WRONG_PLACE("A FLAGS datum must come after a TRACK, but before any INDEX of that TRACK."),
+    /**
+     * Datum must appear in FILE, but no FILE specified.
+     */
+    NO_FILE_SPECIFIED("Datum must appear in FILE, but no FILE specified."),
+    /**
+     * Datum must appear in TRACK, but no TRACK specified.
+     */
+    NO_TRACK_SPECIFIED("Datum must appear in TRACK, but no TRACK specified."),
+    /**
+     * Invalid index number. First number must be 0 or 1; all next ones sequential.
+     */
+    INVALID_INDEX_NUMBER("Invalid index number. First number must be 0 or 1; all next ones sequential."),
+    /**
+     * Invalid position. First index must have position 00:00:00
+     */
+    INVALID_FIRST_POSITION("Invalid position. First index must have position 00:00:00"),
+    /**
+     * An ISRC datum must come after TRACK, but before any INDEX of TRACK.
+     */
+    ISRC_IN_WRONG_PLACE("An ISRC datum must come after TRACK, but before any INDEX of TRACK."),
+    /**
+     * A PREGAP datum must come after TRACK, but before any INDEX of that TRACK.
+     */
+    PREGAP_IN_WRONG_PLACE("A PREGAP datum must come after TRACK, but before any INDEX of that TRACK."),
+    /**
+     * A POSTGAP datum must come after all INDEX data of a TRACK.
+     */
+    INDEX_AFTER_POSTGAP("A POSTGAP datum must come after all INDEX data of a TRACK."),
+    /**
+     * Invalid track number. First number must be 1; all next ones sequential.
+     */
+    INVALID_TRACK_NUMBER("Invalid track number. First number must be 1; all next ones sequential."),
+    /**
+     * Invalid year. Should be a number from 1 to 9999 (inclusive).
+     */
+    INVALID_YEAR("Invalid year. Should be a number from 1 to 9999 (inclusive).");
+
+    /**
+     * The human readable message for this warning.
+     */
+    private final String message;
+
+    /**
+     * Create a new ParseWarning.
+     *
+     * @param message The human readable message for this warning.
+     */
+    private ParseWarning(final String message) {
+        this.message = message;
+    }
+
+    /**
+     * Get the human readable message for this warning.
+     *
+     * @return The human readable message for this warning.
+     */
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Options for parsing cue sheets with a {@link ReusableCueParser}, as created by
+ * {@link CueParser#newParser(ParserOptions)}.
+ *
+ * @author jwbroek
+ */
+public class ParserOptions {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ParserOptions.class);
+    /**
+     * The engine to use for recognizing lines.
+     */
+    private CueParser.Engine engine = CueParser.Engine.LEXER;
+    /**
+     * Whether to detect the encoding of every file, rather than using the platform's default encoding.
+     */
+    private boolean detectCharset = false;
+    /**
+     * The conditions under which to stop parsing a file. Null if every file is to be parsed in full.
+     */
+    private ParseLimit limit = null;
+    /**
+     * The diagnostics to report warnings to. Null if the warnings of every file are to be added to its cue sheet.
+     */
+    private ParseDiagnostics diagnostics = null;
+    /**
+     * Whether the positions reported to a {@link CueEventHandler} may be reused by the parser.
+     */
+    private boolean reusePositions = false;
+    /**
+     * The rules to check while parsing, identified by the warnings they raise.
+     */
+    private Set<ParseWarning> rules = EnumSet.allOf(ParseWarning.class);
+
+    /**
+     * Create a new ParserOptions instance, with default values. By default, the {@link CueParser.Engine#LEXER}
+     * engine is used, files are decoded using the platform's default encoding and are parsed in full, and all rules
+     * are checked, with their warnings added to the cue sheet.
+     */
+    public ParserOptions() {
+        // Intentionally left blank (besides logging). Defaults are set in the fields.
+    }
+
+    /**
+     * Get the engine to use for recognizing lines.
+     *
+     * @return The engine to use for recognizing lines.
+     */
+    public CueParser.Engine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Set the engine to use for recognizing lines.
+     *
+     * @param engine The engine to use for recognizing lines.
+     */
+    public void setEngine(final CueParser.Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Get whether to detect the encoding of every file by means of {@link CharsetDetector}, rather than using the
+     * platform's default encoding.
+     *
+     * @return Whether to detect the encoding of every file.
+     */
+    public boolean isDetectCharset() {
+        return this.detectCharset;
+    }
+
+    /**
+     * Set whether to detect the encoding of every file by means of {@link CharsetDetector}, rather than using the
+     * platform's default encoding.
+     *
+     * @param detectCharset Whether to detect the encoding of every file.
+     */
+    public void setDetectCharset(final boolean detectCharset) {
+        this.detectCharset = detectCharset;
+    }
+
+    /**
+     * Get the conditions under which to stop parsing a file.
+     *
+     * @return The conditions under which to stop parsing a file. Null if every file is to be parsed in full.
+     */
+    public ParseLimit getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Set the conditions under which to stop parsing a file.
+     *
+     * @param limit The conditions under which to stop parsing a file. Null if every file is to be parsed in full.
+     */
+    public void setLimit(final ParseLimit limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Get the diagnostics to report warnings to.
+     *
+     * @return The diagnostics to report warnings to. Null if the warnings of every file are added to its cue sheet,
+     *         or, when parsing to a {@link CueEventHandler}, written to the logging.
+     */
+    public ParseDiagnostics getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * Set the diagnostics to report warnings to.
+     *
+     * @param diagnostics The diagnostics to report warnings to. Null if the warnings of every file are to be added
+     *                    to its cue sheet, or, when parsing to a {@link CueEventHandler}, written to the logging.
+     */
+    public void setDiagnostics(final ParseDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Get whether the positions reported to a {@link CueEventHandler} may be reused by the parser.
+     *
+     * @return Whether the positions reported to a handler may be reused by the parser.
+     */
+    public boolean isReusePositions() {
+        return this.reusePositions;
+    }
+
+    /**
+     * Set whether the positions reported to a {@link CueEventHandler} may be reused by the parser. If set, a handler
+     * must not hold on to a position after the call in which it was reported, but copy it instead. This avoids
+     * creating a position for every INDEX, PREGAP and POSTGAP line. Cue sheets built by the parser itself are not
+     * affected, as they never hold on to reported positions.
+     *
+     * @param reusePositions Whether the positions reported to a handler may be reused by the parser.
+     */
+    public void setReusePositions(final boolean reusePositions) {
+        this.reusePositions = reusePositions;
+    }
+
+    /**
+     * Get the rules to check while parsing, identified by the warnings they raise.
+     *
+     * @return An unmodifiable view of the rules to check while parsing.
+     */
+    public Set<ParseWarning> getRules() {
+        return Collections.unmodifiableSet(this.rules);
+    }
+
+    /**
+     * Set the rules to check while parsing, identified by the warnings they raise. Rules that are not checked cost
+     * nothing, so parsing with no rules at all only builds the cue sheet. The rules can then be checked later, when
+     * needed, by a {@link CueSheetValidator}.
+     *
+     * @param rules The rules to check while parsing. Copied.
+     */
+    public void setRules(final Set<ParseWarning> rules) {
+        final Set<ParseWarning> copy = EnumSet.noneOf(ParseWarning.class);
+        copy.addAll(rules);
+        this.rules = copy;
+    }
+}
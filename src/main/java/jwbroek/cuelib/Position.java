@@ -32,6 +32,18 @@ public class Position {
      * The logger for this class.
      */
     private final static Logger logger = LoggerFactory.getLogger(Position.class);
+    /**
+     * Packed value that signifies that there is no position.
+     */
+    final static int PACKED_NONE = -1;
+    /**
+     * Packed value that signifies that the position could not be packed, and is kept as an object instead.
+     */
+    final static int PACKED_UNPACKABLE = -2;
+    /**
+     * Upper bound on the minutes of a position that can be packed, so that the total number of frames fits in an int.
+     */
+    private final static int MAX_PACKED_MINUTES = Integer.MAX_VALUE / (75 * 60) - 1;
     /**
      * The number of minutes in this position. Must be >= 0. Should be < 60.
      */
@@ -128,4 +140,63 @@ public class Position {
     public void setSeconds(final int seconds) {
         this.seconds = seconds;
     }
+
+    /**
+     * Pack a position into its total number of frames. This is only possible when the position is normalized, as
+     * otherwise the minutes, seconds and frames could not be restored from the total.
+     *
+     * @param position The position to pack. May be null.
+     *
+     * @return The total number of frames of the position, {@link #PACKED_NONE} if the position is null, or
+     *         {@link #PACKED_UNPACKABLE} if the position is not normalized.
+     */
+    static int pack(final Position position) {
+        if (position == null) {
+            return PACKED_NONE;
+        }
+        final int minutes = position.getMinutes();
+        final int seconds = position.getSeconds();
+        final int frames = position.getFrames();
+        if (minutes < 0 || minutes > MAX_PACKED_MINUTES || seconds < 0 || seconds >= 60 || frames < 0 || frames >= 75) {
+            return PACKED_UNPACKABLE;
+        }
+        return position.getTotalFrames();
+    }
+
+    /**
+     * Get the position to keep alongside a packed position, for restoring it by {@link #unpack(int, Position)}. Only
+     * positions that could not be packed need to be kept. These are copied, so that the position passed in may be
+     * reused by the caller.
+     *
+     * @param packed   The packed position.
+     * @param position The position that was packed.
+     *
+     * @return A copy of the position if it could not be packed. Null otherwise.
+     */
+    static Position keepUnpackable(final int packed, final Position position) {
+        if (packed != PACKED_UNPACKABLE) {
+            return null;
+        }
+        return new Position(position.getMinutes(), position.getSeconds(), position.getFrames());
+    }
+
+    /**
+     * Restore a position that was packed by {@link #pack(Position)}.
+     *
+     * @param packed   The packed position.
+     * @param unpacked The position to return if it could not be packed.
+     *
+     * @return A new position for the packed value, a copy of the unpacked position if it could not be packed, or
+     *         null if there is no position. Never the unpacked position itself, so that changing the result never
+     *         changes the model.
+     */
+    static Position unpack(final int packed, final Position unpacked) {
+        if (packed == PACKED_NONE) {
+            return null;
+        }
+        if (packed == PACKED_UNPACKABLE) {
+            return new Position(unpacked.getMinutes(), unpacked.getSeconds(), unpacked.getFrames());
+        }
+        return new Position(packed / (75 * 60), (packed / 75) % 60, packed % 75);
+    }
 }
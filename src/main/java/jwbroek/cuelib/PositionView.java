@@ -0,0 +1,110 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+/**
+ * <p>A {@link Position} that is a live view of a position packed by {@link Position#pack(Position)}, as kept by
+ * {@link Index} and {@link TrackData}. Reading it reads the packed position; changing it packs the changed position
+ * back into its owner, through the setter of the owner. This keeps the compact storage, while positions returned by
+ * the getters of the model can still be changed in place.</p>
+ * <p>An owner creates at most one view per position, when the position is first asked for. While the owner has no
+ * position, its view reads as 00:00:00, and changing it sets the position anew.</p>
+ *
+ * @author jwbroek
+ */
+abstract class PositionView extends Position {
+
+    /**
+     * Create a new PositionView.
+     */
+    PositionView() {
+    }
+
+    /**
+     * Get the packed position of the owner.
+     *
+     * @return The packed position of the owner.
+     */
+    abstract int getPacked();
+
+    /**
+     * Get the position of the owner, if it could not be packed.
+     *
+     * @return The position of the owner, if it could not be packed. Null otherwise.
+     */
+    abstract Position getUnpackable();
+
+    /**
+     * Set the position of the owner.
+     *
+     * @param position The new position of the owner.
+     */
+    abstract void store(Position position);
+
+    @Override
+    public int getTotalFrames() {
+        final int packed = getPacked();
+        if (packed == Position.PACKED_UNPACKABLE) {
+            return getUnpackable().getTotalFrames();
+        }
+        return packed == Position.PACKED_NONE ? 0 : packed;
+    }
+
+    @Override
+    public int getFrames() {
+        final int packed = getPacked();
+        if (packed == Position.PACKED_UNPACKABLE) {
+            return getUnpackable().getFrames();
+        }
+        return packed == Position.PACKED_NONE ? 0 : packed % 75;
+    }
+
+    @Override
+    public void setFrames(final int frames) {
+        store(new Position(getMinutes(), getSeconds(), frames));
+    }
+
+    @Override
+    public int getMinutes() {
+        final int packed = getPacked();
+        if (packed == Position.PACKED_UNPACKABLE) {
+            return getUnpackable().getMinutes();
+        }
+        return packed == Position.PACKED_NONE ? 0 : packed / (75 * 60);
+    }
+
+    @Override
+    public void setMinutes(final int minutes) {
+        store(new Position(minutes, getSeconds(), getFrames()));
+    }
+
+    @Override
+    public int getSeconds() {
+        final int packed = getPacked();
+        if (packed == Position.PACKED_UNPACKABLE) {
+            return getUnpackable().getSeconds();
+        }
+        return packed == Position.PACKED_NONE ? 0 : (packed / 75) % 60;
+    }
+
+    @Override
+    public void setSeconds(final int seconds) {
+        store(new Position(getMinutes(), seconds, getFrames()));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link LineRecognizer} based on regular expressions. This is the original recognition logic of
+ * {@link CueParser}. It is slower than {@link LexingLineRecognizer}, but it serves as the reference
+ * implementation for that class.
+ *
+ * @author jwbroek
+ */
+final class RegexLineRecognizer extends LineRecognizer {
+
+    // Patterns used for parsing and validation. Quick and dirty. A formal grammar would be nicer.
+    private final static Pattern PATTERN_POSITION = Pattern.compile("^(\\d*):(\\d*):(\\d*)$");
+    private final static Pattern PATTERN_CATALOG_NUMBER = Pattern.compile("^\\d{13}$");
+    private final static Pattern PATTERN_FILE = Pattern.compile("^FILE\\s+((?:\"[^\"]*\")|\\S+)\\s+(\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_CDTEXTFILE = Pattern.compile("^CDTEXTFILE\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_FLAGS = Pattern.compile("^FLAGS((?:\\s+\\w+)*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_INDEX = Pattern.compile("^INDEX\\s+(\\d+)\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_ISRC_CODE = Pattern.compile("^\\w{5}\\d{7}$");
+    private final static Pattern PATTERN_PERFORMER = Pattern.compile("^PERFORMER\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_POSTGAP = Pattern.compile("^POSTGAP\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_PREGAP = Pattern.compile("^PREGAP\\s+(\\d*:\\d*:\\d*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_REM_COMMENT = Pattern.compile("^(REM\\s+COMMENT)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_REM_DATE = Pattern.compile("^(REM\\s+DATE)\\s+(\\d+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_REM_DISCID = Pattern.compile("^(REM\\s+DISCID)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_REM_GENRE = Pattern.compile("^(REM\\s+GENRE)\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_SONGWRITER = Pattern.compile("^SONGWRITER\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_TITLE = Pattern.compile("^TITLE\\s+((?:\"[^\"]*\")|\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+    private final static Pattern PATTERN_TRACK = Pattern.compile("TRACK\\s+(\\d+)\\s+(\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    // Matchers for the patterns, reset for every line rather than created anew.
+    private final Matcher positionMatcher = PATTERN_POSITION.matcher("");
+    private final Matcher catalogNumberMatcher = PATTERN_CATALOG_NUMBER.matcher("");
+    private final Matcher fileMatcher = PATTERN_FILE.matcher("");
+    private final Matcher cdTextFileMatcher = PATTERN_CDTEXTFILE.matcher("");
+    private final Matcher flagsMatcher = PATTERN_FLAGS.matcher("");
+    private final Matcher indexMatcher = PATTERN_INDEX.matcher("");
+    private final Matcher isrcCodeMatcher = PATTERN_ISRC_CODE.matcher("");
+    private final Matcher performerMatcher = PATTERN_PERFORMER.matcher("");
+    private final Matcher postgapMatcher = PATTERN_POSTGAP.matcher("");
+    private final Matcher pregapMatcher = PATTERN_PREGAP.matcher("");
+    private final Matcher remCommentMatcher = PATTERN_REM_COMMENT.matcher("");
+    private final Matcher remDateMatcher = PATTERN_REM_DATE.matcher("");
+    private final Matcher remDiscidMatcher = PATTERN_REM_DISCID.matcher("");
+    private final Matcher remGenreMatcher = PATTERN_REM_GENRE.matcher("");
+    private final Matcher songwriterMatcher = PATTERN_SONGWRITER.matcher("");
+    private final Matcher titleMatcher = PATTERN_TITLE.matcher("");
+    private final Matcher trackMatcher = PATTERN_TRACK.matcher("");
+
+    boolean recognizeFile(final String line) {
+        final Matcher matcher = this.fileMatcher.reset(line);
+        if (matcher.matches()) {
+            this.value = matcher.group(1);
+            this.secondValue = matcher.group(2);
+            return true;
+        }
+        return false;
+    }
+
+    boolean recognizeCdTextFile(final String line) {
+        return recognizeValue(this.cdTextFileMatcher, line);
+    }
+
+    boolean recognizeFlags(final String line) {
+        final Matcher matcher = this.flagsMatcher.reset(line);
+        if (matcher.matches()) {
+            this.flags.clear();
+            final Scanner flagScanner = new Scanner(matcher.group(1));
+            while (flagScanner.hasNext()) {
+                this.flags.add(flagScanner.next());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    boolean recognizeIndex(final String line) {
+        final Matcher matcher = this.indexMatcher.reset(line);
+        if (matcher.matches()) {
+            this.numberDigits = matcher.group(1).length();
+            this.number = Integer.parseInt(matcher.group(1));
+            return recognizePosition(matcher.group(2));
+        }
+        return false;
+    }
+
+    boolean recognizePerformer(final String line) {
+        return recognizeValue(this.performerMatcher, line);
+    }
+
+    boolean recognizePostgap(final String line) {
+        final Matcher matcher = this.postgapMatcher.reset(line);
+        return matcher.matches() && recognizePosition(matcher.group(1));
+    }
+
+    boolean recognizePregap(final String line) {
+        final Matcher matcher = this.pregapMatcher.reset(line);
+        return matcher.matches() && recognizePosition(matcher.group(1));
+    }
+
+    boolean recognizeRemComment(final String line) {
+        return recognizeRemValue(this.remCommentMatcher, line);
+    }
+
+    boolean recognizeRemDate(final String line) {
+        final Matcher matcher = this.remDateMatcher.reset(line);
+        if (matcher.find()) {
+            this.keywordUppercase = matcher.group(1).equals(matcher.group(1).toUpperCase());
+            this.numberDigits = matcher.group(2).length();
+            this.number = Integer.parseInt(matcher.group(2));
+            return true;
+        }
+        return false;
+    }
+
+    boolean recognizeRemDiscid(final String line) {
+        return recognizeRemValue(this.remDiscidMatcher, line);
+    }
+
+    boolean recognizeRemGenre(final String line) {
+        return recognizeRemValue(this.remGenreMatcher, line);
+    }
+
+    boolean recognizeSongwriter(final String line) {
+        return recognizeValue(this.songwriterMatcher, line);
+    }
+
+    boolean recognizeTitle(final String line) {
+        return recognizeValue(this.titleMatcher, line);
+    }
+
+    boolean recognizeTrack(final String line) {
+        final Matcher matcher = this.trackMatcher.reset(line);
+        if (matcher.matches()) {
+            this.numberDigits = matcher.group(1).length();
+            this.number = Integer.parseInt(matcher.group(1));
+            this.value = matcher.group(2);
+            return true;
+        }
+        return false;
+    }
+
+    boolean isCatalogNumber(final String catalogNumber) {
+        return this.catalogNumberMatcher.reset(catalogNumber).matches();
+    }
+
+    boolean isIsrcCode(final String isrcCode) {
+        return this.isrcCodeMatcher.reset(isrcCode).matches();
+    }
+
+    /**
+     * Recognize a command with a single (possibly quoted) value, as matched by the first group of the pattern.
+     *
+     * @param matcher The matcher for the pattern of the command.
+     * @param line    The line to recognize.
+     *
+     * @return True if recognized.
+     */
+    private boolean recognizeValue(final Matcher matcher, final String line) {
+        matcher.reset(line);
+        if (matcher.matches()) {
+            this.value = matcher.group(1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recognize a REM command with a single (possibly quoted) value. The first group of the pattern must match the
+     * keywords, the second group the value.
+     *
+     * @param matcher The matcher for the pattern of the command.
+     * @param line    The line to recognize.
+     *
+     * @return True if recognized.
+     */
+    private boolean recognizeRemValue(final Matcher matcher, final String line) {
+        matcher.reset(line);
+        if (matcher.find()) {
+            this.keywordUppercase = matcher.group(1).equals(matcher.group(1).toUpperCase());
+            this.value = matcher.group(2);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recognize a position of the form [mm:ss:ff].
+     *
+     * @param position The position to recognize.
+     *
+     * @return True if recognized.
+     */
+    private boolean recognizePosition(final String position) {
+        final Matcher matcher = this.positionMatcher.reset(position);
+        if (matcher.matches()) {
+            this.minutesDigits = matcher.group(1).length();
+            this.secondsDigits = matcher.group(2).length();
+            this.framesDigits = matcher.group(3).length();
+            this.minutes = Integer.parseInt(matcher.group(1));
+            this.seconds = Integer.parseInt(matcher.group(2));
+            this.frames = Integer.parseInt(matcher.group(3));
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import jwbroek.cuelib.CueSheet.MetaDataField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of all metadata of a cue sheet or track, resolved as by
+ * {@link CueSheet#getMetaData(MetaDataField)} and {@link TrackData#getMetaData(MetaDataField)} respectively. The
+ * snapshot is computed once, so looking up a field is an array access.
+ *
+ * @author jwbroek
+ */
+final public class ResolvedMetaData {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ResolvedMetaData.class);
+    /**
+     * Marker for fields that are not supported. Compared by identity.
+     */
+    final static String UNSUPPORTED = new String("");
+    /**
+     * All fields. Cached, as {@link MetaDataField#values()} creates a new array on every call.
+     */
+    private final static MetaDataField[] FIELDS = MetaDataField.values();
+    /**
+     * The values of the fields, by ordinal. Unsupported fields have {@link #UNSUPPORTED} as value.
+     */
+    private final String[] values;
+    /**
+     * The sheet that the metadata was resolved from. Null if not tied to a sheet.
+     */
+    private final CueSheet sheet;
+    /**
+     * The metadata version of the sheet at the time the metadata was resolved.
+     */
+    private final int sheetVersion;
+
+    /**
+     * Create a new ResolvedMetaData instance.
+     *
+     * @param values       The values of the fields, by ordinal. Unsupported fields must have {@link #UNSUPPORTED} as
+     *                     value. Not copied.
+     * @param sheet        The sheet that the metadata was resolved from. Null if not tied to a sheet.
+     * @param sheetVersion The metadata version of the sheet at the time the metadata was resolved.
+     */
+    private ResolvedMetaData(final String[] values, final CueSheet sheet, final int sheetVersion) {
+        this.values = values;
+        this.sheet = sheet;
+        this.sheetVersion = sheetVersion;
+    }
+
+    /**
+     * Resolve all metadata of a cue sheet.
+     *
+     * @param sheet The cue sheet.
+     *
+     * @return The resolved metadata of the cue sheet.
+     */
+    static ResolvedMetaData resolve(final CueSheet sheet) {
+        final String[] values = new String[FIELDS.length];
+        for (MetaDataField field : FIELDS) {
+            values[field.ordinal()] = sheet.resolveMetaData(field);
+        }
+        return new ResolvedMetaData(values, sheet, sheet.getMetaDataVersion());
+    }
+
+    /**
+     * Resolve all metadata of a track.
+     *
+     * @param trackData The track.
+     * @param sheet     The cue sheet that the track belongs to.
+     *
+     * @return The resolved metadata of the track.
+     */
+    static ResolvedMetaData resolve(final TrackData trackData, final CueSheet sheet) {
+        final int sheetVersion = sheet.getMetaDataVersion();
+        final String[] values = new String[FIELDS.length];
+        for (MetaDataField field : FIELDS) {
+            values[field.ordinal()] = trackData.resolveMetaData(field);
+        }
+        return new ResolvedMetaData(values, sheet, sheetVersion);
+    }
+
+    /**
+     * Determine whether this metadata is still valid for the specified sheet, which it is if it was resolved from
+     * that sheet, and the metadata of the sheet did not change since.
+     *
+     * @param sheet The sheet.
+     *
+     * @return True if this metadata is still valid for the sheet. False otherwise.
+     */
+    boolean isValidFor(final CueSheet sheet) {
+        return this.sheet == sheet && this.sheetVersion == sheet.getMetaDataVersion();
+    }
+
+    /**
+     * Get a copy of this metadata that is not tied to the sheet it was resolved from, so that it does not keep that
+     * sheet from being garbage collected. The copy is never valid for any sheet.
+     *
+     * @return A copy of this metadata that is not tied to a sheet.
+     */
+    ResolvedMetaData detach() {
+        return new ResolvedMetaData(this.values, null, 0);
+    }
+
+    /**
+     * Get the value of a metadata field.
+     *
+     * @param metaDataField The field.
+     *
+     * @return The value of the field, as by the getMetaData method of the sheet or track.
+     *
+     * @throws IllegalArgumentException When the field is not supported for the sheet or track.
+     */
+    public String get(final MetaDataField metaDataField) throws IllegalArgumentException {
+        final String result = this.values[metaDataField.ordinal()];
+        if (result == UNSUPPORTED) {
+            IllegalArgumentException exception = new IllegalArgumentException("Unsupported field: " + metaDataField.toString());
+            ResolvedMetaData.logger.error("Unsupported field in getMetaData", exception);
+            throw exception;
+        }
+        return result;
+    }
+
+    /**
+     * Get all supported metadata fields and their values.
+     *
+     * @return A new map of all supported metadata fields to their values.
+     */
+    public Map<MetaDataField, String> toMap() {
+        final Map<MetaDataField, String> result = new EnumMap<MetaDataField, String>(MetaDataField.class);
+        for (MetaDataField field : FIELDS) {
+            if (this.values[field.ordinal()] != UNSUPPORTED) {
+                result.put(field, this.values[field.ordinal()]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Parser for cue sheets that keeps its scratch state from one cue sheet to the next: its read and decode buffers,
+ * decoders, line recognizer (including its matchers), sheet builder and a position for reporting positions. Parsing
+ * many cue sheets with one instance therefore creates little more garbage than the strings and objects that end up
+ * in the results. Create instances through {@link CueParser#newParser(ParserOptions)}.</p>
+ * <p>Instances are not thread safe. Use a separate instance per thread, for instance by holding them in a
+ * {@link ThreadLocal} or a pool. They are cheap to create, as buffers are only allocated when first needed.</p>
+ *
+ * @author jwbroek
+ */
+final public class ReusableCueParser {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ReusableCueParser.class);
+    /**
+     * The initial size of the buffers, in bytes or characters. Large enough for almost all cue sheets.
+     */
+    private final static int INITIAL_BUFFER_SIZE = 8192;
+    /**
+     * The recognizer for the input.
+     */
+    private final LineRecognizer recognizer;
+    /**
+     * Whether to detect the encoding of the input, rather than using the platform's default encoding.
+     */
+    private final boolean detectCharset;
+    /**
+     * The conditions under which to stop parsing. May be null.
+     */
+    private final ParseLimit limit;
+    /**
+     * The diagnostics to report warnings to. If null, warnings are added to the cue sheet, or written to the logging
+     * when parsing to a {@link CueEventHandler}.
+     */
+    private final ParseDiagnostics diagnostics;
+    /**
+     * Whether positions reported to a {@link CueEventHandler} may be reused.
+     */
+    private final boolean reusePositions;
+    /**
+     * The rules to check, identified by the warnings they raise.
+     */
+    private final Set<ParseWarning> rules;
+    /**
+     * The builder for the cue sheets that are returned.
+     */
+    private final CueSheetBuilder builder = new CueSheetBuilder();
+    /**
+     * Diagnostics that add warnings to the sheet of {@link #builder}.
+     */
+    private final MessageDiagnostics messageDiagnostics = new MessageDiagnostics(this.builder);
+    /**
+     * Diagnostics that write warnings to the logging. Created when first needed.
+     */
+    private LoggingDiagnostics loggingDiagnostics = null;
+    /**
+     * The position that is reused for every position reported while parsing.
+     */
+    private final Position position = new Position();
+    /**
+     * Decoders for the input, by charset.
+     */
+    private final Map<Charset, CharsetDecoder> decoders = new HashMap<Charset, CharsetDecoder>();
+    /**
+     * Buffer for raw input. Grows as needed. Null until first needed.
+     */
+    private ByteBuffer byteBuffer = null;
+    /**
+     * Buffer for decoded input. Grows as needed. Null until first needed.
+     */
+    private CharBuffer charBuffer = null;
+    /**
+     * Number of bytes of raw input read or decoded by this parser.
+     */
+    long bytesRead = 0;
+
+    /**
+     * Create a new ReusableCueParser. The options are copied, so later changes to them do not affect this parser.
+     *
+     * @param options The options for parsing.
+     */
+    ReusableCueParser(final ParserOptions options) {
+        this.recognizer = options.getEngine() == CueParser.Engine.REGEX ? new RegexLineRecognizer() : new LexingLineRecognizer();
+        this.detectCharset = options.isDetectCharset();
+        this.limit = options.getLimit();
+        this.diagnostics = options.getDiagnostics();
+        this.reusePositions = options.isReusePositions();
+        this.rules = EnumSet.noneOf(ParseWarning.class);
+        this.rules.addAll(options.getRules());
+    }
+
+    /**
+     * Parse a cue sheet file. The file is read with a single read from a {@link FileChannel} (or memory-mapped if it
+     * is very large) and decoded only once, using the platform's default encoding unless the encoding is to be
+     * detected. If a {@link ParseLimit} is set, the file is instead read line by line, and no further than needed.
+     *
+     * @param file A cue sheet file.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public CueSheet parse(final File file) throws IOException {
+        if (this.limit != null) {
+            return parse(openReader(new FileInputStream(file)));
+        }
+        return build(decode(read(file)));
+    }
+
+    /**
+     * Parse a cue sheet file, reporting its contents to a handler. If a {@link ParseLimit} is set, the file is read
+     * line by line, and no further than needed.
+     *
+     * @param file    A cue sheet file.
+     * @param handler The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public void parse(final File file, final CueEventHandler handler) throws IOException {
+        if (this.limit != null) {
+            parse(openReader(new FileInputStream(file)), handler);
+            return;
+        }
+        CueParser.parse(decode(read(file)), this.recognizer, handler, this.limit, getHandlerDiagnostics(), this.rules, getHandlerPosition());
+    }
+
+    /**
+     * Parse a cue sheet that will be read from the InputStream. The input is read completely before it is decoded,
+     * using the platform's default encoding unless the encoding is to be detected. If a {@link ParseLimit} is set,
+     * the input is instead read line by line, and no further than needed.
+     *
+     * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+     *                    afterward.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public CueSheet parse(final InputStream inputStream) throws IOException {
+        if (this.limit != null) {
+            return parse(openReader(inputStream));
+        }
+        return build(decode(read(inputStream)));
+    }
+
+    /**
+     * Parse a cue sheet that will be read from the InputStream, reporting its contents to a handler. If a
+     * {@link ParseLimit} is set, the input is read line by line, and no further than needed.
+     *
+     * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+     *                    afterward.
+     * @param handler     The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public void parse(final InputStream inputStream, final CueEventHandler handler) throws IOException {
+        if (this.limit != null) {
+            parse(openReader(inputStream), handler);
+            return;
+        }
+        CueParser.parse(decode(read(inputStream)), this.recognizer, handler, this.limit, getHandlerDiagnostics(), this.rules, getHandlerPosition());
+    }
+
+    /**
+     * Parse a cue sheet from its raw bytes, decoding them only once.
+     *
+     * @param bytes The bytes of the cue sheet, from the position to the limit of the buffer. The position will be
+     *              advanced to the limit.
+     *
+     * @return A representation of the cue sheet.
+     */
+    public CueSheet parse(final ByteBuffer bytes) {
+        return build(decode(bytes));
+    }
+
+    /**
+     * Parse a cue sheet from its raw bytes, decoding them only once, and report its contents to a handler.
+     *
+     * @param bytes   The bytes of the cue sheet, from the position to the limit of the buffer. The position will be
+     *                advanced to the limit.
+     * @param handler The handler to report the contents of the cue sheet to.
+     */
+    public void parse(final ByteBuffer bytes, final CueEventHandler handler) {
+        CueParser.parse(decode(bytes), this.recognizer, handler, this.limit, getHandlerDiagnostics(), this.rules, getHandlerPosition());
+    }
+
+    /**
+     * Parse a cue sheet, line by line. This reads no further than needed when parsing stops early, but it creates
+     * a string for every line. Files and streams are parsed this way when a {@link ParseLimit} is set.
+     *
+     * @param reader A reader for the cue sheet. This reader will be closed afterward.
+     *
+     * @return A representation of the cue sheet.
+     *
+     * @throws IOException
+     */
+    public CueSheet parse(final LineNumberReader reader) throws IOException {
+        CueParser.parse(reader, this.recognizer, this.builder, this.limit, getBuilderDiagnostics(), this.rules, this.position);
+        return this.builder.getCueSheet();
+    }
+
+    /**
+     * Parse a cue sheet, line by line, reporting its contents to a handler. This reads no further than needed when
+     * parsing stops early, but it creates a string for every line. Files and streams are parsed this way when a
+     * {@link ParseLimit} is set.
+     *
+     * @param reader  A reader for the cue sheet. This reader will be closed afterward.
+     * @param handler The handler to report the contents of the cue sheet to.
+     *
+     * @throws IOException
+     */
+    public void parse(final LineNumberReader reader, final CueEventHandler handler) throws IOException {
+        CueParser.parse(reader, this.recognizer, handler, this.limit, getHandlerDiagnostics(), this.rules, getHandlerPosition());
+    }
+
+    /**
+     * Build a cue sheet from decoded input.
+     *
+     * @param chars The decoded input.
+     *
+     * @return A representation of the cue sheet.
+     */
+    private CueSheet build(final CharBuffer chars) {
+        CueParser.parse(chars, this.recognizer, this.builder, this.limit, getBuilderDiagnostics(), this.rules, this.position);
+        return this.builder.getCueSheet();
+    }
+
+    /**
+     * Get the diagnostics to use when building a cue sheet.
+     *
+     * @return The diagnostics to use when building a cue sheet.
+     */
+    private ParseDiagnostics getBuilderDiagnostics() {
+        return this.diagnostics == null ? this.messageDiagnostics : this.diagnostics;
+    }
+
+    /**
+     * Get the diagnostics to use when reporting to a {@link CueEventHandler}.
+     *
+     * @return The diagnostics to use when reporting to a handler.
+     */
+    private ParseDiagnostics getHandlerDiagnostics() {
+        if (this.diagnostics != null) {
+            return this.diagnostics;
+        }
+        if (this.loggingDiagnostics == null) {
+            this.loggingDiagnostics = new LoggingDiagnostics();
+        }
+        return this.loggingDiagnostics;
+    }
+
+    /**
+     * Get the position to reuse when reporting to a {@link CueEventHandler}.
+     *
+     * @return The position to reuse, or null if a new position is to be reported every time.
+     */
+    private Position getHandlerPosition() {
+        return this.reusePositions ? this.position : null;
+    }
+
+    /**
+     * Open a reader over a stream, for parsing line by line. The stream is decoded using the platform's default
+     * encoding, unless the encoding is to be detected. In that case, it is detected from the first block of the
+     * input only, as the rest may never be read.
+     *
+     * @param inputStream The stream to read. Will be closed when the reader is closed.
+     *
+     * @return A reader over the stream.
+     *
+     * @throws IOException When the stream could not be read.
+     */
+    private LineNumberReader openReader(final InputStream inputStream) throws IOException {
+        final InputStream counted = new CountingInputStream(inputStream);
+        if (!this.detectCharset) {
+            return new LineNumberReader(new InputStreamReader(counted, Charset.defaultCharset()));
+        }
+
+        int read = 0;
+        try {
+            getByteBuffer(ReusableCueParser.INITIAL_BUFFER_SIZE);
+            while (read != -1 && this.byteBuffer.hasRemaining()) {
+                read = counted.read(this.byteBuffer.array(), this.byteBuffer.arrayOffset() + this.byteBuffer.position(), this.byteBuffer.remaining());
+                if (read > 0) {
+                    this.byteBuffer.position(this.byteBuffer.position() + read);
+                }
+            }
+            this.byteBuffer.flip();
+        } catch (IOException e) {
+            counted.close();
+            throw e;
+        }
+
+        // If there is more input, only detect over complete lines, so that the block does not end in the middle of
+        // a character.
+        final ByteBuffer detected = this.byteBuffer.duplicate();
+        if (read != -1) {
+            int end = detected.limit();
+            while (end > detected.position() && detected.get(end - 1) != '\n') {
+                end--;
+            }
+            if (end > detected.position()) {
+                detected.limit(end);
+            }
+        }
+        final Charset charset = CharsetDetector.detect(detected);
+        final InputStream prefix = new ByteArrayInputStream(this.byteBuffer.array(),
+                this.byteBuffer.arrayOffset() + detected.position(), this.byteBuffer.limit() - detected.position());
+        return new LineNumberReader(new InputStreamReader(new SequenceInputStream(prefix, counted), charset));
+    }
+
+    /**
+     * Read the complete contents of a file. Files larger than {@link CueParser#MAP_THRESHOLD} are memory-mapped;
+     * others are read into the byte buffer of this parser.
+     *
+     * @param file The file to read.
+     *
+     * @return The contents of the file, ready to be read. Only valid until the next call of a read method.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    private ByteBuffer read(final File file) throws IOException {
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            final FileChannel channel = input.getChannel();
+            final long size = channel.size();
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("File too large to be a cue sheet: '" + file + "'.");
+            }
+            if (size > CueParser.MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            // Read until the end, as the file may have grown since its size was determined.
+            getByteBuffer((int) size + 1);
+            while (channel.read(this.byteBuffer) != -1) {
+                if (!this.byteBuffer.hasRemaining()) {
+                    growByteBuffer();
+                }
+            }
+            this.byteBuffer.flip();
+            return this.byteBuffer;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Read the complete contents of a stream into the byte buffer of this parser.
+     *
+     * @param inputStream The stream to read. Will be closed afterward.
+     *
+     * @return The contents of the stream, ready to be read. Only valid until the next call of a read method.
+     *
+     * @throws IOException When the stream could not be read.
+     */
+    private ByteBuffer read(final InputStream inputStream) throws IOException {
+        try {
+            getByteBuffer(ReusableCueParser.INITIAL_BUFFER_SIZE);
+            int read;
+            while ((read = inputStream.read(this.byteBuffer.array(), this.byteBuffer.arrayOffset() + this.byteBuffer.position(), this.byteBuffer.remaining())) != -1) {
+                this.byteBuffer.position(this.byteBuffer.position() + read);
+                if (!this.byteBuffer.hasRemaining()) {
+                    growByteBuffer();
+                }
+            }
+            this.byteBuffer.flip();
+            return this.byteBuffer;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Get the byte buffer of this parser, cleared and with at least the specified capacity.
+     *
+     * @param capacity The minimum capacity.
+     *
+     * @return The byte buffer of this parser.
+     */
+    private ByteBuffer getByteBuffer(final int capacity) {
+        if (this.byteBuffer == null || this.byteBuffer.capacity() < capacity) {
+            this.byteBuffer = ByteBuffer.allocate(Math.max(capacity, ReusableCueParser.INITIAL_BUFFER_SIZE));
+        }
+        this.byteBuffer.clear();
+        return this.byteBuffer;
+    }
+
+    /**
+     * Double the capacity of the byte buffer of this parser, keeping the bytes read so far.
+     */
+    private void growByteBuffer() {
+        final ByteBuffer largerBuffer = ByteBuffer.allocate(this.byteBuffer.capacity() * 2);
+        this.byteBuffer.flip();
+        largerBuffer.put(this.byteBuffer);
+        this.byteBuffer = largerBuffer;
+    }
+
+    /**
+     * Decode raw input into the char buffer of this parser, using the platform's default encoding unless the encoding
+     * is to be detected.
+     *
+     * @param bytes The raw input, from the position to the limit of the buffer. The position will be advanced to the
+     *              limit.
+     *
+     * @return The decoded input, ready to be read. Only valid until the next call of this method.
+     */
+    private CharBuffer decode(final ByteBuffer bytes) {
+        this.bytesRead += bytes.remaining();
+
+        final Charset charset = this.detectCharset ? CharsetDetector.detect(bytes) : Charset.defaultCharset();
+        CharsetDecoder decoder = this.decoders.get(charset);
+        if (decoder == null) {
+            decoder = CueParser.createDecoder(charset);
+            this.decoders.put(charset, decoder);
+        }
+
+        this.charBuffer = CueParser.decode(bytes, decoder, this.charBuffer);
+        return this.charBuffer;
+    }
+
+    /**
+     * Stream that counts the bytes read through it in {@link ReusableCueParser#bytesRead}.
+     */
+    private final class CountingInputStream extends FilterInputStream {
+
+        /**
+         * Create a new CountingInputStream.
+         *
+         * @param inputStream The stream to count the bytes of.
+         */
+        CountingInputStream(final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result != -1) {
+                ReusableCueParser.this.bytesRead++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                ReusableCueParser.this.bytesRead += result;
+            }
+            return result;
+        }
+    }
+}
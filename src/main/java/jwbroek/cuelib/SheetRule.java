@@ -0,0 +1,528 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * <p>A rule of the cue sheet spec that can be checked against the {@link CueSheet} model alone, without the input
+ * it was parsed from. Every rule is identified by the {@link ParseWarning} it raises, and raises it under the same
+ * conditions as {@link CueParser} does while parsing.</p>
+ * <p>As the model does not retain the lines of input, warnings are reported with line number -1, and with the
+ * offending datum as {@link CueSheetSerializer} would write it, so that they are the warnings of parsing the
+ * serialized sheet. A value that occurs several times in the input, but only once in the model, such as a repeated
+ * TITLE or FLAGS datum, is only reported once.</p>
+ * <p>Rules are immutable, and may be shared between threads.</p>
+ *
+ * @author jwbroek
+ */
+abstract class SheetRule {
+
+    /**
+     * Recognizer for checking catalog numbers and ISRC codes. These checks do not depend on the state of the
+     * recognizer, so it can be shared.
+     */
+    private final static LineRecognizer RECOGNIZER = new LexingLineRecognizer();
+    /**
+     * All rules, by the warnings they raise.
+     */
+    final static Map<ParseWarning, SheetRule> RULES = SheetRule.createRules();
+
+    /**
+     * The warning that this rule raises.
+     */
+    private final ParseWarning warning;
+
+    /**
+     * Create a new SheetRule.
+     *
+     * @param warning The warning that this rule raises.
+     */
+    SheetRule(final ParseWarning warning) {
+        this.warning = warning;
+    }
+
+    /**
+     * Get the warning that this rule raises.
+     *
+     * @return The warning that this rule raises.
+     */
+    ParseWarning getWarning() {
+        return this.warning;
+    }
+
+    /**
+     * Check the rule against a cue sheet.
+     *
+     * @param sheet       The cue sheet to check.
+     * @param diagnostics The diagnostics to report the warnings to.
+     */
+    abstract void check(CueSheet sheet, ParseDiagnostics diagnostics);
+
+    /**
+     * Report a violation of this rule.
+     *
+     * @param diagnostics The diagnostics to report the warning to.
+     * @param datum       The offending datum, as it would be serialized as input.
+     */
+    void report(final ParseDiagnostics diagnostics, final String datum) {
+        diagnostics.warning(new LineOfInput(-1, datum), this.warning);
+    }
+
+    /**
+     * Format a number with at least two digits, as in the input.
+     *
+     * @param number The number.
+     *
+     * @return The number with at least two digits.
+     */
+    static String formatNumber(final int number) {
+        return number >= 0 && number < 10 ? "0" + number : Integer.toString(number);
+    }
+
+    /**
+     * Format a value as in the input: enclosed in double quotes if it contains whitespace.
+     *
+     * @param value The value.
+     *
+     * @return The value, quoted if necessary.
+     */
+    static String formatValue(final String value) {
+        for (int index = 0; index < value.length(); index++) {
+            if (Character.isWhitespace(value.charAt(index))) {
+                return "\"" + value + "\"";
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Format a TRACK datum as in the input.
+     *
+     * @param trackData The track.
+     *
+     * @return The TRACK datum of the track.
+     */
+    static String formatTrack(final TrackData trackData) {
+        final StringBuilder datum = new StringBuilder("TRACK");
+        if (trackData.getNumber() > -1) {
+            datum.append(' ').append(SheetRule.formatNumber(trackData.getNumber()));
+        }
+        if (trackData.getDataType() != null) {
+            datum.append(' ').append(SheetRule.formatValue(trackData.getDataType()));
+        }
+        return datum.toString();
+    }
+
+    /**
+     * Format an INDEX datum as in the input.
+     *
+     * @param index The index.
+     *
+     * @return The INDEX datum of the index.
+     */
+    static String formatIndex(final Index index) {
+        final StringBuilder datum = new StringBuilder("INDEX");
+        if (index.getNumber() > -1) {
+            datum.append(' ').append(SheetRule.formatNumber(index.getNumber()));
+        }
+        if (index.getPosition() != null) {
+            datum.append(' ').append(SheetRule.formatPosition(index.getPosition()));
+        }
+        return datum.toString();
+    }
+
+    /**
+     * Format a position as in the input.
+     *
+     * @param position The position.
+     *
+     * @return The position, as mm:ss:ff.
+     */
+    static String formatPosition(final Position position) {
+        return SheetRule.formatNumber(position.getMinutes()) + ":" + SheetRule.formatNumber(position.getSeconds())
+                + ":" + SheetRule.formatNumber(position.getFrames());
+    }
+
+    /**
+     * Create all rules.
+     *
+     * @return An unmodifiable map of all rules, by the warnings they raise.
+     */
+    private static Map<ParseWarning, SheetRule> createRules() {
+        final Map<ParseWarning, SheetRule> rules = new EnumMap<ParseWarning, SheetRule>(ParseWarning.class);
+        final SheetRule[] all = {
+                new CatalogNumberRule(), new FileTypeRule(), new FlagRule(), new IsrcCodeRule(), new FieldLengthRule(),
+                new DataTypeRule(), new PositionRangeRule(ParseWarning.INVALID_FRAMES_VALUE),
+                new PositionRangeRule(ParseWarning.INVALID_SECONDS_VALUE), new IndexNumberRule(),
+                new FirstPositionRule(), new TrackNumberRule(), new YearRule()
+        };
+        for (SheetRule rule : all) {
+            rules.put(rule.getWarning(), rule);
+        }
+        return Collections.unmodifiableMap(rules);
+    }
+
+    /**
+     * The catalog number must consist of 13 digits.
+     */
+    private final static class CatalogNumberRule extends SheetRule {
+
+        /**
+         * Create a new CatalogNumberRule.
+         */
+        CatalogNumberRule() {
+            super(ParseWarning.INVALID_CATALOG_NUMBER);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            if (sheet.getCatalog() != null && !SheetRule.RECOGNIZER.isCatalogNumber(sheet.getCatalog())) {
+                report(diagnostics, "CATALOG " + SheetRule.formatValue(sheet.getCatalog()));
+            }
+        }
+    }
+
+    /**
+     * The file type must be one of the types in the spec. File types that only differ in case are not reported
+     * here, as the case of tokens is only known from the input.
+     */
+    private final static class FileTypeRule extends SheetRule {
+
+        /**
+         * Create a new FileTypeRule.
+         */
+        FileTypeRule() {
+            super(ParseWarning.NONCOMPLIANT_FILE_TYPE);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (FileData fileData : sheet.getFileData()) {
+                final String fileType = fileData.getFileType();
+                if (fileType != null && !CueParser.COMPLIANT_FILE_TYPES.contains(fileType)
+                        && !CueParser.COMPLIANT_FILE_TYPES.contains(fileType.toUpperCase())) {
+                    report(diagnostics, (fileData.getFile() == null ? "FILE" : "FILE " + SheetRule.formatValue(
+                            fileData.getFile())) + " " + SheetRule.formatValue(fileType));
+                }
+            }
+        }
+    }
+
+    /**
+     * Every flag must be one of the flags in the spec.
+     */
+    private final static class FlagRule extends SheetRule {
+
+        /**
+         * Create a new FlagRule.
+         */
+        FlagRule() {
+            super(ParseWarning.NONCOMPLIANT_FLAG);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                final StringBuilder datum = new StringBuilder("FLAGS");
+                for (String flag : trackData.getFlags()) {
+                    datum.append(' ').append(SheetRule.formatValue(flag));
+                }
+                // The parser reports every noncompliant flag with the whole datum as input.
+                for (String flag : trackData.getFlags()) {
+                    if (!CueParser.COMPLIANT_FLAGS.contains(flag)) {
+                        report(diagnostics, datum.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The ISRC code must consist of five alphanumeric characters followed by seven digits.
+     */
+    private final static class IsrcCodeRule extends SheetRule {
+
+        /**
+         * Create a new IsrcCodeRule.
+         */
+        IsrcCodeRule() {
+            super(ParseWarning.NONCOMPLIANT_ISRC_CODE);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                if (trackData.getIsrcCode() != null && !SheetRule.RECOGNIZER.isIsrcCode(trackData.getIsrcCode())) {
+                    report(diagnostics, "ISRC " + SheetRule.formatValue(trackData.getIsrcCode()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Performers, songwriters and titles must not be longer than 80 characters, the maximum for CD-TEXT.
+     */
+    private final static class FieldLengthRule extends SheetRule {
+
+        /**
+         * Create a new FieldLengthRule.
+         */
+        FieldLengthRule() {
+            super(ParseWarning.FIELD_LENGTH_OVER_80);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            checkFields(diagnostics, sheet.getPerformer(), sheet.getSongwriter(), sheet.getTitle());
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                checkFields(diagnostics, trackData.getPerformer(), trackData.getSongwriter(), trackData.getTitle());
+            }
+        }
+
+        /**
+         * Check the fields of a sheet or track.
+         *
+         * @param diagnostics The diagnostics to report the warnings to.
+         * @param performer   The performer. May be null.
+         * @param songwriter  The songwriter. May be null.
+         * @param title       The title. May be null.
+         */
+        private void checkFields(final ParseDiagnostics diagnostics, final String performer, final String songwriter,
+                                 final String title) {
+            checkField(diagnostics, "PERFORMER", performer);
+            checkField(diagnostics, "SONGWRITER", songwriter);
+            checkField(diagnostics, "TITLE", title);
+        }
+
+        /**
+         * Check a single field.
+         *
+         * @param diagnostics The diagnostics to report the warning to.
+         * @param command     The command of the field.
+         * @param value       The value of the field. May be null.
+         */
+        private void checkField(final ParseDiagnostics diagnostics, final String command, final String value) {
+            if (value != null && value.length() > 80) {
+                report(diagnostics, command + " " + SheetRule.formatValue(value));
+            }
+        }
+    }
+
+    /**
+     * The data type of a track must be one of the types in the spec.
+     */
+    private final static class DataTypeRule extends SheetRule {
+
+        /**
+         * Create a new DataTypeRule.
+         */
+        DataTypeRule() {
+            super(ParseWarning.NONCOMPLIANT_DATA_TYPE);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                final String dataType = trackData.getDataType();
+                if (dataType != null && !CueParser.COMPLIANT_DATA_TYPES.contains(dataType)) {
+                    report(diagnostics, SheetRule.formatTrack(trackData));
+                }
+            }
+        }
+    }
+
+    /**
+     * The seconds of a position must be in the range 00-59, or its frames in the range 00-74. Applies to the
+     * positions of indices, pregaps and postgaps.
+     */
+    private final static class PositionRangeRule extends SheetRule {
+
+        /**
+         * Create a new PositionRangeRule.
+         *
+         * @param warning {@link ParseWarning#INVALID_SECONDS_VALUE} or {@link ParseWarning#INVALID_FRAMES_VALUE}.
+         */
+        PositionRangeRule(final ParseWarning warning) {
+            super(warning);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                final Position pregap = trackData.getPregap();
+                checkPosition(diagnostics, pregap, pregap == null ? null : "PREGAP " + SheetRule.formatPosition(pregap));
+                for (Index index : trackData.getIndices()) {
+                    if (index != null) {
+                        checkPosition(diagnostics, index.getPosition(), SheetRule.formatIndex(index));
+                    }
+                }
+                final Position postgap = trackData.getPostgap();
+                checkPosition(diagnostics, postgap,
+                        postgap == null ? null : "POSTGAP " + SheetRule.formatPosition(postgap));
+            }
+        }
+
+        /**
+         * Check a single position.
+         *
+         * @param diagnostics The diagnostics to report the warning to.
+         * @param position    The position. May be null.
+         * @param datum       The datum of the position.
+         */
+        private void checkPosition(final ParseDiagnostics diagnostics, final Position position, final String datum) {
+            if (position == null) {
+                return;
+            }
+            final boolean invalid = getWarning() == ParseWarning.INVALID_SECONDS_VALUE
+                    ? position.getSeconds() > 59 : position.getFrames() > 74;
+            if (invalid) {
+                report(diagnostics, datum);
+            }
+        }
+    }
+
+    /**
+     * The first index of a track must have number 0 or 1, and every next index of the track the number after that
+     * of the previous index.
+     */
+    private final static class IndexNumberRule extends SheetRule {
+
+        /**
+         * Create a new IndexNumberRule.
+         */
+        IndexNumberRule() {
+            super(ParseWarning.INVALID_INDEX_NUMBER);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                int count = 0;
+                int previous = -1;
+                for (Index index : trackData.getIndices()) {
+                    if (index == null) {
+                        continue;
+                    }
+                    final int number = index.getNumber();
+                    if (count == 0 && number > 1 || count > 0 && previous != number - 1) {
+                        report(diagnostics, SheetRule.formatIndex(index));
+                    }
+                    count++;
+                    previous = number;
+                }
+            }
+        }
+    }
+
+    /**
+     * The first index of every file must have position 00:00:00.
+     */
+    private final static class FirstPositionRule extends SheetRule {
+
+        /**
+         * Create a new FirstPositionRule.
+         */
+        FirstPositionRule() {
+            super(ParseWarning.INVALID_FIRST_POSITION);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            for (FileData fileData : sheet.getFileData()) {
+                final Index first = getFirstIndex(fileData);
+                final Position position = first == null ? null : first.getPosition();
+                if (position != null
+                        && !(position.getMinutes() == 0 && position.getSeconds() == 0 && position.getFrames() == 0)) {
+                    report(diagnostics, SheetRule.formatIndex(first));
+                }
+            }
+        }
+
+        /**
+         * Get the first index of a file.
+         *
+         * @param fileData The file.
+         *
+         * @return The first index of the file, or null if it has none.
+         */
+        private Index getFirstIndex(final FileData fileData) {
+            for (TrackData trackData : fileData.getTrackData()) {
+                for (Index index : trackData.getIndices()) {
+                    if (index != null) {
+                        return index;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The first track must have number 1, and every next track the number after that of the previous track.
+     * Tracks that were implied by the parser, as there was data without a TRACK, are not checked themselves.
+     */
+    private final static class TrackNumberRule extends SheetRule {
+
+        /**
+         * Create a new TrackNumberRule.
+         */
+        TrackNumberRule() {
+            super(ParseWarning.INVALID_TRACK_NUMBER);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            int count = 0;
+            int previous = -1;
+            for (TrackData trackData : sheet.getAllTrackData()) {
+                final int number = trackData.getNumber();
+                final boolean implied = number == -1 && trackData.getDataType() == null;
+                if (!implied && (count == 0 && number != 1 || count > 0 && previous != number - 1)) {
+                    report(diagnostics, SheetRule.formatTrack(trackData));
+                }
+                count++;
+                previous = number;
+            }
+        }
+    }
+
+    /**
+     * The year must be in the range 1-9999.
+     */
+    private final static class YearRule extends SheetRule {
+
+        /**
+         * Create a new YearRule.
+         */
+        YearRule() {
+            super(ParseWarning.INVALID_YEAR);
+        }
+
+        @Override
+        void check(final CueSheet sheet, final ParseDiagnostics diagnostics) {
+            final int year = sheet.getYear();
+            if (year != -1 && (year < 1 || year > 9999)) {
+                report(diagnostics, "REM DATE " + year);
+            }
+        }
+    }
+}
@@ -22,30 +22,113 @@ import jwbroek.cuelib.CueSheet.MetaDataField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 
 /**
- * Simple representation of a TRACK block of a cue sheet.
+ * <p>Simple representation of a TRACK block of a cue sheet.</p>
+ * <p>As large numbers of tracks may be held in memory, the data is stored compactly: the indices in an array of
+ * exactly the right size, the flags from the specification as bits, and the pregap and postgap as their total
+ * number of frames. The lists, sets and positions returned are views of this data.</p>
  *
  * @author jwbroek
  */
 public class TrackData {
 
+    /**
+     * The flags from the cue sheet specification, in the natural order of their tokens.
+     */
+    public enum Flag {
+        /**
+         * Four channel audio.
+         */
+        FOUR_CHANNEL("4CH"),
+        /**
+         * Data track.
+         */
+        DATA("DATA"),
+        /**
+         * Digital copy permitted.
+         */
+        DIGITAL_COPY_PERMITTED("DCP"),
+        /**
+         * Pre-emphasis enabled.
+         */
+        PRE_EMPHASIS("PRE"),
+        /**
+         * Serial copy management system.
+         */
+        SERIAL_COPY_MANAGEMENT_SYSTEM("SCMS");
+
+        /**
+         * The token for this flag in a cue sheet.
+         */
+        private final String token;
+
+        /**
+         * Create a new Flag.
+         *
+         * @param token The token for this flag in a cue sheet.
+         */
+        Flag(final String token) {
+            this.token = token;
+        }
+
+        /**
+         * Get the token for this flag in a cue sheet.
+         *
+         * @return The token for this flag in a cue sheet.
+         */
+        public String getToken() {
+            return this.token;
+        }
+
+        /**
+         * Get the flag for a token.
+         *
+         * @param token The token.
+         *
+         * @return The flag for the token, or null if the token is not a flag from the specification.
+         */
+        public static Flag forToken(final String token) {
+            for (Flag flag : FLAGS) {
+                if (flag.token.equals(token)) {
+                    return flag;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * The logger for this class.
      */
     private final static Logger logger = LoggerFactory.getLogger(TrackData.class);
     /**
-     * The indices in this track,
+     * All flags. Cached, as {@link Flag#values()} creates a new array on every call.
+     */
+    private final static Flag[] FLAGS = Flag.values();
+    /**
+     * Shared array for tracks without indices.
+     */
+    private final static Index[] NO_INDICES = new Index[0];
+    /**
+     * The indices in this track. The array has exactly as many elements as there are indices.
+     */
+    private Index[] indices = NO_INDICES;
+    /**
+     * The flags from the specification for this track, as a bit per {@link Flag}, by ordinal.
      */
-    private final List<Index> indices = new ArrayList<Index>();
+    private byte flagBits = 0;
     /**
-     * The flags for this track.
+     * The flags for this track that are not in the specification, in their natural order. Null if there are none.
      */
-    private final Set<String> flags = new TreeSet<String>();
+    private Set<String> otherFlags = null;
     /**
      * The track number. -1 signifies that it has not been set.
      */
@@ -69,13 +152,29 @@ public class TrackData {
      */
     private String title = null;
     /**
-     * The pregap of this track. Null signifies that it has not been set.
+     * The pregap of this track, packed by {@link Position#pack(Position)}.
+     */
+    private int packedPregap = Position.PACKED_NONE;
+    /**
+     * The pregap of this track, if it could not be packed. Null otherwise.
+     */
+    private Position unpackablePregap = null;
+    /**
+     * The postgap of this track, packed by {@link Position#pack(Position)}.
+     */
+    private int packedPostgap = Position.PACKED_NONE;
+    /**
+     * The postgap of this track, if it could not be packed. Null otherwise.
      */
-    private Position pregap = null;
+    private Position unpackablePostgap = null;
     /**
-     * The postgap of this track. Null signifies that it has not been set.
+     * Live view of the pregap of this track, as returned by {@link #getPregap()}. Null until first needed.
      */
-    private Position postgap = null;
+    private Position pregapView = null;
+    /**
+     * Live view of the postgap of this track, as returned by {@link #getPostgap()}. Null until first needed.
+     */
+    private Position postgapView = null;
     /**
      * The songwriter of this track. Null signifies that it has not been set. Should be a maximum of 80
      * characters if you want to burn to CD-TEXT.
@@ -85,6 +184,10 @@ public class TrackData {
      * The file data that this track data belongs to.
      */
     private FileData parent;
+    /**
+     * The resolved metadata of this track. Null if not resolved since the last change to this track.
+     */
+    private ResolvedMetaData resolvedMetaData = null;
 
     /**
      * Create a new TrackData instance.
@@ -105,7 +208,7 @@ public class TrackData {
     public TrackData(final FileData parent, final int number, final String dataType) {
         this.parent = parent;
         this.number = number;
-        this.dataType = dataType;
+        this.dataType = CanonicalStrings.canonicalize(dataType);
     }
 
     /**
@@ -119,6 +222,41 @@ public class TrackData {
      * @return The specified metadata.
      */
     public String getMetaData(final MetaDataField metaDataField) throws IllegalArgumentException {
+        if (this.parent == null || this.parent.getParent() == null) {
+            return resolveMetaData(metaDataField);
+        }
+        return getResolvedMetaData().get(metaDataField);
+    }
+
+    /**
+     * Get a snapshot of all metadata of this track, as by {@link #getMetaData(MetaDataField)}. The snapshot is cached
+     * until the metadata of this track or of its cue sheet changes.
+     *
+     * @return A snapshot of all metadata of this track.
+     *
+     * @throws IllegalStateException When this track does not belong to a cue sheet.
+     */
+    public ResolvedMetaData getResolvedMetaData() {
+        if (this.parent == null || this.parent.getParent() == null) {
+            throw new IllegalStateException("Track does not belong to a cue sheet.");
+        }
+        final CueSheet sheet = this.parent.getParent();
+        ResolvedMetaData result = this.resolvedMetaData;
+        if (result == null || !result.isValidFor(sheet)) {
+            result = ResolvedMetaData.resolve(this, sheet);
+            this.resolvedMetaData = result;
+        }
+        return result;
+    }
+
+    /**
+     * Resolve a single metadata field.
+     *
+     * @param metaDataField The field.
+     *
+     * @return The value of the field.
+     */
+    String resolveMetaData(final MetaDataField metaDataField) {
         String result;
         switch (metaDataField) {
             case ISRCCODE:
@@ -168,7 +306,7 @@ public class TrackData {
      * @param dataType The data type of this track. Null signifies that it has not been set.
      */
     public void setDataType(final String dataType) {
-        this.dataType = dataType;
+        this.dataType = CanonicalStrings.canonicalize(dataType);
     }
 
     /**
@@ -187,6 +325,7 @@ public class TrackData {
      */
     public void setIsrcCode(final String isrcCode) {
         this.isrcCode = isrcCode;
+        this.resolvedMetaData = null;
     }
 
     /**
@@ -205,6 +344,7 @@ public class TrackData {
      */
     public void setNumber(final int number) {
         this.number = number;
+        this.resolvedMetaData = null;
     }
 
     /**
@@ -224,15 +364,38 @@ public class TrackData {
      */
     public void setPerformer(final String performer) {
         this.performer = performer;
+        this.resolvedMetaData = null;
     }
 
     /**
-     * Get the postgap of this track. Null signifies that it has not been set.
+     * Get the postgap of this track. Null signifies that it has not been set. The position returned is a live view
+     * of the postgap of this track: changing it changes this track.
      *
      * @return The postgap of this track. Null signifies that it has not been set.
      */
     public Position getPostgap() {
-        return this.postgap;
+        if (this.packedPostgap == Position.PACKED_NONE) {
+            return null;
+        }
+        if (this.postgapView == null) {
+            this.postgapView = new PositionView() {
+                @Override
+                int getPacked() {
+                    return TrackData.this.packedPostgap;
+                }
+
+                @Override
+                Position getUnpackable() {
+                    return TrackData.this.unpackablePostgap;
+                }
+
+                @Override
+                void store(final Position position) {
+                    setPostgap(position);
+                }
+            };
+        }
+        return this.postgapView;
     }
 
     /**
@@ -241,16 +404,39 @@ public class TrackData {
      * @param postgap The postgap of this track. Null signifies that it has not been set.
      */
     public void setPostgap(final Position postgap) {
-        this.postgap = postgap;
+        this.packedPostgap = Position.pack(postgap);
+        this.unpackablePostgap = Position.keepUnpackable(this.packedPostgap, postgap);
     }
 
     /**
-     * Get the pregap of this track. Null signifies that it has not been set.
+     * Get the pregap of this track. Null signifies that it has not been set. The position returned is a live view
+     * of the pregap of this track: changing it changes this track.
      *
      * @return The pregap of this track. Null signifies that it has not been set.
      */
     public Position getPregap() {
-        return this.pregap;
+        if (this.packedPregap == Position.PACKED_NONE) {
+            return null;
+        }
+        if (this.pregapView == null) {
+            this.pregapView = new PositionView() {
+                @Override
+                int getPacked() {
+                    return TrackData.this.packedPregap;
+                }
+
+                @Override
+                Position getUnpackable() {
+                    return TrackData.this.unpackablePregap;
+                }
+
+                @Override
+                void store(final Position position) {
+                    setPregap(position);
+                }
+            };
+        }
+        return this.pregapView;
     }
 
     /**
@@ -259,7 +445,8 @@ public class TrackData {
      * @param pregap The pregap of this track. Null signifies that it has not been set.
      */
     public void setPregap(final Position pregap) {
-        this.pregap = pregap;
+        this.packedPregap = Position.pack(pregap);
+        this.unpackablePregap = Position.keepUnpackable(this.packedPregap, pregap);
     }
 
     /**
@@ -280,6 +467,7 @@ public class TrackData {
      */
     public void setSongwriter(final String songwriter) {
         this.songwriter = songwriter;
+        this.resolvedMetaData = null;
     }
 
     /**
@@ -300,6 +488,7 @@ public class TrackData {
      */
     public void setTitle(final String title) {
         this.title = title;
+        this.resolvedMetaData = null;
     }
 
     /**
@@ -316,7 +505,7 @@ public class TrackData {
         // Note: we have to pass all indices until we've found the right one, as we don't enforce that indices are sorted.
         // Normally, this shouldn't be a problem, as there are generally very few indices. (Only rarely more than 2).
         indexLoop:
-        for (Index index : this.getIndices()) {
+        for (Index index : this.indices) {
             if (index.getNumber() == number) {
                 result = index;
                 break indexLoop;  // No need to continue searching, so break out of the loop.
@@ -327,21 +516,46 @@ public class TrackData {
     }
 
     /**
-     * Get the indices for this track data.
+     * Get the indices for this track data. The list is a modifiable view of the indices.
      *
      * @return The indices for this track data.
      */
     public List<Index> getIndices() {
-        return this.indices;
+        return new IndexList();
     }
 
     /**
-     * Get the flags for this track data.
+     * Get the flags for this track data. The set is a modifiable view of the flags, in their natural order.
      *
      * @return The flags for this track data.
      */
     public Set<String> getFlags() {
-        return this.flags;
+        return new FlagSet();
+    }
+
+    /**
+     * Determine whether this track has the specified flag.
+     *
+     * @param flag The flag.
+     *
+     * @return True if this track has the specified flag. False otherwise.
+     */
+    public boolean hasFlag(final Flag flag) {
+        return (this.flagBits & (1 << flag.ordinal())) != 0;
+    }
+
+    /**
+     * Set or clear the specified flag for this track.
+     *
+     * @param flag  The flag.
+     * @param value True to set the flag, false to clear it.
+     */
+    public void setFlag(final Flag flag, final boolean value) {
+        if (value) {
+            this.flagBits |= 1 << flag.ordinal();
+        } else {
+            this.flagBits &= ~(1 << flag.ordinal());
+        }
     }
 
     /**
@@ -360,5 +574,215 @@ public class TrackData {
      */
     public void setParent(final FileData parent) {
         this.parent = parent;
+        this.resolvedMetaData = null;
+    }
+
+    /**
+     * Signal that the indices of this track, or their numbers or positions, have changed.
+     */
+    void modified() {
+        if (this.parent != null) {
+            this.parent.modified();
+        }
+    }
+
+    /**
+     * Take ownership of an index that is added to this track, so that changes to it are signalled.
+     *
+     * @param index The index. May be null.
+     */
+    private void own(final Index index) {
+        if (index != null) {
+            index.setTrack(this);
+        }
+    }
+
+    /**
+     * Modifiable view of the indices of this track.
+     */
+    private final class IndexList extends AbstractList<Index> {
+
+        @Override
+        public Index get(final int position) {
+            checkPosition(position, TrackData.this.indices.length - 1);
+            return TrackData.this.indices[position];
+        }
+
+        @Override
+        public int size() {
+            return TrackData.this.indices.length;
+        }
+
+        @Override
+        public Index set(final int position, final Index index) {
+            checkPosition(position, TrackData.this.indices.length - 1);
+            final Index previous = TrackData.this.indices[position];
+            TrackData.this.indices[position] = index;
+            own(index);
+            modified();
+            return previous;
+        }
+
+        @Override
+        public void add(final int position, final Index index) {
+            checkPosition(position, TrackData.this.indices.length);
+            final Index[] previous = TrackData.this.indices;
+            final Index[] result = new Index[previous.length + 1];
+            System.arraycopy(previous, 0, result, 0, position);
+            result[position] = index;
+            System.arraycopy(previous, position, result, position + 1, previous.length - position);
+            TrackData.this.indices = result;
+            this.modCount++;
+            own(index);
+            modified();
+        }
+
+        @Override
+        public Index remove(final int position) {
+            checkPosition(position, TrackData.this.indices.length - 1);
+            final Index[] previous = TrackData.this.indices;
+            final Index removed = previous[position];
+            if (previous.length == 1) {
+                TrackData.this.indices = NO_INDICES;
+            } else {
+                final Index[] result = new Index[previous.length - 1];
+                System.arraycopy(previous, 0, result, 0, position);
+                System.arraycopy(previous, position + 1, result, position, previous.length - position - 1);
+                TrackData.this.indices = result;
+            }
+            this.modCount++;
+            modified();
+            return removed;
+        }
+
+        /**
+         * Check that a position is within bounds.
+         *
+         * @param position The position to check.
+         * @param maximum  The maximum allowed position.
+         *
+         * @throws IndexOutOfBoundsException When the position is out of bounds.
+         */
+        private void checkPosition(final int position, final int maximum) {
+            if (position < 0 || position > maximum) {
+                throw new IndexOutOfBoundsException("Position: " + position + ", size: " + TrackData.this.indices.length);
+            }
+        }
+    }
+
+    /**
+     * Modifiable view of the flags of this track, in their natural order.
+     */
+    private final class FlagSet extends AbstractSet<String> {
+
+        @Override
+        public int size() {
+            final Set<String> others = TrackData.this.otherFlags;
+            return Integer.bitCount(TrackData.this.flagBits & 0xFF) + (others == null ? 0 : others.size());
+        }
+
+        @Override
+        public boolean contains(final Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            final Flag flag = Flag.forToken((String) value);
+            if (flag != null) {
+                return hasFlag(flag);
+            }
+            return TrackData.this.otherFlags != null && TrackData.this.otherFlags.contains(value);
+        }
+
+        @Override
+        public boolean add(final String value) {
+            final Flag flag = Flag.forToken(value);
+            if (flag != null) {
+                if (hasFlag(flag)) {
+                    return false;
+                }
+                setFlag(flag, true);
+                return true;
+            }
+            if (TrackData.this.otherFlags == null) {
+                TrackData.this.otherFlags = new TreeSet<String>();
+            }
+            return TrackData.this.otherFlags.add(value);
+        }
+
+        @Override
+        public boolean remove(final Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            final Flag flag = Flag.forToken((String) value);
+            if (flag != null) {
+                if (!hasFlag(flag)) {
+                    return false;
+                }
+                setFlag(flag, false);
+                return true;
+            }
+            if (TrackData.this.otherFlags == null || !TrackData.this.otherFlags.remove(value)) {
+                return false;
+            }
+            if (TrackData.this.otherFlags.isEmpty()) {
+                TrackData.this.otherFlags = null;
+            }
+            return true;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            // Merge the flags from the specification with the other flags, so that all are in their natural order.
+            final String[] values = new String[size()];
+            final Iterator<String> others = TrackData.this.otherFlags == null ? null : TrackData.this.otherFlags.iterator();
+            String other = others != null && others.hasNext() ? others.next() : null;
+            int count = 0;
+            for (Flag flag : FLAGS) {
+                if (hasFlag(flag)) {
+                    while (other != null && other.compareTo(flag.token) < 0) {
+                        values[count++] = other;
+                        other = others.hasNext() ? others.next() : null;
+                    }
+                    values[count++] = flag.token;
+                }
+            }
+            while (other != null) {
+                values[count++] = other;
+                other = others.hasNext() ? others.next() : null;
+            }
+
+            return new Iterator<String>() {
+                /**
+                 * Position of the next value.
+                 */
+                private int next = 0;
+
+                public boolean hasNext() {
+                    return this.next < values.length;
+                }
+
+                public String next() {
+                    if (this.next >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return values[this.next++];
+                }
+
+                public void remove() {
+                    if (this.next == 0 || values[this.next - 1] == null) {
+                        throw new IllegalStateException();
+                    }
+                    FlagSet.this.remove(values[this.next - 1]);
+                    values[this.next - 1] = null;
+                }
+            };
+        }
+
+        @Override
+        public void clear() {
+            TrackData.this.flagBits = 0;
+            TrackData.this.otherFlags = null;
+        }
     }
 }
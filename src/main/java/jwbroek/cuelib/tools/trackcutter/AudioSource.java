@@ -0,0 +1,76 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+
+/**
+ * Source of the audio of a file, from which the {@link TrackCutter} takes the audio of every track. A seekable
+ * source jumps to the start of a track directly, while other sources have to read and discard all audio before it.
+ *
+ * @author jwbroek
+ */
+interface AudioSource {
+
+    /**
+     * Get the format of the audio.
+     *
+     * @return The format of the audio.
+     */
+    AudioFormat getFormat();
+
+    /**
+     * Get the length of the audio.
+     *
+     * @return The length of the audio in sample frames, or {@link javax.sound.sampled.AudioSystem#NOT_SPECIFIED}
+     *         if it is not known.
+     */
+    long getFrameLength();
+
+    /**
+     * Get whether this source can jump to any position without reading the audio before it.
+     *
+     * @return True if this source can jump to any position without reading the audio before it. False otherwise.
+     */
+    boolean isSeekable();
+
+    /**
+     * Get a stream of part of the audio. The stream must be read before the next stream is requested, and need not
+     * be closed. Sources that are not seekable only support ranges that start at or after the end of the previous
+     * range.
+     *
+     * @param fromFrame The first sample frame of the range.
+     * @param toFrame   The sample frame after the last one of the range, or
+     *                  {@link javax.sound.sampled.AudioSystem#NOT_SPECIFIED} for the end of the audio.
+     *
+     * @return A stream of the audio in the range.
+     *
+     * @throws IOException When the audio could not be read.
+     */
+    AudioInputStream getStream(long fromFrame, long toFrame) throws IOException;
+
+    /**
+     * Close the source.
+     *
+     * @throws IOException When the source could not be closed.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,507 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Cuts uncompressed PCM audio from a WAVE or AIFF file into files of the same type, without decoding it. The
+ * header of the source is parsed once, every cut gets a newly written header, and the samples are moved with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, so that the operating system
+ * can copy them without passing them through the Java heap. Raw CD audio (BINARY and MOTOROLA files) is cut into
+ * WAVE and AIFF files respectively, as their samples are already in the byte order of those types.</p>
+ * <p>Files that need conversion, such as compressed or extensible WAVE files and AIFC files, are not supported;
+ * {@link #open(File, String)} returns null for them, so that the caller can fall back to javax.sound.sampled.</p>
+ * <p>All reads are positional, so any number of cuts may be made from the same cutter concurrently. As an
+ * {@link AudioSource}, the cutter is seekable, so that tracks can also be converted to other types without reading
+ * the audio before them.</p>
+ *
+ * @author jwbroek
+ */
+final class PcmFileCutter implements AudioSource {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(PcmFileCutter.class);
+    /**
+     * The WAVE format tag of plain PCM.
+     */
+    private final static int WAVE_FORMAT_PCM = 1;
+    /**
+     * Size of the header written for WAVE files.
+     */
+    private final static int WAVE_HEADER_SIZE = 44;
+    /**
+     * Size of the header written for AIFF files.
+     */
+    private final static int AIFF_HEADER_SIZE = 54;
+    /**
+     * The channel of the source file.
+     */
+    private final FileChannel channel;
+    /**
+     * The type of the files that cuts are written as: WAVE or AIFF.
+     */
+    private final AudioFileFormat.Type type;
+    /**
+     * The format of the samples.
+     */
+    private final AudioFormat format;
+    /**
+     * The offset of the first sample in the source file.
+     */
+    private final long dataOffset;
+    /**
+     * The number of sample frames in the source file.
+     */
+    private final long frameLength;
+
+    /**
+     * Create a new PcmFileCutter.
+     *
+     * @param channel     The channel of the source file. Owned by the new cutter.
+     * @param type        The type of the files that cuts are written as: WAVE or AIFF.
+     * @param format      The format of the samples.
+     * @param dataOffset  The offset of the first sample in the source file.
+     * @param frameLength The number of sample frames in the source file.
+     */
+    private PcmFileCutter(final FileChannel channel, final AudioFileFormat.Type type, final AudioFormat format,
+                          final long dataOffset, final long frameLength) {
+        this.channel = channel;
+        this.type = type;
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.frameLength = frameLength;
+    }
+
+    /**
+     * Open an audio file for cutting, by parsing its header.
+     *
+     * @param file     The audio file.
+     * @param fileType The type of the file, as in the FILE command of the cue sheet. May be null.
+     *
+     * @return A cutter for the file, or null if the file is not a plain PCM WAVE or AIFF file, or raw CD audio. The
+     *         cutter must be closed after use.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    static PcmFileCutter open(final File file, final String fileType) throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+        PcmFileCutter result = null;
+        try {
+            if ("BINARY".equals(fileType) || "MOTOROLA".equals(fileType)) {
+                final boolean bigEndian = "MOTOROLA".equals(fileType);
+                final AudioFormat format = new AudioFormat(44100, 16, 2, true, bigEndian);
+                result = new PcmFileCutter(channel, bigEndian ? AudioFileFormat.Type.AIFF : AudioFileFormat.Type.WAVE,
+                        format, 0, channel.size() / format.getFrameSize());
+            } else {
+                final ByteBuffer header = PcmFileCutter.read(channel, 0, 12, ByteOrder.BIG_ENDIAN);
+                if (header != null) {
+                    final String riffId = PcmFileCutter.readId(header, 0);
+                    final String formType = PcmFileCutter.readId(header, 8);
+                    if ("RIFF".equals(riffId) && "WAVE".equals(formType)) {
+                        result = PcmFileCutter.openWave(channel);
+                    } else if ("FORM".equals(riffId) && "AIFF".equals(formType)) {
+                        result = PcmFileCutter.openAiff(channel);
+                    }
+                }
+            }
+        } finally {
+            if (result == null) {
+                channel.close();
+            }
+        }
+        if (result == null) {
+            PcmFileCutter.logger.debug("File '{}' is not a plain PCM WAVE or AIFF file.", file);
+        }
+        return result;
+    }
+
+    /**
+     * Parse the chunks of a WAVE file.
+     *
+     * @param channel The channel of the file.
+     *
+     * @return A cutter for the file, or null if it does not contain plain PCM.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    private static PcmFileCutter openWave(final FileChannel channel) throws IOException {
+        AudioFormat format = null;
+        long position = 12;
+        ByteBuffer chunk;
+        while ((chunk = PcmFileCutter.read(channel, position, 8, ByteOrder.LITTLE_ENDIAN)) != null) {
+            final String id = PcmFileCutter.readId(chunk, 0);
+            final long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if ("fmt ".equals(id)) {
+                final ByteBuffer fmt = PcmFileCutter.read(channel, position + 8, 16, ByteOrder.LITTLE_ENDIAN);
+                if (fmt == null || (fmt.getShort(0) & 0xFFFF) != PcmFileCutter.WAVE_FORMAT_PCM) {
+                    return null;
+                }
+                final int channels = fmt.getShort(2) & 0xFFFF;
+                final int sampleRate = fmt.getInt(4);
+                final int frameSize = fmt.getShort(12) & 0xFFFF;
+                final int bits = fmt.getShort(14) & 0xFFFF;
+                format = new AudioFormat(bits <= 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED,
+                        sampleRate, bits, channels, frameSize, sampleRate, false);
+            } else if ("data".equals(id)) {
+                if (format == null || format.getFrameSize() <= 0) {
+                    return null;
+                }
+                final long available = Math.min(size, channel.size() - position - 8);
+                return new PcmFileCutter(channel, AudioFileFormat.Type.WAVE, format, position + 8,
+                        available / format.getFrameSize());
+            }
+            position += 8 + size + (size & 1);
+        }
+        return null;
+    }
+
+    /**
+     * Parse the chunks of an AIFF file.
+     *
+     * @param channel The channel of the file.
+     *
+     * @return A cutter for the file, or null if it could not be parsed.
+     *
+     * @throws IOException When the file could not be read.
+     */
+    private static PcmFileCutter openAiff(final FileChannel channel) throws IOException {
+        AudioFormat format = null;
+        long frames = 0;
+        long position = 12;
+        ByteBuffer chunk;
+        while ((chunk = PcmFileCutter.read(channel, position, 8, ByteOrder.BIG_ENDIAN)) != null) {
+            final String id = PcmFileCutter.readId(chunk, 0);
+            final long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if ("COMM".equals(id)) {
+                final ByteBuffer comm = PcmFileCutter.read(channel, position + 8, 18, ByteOrder.BIG_ENDIAN);
+                if (comm == null) {
+                    return null;
+                }
+                final int channels = comm.getShort(0) & 0xFFFF;
+                frames = comm.getInt(2) & 0xFFFFFFFFL;
+                final int bits = comm.getShort(6) & 0xFFFF;
+                final float sampleRate = (float) PcmFileCutter.readExtended(comm, 8);
+                format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, bits, channels,
+                        channels * ((bits + 7) / 8), sampleRate, true);
+            } else if ("SSND".equals(id)) {
+                final ByteBuffer ssnd = PcmFileCutter.read(channel, position + 8, 8, ByteOrder.BIG_ENDIAN);
+                if (format == null || format.getFrameSize() <= 0 || ssnd == null) {
+                    return null;
+                }
+                final long dataOffset = position + 16 + (ssnd.getInt(0) & 0xFFFFFFFFL);
+                final long available = Math.min(size - 8, channel.size() - dataOffset);
+                return new PcmFileCutter(channel, AudioFileFormat.Type.AIFF, format, dataOffset,
+                        Math.min(frames, available / format.getFrameSize()));
+            }
+            position += 8 + size + (size & 1);
+        }
+        return null;
+    }
+
+    /**
+     * Get the type of the files that cuts are written as, which is the type of the source file unless that is raw.
+     *
+     * @return The type of the files that cuts are written as: WAVE or AIFF.
+     */
+    AudioFileFormat.Type getType() {
+        return this.type;
+    }
+
+    public AudioFormat getFormat() {
+        return this.format;
+    }
+
+    public long getFrameLength() {
+        return this.frameLength;
+    }
+
+    public boolean isSeekable() {
+        return true;
+    }
+
+    public AudioInputStream getStream(final long fromFrame, final long toFrame) throws IOException {
+        final long from = Math.min(Math.max(fromFrame, 0), this.frameLength);
+        final long to = toFrame == AudioSystem.NOT_SPECIFIED ? this.frameLength : Math.min(toFrame, this.frameLength);
+        final long frames = Math.max(to - from, 0);
+        final long start = this.dataOffset + from * this.format.getFrameSize();
+        return new AudioInputStream(new ChannelInputStream(this.channel, start, start + frames * this.format.getFrameSize()),
+                this.format, frames);
+    }
+
+    /**
+     * Write part of the source file to a new file of the type of this cutter. May be called concurrently.
+     *
+     * @param fromFrame The first sample frame to write.
+     * @param toFrame   The sample frame after the last one to write. Limited to the length of the source.
+     * @param target    The file to write to.
+     *
+     * @throws IOException When the target could not be written.
+     */
+    void cut(final long fromFrame, final long toFrame, final File target) throws IOException {
+        final long from = Math.min(Math.max(fromFrame, 0), this.frameLength);
+        final long frames = Math.max(Math.min(toFrame, this.frameLength) - from, 0);
+        final long dataSize = frames * this.format.getFrameSize();
+
+        PcmFileCutter.logger.debug("Transferring {} sample frames to '{}'.", frames, target);
+
+        final FileChannel targetChannel = new FileOutputStream(target).getChannel();
+        try {
+            final ByteBuffer header = AudioFileFormat.Type.WAVE.equals(this.type)
+                    ? createWaveHeader(dataSize) : createAiffHeader(frames, dataSize);
+            while (header.hasRemaining()) {
+                targetChannel.write(header);
+            }
+
+            long position = this.dataOffset + from * this.format.getFrameSize();
+            long remaining = dataSize;
+            while (remaining > 0) {
+                final long transferred = this.channel.transferTo(position, remaining, targetChannel);
+                if (transferred <= 0) {
+                    throw new IOException("Could not transfer audio data to '" + target + "'.");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+            if ((dataSize & 1) != 0) {
+                targetChannel.write(ByteBuffer.wrap(new byte[1]));
+            }
+        } finally {
+            targetChannel.close();
+        }
+    }
+
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Create the header of a WAVE file.
+     *
+     * @param dataSize The size of the samples, in bytes.
+     *
+     * @return The header, ready to be written.
+     */
+    private ByteBuffer createWaveHeader(final long dataSize) {
+        final ByteBuffer header = ByteBuffer.allocate(PcmFileCutter.WAVE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final int sampleRate = Math.round(this.format.getSampleRate());
+        header.put(PcmFileCutter.toBytes("RIFF")).putInt((int) (PcmFileCutter.WAVE_HEADER_SIZE - 8 + dataSize + (dataSize & 1)));
+        header.put(PcmFileCutter.toBytes("WAVE"));
+        header.put(PcmFileCutter.toBytes("fmt ")).putInt(16);
+        header.putShort((short) PcmFileCutter.WAVE_FORMAT_PCM).putShort((short) this.format.getChannels());
+        header.putInt(sampleRate).putInt(sampleRate * this.format.getFrameSize());
+        header.putShort((short) this.format.getFrameSize()).putShort((short) this.format.getSampleSizeInBits());
+        header.put(PcmFileCutter.toBytes("data")).putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Create the header of an AIFF file.
+     *
+     * @param frames   The number of sample frames.
+     * @param dataSize The size of the samples, in bytes.
+     *
+     * @return The header, ready to be written.
+     */
+    private ByteBuffer createAiffHeader(final long frames, final long dataSize) {
+        final ByteBuffer header = ByteBuffer.allocate(PcmFileCutter.AIFF_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.put(PcmFileCutter.toBytes("FORM")).putInt((int) (PcmFileCutter.AIFF_HEADER_SIZE - 8 + dataSize + (dataSize & 1)));
+        header.put(PcmFileCutter.toBytes("AIFF"));
+        header.put(PcmFileCutter.toBytes("COMM")).putInt(18);
+        header.putShort((short) this.format.getChannels()).putInt((int) frames);
+        header.putShort((short) this.format.getSampleSizeInBits());
+        PcmFileCutter.putExtended(header, this.format.getSampleRate());
+        header.put(PcmFileCutter.toBytes("SSND")).putInt((int) (8 + dataSize)).putInt(0).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Read bytes from a channel.
+     *
+     * @param channel  The channel.
+     * @param position The position to read from.
+     * @param length   The number of bytes to read.
+     * @param order    The byte order of the data.
+     *
+     * @return A buffer with the bytes at index 0, or null if the channel ends before all bytes were read.
+     *
+     * @throws IOException When the channel could not be read.
+     */
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length,
+                                   final ByteOrder order) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Read a four character chunk id.
+     *
+     * @param buffer The buffer to read from.
+     * @param index  The index of the id.
+     *
+     * @return The id.
+     */
+    private static String readId(final ByteBuffer buffer, final int index) {
+        final char[] id = new char[4];
+        for (int offset = 0; offset < id.length; offset++) {
+            id[offset] = (char) (buffer.get(index + offset) & 0xFF);
+        }
+        return new String(id);
+    }
+
+    /**
+     * Convert a four character chunk id to bytes.
+     *
+     * @param id The id.
+     *
+     * @return The bytes of the id.
+     */
+    private static byte[] toBytes(final String id) {
+        final byte[] result = new byte[id.length()];
+        for (int index = 0; index < result.length; index++) {
+            result[index] = (byte) id.charAt(index);
+        }
+        return result;
+    }
+
+    /**
+     * Read an 80 bit IEEE 754 extended precision number, as used for the sample rate in AIFF files.
+     *
+     * @param buffer The buffer to read from.
+     * @param index  The index of the number.
+     *
+     * @return The number.
+     */
+    private static double readExtended(final ByteBuffer buffer, final int index) {
+        final int signAndExponent = buffer.getShort(index) & 0xFFFF;
+        final long mantissa = buffer.getLong(index + 2);
+        if (mantissa == 0) {
+            return 0;
+        }
+        final double value = (mantissa >>> 11) * Math.pow(2, (signAndExponent & 0x7FFF) - 16383 - 52);
+        return (signAndExponent & 0x8000) != 0 ? -value : value;
+    }
+
+    /**
+     * Write a positive number as an 80 bit IEEE 754 extended precision number.
+     *
+     * @param buffer The buffer to write to.
+     * @param value  The number. Must be positive.
+     */
+    private static void putExtended(final ByteBuffer buffer, final double value) {
+        int exponent = 0;
+        double mantissa = value;
+        while (mantissa >= 2) {
+            mantissa /= 2;
+            exponent++;
+        }
+        while (mantissa < 1) {
+            mantissa *= 2;
+            exponent--;
+        }
+        buffer.putShort((short) (exponent + 16383));
+        buffer.putLong((long) (mantissa * (1L << 52)) << 11);
+    }
+
+    /**
+     * Stream of part of a channel, read with positional reads. Closing the stream does not close the channel.
+     */
+    private final static class ChannelInputStream extends InputStream {
+
+        /**
+         * The channel.
+         */
+        private final FileChannel channel;
+        /**
+         * The position after the last byte of the stream.
+         */
+        private final long end;
+        /**
+         * The position of the next byte of the stream.
+         */
+        private long position;
+
+        /**
+         * Create a new ChannelInputStream.
+         *
+         * @param channel The channel.
+         * @param start   The position of the first byte of the stream.
+         * @param end     The position after the last byte of the stream.
+         */
+        ChannelInputStream(final FileChannel channel, final long start, final long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (this.position >= this.end) {
+                return -1;
+            }
+            final int count = this.channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, this.end - this.position)),
+                    this.position);
+            if (count > 0) {
+                this.position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(final long count) {
+            final long skipped = Math.max(Math.min(count, this.end - this.position), 0);
+            this.position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(this.end - this.position, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Outcome of the post-processing of a single track: the exit code of the process, how long it took, and how much
+ * output it produced.
+ *
+ * @author jwbroek
+ */
+final public class PostProcessingResult {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(PostProcessingResult.class);
+    /**
+     * The processing action that was post-processed.
+     */
+    private final TrackCutterProcessingAction processAction;
+    /**
+     * The exit code of the process, or null if it did not exit by itself.
+     */
+    private final Integer exitCode;
+    /**
+     * Whether the process was destroyed because it took too long.
+     */
+    private final boolean timedOut;
+    /**
+     * The exception that kept the process from running, or null if there was none.
+     */
+    private final Exception exception;
+    /**
+     * The time from starting the process until it ended, in milliseconds.
+     */
+    private final long durationMillis;
+    /**
+     * The number of bytes the process wrote to its standard output, or -1 if unknown.
+     */
+    private final long outputBytes;
+    /**
+     * The number of bytes the process wrote to its error output, or -1 if unknown.
+     */
+    private final long errorBytes;
+
+    /**
+     * Create a new PostProcessingResult.
+     *
+     * @param processAction  The processing action that was post-processed.
+     * @param exitCode       The exit code of the process, or null if it did not exit by itself.
+     * @param timedOut       Whether the process was destroyed because it took too long.
+     * @param exception      The exception that kept the process from running, or null if there was none.
+     * @param durationMillis The time from starting the process until it ended, in milliseconds.
+     * @param outputBytes    The number of bytes the process wrote to its standard output, or -1 if unknown.
+     * @param errorBytes     The number of bytes the process wrote to its error output, or -1 if unknown.
+     */
+    PostProcessingResult(final TrackCutterProcessingAction processAction, final Integer exitCode,
+                         final boolean timedOut, final Exception exception, final long durationMillis,
+                         final long outputBytes, final long errorBytes) {
+        this.processAction = processAction;
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+        this.exception = exception;
+        this.durationMillis = durationMillis;
+        this.outputBytes = outputBytes;
+        this.errorBytes = errorBytes;
+    }
+
+    /**
+     * Get the processing action that was post-processed.
+     *
+     * @return The processing action that was post-processed.
+     */
+    public TrackCutterProcessingAction getProcessAction() {
+        return this.processAction;
+    }
+
+    /**
+     * Get the exit code of the process.
+     *
+     * @return The exit code of the process, or null if it could not be started, timed out, or was interrupted.
+     */
+    public Integer getExitCode() {
+        return this.exitCode;
+    }
+
+    /**
+     * Get whether the process was destroyed because it took too long.
+     *
+     * @return Whether the process was destroyed because it took too long.
+     */
+    public boolean isTimedOut() {
+        return this.timedOut;
+    }
+
+    /**
+     * Get the exception that kept the process from running.
+     *
+     * @return The exception that kept the process from running, or null if there was none.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    /**
+     * Get the time from starting the process until it ended.
+     *
+     * @return The time from starting the process until it ended, in milliseconds.
+     */
+    public long getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    /**
+     * Get the number of bytes the process wrote to its standard output, whether redirected to file or discarded.
+     *
+     * @return The number of bytes the process wrote to its standard output, or -1 if unknown, such as when the
+     *         process did not end by itself.
+     */
+    public long getOutputBytes() {
+        return this.outputBytes;
+    }
+
+    /**
+     * Get the number of bytes the process wrote to its error output, whether redirected to file or discarded.
+     *
+     * @return The number of bytes the process wrote to its error output, or -1 if unknown, such as when the process
+     *         did not end by itself.
+     */
+    public long getErrorBytes() {
+        return this.errorBytes;
+    }
+
+    /**
+     * Get whether the post-processing succeeded, which it did if the process exited with code 0.
+     *
+     * @return Whether the post-processing succeeded.
+     */
+    public boolean isSuccess() {
+        return this.exitCode != null && this.exitCode.intValue() == 0;
+    }
+
+    /**
+     * Summarize a list of results, for logging.
+     *
+     * @param results The results.
+     *
+     * @return A summary of the results.
+     */
+    public static String summarize(final List<PostProcessingResult> results) {
+        int succeeded = 0;
+        int failed = 0;
+        int timedOut = 0;
+        long totalMillis = 0;
+        long longestMillis = 0;
+        long pipedBytes = 0;
+        for (PostProcessingResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            } else if (result.isTimedOut()) {
+                timedOut++;
+            } else {
+                failed++;
+            }
+            totalMillis += result.getDurationMillis();
+            longestMillis = Math.max(longestMillis, result.getDurationMillis());
+            pipedBytes += Math.max(0, result.getOutputBytes()) + Math.max(0, result.getErrorBytes());
+        }
+        return String.format("%d post-processing actions: %d succeeded, %d failed, %d timed out; %d ms in total, %d ms at most; %d bytes of output.",
+                results.size(), succeeded, failed, timedOut, totalMillis, longestMillis, pipedBytes);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("Post-processing of ").append(this.processAction.getIsPregap() ? "pregap" : "contents")
+                .append(" of track #").append(this.processAction.getTrackData().getNumber());
+        if (this.exception != null) {
+            builder.append(" could not run: ").append(this.exception.getMessage());
+        } else if (this.timedOut) {
+            builder.append(" timed out after ").append(this.durationMillis).append(" ms");
+        } else if (this.exitCode == null) {
+            builder.append(" was interrupted after ").append(this.durationMillis).append(" ms");
+        } else {
+            builder.append(" exited with code ").append(this.exitCode).append(" after ").append(this.durationMillis).append(" ms");
+        }
+        if (this.outputBytes >= 0 && this.errorBytes >= 0) {
+            builder.append(", writing ").append(this.outputBytes).append(" bytes of output and ").append(this.errorBytes)
+                    .append(" bytes of error output");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import jwbroek.io.StreamPiper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Runs the post-processing processes of a {@link TrackCutter}, at most a fixed number at a time. Processes that
+ * cannot run yet wait in a queue, in order of priority and then in the order in which they were submitted. When the
+ * queue is full, submitting blocks, so that the cutter does not get ahead of post-processing.</p>
+ * <p>Every process is waited for, up to an optional timeout after which it is destroyed, and its exit code and
+ * duration are kept as a {@link PostProcessingResult}, along with the number of bytes it wrote to its output and
+ * error streams.</p>
+ *
+ * @author jwbroek
+ */
+final class PostProcessingScheduler {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(PostProcessingScheduler.class);
+    /**
+     * The interval at which running processes are checked for a timeout, in milliseconds.
+     */
+    private final static long POLL_MILLIS = 50;
+    /**
+     * The time to wait for the output of a process to be piped after the process ended, in milliseconds. The output
+     * may remain open if the process started processes of its own.
+     */
+    private final static long PIPE_WAIT_MILLIS = 1000;
+    /**
+     * The executor that runs and waits for the processes, one per thread.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * Permits for the processes that are running or queued. Submitting blocks when there are none left.
+     */
+    private final Semaphore permits;
+    /**
+     * The maximum time a process may run, in milliseconds. 0 if there is no maximum.
+     */
+    private final long timeoutMillis;
+    /**
+     * The results of all processes that ended.
+     */
+    private final List<PostProcessingResult> results = Collections.synchronizedList(new ArrayList<PostProcessingResult>());
+    /**
+     * The number of processes submitted so far, to keep processes of the same priority in order.
+     */
+    private final AtomicLong submitted = new AtomicLong();
+
+    /**
+     * Create a new PostProcessingScheduler.
+     *
+     * @param processes     The maximum number of processes to run at the same time. Must be at least 1.
+     * @param queueSize     The maximum number of processes that wait for their turn. Must be at least 0.
+     * @param timeoutMillis The maximum time a process may run, in milliseconds, or 0 if there is no maximum.
+     */
+    PostProcessingScheduler(final int processes, final int queueSize, final long timeoutMillis) {
+        if (processes < 1 || queueSize < 0) {
+            throw new IllegalArgumentException("There must be at least 1 process and the queue cannot be negative.");
+        }
+        this.executor = new ThreadPoolExecutor(processes, processes, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        this.permits = new Semaphore(processes + queueSize);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Queue the post-processing of a processing action whose track was written to file. Blocks while the queue is
+     * full.
+     *
+     * @param processAction The processing action.
+     * @param priority      The priority of the action. Actions with a lower priority run first.
+     *
+     * @throws InterruptedIOException When interrupted while waiting for room in the queue.
+     */
+    void submit(final TrackCutterProcessingAction processAction, final long priority) throws InterruptedIOException {
+        acquire();
+        this.executor.execute(new Job(processAction, priority, null));
+    }
+
+    /**
+     * Start the post-processing of a processing action whose audio is to be written to the process. Blocks until
+     * the process has started, which is when it is its turn.
+     *
+     * @param processAction The processing action.
+     * @param priority      The priority of the action. Actions with a lower priority run first.
+     *
+     * @return The process, whose standard input is to be written to and closed.
+     *
+     * @throws IOException When the process could not be started, or when interrupted while waiting for it.
+     * @throws RuntimeException When creating the process failed unexpectedly, for instance for an empty command.
+     */
+    Process start(final TrackCutterProcessingAction processAction, final long priority) throws IOException {
+        acquire();
+        final BlockingQueue<Object> started = new ArrayBlockingQueue<Object>(1);
+        this.executor.execute(new Job(processAction, priority, started));
+        final Object result;
+        try {
+            result = started.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for post-processing to start.");
+        }
+        if (result instanceof IOException) {
+            throw (IOException) result;
+        }
+        if (result instanceof RuntimeException) {
+            throw (RuntimeException) result;
+        }
+        return (Process) result;
+    }
+
+    /**
+     * Wait for all processes to end, and stop the scheduler. No more actions can be submitted afterward.
+     *
+     * @return The results of all processes, in the order in which they ended.
+     *
+     * @throws InterruptedException When interrupted while waiting. Remaining processes are destroyed.
+     */
+    List<PostProcessingResult> finish() throws InterruptedException {
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            this.executor.shutdownNow();
+        }
+        synchronized (this.results) {
+            return new ArrayList<PostProcessingResult>(this.results);
+        }
+    }
+
+    /**
+     * Take a permit for a running or queued process, waiting if there is none.
+     *
+     * @throws InterruptedIOException When interrupted while waiting.
+     */
+    private void acquire() throws InterruptedIOException {
+        if (!this.permits.tryAcquire()) {
+            PostProcessingScheduler.logger.debug("Post-processing queue is full; waiting for room.");
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for room in the post-processing queue.");
+            }
+        }
+    }
+
+    /**
+     * Start the post-processing process of a processing action.
+     *
+     * @param processAction The processing action.
+     *
+     * @return The process.
+     *
+     * @throws IOException When the process could not be started.
+     */
+    private static Process createProcess(final TrackCutterProcessingAction processAction) throws IOException {
+        PostProcessingScheduler.logger.debug("Creating post-processing process for command: {}", processAction.getPostProcessCommand());
+        final File parent = processAction.getPostProcessFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        return Runtime.getRuntime().exec(processAction.getPostProcessCommand());
+    }
+
+    /**
+     * Get the number of bytes piped from a stream of a process, waiting a little for the piping to end.
+     *
+     * @param piped The number of bytes piped, once all has been piped. May be null.
+     *
+     * @return The number of bytes piped, or -1 if unknown.
+     *
+     * @throws InterruptedException When interrupted while waiting.
+     */
+    private static long getBytesPiped(final Future<Long> piped) throws InterruptedException {
+        if (piped == null) {
+            return -1;
+        }
+        try {
+            return piped.get(PostProcessingScheduler.PIPE_WAIT_MILLIS, TimeUnit.MILLISECONDS).longValue();
+        } catch (ExecutionException e) {
+            return -1;
+        } catch (TimeoutException e) {
+            PostProcessingScheduler.logger.debug("Output of post-processing process still open after it ended.");
+            return -1;
+        }
+    }
+
+    /**
+     * Runs the process of a single processing action and waits for it to end.
+     */
+    private final class Job implements Runnable, Comparable<Job> {
+
+        /**
+         * The processing action.
+         */
+        private final TrackCutterProcessingAction processAction;
+        /**
+         * The priority of the action. Actions with a lower priority run first.
+         */
+        private final long priority;
+        /**
+         * The order in which the action was submitted.
+         */
+        private final long sequence;
+        /**
+         * Receives the process or the exception that kept it from starting, if someone waits for it. May be null.
+         */
+        private final BlockingQueue<Object> started;
+
+        /**
+         * Create a new Job.
+         *
+         * @param processAction The processing action.
+         * @param priority      The priority of the action. Actions with a lower priority run first.
+         * @param started       Receives the process or the exception that kept it from starting. May be null.
+         */
+        Job(final TrackCutterProcessingAction processAction, final long priority, final BlockingQueue<Object> started) {
+            this.processAction = processAction;
+            this.priority = priority;
+            this.sequence = PostProcessingScheduler.this.submitted.getAndIncrement();
+            this.started = started;
+        }
+
+        public int compareTo(final Job other) {
+            if (this.priority != other.priority) {
+                return this.priority < other.priority ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+        }
+
+        public void run() {
+            final long start = System.currentTimeMillis();
+            Integer exitCode = null;
+            boolean timedOut = false;
+            Exception exception = null;
+            Process process = null;
+            Future<Long> outputPiped = null;
+            Future<Long> errorPiped = null;
+            long outputBytes = -1;
+            long errorBytes = -1;
+            boolean reported = false;
+
+            try {
+                process = PostProcessingScheduler.createProcess(this.processAction);
+                outputPiped = StreamPiper.submit(process.getInputStream(), this.processAction.getStdOutRedirectFile());
+                errorPiped = StreamPiper.submit(process.getErrorStream(), this.processAction.getErrRedirectFile());
+                if (this.started != null) {
+                    this.started.add(process);
+                }
+                reported = true;
+                exitCode = waitFor(process, start);
+                timedOut = exitCode == null;
+                if (!timedOut) {
+                    outputBytes = PostProcessingScheduler.getBytesPiped(outputPiped);
+                    errorBytes = PostProcessingScheduler.getBytesPiped(errorPiped);
+                }
+            } catch (IOException e) {
+                exception = e;
+            } catch (RuntimeException e) {
+                exception = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Whatever kept the process from starting, the thread waiting for it must not wait forever.
+                if (!reported && this.started != null) {
+                    this.started.add(exception != null ? exception
+                            : new InterruptedIOException("Interrupted while starting post-processing."));
+                }
+                if (process != null && exitCode == null) {
+                    process.destroy();
+                }
+                final PostProcessingResult result = new PostProcessingResult(this.processAction, exitCode, timedOut,
+                        exception, System.currentTimeMillis() - start, outputBytes, errorBytes);
+                if (result.isSuccess()) {
+                    PostProcessingScheduler.logger.debug("{}.", result);
+                } else {
+                    PostProcessingScheduler.logger.warn("{}.", result);
+                }
+                PostProcessingScheduler.this.results.add(result);
+                PostProcessingScheduler.this.permits.release();
+            }
+        }
+
+        /**
+         * Wait for a process to end, or for the timeout to pass.
+         *
+         * @param process The process.
+         * @param start   The time the process was started, in milliseconds.
+         *
+         * @return The exit code of the process, or null if it did not end before the timeout.
+         *
+         * @throws InterruptedException When interrupted while waiting.
+         */
+        private Integer waitFor(final Process process, final long start) throws InterruptedException {
+            if (PostProcessingScheduler.this.timeoutMillis <= 0) {
+                return Integer.valueOf(process.waitFor());
+            }
+            final long deadline = start + PostProcessingScheduler.this.timeoutMillis;
+            while (true) {
+                try {
+                    return Integer.valueOf(process.exitValue());
+                } catch (IllegalThreadStateException e) {
+                    // Still running.
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                Thread.sleep(Math.min(remaining, PostProcessingScheduler.POLL_MILLIS));
+            }
+        }
+    }
+}
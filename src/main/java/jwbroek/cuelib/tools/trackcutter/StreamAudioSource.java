@@ -0,0 +1,111 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+
+/**
+ * {@link AudioSource} for audio that can only be read from start to end, such as audio decoded by
+ * javax.sound.sampled. Skipping to a position reads and discards the audio before it.
+ *
+ * @author jwbroek
+ */
+final class StreamAudioSource implements AudioSource {
+
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger = LoggerFactory.getLogger(StreamAudioSource.class);
+    /**
+     * The stream of the audio.
+     */
+    private final AudioInputStream audioInputStream;
+    /**
+     * The current position in the stream, in sample frames.
+     */
+    private long currentAudioFramePos = 0;
+
+    /**
+     * Create a new StreamAudioSource.
+     *
+     * @param audioInputStream The stream of the audio. Owned by the new source.
+     */
+    StreamAudioSource(final AudioInputStream audioInputStream) {
+        this.audioInputStream = audioInputStream;
+    }
+
+    public AudioFormat getFormat() {
+        return this.audioInputStream.getFormat();
+    }
+
+    public long getFrameLength() {
+        return this.audioInputStream.getFrameLength();
+    }
+
+    public boolean isSeekable() {
+        return false;
+    }
+
+    public AudioInputStream getStream(final long fromFrame, final long toFrame) throws IOException {
+        if (fromFrame < this.currentAudioFramePos) {
+            throw new IOException("Cannot go back to frame " + fromFrame + " from frame " + this.currentAudioFramePos + ".");
+        }
+
+        // Skip until we are at the starting position. Skip may skip less than asked for, so keep at it. When it skips
+        // nothing, read a frame instead, as the stream only reads whole frames; stop at the end of the stream.
+        final int frameSize = this.audioInputStream.getFormat().getFrameSize();
+        long remaining = (fromFrame - this.currentAudioFramePos) * frameSize;
+        StreamAudioSource.logger.debug("Skipping {} bytes of audio.", remaining);
+        byte[] frame = null;
+        while (remaining > 0) {
+            final long skipped = this.audioInputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (frame == null) {
+                    frame = new byte[frameSize];
+                }
+                final int read = this.audioInputStream.read(frame, 0, frame.length);
+                if (read == -1) {
+                    break;
+                }
+                remaining -= read;
+            } else {
+                remaining -= skipped;
+            }
+        }
+
+        if (toFrame == AudioSystem.NOT_SPECIFIED) {
+            this.currentAudioFramePos = Long.MAX_VALUE;
+            return new AudioInputStream(this.audioInputStream, this.audioInputStream.getFormat(),
+                    this.audioInputStream.getFrameLength() == AudioSystem.NOT_SPECIFIED
+                            ? AudioSystem.NOT_SPECIFIED : this.audioInputStream.getFrameLength() - fromFrame);
+        }
+        this.currentAudioFramePos = toFrame;
+        return new AudioInputStream(this.audioInputStream, this.audioInputStream.getFormat(), toFrame - fromFrame);
+    }
+
+    public void close() throws IOException {
+        this.audioInputStream.close();
+    }
+}
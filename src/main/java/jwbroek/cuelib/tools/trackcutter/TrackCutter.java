@@ -19,7 +19,6 @@
 package jwbroek.cuelib.tools.trackcutter;
 
 import jwbroek.cuelib.*;
-import jwbroek.io.StreamPiper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,9 +29,16 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>Class that can cut up files into tracks, based on the information provided by a cue sheet.</p>
@@ -53,6 +59,14 @@ public class TrackCutter {
      * Configuation for the TrackCutter.
      */
     private TrackCutterConfiguration configuration;
+    /**
+     * Scheduler for the post-processing of the cue sheet being cut. Null if not post-processing.
+     */
+    private PostProcessingScheduler postProcessingScheduler = null;
+    /**
+     * Results of the post-processing of the last cue sheet that was cut.
+     */
+    private List<PostProcessingResult> postProcessingResults = Collections.emptyList();
 
     /**
      * Create a new TrackCutter instance, based on the configuration provided.
@@ -83,7 +97,11 @@ public class TrackCutter {
 
         try {
             TrackCutter.logger.trace("Parsing cue sheet.");
-            cueSheet = CueParser.parse(cueFile);
+            if (getConfiguration().getCueSheetCache() != null) {
+                cueSheet = getConfiguration().getCueSheetCache().parse(cueFile);
+            } else {
+                cueSheet = CueParser.parse(cueFile);
+            }
         } catch (IOException e) {
             TrackCutter.logger.error("Was unable to parse the cue sheet in file '{}'.", cueFile.toString(), e);
             IOException resultException = new IOException("Problem parsing cue file.");
@@ -129,19 +147,59 @@ public class TrackCutter {
     public void cutTracksInCueSheet(final CueSheet cueSheet) throws IOException {
         TrackCutter.logger.info("Cutting tracks in cue sheet.");
 
-        // We can process each file in the cue sheet independently.
-        for (FileData fileData : cueSheet.getFileData()) {
-            try {
-                cutTracksInFileData(fileData);
-            } catch (UnsupportedAudioFileException e) {
-                TrackCutter.logger.error("Encountered an {} when processing \"{}\": {}", e.getClass().getCanonicalName(), fileData.getFile(), e.getMessage(), e);
-            } catch (IOException e) {
-                TrackCutter.logger.error("Encountered an {} when processing \"{}\": {}", e.getClass().getCanonicalName(), fileData.getFile(), e.getMessage(), e);
+        if (getConfiguration().getDoPostProcessing()) {
+            this.postProcessingScheduler = new PostProcessingScheduler(getConfiguration().getPostProcessingProcesses(),
+                    getConfiguration().getPostProcessingQueueSize(), getConfiguration().getPostProcessingTimeout());
+        }
+
+        try {
+            // We can process each file in the cue sheet independently.
+            for (FileData fileData : cueSheet.getFileData()) {
+                try {
+                    cutTracksInFileData(fileData);
+                } catch (UnsupportedAudioFileException e) {
+                    TrackCutter.logger.error("Encountered an {} when processing \"{}\": {}", e.getClass().getCanonicalName(), fileData.getFile(), e.getMessage(), e);
+                } catch (IOException e) {
+                    TrackCutter.logger.error("Encountered an {} when processing \"{}\": {}", e.getClass().getCanonicalName(), fileData.getFile(), e.getMessage(), e);
+                }
             }
+        } finally {
+            finishPostProcessing();
         }
         TrackCutter.logger.info("Done cutting tracks in cue sheet.");
     }
 
+    /**
+     * Get the results of the post-processing of the last cue sheet that was cut.
+     *
+     * @return The results of the post-processing of the last cue sheet that was cut, in the order in which the
+     *         processes ended. Empty if there was no post-processing.
+     */
+    public List<PostProcessingResult> getPostProcessingResults() {
+        return this.postProcessingResults;
+    }
+
+    /**
+     * Wait for the post-processing of the current cue sheet to end, if any, and report the results.
+     */
+    private void finishPostProcessing() {
+        if (this.postProcessingScheduler == null) {
+            this.postProcessingResults = Collections.emptyList();
+            return;
+        }
+        TrackCutter.logger.debug("Waiting for post-processing to end.");
+        try {
+            this.postProcessingResults = Collections.unmodifiableList(this.postProcessingScheduler.finish());
+            TrackCutter.logger.info(PostProcessingResult.summarize(this.postProcessingResults));
+        } catch (InterruptedException e) {
+            TrackCutter.logger.warn("Interrupted while waiting for post-processing to end.");
+            Thread.currentThread().interrupt();
+            this.postProcessingResults = Collections.emptyList();
+        } finally {
+            this.postProcessingScheduler = null;
+        }
+    }
+
     /**
      * Cut the the files specified in the FileData into tracks.
      *
@@ -152,33 +210,48 @@ public class TrackCutter {
      */
     private void cutTracksInFileData(final FileData fileData) throws IOException, UnsupportedAudioFileException {
         TrackCutter.logger.info("Cutting tracks from file: '{}'.", fileData.getFile());
-        AudioInputStream audioInputStream = null;
 
-        try {
-            // Determine the complete path to the audio file.
-            TrackCutter.logger.trace("Determining complete path to audio file.");
-            File audioFile = getConfiguration().getAudioFile(fileData);
+        final List<TrackCutterProcessingAction> processActions = getProcessActionList(fileData);
+        if (processActions.isEmpty()) {
+            TrackCutter.logger.debug("No tracks selected in file: '{}'.", fileData.getFile());
+            return;
+        }
 
-            // Open the audio file.
-            // Sadly, we can't do much with the file type information from the cue sheet, as javax.sound.sampled
-            // needs more information before it can process a specific type of sound file. Best then to let it
-            // determine all aspects of the audio type by itself.
-            TrackCutter.logger.trace("Opening audio stream.");
-            audioInputStream = AudioSystem.getAudioInputStream(audioFile);
+        // Determine the complete path to the audio file.
+        TrackCutter.logger.trace("Determining complete path to audio file.");
+        File audioFile = getConfiguration().getAudioFile(fileData);
 
-            // Current position in terms of the frames as per audioInputStream.getFrameLength().
-            // Note that these frames need not be equal to cue sheet frames.
-            long currentAudioFramePos = 0;
+        // Plain PCM files can be cut without decoding them, and can be seeked in.
+        TrackCutter.logger.trace("Checking whether audio file is plain PCM.");
+        final PcmFileCutter cutter = PcmFileCutter.open(audioFile, fileData.getFileType());
+        AudioSource audioSource = cutter;
+
+        try {
+            // Cut directly when the tracks are written to files of the same type as the audio file.
+            if (cutter != null && cutter.getType().equals(getConfiguration().getTargetType())
+                    && !(getConfiguration().getDoPostProcessing() && getConfiguration().getRedirectToPostprocessing())) {
+                performProcessActions(processActions, cutter, getConfiguration().getThreads(audioFile));
+                return;
+            }
+
+            if (audioSource == null) {
+                // Open the audio file.
+                // Sadly, we can't do much with the file type information from the cue sheet, as javax.sound.sampled
+                // needs more information before it can process a specific type of sound file. Best then to let it
+                // determine all aspects of the audio type by itself.
+                TrackCutter.logger.trace("Opening audio stream.");
+                audioSource = new StreamAudioSource(AudioSystem.getAudioInputStream(audioFile));
+            }
 
             // Process tracks.
-            for (TrackCutterProcessingAction processAction : getProcessActionList(fileData)) {
-                currentAudioFramePos = performProcessAction(processAction, audioInputStream, currentAudioFramePos);
+            for (TrackCutterProcessingAction processAction : processActions) {
+                performProcessAction(processAction, audioSource);
             }
         } finally {
-            if (audioInputStream != null) {
+            if (audioSource != null) {
                 // Don't handle exceptions, as there's really nothing we can do about them.
-                TrackCutter.logger.trace("Closing audio stream.");
-                audioInputStream.close();
+                TrackCutter.logger.trace("Closing audio source.");
+                audioSource.close();
             }
         }
     }
@@ -195,9 +268,9 @@ public class TrackCutter {
         List<TrackCutterProcessingAction> result = new ArrayList<TrackCutterProcessingAction>();
         TrackData previousTrackData = null;
 
-        // Process all tracks in turn.
+        // Process all selected tracks in turn.
         for (TrackData currentTrackData : fileData.getTrackData()) {
-            if (previousTrackData != null) {
+            if (previousTrackData != null && getConfiguration().isSelected(previousTrackData.getNumber())) {
                 if (currentTrackData.getIndex(0) != null) {
                     addProcessActions(previousTrackData, currentTrackData.getIndex(0).getPosition(), result);
                 } else {
@@ -208,7 +281,7 @@ public class TrackCutter {
         }
 
         // Handle last track, if any.
-        if (previousTrackData != null) {
+        if (previousTrackData != null && getConfiguration().isSelected(previousTrackData.getNumber())) {
             addProcessActions(previousTrackData, null, result);
         }
 
@@ -259,28 +332,22 @@ public class TrackCutter {
      * Perform the specified ProcessAction.
      *
      * @param processAction
-     * @param audioInputStream     The audio stream from which to read.
-     * @param currentAudioFramePos The current frame position in the audio stream.
-     *
-     * @return The current frame position after processing.
+     * @param audioSource   The audio source from which to read. If it is not seekable, the actions must be performed
+     *                      in order.
      *
      * @throws IOException
      */
-    private long performProcessAction(final TrackCutterProcessingAction processAction, final AudioInputStream audioInputStream, final long currentAudioFramePos) throws IOException {
+    private void performProcessAction(final TrackCutterProcessingAction processAction, final AudioSource audioSource) throws IOException {
         TrackCutter.logger.debug("Determining audio substream for processing action for {} of track #{}.", (processAction.getIsPregap() ? "pregap" : "contents"), processAction.getTrackData().getNumber());
 
-        // Skip positions in the audioInputStream until we are at our starting position.
-        long fromAudioFramePos = skipToPosition(processAction.getStartPosition(), audioInputStream, currentAudioFramePos);
-
-        // Determine the position to which we should read from the input.
-        long toAudioFramePos = audioInputStream.getFrameLength();
+        // Determine the range to read from the input. A seekable source jumps to its start, others skip to it.
+        final long fromAudioFramePos = getAudioFormatFrames(processAction.getStartPosition(), audioSource.getFormat());
+        long toAudioFramePos = audioSource.getFrameLength();
         if (processAction.getEndPosition() != null) {
-            toAudioFramePos = getAudioFormatFrames(processAction.getEndPosition(), audioInputStream.getFormat());
+            toAudioFramePos = getAudioFormatFrames(processAction.getEndPosition(), audioSource.getFormat());
         }
 
-        performProcessAction(processAction, new AudioInputStream(audioInputStream, audioInputStream.getFormat(), toAudioFramePos - fromAudioFramePos));
-
-        return toAudioFramePos;
+        performProcessAction(processAction, audioSource.getStream(fromAudioFramePos, toAudioFramePos));
     }
 
     /**
@@ -305,7 +372,7 @@ public class TrackCutter {
 
             try {
                 TrackCutter.logger.debug("Writing audio to postprocessor.");
-                audioOutputStream = this.createPostProcessingProcess(processAction).getOutputStream();
+                audioOutputStream = this.postProcessingScheduler.start(processAction, getPostProcessingPriority(processAction)).getOutputStream();
                 AudioSystem.write(audioInputStream, configuration.getTargetType(), audioOutputStream);
             } finally {
                 if (audioOutputStream != null) {
@@ -319,31 +386,125 @@ public class TrackCutter {
             AudioSystem.write(audioInputStream, configuration.getTargetType(), processAction.getCutFile());
 
             if (configuration.getDoPostProcessing()) {
-                TrackCutter.logger.debug("Performing postprocessing.");
-                this.createPostProcessingProcess(processAction);
+                TrackCutter.logger.debug("Queueing postprocessing.");
+                this.postProcessingScheduler.submit(processAction, getPostProcessingPriority(processAction));
             }
         }
 
     }
 
     /**
-     * Create the specified post-processing process.
+     * Perform the specified ProcessActions by cutting the audio file directly, without decoding it. With more than
+     * one thread, the byte range of every action is cut concurrently with positional reads; the resulting files are
+     * the same as when cutting them one after the other.
      *
-     * @param processAction
+     * @param processActions
+     * @param cutter         The cutter for the audio file, which is of the target type.
+     * @param threads        The number of actions to perform concurrently.
      *
-     * @return The specified post-processing process.
+     * @throws IOException
+     */
+    private void performProcessActions(final List<TrackCutterProcessingAction> processActions, final PcmFileCutter cutter, final int threads) throws IOException {
+        if (threads <= 1 || processActions.size() <= 1) {
+            for (TrackCutterProcessingAction processAction : processActions) {
+                performProcessAction(processAction, cutter);
+            }
+            return;
+        }
+
+        TrackCutter.logger.debug("Cutting {} tracks using {} threads.", processActions.size(), threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, processActions.size()));
+        final List<Future<Object>> results = new ArrayList<Future<Object>>(processActions.size());
+        try {
+            for (final TrackCutterProcessingAction processAction : processActions) {
+                results.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        performProcessAction(processAction, cutter);
+                        return null;
+                    }
+                }));
+            }
+            executor.shutdown();
+
+            // Wait for all actions, even when one fails, as the cutter is closed afterward. Only then report the
+            // first failure, whatever its type.
+            Throwable failure = null;
+            for (Future<Object> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        TrackCutter.logger.error("Encountered another exception when cutting tracks.", e.getCause());
+                    }
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof java.lang.Error) {
+                throw (java.lang.Error) failure;
+            } else if (failure != null) {
+                throw new IOException(failure.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            final InterruptedIOException exception = new InterruptedIOException("Interrupted while cutting tracks.");
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Perform the specified ProcessAction by cutting the audio file directly, without decoding it.
+     *
+     * @param processAction
+     * @param cutter        The cutter for the audio file, which is of the target type.
      *
      * @throws IOException
      */
-    private Process createPostProcessingProcess(final TrackCutterProcessingAction processAction) throws IOException {
-        TrackCutter.logger.debug("Creating post-processing process for command: {}", processAction.getPostProcessCommand());
-        processAction.getPostProcessFile().getParentFile().mkdirs();
-        Process process = Runtime.getRuntime().exec(processAction.getPostProcessCommand());
+    private void performProcessAction(final TrackCutterProcessingAction processAction, final PcmFileCutter cutter) throws IOException {
+        TrackCutter.logger.info("Performing direct processing action for {} of track #{}.", (processAction.getIsPregap() ? "pregap" : "contents"), processAction.getTrackData().getNumber());
+
+        TrackCutter.logger.debug("Creating directory for target files.");
+        processAction.getCutFile().getParentFile().mkdirs();
+
+        final long fromAudioFramePos = getAudioFormatFrames(processAction.getStartPosition(), cutter.getFormat());
+        long toAudioFramePos = cutter.getFrameLength();
+        if (processAction.getEndPosition() != null) {
+            toAudioFramePos = getAudioFormatFrames(processAction.getEndPosition(), cutter.getFormat());
+        }
 
-        StreamPiper.pipeStream(process.getInputStream(), processAction.getStdOutRedirectFile());
-        StreamPiper.pipeStream(process.getErrorStream(), processAction.getErrRedirectFile());
+        TrackCutter.logger.debug("Writing audio to file.");
+        cutter.cut(fromAudioFramePos, toAudioFramePos, processAction.getCutFile());
 
-        return process;
+        if (configuration.getDoPostProcessing()) {
+            TrackCutter.logger.debug("Queueing postprocessing.");
+            this.postProcessingScheduler.submit(processAction, getPostProcessingPriority(processAction));
+        }
+    }
+
+    /**
+     * Get the priority of the post-processing of the specified ProcessAction, as per the configured order.
+     *
+     * @param processAction
+     *
+     * @return The priority of the post-processing. Actions with a lower priority are post-processed first.
+     */
+    private long getPostProcessingPriority(final TrackCutterProcessingAction processAction) {
+        if (getConfiguration().getPostProcessingOrder() != TrackCutterConfiguration.PostProcessingOrder.LONGEST_FIRST) {
+            return 0;
+        }
+        if (processAction.getEndPosition() == null) {
+            // Length unknown, as the track runs until the end of the file. Most likely long.
+            return Long.MIN_VALUE;
+        }
+        return processAction.getStartPosition().getTotalFrames() - processAction.getEndPosition().getTotalFrames();
     }
 
     /**
@@ -360,23 +521,6 @@ public class TrackCutter {
         return Math.round(((double) audioFormat.getFrameRate()) / 75 * position.getTotalFrames());
     }
 
-    /**
-     * Skip to the specified position in the audio data.
-     *
-     * @param toPosition           The position to skip to.
-     * @param audioInputStream     The audio data to skip in.
-     * @param currentAudioFramePos The current position in frames in the audio data.
-     *
-     * @return The frame position in the audio data after skipping.
-     *
-     * @throws IOException
-     */
-    private long skipToPosition(Position toPosition, AudioInputStream audioInputStream, long currentAudioFramePos) throws IOException {
-        long toAudioFramePos = getAudioFormatFrames(toPosition, audioInputStream.getFormat());
-        audioInputStream.skip((toAudioFramePos - currentAudioFramePos) * audioInputStream.getFormat().getFrameSize());
-        return toAudioFramePos;
-    }
-
     /**
      * Get the configuration for this TrackCutter.
      *
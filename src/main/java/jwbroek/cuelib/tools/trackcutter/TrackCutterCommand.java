@@ -18,6 +18,7 @@
  */
 package jwbroek.cuelib.tools.trackcutter;
 
+import jwbroek.cuelib.CueSheetCache;
 import jwbroek.cuelib.Position;
 import jwbroek.cuelib.tools.trackcutter.TrackCutterConfiguration.PregapHandling;
 import jwbroek.io.FileSelector;
@@ -109,6 +110,8 @@ public class TrackCutterCommand {
         System.out.println("                     output location. If not specified, the directory of the cue sheet will be");
         System.out.println("                     used.");
         System.out.println(" -i                  Read cue sheet from standard input.");
+        System.out.println(" -c directory        Cache parsed cue sheets in the specified directory, so that unchanged");
+        System.out.println("                     cue sheets need not be parsed again on a later run.");
         System.out.println(" -f file             Template for file name. Implies no redirect to post-processing.");
         System.out.println(" -t type             Audio type to convert to. Valid types are AIFC, AIFF, AU, SND, WAVE.");
         System.out.println("                     Not all conversions may be supported.");
@@ -121,6 +124,16 @@ public class TrackCutterCommand {
         System.out.println(" -pt length          Threshold for pregap processing. Pregaps with length shorter than this");
         System.out.println("                     will not be processed. Length as per the position field in cue sheets.");
         System.out.println(" -s                  Redirect audio to post-processing step.");
+        System.out.println(" -n tracks           Only cut the specified tracks, such as \"1-3,7,17\". Only the audio of");
+        System.out.println("                     these tracks is read from plain WAVE, AIFF or raw BINARY files.");
+        System.out.println(" -j threads          Number of tracks to cut concurrently from plain WAVE, AIFF or raw BINARY");
+        System.out.println("                     files, when the target type is the same. Defaults to 1.");
+        System.out.println(" -pj processes       Number of post-processing processes to run concurrently. Defaults to the");
+        System.out.println("                     number of processors.");
+        System.out.println(" -pq size            Number of post-processing processes that may wait for their turn before");
+        System.out.println("                     cutting waits as well. Defaults to 16.");
+        System.out.println(" -pto seconds        Destroy post-processing processes that run longer than this.");
+        System.out.println(" -pl                 Post-process the longest tracks first, rather than in order.");
         System.out.println(" -ro                 Redirect output of post-processing step to log file.");
         System.out.println(" -re                 Redirect error output of post-processing step to log file.");
         System.out.println(" -l level            Override jdk 1.4 logging settings. The following levels are supported:");
@@ -232,6 +245,13 @@ public class TrackCutterCommand {
                                                return offset + 1;
                                            }
                                        }, "-i");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Cache parsed cue sheets.
+                                               TrackCutterCommand.this.getConfiguration().setCueSheetCache(new CueSheetCache(new File(options[offset + 1]), 1000, false));
+                                               return offset + 2;
+                                           }
+                                       }, "-c");
         argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
                                            public int handleOption(String[] options, int offset) {
                                                // Create a target file. This implies no streaming to the postprocessor.
@@ -308,6 +328,48 @@ public class TrackCutterCommand {
                                                return offset + 2;
                                            }
                                        }, "-pt");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Set number of tracks to cut concurrently.
+                                               TrackCutterCommand.this.getConfiguration().setThreads(Integer.parseInt(options[offset + 1]));
+                                               return offset + 2;
+                                           }
+                                       }, "-j");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Set number of post-processing processes to run concurrently.
+                                               TrackCutterCommand.this.getConfiguration().setPostProcessingProcesses(Integer.parseInt(options[offset + 1]));
+                                               return offset + 2;
+                                           }
+                                       }, "-pj");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Set number of post-processing processes that may wait for their turn.
+                                               TrackCutterCommand.this.getConfiguration().setPostProcessingQueueSize(Integer.parseInt(options[offset + 1]));
+                                               return offset + 2;
+                                           }
+                                       }, "-pq");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Set maximum running time of post-processing processes, in seconds.
+                                               TrackCutterCommand.this.getConfiguration().setPostProcessingTimeout(Long.parseLong(options[offset + 1]) * 1000);
+                                               return offset + 2;
+                                           }
+                                       }, "-pto");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Post-process longest tracks first.
+                                               TrackCutterCommand.this.getConfiguration().setPostProcessingOrder(TrackCutterConfiguration.PostProcessingOrder.LONGEST_FIRST);
+                                               return offset + 1;
+                                           }
+                                       }, "-pl");
+        argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
+                                           public int handleOption(String[] options, int offset) {
+                                               // Select tracks to cut.
+                                               TrackCutterCommand.this.getConfiguration().setSelectedTracks(TrackCutterConfiguration.parseTrackSelection(options[offset + 1]));
+                                               return offset + 2;
+                                           }
+                                       }, "-n");
         argumentsParser.registerOption(new SimpleOptionsParser.OptionHandler() {
                                            public int handleOption(String[] options, int offset) {
                                                // Redirect standard out.
@@ -19,6 +19,7 @@
 package jwbroek.cuelib.tools.trackcutter;
 
 import jwbroek.cuelib.CueSheet;
+import jwbroek.cuelib.CueSheetCache;
 import jwbroek.cuelib.FileData;
 import jwbroek.cuelib.TrackData;
 import jwbroek.cuelib.tools.genrenormalizer.GenreNormalizer;
@@ -31,8 +32,12 @@ import org.slf4j.LoggerFactory;
 
 import javax.sound.sampled.AudioFileFormat;
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * This class represents a configuration for a TrackCutter instance. It takes care of much of the bookkeeping,
@@ -53,6 +58,20 @@ public class TrackCutterConfiguration {
 
     ;
 
+    /**
+     * Allowed orders for post-processing tracks that wait for their turn.
+     */
+    public enum PostProcessingOrder {
+        /**
+         * In the order in which the tracks were cut.
+         */
+        FIFO,
+        /**
+         * Longest tracks first, so that the last process to end starts early.
+         */
+        LONGEST_FIRST
+    }
+
     /**
      * Parent directory for relative paths.
      */
@@ -109,6 +128,39 @@ public class TrackCutterConfiguration {
      * Template for the post-processing command for the pregaps.
      */
     private String pregapPostProcessCommandTemplate = "C:\\lame\\lame.exe --vbr-new -V 0 -t --tt \"Pregap of <title>\" --ta \"<artist>\" --tl \"<album>\" --ty \"<year>\"" + " --tc \"Pregap of <title>\" --tn \"<track>\" --tg \"<genre>\" \"<targetFile>\" \"<postProcessFile>\"";
+    /**
+     * Number of tracks to cut concurrently from a seekable PCM file. 1 to cut them one after the other.
+     */
+    private int threads = 1;
+    /**
+     * Number of tracks to cut concurrently from seekable PCM files below a directory, by directory. Overrides
+     * {@link #threads}, so that every storage device can be given the concurrency that suits it.
+     */
+    private final Map<File, Integer> directoryThreads = new HashMap<File, Integer>();
+    /**
+     * Maximum number of post-processing processes to run at the same time.
+     */
+    private int postProcessingProcesses = Runtime.getRuntime().availableProcessors();
+    /**
+     * Maximum number of post-processing processes that wait for their turn. When reached, cutting waits.
+     */
+    private int postProcessingQueueSize = 16;
+    /**
+     * Maximum time a post-processing process may run, in milliseconds. 0 if there is no maximum.
+     */
+    private long postProcessingTimeout = 0;
+    /**
+     * Order for post-processing tracks that wait for their turn.
+     */
+    private PostProcessingOrder postProcessingOrder = PostProcessingOrder.FIFO;
+    /**
+     * The numbers of the tracks to cut. Null to cut all tracks.
+     */
+    private SortedSet<Integer> selectedTracks = null;
+    /**
+     * Cache for parsed cue sheets. Null if cue sheets are always parsed.
+     */
+    private CueSheetCache cueSheetCache = null;
     /**
      * The logger for this class.
      */
@@ -167,6 +219,12 @@ public class TrackCutterConfiguration {
      * <tr><td>pregapCutFileNameTemplate</td><td>Template for the file name of the cut pregaps.</td><td>{@link String}.</td></tr>
      * <tr><td>pregapPostProcessFileNameTemplate</td><td>Template for the file name of the post-processed pregaps.</td><td>{@link String}.</td></tr>
      * <tr><td>pregapPostProcessCommandTemplate</td><td>Template for the post-processing command for the pregaps.</td><td>{@link String}.</td></tr>
+     * <tr><td>threads</td><td>Number of tracks to cut concurrently from a seekable PCM file.</td><td>{@link Long}.</td></tr>
+     * <tr><td>postProcessingProcesses</td><td>Maximum number of post-processing processes to run at the same time.</td><td>{@link Long}.</td></tr>
+     * <tr><td>postProcessingQueueSize</td><td>Maximum number of post-processing processes that wait for their turn.</td><td>{@link Long}.</td></tr>
+     * <tr><td>postProcessingTimeout</td><td>Maximum time a post-processing process may run, in milliseconds.</td><td>{@link Long}.</td></tr>
+     * <tr><td>postProcessingOrder</td><td>Order for post-processing tracks that wait for their turn.</td><td>{@link TrackCutterConfiguration.PostProcessingOrder}</td></tr>
+     * <tr><td>selectedTracks</td><td>The tracks to cut.</td><td>As per {@link #parseTrackSelection(String)}.</td></tr>
      * </table>
      *
      * @param properties The Properties to load configuration from.
@@ -187,6 +245,12 @@ public class TrackCutterConfiguration {
         this.pregapCutFileNameTemplate = properties.getProperty("pregapCutFileNameTemplate", this.pregapCutFileNameTemplate);
         this.pregapPostProcessFileNameTemplate = properties.getProperty("pregapPostProcessFileNameTemplate", this.pregapPostProcessFileNameTemplate);
         this.pregapPostProcessCommandTemplate = properties.getProperty("pregapPostProcessCommandTemplate", this.pregapPostProcessCommandTemplate);
+        this.threads = properties.getPropertyAsLong("threads", (long) this.threads).intValue();
+        this.postProcessingProcesses = properties.getPropertyAsLong("postProcessingProcesses", (long) this.postProcessingProcesses).intValue();
+        this.postProcessingQueueSize = properties.getPropertyAsLong("postProcessingQueueSize", (long) this.postProcessingQueueSize).intValue();
+        this.postProcessingTimeout = properties.getPropertyAsLong("postProcessingTimeout", this.postProcessingTimeout);
+        this.postProcessingOrder = properties.getProperty("postProcessingOrder", this.postProcessingOrder);
+        this.selectedTracks = parseTrackSelection(properties.getProperty("selectedTracks", formatTrackSelection(this.selectedTracks)));
 
     }
 
@@ -214,6 +278,12 @@ public class TrackCutterConfiguration {
         properties.setProperty("pregapCutFileNameTemplate", this.pregapCutFileNameTemplate);
         properties.setProperty("pregapPostProcessFileNameTemplate", this.pregapPostProcessFileNameTemplate);
         properties.setProperty("pregapPostProcessCommandTemplate", this.pregapPostProcessCommandTemplate);
+        properties.setProperty("threads", (long) this.threads);
+        properties.setProperty("postProcessingProcesses", (long) this.postProcessingProcesses);
+        properties.setProperty("postProcessingQueueSize", (long) this.postProcessingQueueSize);
+        properties.setProperty("postProcessingTimeout", this.postProcessingTimeout);
+        properties.setProperty("postProcessingOrder", this.postProcessingOrder);
+        properties.setProperty("selectedTracks", formatTrackSelection(this.selectedTracks));
 
         return properties;
     }
@@ -628,4 +698,276 @@ public class TrackCutterConfiguration {
     public void setPregapFrameLengthThreshold(final long pregapFrameLengthThreshold) {
         this.pregapFrameLengthThreshold = pregapFrameLengthThreshold;
     }
+
+    /**
+     * Get the number of tracks to cut concurrently from a seekable PCM file (plain WAVE, AIFF or raw BINARY), unless
+     * overridden for the directory of the file.
+     *
+     * @return The number of tracks to cut concurrently. 1 if tracks are cut one after the other.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Set the number of tracks to cut concurrently from a seekable PCM file (plain WAVE, AIFF or raw BINARY), unless
+     * overridden for the directory of the file. Each track is read with its own positional reads, and the results
+     * are identical to cutting them one after the other.
+     *
+     * @param threads The number of tracks to cut concurrently. 1 to cut them one after the other.
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Set the number of tracks to cut concurrently from seekable PCM files below a directory, typically the mount
+     * point of a storage device. A device that seeks slowly may do best with 1, while a solid state drive may do
+     * best with several. This is not part of the properties of the configuration.
+     *
+     * @param directory The directory.
+     * @param threads   The number of tracks to cut concurrently from files below the directory, or null to remove the
+     *                  override.
+     */
+    public void setThreads(final File directory, final Integer threads) {
+        if (threads == null) {
+            this.directoryThreads.remove(directory.getAbsoluteFile());
+        } else if (threads.intValue() < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        } else {
+            this.directoryThreads.put(directory.getAbsoluteFile(), threads);
+        }
+    }
+
+    /**
+     * Get the number of tracks to cut concurrently from a seekable PCM file. This is the number set for the nearest
+     * directory of the file, or the general number if none was set.
+     *
+     * @param audioFile The audio file.
+     *
+     * @return The number of tracks to cut concurrently from the file.
+     */
+    public int getThreads(final File audioFile) {
+        for (File directory = audioFile.getAbsoluteFile().getParentFile(); directory != null; directory = directory.getParentFile()) {
+            final Integer result = this.directoryThreads.get(directory);
+            if (result != null) {
+                return result.intValue();
+            }
+        }
+        return this.threads;
+    }
+
+    /**
+     * Get the maximum number of post-processing processes to run at the same time.
+     *
+     * @return The maximum number of post-processing processes to run at the same time.
+     */
+    public int getPostProcessingProcesses() {
+        return this.postProcessingProcesses;
+    }
+
+    /**
+     * Set the maximum number of post-processing processes to run at the same time. Defaults to the number of
+     * processors.
+     *
+     * @param postProcessingProcesses The maximum number of post-processing processes to run at the same time.
+     */
+    public void setPostProcessingProcesses(final int postProcessingProcesses) {
+        if (postProcessingProcesses < 1) {
+            throw new IllegalArgumentException("The number of post-processing processes must be at least 1.");
+        }
+        this.postProcessingProcesses = postProcessingProcesses;
+    }
+
+    /**
+     * Get the maximum number of post-processing processes that wait for their turn.
+     *
+     * @return The maximum number of post-processing processes that wait for their turn.
+     */
+    public int getPostProcessingQueueSize() {
+        return this.postProcessingQueueSize;
+    }
+
+    /**
+     * Set the maximum number of post-processing processes that wait for their turn. When this many are waiting,
+     * cutting waits until one of them starts.
+     *
+     * @param postProcessingQueueSize The maximum number of post-processing processes that wait for their turn.
+     */
+    public void setPostProcessingQueueSize(final int postProcessingQueueSize) {
+        if (postProcessingQueueSize < 0) {
+            throw new IllegalArgumentException("The post-processing queue size cannot be negative.");
+        }
+        this.postProcessingQueueSize = postProcessingQueueSize;
+    }
+
+    /**
+     * Get the maximum time a post-processing process may run.
+     *
+     * @return The maximum time a post-processing process may run, in milliseconds, or 0 if there is no maximum.
+     */
+    public long getPostProcessingTimeout() {
+        return this.postProcessingTimeout;
+    }
+
+    /**
+     * Set the maximum time a post-processing process may run. Processes that run longer are destroyed, and reported
+     * as timed out.
+     *
+     * @param postProcessingTimeout The maximum time a post-processing process may run, in milliseconds, or 0 if
+     *                              there is no maximum.
+     */
+    public void setPostProcessingTimeout(final long postProcessingTimeout) {
+        this.postProcessingTimeout = postProcessingTimeout;
+    }
+
+    /**
+     * Get the order for post-processing tracks that wait for their turn.
+     *
+     * @return The order for post-processing tracks that wait for their turn.
+     */
+    public PostProcessingOrder getPostProcessingOrder() {
+        return this.postProcessingOrder;
+    }
+
+    /**
+     * Set the order for post-processing tracks that wait for their turn.
+     *
+     * @param postProcessingOrder The order for post-processing tracks that wait for their turn.
+     */
+    public void setPostProcessingOrder(final PostProcessingOrder postProcessingOrder) {
+        this.postProcessingOrder = postProcessingOrder;
+    }
+
+    /**
+     * Get the numbers of the tracks to cut.
+     *
+     * @return The numbers of the tracks to cut, or null if all tracks are cut.
+     */
+    public SortedSet<Integer> getSelectedTracks() {
+        return this.selectedTracks == null ? null : Collections.unmodifiableSortedSet(this.selectedTracks);
+    }
+
+    /**
+     * Set the numbers of the tracks to cut. Only the audio of these tracks is read from seekable audio files, so
+     * that cutting a single track from a large image is fast.
+     *
+     * @param selectedTracks The numbers of the tracks to cut, or null to cut all tracks. Copied.
+     */
+    public void setSelectedTracks(final Set<Integer> selectedTracks) {
+        this.selectedTracks = selectedTracks == null ? null : new TreeSet<Integer>(selectedTracks);
+    }
+
+    /**
+     * Determine whether a track is to be cut.
+     *
+     * @param trackNumber The number of the track.
+     *
+     * @return True if the track is to be cut. False otherwise.
+     */
+    public boolean isSelected(final int trackNumber) {
+        return this.selectedTracks == null || this.selectedTracks.contains(Integer.valueOf(trackNumber));
+    }
+
+    /**
+     * Parse a selection of tracks: a comma separated list of track numbers and ranges of track numbers, such as
+     * "1-3,7,17".
+     *
+     * @param selection The selection. An empty selection selects all tracks.
+     *
+     * @return The numbers of the selected tracks, or null if all tracks are selected.
+     *
+     * @throws IllegalArgumentException When the selection could not be parsed.
+     */
+    public static SortedSet<Integer> parseTrackSelection(final String selection) throws IllegalArgumentException {
+        if (selection.trim().length() == 0) {
+            return null;
+        }
+        final SortedSet<Integer> result = new TreeSet<Integer>();
+        try {
+            for (String part : selection.split(",")) {
+                final int dash = part.indexOf('-');
+                final int from = Integer.parseInt(part.substring(0, dash == -1 ? part.length() : dash).trim());
+                final int to = dash == -1 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+                if (from > to) {
+                    throw new IllegalArgumentException("Invalid range of tracks: " + part);
+                }
+                for (int trackNumber = from; trackNumber <= to; trackNumber++) {
+                    result.add(Integer.valueOf(trackNumber));
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid selection of tracks: " + selection, e);
+        }
+        return result;
+    }
+
+    /**
+     * Format a selection of tracks as per {@link #parseTrackSelection(String)}.
+     *
+     * @param selectedTracks The numbers of the selected tracks, or null if all tracks are selected.
+     *
+     * @return The selection, with consecutive track numbers as ranges. Empty if all tracks are selected.
+     */
+    public static String formatTrackSelection(final Set<Integer> selectedTracks) {
+        final StringBuilder builder = new StringBuilder();
+        if (selectedTracks == null) {
+            return "";
+        }
+        int rangeStart = -1;
+        int rangeEnd = -1;
+        for (Integer trackNumber : new TreeSet<Integer>(selectedTracks)) {
+            if (rangeStart != -1 && trackNumber.intValue() == rangeEnd + 1) {
+                rangeEnd++;
+                continue;
+            }
+            if (rangeStart != -1) {
+                appendRange(builder, rangeStart, rangeEnd);
+            }
+            rangeStart = trackNumber.intValue();
+            rangeEnd = rangeStart;
+        }
+        if (rangeStart != -1) {
+            appendRange(builder, rangeStart, rangeEnd);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Append a range of track numbers to a selection.
+     *
+     * @param builder The selection so far.
+     * @param from    The first track number of the range.
+     * @param to      The last track number of the range.
+     */
+    private static void appendRange(final StringBuilder builder, final int from, final int to) {
+        if (builder.length() > 0) {
+            builder.append(',');
+        }
+        builder.append(from);
+        if (to > from) {
+            builder.append('-').append(to);
+        }
+    }
+
+    /**
+     * Get the cache for parsed cue sheets.
+     *
+     * @return The cache for parsed cue sheets, or null if cue sheets are always parsed.
+     */
+    public CueSheetCache getCueSheetCache() {
+        return this.cueSheetCache;
+    }
+
+    /**
+     * Set the cache for parsed cue sheets. This is not part of the properties of the configuration.
+     *
+     * @param cueSheetCache The cache for parsed cue sheets, or null if cue sheets are to be parsed every time.
+     */
+    public void setCueSheetCache(final CueSheetCache cueSheetCache) {
+        this.cueSheetCache = cueSheetCache;
+    }
 }
\ No newline at end of file
@@ -22,14 +22,59 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Utility class for piping data from an InputStream to an OutputStream, or to nowhere. This class is particularly useful
- * for reading the output streams of a java.lang.Process, as such a Process may block if its output is not read.
+ * <p>Utility class for piping data from an InputStream to an OutputStream, or to nowhere. This class is particularly
+ * useful for reading the output streams of a java.lang.Process, as such a Process may block if its output is not
+ * read.</p>
+ * <p>Data is copied in large blocks, through a buffer that is reused by the thread doing the piping. Pipers started by
+ * {@link #pipeStream(InputStream, File)}, {@link #submit(InputStream, File)} or {@link #submit(StreamPiper)} run on
+ * a shared pool of threads, so that piping the output of many processes does not start and stop a thread for every
+ * stream. As before, these threads are not daemons, so that the JVM does not exit before all output is written.</p>
  *
  * @author jwbroek
  */
-public class StreamPiper implements Runnable {
+public class StreamPiper implements Runnable, Callable<Long> {
+
+    /**
+     * Size of the blocks in which data is piped.
+     */
+    private final static int BLOCK_SIZE = 64 * 1024;
+    /**
+     * Number of threads that the shared pool keeps at most. When all are busy, a piper gets a thread of its own, as
+     * it could otherwise wait for a process that in turn waits for its output to be read.
+     */
+    private final static int MAX_POOLED_THREADS = 32;
+    /**
+     * Time that idle threads in the shared pool are kept, in seconds. Kept short, as idle threads keep the JVM
+     * alive.
+     */
+    private final static long KEEP_ALIVE_SECONDS = 1;
+    /**
+     * Buffer for every thread that pipes data, so that it need not be allocated for every stream.
+     */
+    private final static ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[StreamPiper.BLOCK_SIZE];
+        }
+    };
+    /**
+     * Number of threads created for piping, for naming them.
+     */
+    private final static AtomicInteger THREAD_COUNT = new AtomicInteger();
+    /**
+     * Shared pool of threads for piping.
+     */
+    private final static ThreadPoolExecutor EXECUTOR = StreamPiper.createExecutor();
 
     /**
      * Stream to read input from. mus not be null.
@@ -43,6 +88,10 @@ public class StreamPiper implements Runnable {
      * Whether or not to close the output stream after all data has been piped.
      */
     private boolean closeOutput;
+    /**
+     * Number of bytes piped so far.
+     */
+    private volatile long bytesPiped = 0;
     /**
      * The logger for this class.
      */
@@ -77,7 +126,7 @@ public class StreamPiper implements Runnable {
 
     /**
      * Pipe the contents of the specified input stream to the specified file, or throw it away if the file is
-     * null.
+     * null. The piping runs on the shared pool.
      *
      * @param from The input to stream to file.
      * @param file The file to pipe input to, or null if the input should be thrown away.
@@ -85,11 +134,56 @@ public class StreamPiper implements Runnable {
      * @throws IOException
      */
     public static void pipeStream(final InputStream from, final File file) throws IOException {
+        StreamPiper.submit(from, file);
+    }
+
+    /**
+     * Pipe the contents of the specified input stream to the specified file, or throw it away if the file is
+     * null. The piping runs on the shared pool.
+     *
+     * @param from The input to stream to file.
+     * @param file The file to pipe input to, or null if the input should be thrown away.
+     *
+     * @return The number of bytes piped, once all input has been piped and the file has been closed.
+     *
+     * @throws IOException
+     */
+    public static Future<Long> submit(final InputStream from, final File file) throws IOException {
         OutputStream out = null;
         if (file != null) {
             out = new FileOutputStream(file);
         }
-        new Thread(new StreamPiper(from, out, true)).start();
+        return StreamPiper.submit(new StreamPiper(from, out, true));
+    }
+
+    /**
+     * Run a StreamPiper on the shared pool.
+     *
+     * @param piper The StreamPiper to run.
+     *
+     * @return The number of bytes piped, once all input has been piped.
+     */
+    public static Future<Long> submit(final StreamPiper piper) {
+        return StreamPiper.EXECUTOR.submit((Callable<Long>) piper);
+    }
+
+    /**
+     * Get the number of bytes piped so far. This includes bytes that were discarded.
+     *
+     * @return The number of bytes piped so far.
+     */
+    public long getBytesPiped() {
+        return this.bytesPiped;
+    }
+
+    /**
+     * Perform the data piping, and get the number of bytes piped.
+     *
+     * @return The number of bytes piped.
+     */
+    public Long call() {
+        run();
+        return Long.valueOf(this.bytesPiped);
     }
 
     /**
@@ -97,13 +191,7 @@ public class StreamPiper implements Runnable {
      */
     public void run() {
         try {
-            int input = this.from.read();
-            while (input != -1) {
-                if (this.to != null) {
-                    this.to.write(input);
-                }
-                input = this.from.read();
-            }
+            copyBlocks();
         } catch (IOException e) {
             // Nothing we can do.
             StreamPiper.logger.error("Error encountered while running StreamPiper", e);
@@ -124,4 +212,46 @@ public class StreamPiper implements Runnable {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Copy all input to the output stream in blocks, or discard it if there is no output stream.
+     *
+     * @throws IOException
+     */
+    private void copyBlocks() throws IOException {
+        final byte[] buffer = StreamPiper.BUFFERS.get();
+        int read = this.from.read(buffer);
+        while (read != -1) {
+            if (this.to != null && read > 0) {
+                this.to.write(buffer, 0, read);
+            }
+            this.bytesPiped += read;
+            read = this.from.read(buffer);
+        }
+        if (this.to != null) {
+            this.to.flush();
+        }
+    }
+
+    /**
+     * Create the shared pool of threads for piping. Threads are created when needed and stopped when idle. They are
+     * not daemons, so that a file that is piped to is complete when the JVM exits.
+     *
+     * @return The shared pool of threads for piping.
+     */
+    private static ThreadPoolExecutor createExecutor() {
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "StreamPiper-" + StreamPiper.THREAD_COUNT.incrementAndGet());
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(0, StreamPiper.MAX_POOLED_THREADS, StreamPiper.KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory, new RejectedExecutionHandler() {
+            public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor) {
+                StreamPiper.logger.debug("All pooled StreamPiper threads are busy; starting a dedicated thread.");
+                threadFactory.newThread(runnable).start();
+            }
+        });
+    }
+}
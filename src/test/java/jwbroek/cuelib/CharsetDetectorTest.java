@@ -0,0 +1,86 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CharsetDetector}.
+ *
+ * @author jwbroek
+ */
+public class CharsetDetectorTest {
+
+    /**
+     * Album title with characters outside of windows-1252.
+     */
+    private final static String JAPANESE_TITLE = "TITLE \"\u3042\u308A\u304C\u3068\u3046\u30B4\u30B6\u30A4\u30DE\u30B9 \u6771\u4EAC\"\n";
+    /**
+     * Album title with characters from windows-1252.
+     */
+    private final static String LATIN_TITLE = "PERFORMER \"Bj\u00F6rk\"\nTITLE \"Caf\u00E9 \u2013 Cr\u00E8me Br\u00FBl\u00E9e\"\n";
+
+    /**
+     * The encoding of the bytes must be detected, and the sheet must decode to the original text.
+     */
+    @Test
+    public void testDetect() throws IOException {
+        assertDetected("UTF-8", "CATALOG 0724384260927\n", "US-ASCII");
+        assertDetected("UTF-8", LATIN_TITLE, "UTF-8");
+        assertDetected("UTF-8", JAPANESE_TITLE, "UTF-8");
+        assertDetected("UTF-16LE", LATIN_TITLE, "UTF-16LE");
+        assertDetected("UTF-16BE", JAPANESE_TITLE, "UTF-16BE");
+        assertDetected("windows-1252", LATIN_TITLE, "windows-1252");
+        assertDetected("Shift_JIS", JAPANESE_TITLE, "Shift_JIS");
+    }
+
+    /**
+     * Byte order marks must determine the encoding and must be skipped.
+     */
+    @Test
+    public void testByteOrderMarks() throws IOException {
+        assertDetected("UTF-8", "\uFEFF" + JAPANESE_TITLE, "UTF-8");
+        assertDetected("UTF-16BE", "\uFEFF" + LATIN_TITLE, "UTF-16BE");
+        assertDetected("UTF-16LE", "\uFEFF" + JAPANESE_TITLE, "UTF-16LE");
+    }
+
+    /**
+     * Check that the text, encoded in the specified encoding, is detected as the expected encoding and parses to
+     * the same cue sheet as the text itself.
+     *
+     * @param expected The expected encoding.
+     * @param text     The text to encode.
+     * @param encoding The encoding to encode the text in.
+     */
+    private static void assertDetected(final String expected, final String text, final String encoding) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(encoding));
+        Assert.assertEquals(expected, CharsetDetector.detect(bytes).name());
+
+        final String expectedText = text.startsWith("\uFEFF") ? text.substring(1) : text;
+        final CueSheet expectedSheet = CueParser.parse(new LineNumberReader(new StringReader(expectedText)));
+        final CueSheet sheet = CueParser.parse(ByteBuffer.wrap(text.getBytes(encoding)));
+        Assert.assertEquals(CueParserTest.describe(expectedSheet), CueParserTest.describe(sheet));
+    }
+}
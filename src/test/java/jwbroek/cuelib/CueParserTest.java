@@ -0,0 +1,411 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueParser}.
+ *
+ * @author jwbroek
+ */
+public class CueParserTest {
+
+    /**
+     * A typical, well-formed cue sheet.
+     */
+    final static String SAMPLE_SHEET = "REM GENRE \"Alternative Rock\"\n"
+            + "REM DATE 1996\n"
+            + "REM DISCID 860B640B\n"
+            + "REM COMMENT \"ExactAudioCopy v0.95b4\"\n"
+            + "CATALOG 0724384260927\n"
+            + "PERFORMER \"Skunk Anansie\"\n"
+            + "TITLE \"Stoosh\"\n"
+            + "FILE \"Skunk Anansie - Stoosh.wav\" WAVE\n"
+            + "  TRACK 01 AUDIO\n"
+            + "    TITLE \"Yes It's Fucking Political\"\n"
+            + "    PERFORMER \"Skunk Anansie\"\n"
+            + "    ISRC GBAAA9600001\n"
+            + "    FLAGS DCP PRE\n"
+            + "    INDEX 01 00:00:00\n"
+            + "  TRACK 02 AUDIO\n"
+            + "    TITLE \"All I Want\"\n"
+            + "    INDEX 00 03:20:10\n"
+            + "    INDEX 01 03:22:47\n"
+            + "  TRACK 03 AUDIO\n"
+            + "    TITLE \"She's My Heroine\"\n"
+            + "    PREGAP 00:02:00\n"
+            + "    INDEX 01 07:51:62\n"
+            + "    POSTGAP 00:01:00\n";
+
+    /**
+     * Lines that exercise the less obvious corners of the cue sheet syntax.
+     */
+    final static String[] EDGE_CASES = {
+            "", " ", "X", "FI", "REM", "REM ", "rem genre Rock", "REM genre \"Rock\"", "REM DATE 12345",
+            "REM DATE 0", "REM DATE 2001/05", "REM DISCID \"ab cd\"", "REM COMMENT \"", "REM GENRE \"Rock\"\u2028",
+            "REM DATE 2001\u2028", "REMCOMMENT x", "REM CoMmEnT \"a b\"", "CATALOG", "CATALOG 123",
+            "CATALOG 0724384260927", "catalog 0724384260927", "CATALOGUE 0724384260927", "CDTEXTFILE",
+            "CDTEXTFILE \"a b.cdt\"", "CDTEXTFILE a b", "FILE", "FILE \"a b.wav\" WAVE", "FILE a.wav wave",
+            "FILE \"a\"b.wav WAVE", "FILE \"a.wav WAVE", "FILE \" WAVE", "FILE a.wav OGG", "FILE a.wav WAVE x",
+            "file a.wav WAVE", "FILE\ta.wav\tWAVE", "FLAGS", "FLAGS DCP", "FLAGS DCP 4CH PRE SCMS DATA",
+            "FLAGS dcp X", "FLAGS DCP,PRE", "FLAGSDCP", "INDEX", "INDEX 1 0:0:0", "INDEX 01 00:00:00",
+            "INDEX 02 99:99:99", "INDEX 01 00:00", "INDEX 01 00:00:00 x", "index 01 00:00:00", "INDEX 0100:00:00",
+            "INDEX 01 00:00:00 ", "ISRC", "ISRC ABCDE1234567", "ISRC ABC", "isrc ABCDE1234567", "PERFORMER",
+            "PERFORMER x", "PERFORMER \"\"", "PERFORMER \"", "PERFORMER \"abc", "PERFORMER \"a\"b",
+            "PERFORMER \"a b\" c", "PERFORMER \u00A0x", "POSTGAP 00:01:00", "POSTGAP 1:2:3", "POSTGAP x",
+            "PREGAP 00:02:00", "PREGAP 00:02:00:00", "SONGWRITER \"a b\"", "SONGWRITER a b", "TITLE",
+            "TITLE \"01234567890123456789012345678901234567890123456789012345678901234567890123456789x\"",
+            "title \"x\"", "TITLE \"a\"\u2028", "TRACK", "TRACK 1 AUDIO", "TRACK 01 audio", "TRACK 02 MODE1/2352",
+            "TRACK 03 AUDIO x", "TRACK 04AUDIO", "tRaCk 05 AUDIO", "TR", "TIx", "\u0131SRC ABCDE1234567",
+            "PER\u0130FORMER x", "TRAC\u212A 01 AUDIO"
+    };
+
+    /**
+     * Fragments from which random lines are assembled.
+     */
+    private final static String[] FRAGMENTS = {
+            "REM", "rem", "COMMENT", "DATE", "date", "DISCID", "GENRE", "CATALOG", "CDTEXTFILE", "FILE", "file",
+            "FLAGS", "INDEX", "index", "ISRC", "PERFORMER", "POSTGAP", "PREGAP", "SONGWRITER", "TITLE", "TRACK",
+            "track", "WAVE", "wave", "AUDIO", "DCP", "PRE", "01", "1", "001", "00:00:00", "0:00:00", "03:61:80",
+            "::", "12:34", "\"", "\"a b\"", "\"x\"y", "x", "_", "-", "2001", "ABCDE1234567", "0724384260927",
+            " ", "  ", "\t", "\u000B", "\f", "\u00A0", "\u2028", "\r", "\r\n"
+    };
+
+    /**
+     * Both engines must give exactly the same results for a typical sheet.
+     */
+    @Test
+    public void testEnginesAgreeOnSampleSheet() throws IOException {
+        assertEnginesAgree(SAMPLE_SHEET);
+    }
+
+    /**
+     * Both engines must give exactly the same results for every edge case, both at the start of a sheet and
+     * inside a track.
+     */
+    @Test
+    public void testEnginesAgreeOnEdgeCases() throws IOException {
+        for (String line : EDGE_CASES) {
+            assertEnginesAgree(line + "\n");
+            assertEnginesAgree(SAMPLE_SHEET + line + "\n");
+        }
+    }
+
+    /**
+     * Both engines must give exactly the same results for randomly assembled lines.
+     */
+    @Test
+    public void testEnginesAgreeOnRandomLines() throws IOException {
+        final Random random = new Random(20081017L);
+        for (int sheet = 0; sheet < 2000; sheet++) {
+            final StringBuilder builder = new StringBuilder(SAMPLE_SHEET);
+            for (int line = 0; line < 5; line++) {
+                final int fragments = 1 + random.nextInt(5);
+                for (int fragment = 0; fragment < fragments; fragment++) {
+                    if (fragment > 0 && random.nextBoolean()) {
+                        builder.append(' ');
+                    }
+                    builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                }
+                builder.append('\n');
+            }
+            assertEnginesAgree(builder.toString());
+        }
+    }
+
+    /**
+     * All flags of a FLAGS datum must be kept.
+     */
+    @Test
+    public void testAllFlagsAreKept() throws IOException {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(SAMPLE_SHEET)));
+        Assert.assertEquals(2, sheet.getAllTrackData().get(0).getFlags().size());
+        Assert.assertTrue(sheet.getAllTrackData().get(0).getFlags().contains("DCP"));
+        Assert.assertTrue(sheet.getAllTrackData().get(0).getFlags().contains("PRE"));
+    }
+
+    /**
+     * A handler must receive the data of the sheet in order, without any CueSheet being built.
+     */
+    @Test
+    public void testEventHandler() throws IOException {
+        final List<String> events = new ArrayList<String>();
+        CueParser.parse(new LineNumberReader(new StringReader(SAMPLE_SHEET + "TRACK 05 AUDIO\n")), new CueEventAdapter() {
+            @Override
+            public void onTitle(final LineOfInput input, final String title, final boolean ofTrack) {
+                events.add((ofTrack ? "track title " : "album title ") + title);
+            }
+
+            @Override
+            public void onIndex(final LineOfInput input, final int number, final Position position) {
+                if (number == 1) {
+                    events.add("index " + position.getTotalFrames());
+                }
+            }
+
+            @Override
+            public void onWarning(final LineOfInput input, final String warning) {
+                events.add("warning " + input.getLineNumber() + " " + warning);
+            }
+        }, new ParseDiagnostics() {
+            public void warning(final LineOfInput input, final ParseWarning warning) {
+                events.add("diagnostics " + input.getLineNumber() + " " + warning);
+            }
+        });
+        Assert.assertEquals("[album title Stoosh, track title Yes It's Fucking Political, index 0, "
+                + "track title All I Want, index 15197, track title She's My Heroine, index 35387, "
+                + "diagnostics 24 INVALID_TRACK_NUMBER, warning 24 "
+                + ParseWarning.INVALID_TRACK_NUMBER.getMessage() + "]",
+                events.toString());
+    }
+
+    /**
+     * Diagnostics must receive the warnings instead of the sheet, and counting must not depend on the messages.
+     */
+    @Test
+    public void testCountingDiagnostics() throws IOException {
+        final CountingDiagnostics diagnostics = new CountingDiagnostics();
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(
+                "TITLE a\nTITLE b\nTRACK 01 AUDIO\nTRACK 03 AUDIO\nFLAGS\n")), diagnostics);
+        Assert.assertEquals(0, sheet.getMessages().size());
+        Assert.assertEquals(1, diagnostics.getCount(ParseWarning.DATUM_APPEARS_TOO_OFTEN));
+        Assert.assertEquals(1, diagnostics.getCount(ParseWarning.NO_FILE_SPECIFIED));
+        Assert.assertEquals(1, diagnostics.getCount(ParseWarning.INVALID_TRACK_NUMBER));
+        Assert.assertEquals(1, diagnostics.getCount(ParseWarning.NO_FLAGS));
+        Assert.assertEquals(4, diagnostics.getTotal());
+
+        final CueSheet defaultSheet = CueParser.parse(new LineNumberReader(new StringReader("TITLE a\nTITLE b\n")));
+        Assert.assertEquals(1, defaultSheet.getMessages().size());
+        Assert.assertEquals(ParseWarning.DATUM_APPEARS_TOO_OFTEN.getMessage(), defaultSheet.getMessages().get(0).getMessage());
+    }
+
+    /**
+     * Parsing must stop as soon as the limit is reached, without reading further input.
+     */
+    @Test
+    public void testParseLimit() throws IOException {
+        final ParseLimit trackLimit = new ParseLimit();
+        trackLimit.setStopAtFirstTrack(true);
+        final LineNumberReader trackReader = new LineNumberReader(new StringReader(SAMPLE_SHEET));
+        final CueSheet trackSheet = CueParser.parse(trackReader, trackLimit);
+        Assert.assertEquals(9, trackReader.getLineNumber());
+        Assert.assertEquals("Stoosh", trackSheet.getTitle());
+        Assert.assertEquals(1, trackSheet.getFileData().size());
+        Assert.assertEquals(0, trackSheet.getAllTrackData().size());
+
+        final ParseLimit fileLimit = new ParseLimit();
+        fileLimit.setStopAfterFirstFile(true);
+        final LineNumberReader fileReader = new LineNumberReader(new StringReader(SAMPLE_SHEET));
+        CueParser.parse(fileReader, fileLimit);
+        Assert.assertEquals(8, fileReader.getLineNumber());
+
+        final ParseLimit fieldLimit = new ParseLimit();
+        fieldLimit.setFields(EnumSet.of(CueSheet.MetaDataField.GENRE, CueSheet.MetaDataField.YEAR));
+        final LineNumberReader fieldReader = new LineNumberReader(new StringReader(SAMPLE_SHEET));
+        final CueSheet fieldSheet = CueParser.parse(fieldReader, fieldLimit);
+        Assert.assertEquals(2, fieldReader.getLineNumber());
+        Assert.assertEquals("Alternative Rock", fieldSheet.getGenre());
+        Assert.assertEquals(1996, fieldSheet.getYear());
+        Assert.assertNull(fieldSheet.getCatalog());
+    }
+
+    /**
+     * A limited parse of a file must read no further than needed, also when detecting the encoding.
+     */
+    @Test
+    public void testParseLimitReadsEarly() throws IOException {
+        final File file = File.createTempFile("cuelib", ".cue");
+        try {
+            final Writer writer = new FileWriter(file);
+            try {
+                writer.write(SAMPLE_SHEET);
+                for (int line = 0; line < 100000; line++) {
+                    writer.write("REM COMMENT \"Padding to make the file larger than a limited parse needs.\"\n");
+                }
+            } finally {
+                writer.close();
+            }
+            final ParseLimit limit = new ParseLimit();
+            limit.setStopAtFirstTrack(true);
+
+            for (boolean detectCharset : new boolean[]{false, true}) {
+                final ParserOptions options = new ParserOptions();
+                options.setLimit(limit);
+                options.setDetectCharset(detectCharset);
+                final ReusableCueParser parser = CueParser.newParser(options);
+                final CueSheet sheet = parser.parse(file);
+                Assert.assertEquals("Stoosh", sheet.getTitle());
+                Assert.assertEquals(0, sheet.getAllTrackData().size());
+                Assert.assertTrue("Read " + parser.bytesRead + " bytes.", parser.bytesRead < 64 * 1024);
+                Assert.assertTrue(file.length() > CueParser.MAP_THRESHOLD);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Parsing in parallel must give the same results as parsing one file at a time, and a file that cannot be
+     * parsed must not affect the others.
+     */
+    @Test
+    public void testParseAll() throws IOException, InterruptedException {
+        final List<File> files = new ArrayList<File>();
+        try {
+            for (int index = 0; index < 40; index++) {
+                final File file = File.createTempFile("cuelib", ".cue");
+                files.add(file);
+                final Writer writer = new FileWriter(file);
+                try {
+                    writer.write(SAMPLE_SHEET + EDGE_CASES[index] + "\n");
+                } finally {
+                    writer.close();
+                }
+            }
+            final File missingFile = new File(files.get(0).getPath() + ".missing");
+            files.add(missingFile);
+
+            final Map<File, String> results = new HashMap<File, String>();
+            final ParallelOptions options = new ParallelOptions();
+            options.setThreads(4);
+            final ParseStatistics statistics = CueParser.parseAll(files, options, new ParseResultHandler() {
+                public void onCueSheet(final File file, final CueSheet sheet) {
+                    results.put(file, describe(sheet));
+                }
+
+                public void onFailure(final File file, final Exception exception) {
+                    results.put(file, null);
+                }
+            });
+
+            Assert.assertEquals(40, statistics.getFiles());
+            Assert.assertEquals(1, statistics.getFailures());
+            Assert.assertEquals(files.size(), results.size());
+            Assert.assertNull(results.get(missingFile));
+            for (File file : files.subList(0, 40)) {
+                Assert.assertEquals(describe(CueParser.parse(file)), results.get(file));
+            }
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * A handler that throws must not stop the parsing of the remaining files, and its files must count as failed.
+     */
+    @Test
+    public void testParseAllHandlerFailure() throws IOException, InterruptedException {
+        final List<File> files = new ArrayList<File>();
+        try {
+            for (int index = 0; index < 5; index++) {
+                final File file = File.createTempFile("cuelib", ".cue");
+                files.add(file);
+                final Writer writer = new FileWriter(file);
+                try {
+                    writer.write(SAMPLE_SHEET);
+                } finally {
+                    writer.close();
+                }
+            }
+
+            final List<File> handled = new ArrayList<File>();
+            final ParallelOptions options = new ParallelOptions();
+            options.setThreads(2);
+            final ParseStatistics statistics = CueParser.parseAll(files, options, new ParseResultHandler() {
+                public void onCueSheet(final File file, final CueSheet sheet) {
+                    handled.add(file);
+                    throw new IllegalStateException("Handler failure.");
+                }
+
+                public void onFailure(final File file, final Exception exception) {
+                    handled.add(file);
+                }
+            });
+
+            Assert.assertEquals(files.size(), handled.size());
+            Assert.assertEquals(0, statistics.getFiles());
+            Assert.assertEquals(files.size(), statistics.getFailures());
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Parse the input with both engines, and from its UTF-8 encoded bytes, and check that the results are identical.
+     *
+     * @param input The cue sheet to parse.
+     */
+    private static void assertEnginesAgree(final String input) throws IOException {
+        String regexResult;
+        try {
+            regexResult = describe(CueParser.parse(new LineNumberReader(new StringReader(input)), CueParser.Engine.REGEX));
+        } catch (NumberFormatException e) {
+            regexResult = e.getClass().getName();
+        }
+        String lexerResult;
+        try {
+            lexerResult = describe(CueParser.parse(new LineNumberReader(new StringReader(input)), CueParser.Engine.LEXER));
+        } catch (NumberFormatException e) {
+            lexerResult = e.getClass().getName();
+        }
+        Assert.assertEquals("Engines disagree on input:\n" + input, regexResult, lexerResult);
+        String bytesResult;
+        try {
+            bytesResult = describe(CueParser.parse(ByteBuffer.wrap(input.getBytes("UTF-8"))));
+        } catch (NumberFormatException e) {
+            bytesResult = e.getClass().getName();
+        }
+        Assert.assertEquals("Parsing from bytes differs on input:\n" + input, lexerResult, bytesResult);
+    }
+
+    /**
+     * Get a textual description of the sheet that covers all its data and messages.
+     *
+     * @param sheet The sheet to describe.
+     *
+     * @return A textual description of the sheet.
+     */
+    static String describe(final CueSheet sheet) {
+        final StringBuilder builder = new StringBuilder(new CueSheetSerializer().serializeCueSheet(sheet));
+        for (Message message : sheet.getMessages()) {
+            builder.append(message.toString());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.io.Writer;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetCache}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetCacheTest {
+
+    /**
+     * Sheets must be served from memory and from disk while the file is unchanged, and be parsed again once it
+     * has changed.
+     */
+    @Test
+    public void testCache() throws IOException {
+        final File directory = File.createTempFile("cuelib", ".cache");
+        Assert.assertTrue(directory.delete());
+        final File file = File.createTempFile("cuelib", ".cue");
+        final File otherFile = File.createTempFile("cuelib", ".cue");
+        try {
+            write(file, CueParserTest.SAMPLE_SHEET + "TITLE again\n");
+            write(otherFile, "TITLE other\n");
+            final String expected = CueParserTest.describe(CueParser.parse(file));
+
+            final CueSheetCache cache = new CueSheetCache(directory, 1, false);
+            Assert.assertEquals(expected, CueParserTest.describe(cache.parse(file)));
+            Assert.assertEquals(expected, CueParserTest.describe(cache.parse(file)));
+            Assert.assertEquals(1, cache.getMisses());
+            Assert.assertEquals(1, cache.getMemoryHits());
+
+            // Every caller gets a copy of its own, while snapshots are shared.
+            final CueSheet modified = cache.parse(file);
+            modified.setTitle("modified");
+            modified.getAllTrackData().get(0).getIndex(1).getPosition().setMinutes(59);
+            Assert.assertEquals(expected, CueParserTest.describe(cache.parse(file)));
+            Assert.assertSame(cache.parseImmutable(file), cache.parseImmutable(file));
+            Assert.assertEquals(expected, CueParserTest.describe(cache.parseImmutable(file).toCueSheet()));
+            Assert.assertEquals(6, cache.getMemoryHits());
+
+            Assert.assertEquals("other", cache.parse(otherFile).getTitle());
+            Assert.assertEquals(1, cache.getEvictions());
+            Assert.assertEquals(1, cache.getMemorySize());
+
+            final CueSheetCache reopened = new CueSheetCache(directory, 10, false);
+            Assert.assertEquals(expected, CueParserTest.describe(reopened.parse(file)));
+            Assert.assertEquals(1, reopened.getDiskHits());
+            Assert.assertEquals(0, reopened.getMisses());
+
+            write(file, "TITLE changed\n");
+            Assert.assertEquals("changed", reopened.parse(file).getTitle());
+            Assert.assertEquals(1, reopened.getInvalidations());
+            Assert.assertEquals(1, reopened.getMisses());
+        } finally {
+            file.delete();
+            otherFile.delete();
+            final File[] entries = directory.listFiles();
+            if (entries != null) {
+                for (File entry : entries) {
+                    entry.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Corrupt entries on disk must be ignored and replaced, rather than fail the parse.
+     */
+    @Test
+    public void testCorruptEntry() throws IOException {
+        final File directory = File.createTempFile("cuelib", ".cache");
+        Assert.assertTrue(directory.delete());
+        final File file = File.createTempFile("cuelib", ".cue");
+        try {
+            write(file, CueParserTest.SAMPLE_SHEET);
+            final String expected = CueParserTest.describe(CueParser.parse(file));
+            new CueSheetCache(directory, 10, false).parse(file);
+            final File[] entries = directory.listFiles();
+            Assert.assertNotNull(entries);
+            Assert.assertEquals(1, entries.length);
+
+            // Magic, version, path, size and last modified time precede the hash length.
+            final int hashOffset = 4 + 4 + 2 + file.getCanonicalPath().getBytes("UTF-8").length + 8 + 8;
+            final byte[] garbage = new byte[64];
+            Arrays.fill(garbage, (byte) 0x7F);
+            for (int offset : new int[]{hashOffset, hashOffset + 4}) {
+                final RandomAccessFile entry = new RandomAccessFile(entries[0], "rw");
+                try {
+                    entry.seek(offset);
+                    entry.write(garbage);
+                } finally {
+                    entry.close();
+                }
+
+                final CueSheetCache cache = new CueSheetCache(directory, 10, false);
+                Assert.assertEquals(expected, CueParserTest.describe(cache.parse(file)));
+                Assert.assertEquals(1, cache.getMisses());
+                Assert.assertEquals(0, cache.getDiskHits());
+            }
+        } finally {
+            file.delete();
+            final File[] entries = directory.listFiles();
+            if (entries != null) {
+                for (File entry : entries) {
+                    entry.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Write text to a file.
+     *
+     * @param file The file to write to.
+     * @param text The text to write.
+     *
+     * @throws IOException
+     */
+    private static void write(final File file, final String text) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetCodec}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetCodecTest {
+
+    /**
+     * Decoding an encoded sheet must give back all data and messages, from both streams and buffers.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertRoundTrip(CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET))));
+        for (String line : CueParserTest.EDGE_CASES) {
+            assertRoundTrip(CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET + line + "\n"))));
+        }
+
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        sheet.getAllTrackData().get(1).setPostgap(new Position(1, 75, -2));
+        sheet.addError(new LineOfInput(3, "TITLE \u00E9"), "Error \u00E9.");
+        assertRoundTrip(sheet);
+    }
+
+    /**
+     * Input that is not an encoded sheet must be rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidInput() throws IOException {
+        CueSheetCodec.decode(ByteBuffer.wrap(CueParserTest.SAMPLE_SHEET.getBytes("US-ASCII")));
+    }
+
+    /**
+     * A corrupt string length must be rejected before anything is allocated for it.
+     */
+    @Test
+    public void testInvalidStringLength() throws IOException {
+        // Magic number, version 1, a new string for the catalog, and a length of almost 2 GiB.
+        final byte[] bytes = {0x43, 0x55, 0x45, 0x42, 1, 1, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        try {
+            CueSheetCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+            Assert.fail("The string length exceeds the maximum.");
+        } catch (IOException e) {
+            // Expected.
+        }
+
+        // Within the maximum, but more than remains in the buffer.
+        final byte[] shortBytes = {0x43, 0x55, 0x45, 0x42, 1, 1, (byte) 0x80, 0x08, 'a'};
+        try {
+            CueSheetCodec.decode(ByteBuffer.wrap(shortBytes));
+            Assert.fail("The string length exceeds the remaining bytes.");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Assert that a sheet survives encoding and decoding, and that streams and buffers use the same encoding.
+     *
+     * @param sheet The sheet to encode and decode.
+     *
+     * @throws IOException
+     */
+    private static void assertRoundTrip(final CueSheet sheet) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        CueSheetCodec.encode(sheet, output);
+        output.close();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.size());
+        CueSheetCodec.encode(sheet, buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertArrayEquals(bytes.toByteArray(), buffer.array());
+
+        final String expected = CueParserTest.describe(sheet);
+        Assert.assertEquals(expected, CueParserTest.describe(CueSheetCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))));
+        buffer.flip();
+        Assert.assertEquals(expected, CueParserTest.describe(CueSheetCodec.decode(buffer)));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetIndex}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetIndexTest {
+
+    /**
+     * Queries must find the sheets that meet all criteria, in the order in which they were added.
+     */
+    @Test
+    public void testQuery() throws IOException {
+        final CueSheetIndex index = new CueSheetIndex();
+        index.add(parse(CueParserTest.SAMPLE_SHEET));
+        index.add(parse("REM DATE 2001\nPERFORMER \"Bj\u00f6rk\"\nTITLE \"Vespertine\"\n"));
+        index.add(parse(CueParserTest.SAMPLE_SHEET.replace("1996", "1999").replace("Stoosh", "Post Orgasmic Chill")));
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(3, index.query().count());
+        Assert.assertEquals(2, index.query().matching(CueSheetIndex.Field.PERFORMER, "skunk").count());
+        Assert.assertEquals("Bj\u00f6rk", index.query().matching(CueSheetIndex.Field.PERFORMER, "BJORK").iterator().next()
+                .getPerformer());
+        Assert.assertEquals(0, index.query().matching(CueSheetIndex.Field.PERFORMER, "skunk bjork").count());
+        Assert.assertEquals(2, index.query().matching(CueSheetIndex.Field.TITLE, "all i want").count());
+        Assert.assertEquals(2, index.query().matching(CueSheetIndex.Field.ISRC, "GB-AAA-96-00001").count());
+        Assert.assertEquals(2, index.query().matching(CueSheetIndex.Field.GENRE, "rock").count());
+        Assert.assertEquals(2, index.query().matching(CueSheetIndex.Field.DISCID, "860b640b").count());
+        Assert.assertEquals(0, index.query().matching(CueSheetIndex.Field.CATALOG, "0724384").count());
+
+        final List<String> titles = new ArrayList<String>();
+        for (ImmutableCueSheet sheet : index.query().withYear(1995, 2001)) {
+            titles.add(sheet.getTitle());
+        }
+        Assert.assertEquals("[Stoosh, Vespertine, Post Orgasmic Chill]", titles.toString());
+
+        final ImmutableCueSheet found = index.query().matching(CueSheetIndex.Field.PERFORMER, "anansie")
+                .withYear(1997, 2010).iterator().next();
+        Assert.assertEquals("Post Orgasmic Chill", found.getTitle());
+        Assert.assertSame(index.get(2), found);
+
+        final int secondTrack = new Position(7, 51, 62).getTotalFrames() - new Position(3, 22, 47).getTotalFrames();
+        Assert.assertEquals(2, index.query().withTrackDuration(secondTrack, secondTrack).count());
+        Assert.assertEquals(0, index.query().withTrackDuration(secondTrack + 1, Integer.MAX_VALUE).count());
+    }
+
+    /**
+     * A query must also match keys that first appear after it was built.
+     */
+    @Test
+    public void testQueryBeforeAdd() throws IOException {
+        final CueSheetIndex index = new CueSheetIndex();
+        final CueSheetIndex.Query byPerformer = index.query().matching(CueSheetIndex.Field.PERFORMER, "skunk");
+        final CueSheetIndex.Query byYear = index.query().withYear(1990, 2000);
+        Assert.assertEquals(0, byPerformer.count());
+        Assert.assertEquals(0, byYear.count());
+
+        index.add(parse(CueParserTest.SAMPLE_SHEET));
+        Assert.assertEquals(1, byPerformer.count());
+        Assert.assertEquals(1, byYear.count());
+        Assert.assertSame(index.get(0), byYear.iterator().next());
+    }
+
+    /**
+     * Queries must give consistent results while sheets are being added.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final CueSheetIndex index = new CueSheetIndex();
+        final CueSheet sheet = parse(CueParserTest.SAMPLE_SHEET);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                int previous = 0;
+                while (previous < 2000 && failure.get() == null) {
+                    final int size = index.size();
+                    final int count = index.query().matching(CueSheetIndex.Field.PERFORMER, "skunk")
+                            .withYear(1996, 1996).count();
+                    if (count < previous || count < size) {
+                        failure.set("Saw " + count + " sheets after " + previous + " with " + size + " added.");
+                    }
+                    previous = count;
+                }
+            }
+        };
+        reader.start();
+        for (int added = 0; added < 2000; added++) {
+            index.add(sheet);
+        }
+        reader.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(2000, index.query().matching(CueSheetIndex.Field.TITLE, "heroine").count());
+    }
+
+    /**
+     * Parse a sheet.
+     *
+     * @param text The text of the sheet.
+     *
+     * @return The parsed sheet.
+     */
+    private static CueSheet parse(final String text) throws IOException {
+        return CueParser.parse(new LineNumberReader(new StringReader(text)));
+    }
+}
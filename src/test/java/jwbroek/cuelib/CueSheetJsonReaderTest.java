@@ -0,0 +1,127 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetJsonReader} and {@link jwbroek.cuelib.CueSheetJsonWriter}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetJsonReaderTest {
+
+    /**
+     * Reading the JSON of a sheet must give back all data and messages.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertRoundTrip(CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET))));
+        for (String line : CueParserTest.EDGE_CASES) {
+            assertRoundTrip(CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET + line + "\n"))));
+        }
+
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        sheet.getAllTrackData().get(1).setPostgap(new Position(1, 75, -2));
+        sheet.setTitle("\"Quoted\"\\\n\t\u0001\u2028\u00E9");
+        sheet.addError(new LineOfInput(3, "TITLE \u00E9"), "Error \u00E9.");
+        assertRoundTrip(sheet);
+    }
+
+    /**
+     * Newline delimited JSON must be read back sheet by sheet, and unknown fields and null values must be ignored.
+     */
+    @Test
+    public void testNewlineDelimited() throws IOException {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final StringBuilder output = new StringBuilder();
+        final CueSheetJsonWriter writer = new CueSheetJsonWriter(output);
+        for (int count = 0; count < 100; count++) {
+            writer.writeLine(sheet);
+        }
+        output.append("{\"title\":\"x\",\"unknown\":[{\"a\":[1.5e3,true,false,null]}],\"performer\":null,")
+                .append("\"files\":[{\"tracks\":[{\"pregap\":{\"frames\":4652},\"indices\":[{\"number\":1}]}]}]}\n");
+        Assert.assertEquals(101, output.toString().split("\n").length);
+
+        final CueSheetJsonReader reader = new CueSheetJsonReader(new StringReader(output.toString()));
+        final String expected = new CueSheetSerializer().serializeCueSheet(sheet);
+        for (int count = 0; count < 100; count++) {
+            Assert.assertEquals(expected, new CueSheetSerializer().serializeCueSheet(reader.read()));
+        }
+        final CueSheet last = reader.read();
+        Assert.assertEquals("x", last.getTitle());
+        Assert.assertNull(last.getPerformer());
+        final TrackData trackData = last.getAllTrackData().get(0);
+        Assert.assertEquals(new Position(1, 2, 2).getTotalFrames(), trackData.getPregap().getTotalFrames());
+        Assert.assertEquals(1, trackData.getIndices().get(0).getNumber());
+        Assert.assertNull(trackData.getIndices().get(0).getPosition());
+        Assert.assertNull(reader.read());
+    }
+
+    /**
+     * Members whose value is null must be read as absent, including arrays.
+     */
+    @Test
+    public void testNullMembers() throws IOException {
+        final CueSheet sheet = new CueSheetJsonReader(new StringReader(
+                "{\"files\":null,\"messages\":null,\"title\":\"x\"}")).read();
+        Assert.assertEquals("x", sheet.getTitle());
+        Assert.assertEquals(0, sheet.getFileData().size());
+        Assert.assertEquals(0, sheet.getMessages().size());
+
+        final CueSheet trackSheet = new CueSheetJsonReader(new StringReader(
+                "{\"files\":[{\"tracks\":null,\"file\":\"a.wav\"},{\"file\":\"b.wav\",\"tracks\":"
+                        + "[{\"flags\":null,\"indices\":null,\"number\":1}]}]}")).read();
+        Assert.assertEquals(2, trackSheet.getFileData().size());
+        Assert.assertEquals("a.wav", trackSheet.getFileData().get(0).getFile());
+        Assert.assertEquals(0, trackSheet.getFileData().get(0).getTrackData().size());
+        final TrackData trackData = trackSheet.getFileData().get(1).getTrackData().get(0);
+        Assert.assertEquals(1, trackData.getNumber());
+        Assert.assertEquals(0, trackData.getFlags().size());
+        Assert.assertEquals(0, trackData.getIndices().size());
+    }
+
+    /**
+     * Invalid JSON must be rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidInput() throws IOException {
+        new CueSheetJsonReader(new StringReader("{\"title\":\"x\",\"date\":19.5}")).read();
+    }
+
+    /**
+     * Assert that a sheet survives being written as JSON and read back.
+     *
+     * @param sheet The sheet.
+     */
+    private static void assertRoundTrip(final CueSheet sheet) throws IOException {
+        final StringBuilder output = new StringBuilder();
+        new CueSheetJsonWriter(output).write(sheet);
+        final CueSheet result = new CueSheetJsonReader(new StringReader(output.toString())).read();
+        Assert.assertEquals(CueParserTest.describe(sheet), CueParserTest.describe(result));
+        for (int index = 0; index < sheet.getMessages().size(); index++) {
+            Assert.assertEquals(sheet.getMessages().get(index).getClass(), result.getMessages().get(index).getClass());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap memory taken by parsed cue sheets, in bytes per track. Not a unit test; run it with
+ * {@link #main(String[])}, preferably with a fixed heap size.
+ *
+ * @author jwbroek
+ */
+public class CueSheetMemoryBenchmark {
+
+    /**
+     * Number of sheets to hold.
+     */
+    private final static int SHEETS = 20000;
+    /**
+     * Number of tracks per sheet.
+     */
+    private final static int TRACKS = 12;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of sheets to hold. Optional.
+     *
+     * @throws IOException
+     */
+    public static void main(final String[] args) throws IOException {
+        final int sheetCount = args.length > 0 ? Integer.parseInt(args[0]) : SHEETS;
+        final List<CueSheet> sheets = new ArrayList<CueSheet>(sheetCount);
+
+        final long before = usedMemory();
+        for (int sheet = 0; sheet < sheetCount; sheet++) {
+            sheets.add(CueParser.parse(new LineNumberReader(new StringReader(createSheet(sheet)))));
+        }
+        final long after = usedMemory();
+
+        final double perTrack = (after - before) / (double) (sheetCount * TRACKS);
+        System.out.println(String.format("%d sheets of %d tracks: %.1f bytes per track (including sheet overhead).",
+                sheets.size(), TRACKS, perTrack));
+    }
+
+    /**
+     * Create the text of a typical sheet: one file, album performer and title, and per track a title, the album
+     * performer, flags and two indices.
+     *
+     * @param number Number of the sheet, to make the titles unique.
+     *
+     * @return The text of the sheet.
+     */
+    private static String createSheet(final int number) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("REM GENRE Rock\nREM DATE 1996\nPERFORMER \"Performer ").append(number % 1000).append("\"\n");
+        builder.append("TITLE \"Album ").append(number).append("\"\nFILE \"Album ").append(number).append(".wav\" WAVE\n");
+        for (int track = 1; track <= TRACKS; track++) {
+            builder.append("  TRACK ").append(track < 10 ? "0" : "").append(track).append(" AUDIO\n");
+            builder.append("    TITLE \"Track ").append(track).append(" of ").append(number).append("\"\n");
+            builder.append("    PERFORMER \"Performer ").append(number % 1000).append("\"\n");
+            builder.append("    FLAGS DCP\n");
+            builder.append("    INDEX 00 0").append(track % 10).append(":00:00\n");
+            builder.append("    INDEX 01 0").append(track % 10).append(":02:33\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the heap memory in use, after collecting garbage as well as possible.
+     *
+     * @return The heap memory in use, in bytes.
+     */
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 5; attempt++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
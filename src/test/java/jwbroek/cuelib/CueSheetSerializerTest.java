@@ -0,0 +1,98 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetSerializer}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetSerializerTest {
+
+    /**
+     * Writing to an Appendable, a stream or a channel must give the same text as serializing to a String, also when
+     * the serializer is reused and the output exceeds its buffers.
+     */
+    @Test
+    public void testStreamingOutput() throws IOException {
+        final StringBuilder text = new StringBuilder(CueParserTest.SAMPLE_SHEET);
+        for (int track = 4; track < 99; track++) {
+            text.append("TRACK ").append(track).append(" AUDIO\nTITLE \"Caf\u00E9 \uD834\uDD1E ").append(track)
+                    .append("\"\nINDEX 01 ").append(track * 2).append(":00:00\n");
+        }
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(text.toString())));
+        final CueSheetSerializer serializer = new CueSheetSerializer();
+        final String expected = serializer.serializeCueSheet(sheet);
+        final Charset utf8 = Charset.forName("UTF-8");
+
+        final StringWriter writer = new StringWriter();
+        serializer.serializeCueSheet(sheet, writer);
+        Assert.assertEquals(expected, writer.toString());
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            serializer.serializeCueSheet(sheet, stream, utf8);
+            Assert.assertEquals(expected, new String(stream.toByteArray(), "UTF-8"));
+
+            final ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+            serializer.serializeCueSheet(sheet, Channels.newChannel(channelStream), Charset.forName("UTF-16LE"));
+            Assert.assertEquals(expected, new String(channelStream.toByteArray(), "UTF-16LE"));
+        }
+    }
+
+    /**
+     * The line separator and byte order mark must be applied, and positions must be formatted as by String.format.
+     */
+    @Test
+    public void testFormatting() throws IOException {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final TrackData trackData = sheet.getAllTrackData().get(0);
+        trackData.setPregap(new Position(123, 4, 5));
+        trackData.setPostgap(new Position(0, 75, -2));
+        final CueSheetSerializer serializer = new CueSheetSerializer("\t");
+
+        final String text = serializer.serializeCueSheet(sheet);
+        Assert.assertTrue(text.contains("\t\tPREGAP 123:04:05\n"));
+        Assert.assertTrue(text.contains("\t\tPOSTGAP 00:75:-2\n"));
+
+        serializer.setLineSeparator("\r\n");
+        serializer.setWriteByteOrderMark(true);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.serializeCueSheet(sheet, stream, Charset.forName("UTF-8"));
+        final byte[] bytes = stream.toByteArray();
+        Assert.assertEquals((byte) 0xEF, bytes[0]);
+        Assert.assertEquals((byte) 0xBB, bytes[1]);
+        Assert.assertEquals((byte) 0xBF, bytes[2]);
+        Assert.assertEquals("\uFEFF" + text.replace("\n", "\r\n"), new String(bytes, "UTF-8"));
+
+        // Only encoded output starts with a byte order mark.
+        Assert.assertEquals(text.replace("\n", "\r\n"), serializer.serializeCueSheet(sheet));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetToXmlSerializer} and {@link jwbroek.cuelib.CueSheetXmlWriter}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetToXmlSerializerTest {
+
+    /**
+     * The streaming output must be equivalent to the DOM output, and must conform to the schema.
+     */
+    @Test
+    public void testStreamingOutput() throws Exception {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET
+                + "TRACK 04 AUDIO\nTITLE \"A & <B>\"\nFLAGS DCP PRE\nPREGAP 00:02:00\nINDEX 01 10:00:00\n")));
+        final CueSheetToXmlSerializer serializer = new CueSheetToXmlSerializer();
+
+        final StringWriter domOutput = new StringWriter();
+        serializer.serializeCueSheet(sheet, new StreamResult(domOutput));
+        final ByteArrayOutputStream streamOutput = new ByteArrayOutputStream();
+        serializer.serializeCueSheet(sheet, streamOutput);
+
+        final Document expected = CueSheetToXmlSerializerTest.parse(domOutput.toString().getBytes("UTF-8"));
+        final Document actual = CueSheetToXmlSerializerTest.parse(streamOutput.toByteArray());
+        Assert.assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+
+        final Validator validator = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(new File("doc/xsd/cuesheet-2008-1.xsd")).newValidator();
+        validator.validate(new DOMSource(actual));
+    }
+
+    /**
+     * Many sheets must be written into a single document, which must conform to the schema.
+     */
+    @Test
+    public void testMultipleSheets() throws Exception {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CueSheetXmlWriter writer = new CueSheetXmlWriter(output);
+        for (int count = 0; count < 3; count++) {
+            writer.write(sheet);
+        }
+        writer.close();
+        Assert.assertEquals(3, writer.getCount());
+
+        final Document document = CueSheetToXmlSerializerTest.parse(output.toByteArray());
+        SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new File("doc/xsd/cuesheet-2008-1.xsd"))
+                .newValidator().validate(new DOMSource(document));
+
+        final Element root = document.getDocumentElement();
+        Assert.assertEquals("cuesheets", root.getLocalName());
+        Assert.assertEquals(3, root.getElementsByTagNameNS(root.getNamespaceURI(), "cuesheet").getLength());
+        Assert.assertEquals(3 * sheet.getAllTrackData().size(),
+                root.getElementsByTagNameNS(root.getNamespaceURI(), "track").getLength());
+    }
+
+    /**
+     * Parse an XML document.
+     *
+     * @param bytes The document.
+     *
+     * @return The parsed document.
+     */
+    private static Document parse(final byte[] bytes) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+        document.normalizeDocument();
+        return document;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetValidator}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetValidatorTest {
+
+    /**
+     * Parsing without rules and validating afterward must raise the same warnings as parsing with all rules. The
+     * rules that apply to the input must give exactly the same warnings; the rules that apply to the sheet itself
+     * the same kinds of warnings.
+     */
+    @Test
+    public void testSameWarningsAsParser() throws IOException {
+        assertSameWarnings(CueParserTest.SAMPLE_SHEET);
+        for (int index = 0; index < CueParserTest.EDGE_CASES.length; index++) {
+            final String line = CueParserTest.EDGE_CASES[index];
+            final String nextLine = CueParserTest.EDGE_CASES[(index * 7 + 3) % CueParserTest.EDGE_CASES.length];
+            assertSameWarnings(line + "\n" + nextLine + "\n");
+            assertSameWarnings(CueParserTest.SAMPLE_SHEET + line + "\n" + nextLine + "\n" + line + "\n");
+        }
+    }
+
+    /**
+     * Only the selected rules must be checked, both while parsing and when validating, also in parallel.
+     */
+    @Test
+    public void testSelectedRules() throws IOException, InterruptedException {
+        final String text = CueParserTest.SAMPLE_SHEET + "TITLE again\nindex 01 99:99:99\n";
+        final CueSheetValidator validator = new CueSheetValidator(EnumSet.of(ParseWarning.DATUM_APPEARS_TOO_OFTEN));
+
+        final ParserOptions options = new ParserOptions();
+        options.setRules(validator.getRules());
+        final CueSheet parsedSheet = CueParser.newParser(options).parse(new LineNumberReader(new StringReader(text)));
+        Assert.assertEquals(1, parsedSheet.getMessages().size());
+        Assert.assertTrue(parsedSheet.getMessages().get(0).toString().contains(ParseWarning.DATUM_APPEARS_TOO_OFTEN.getMessage()));
+
+        final Map<File, CueSheet> sheets = new LinkedHashMap<File, CueSheet>();
+        try {
+            for (int sheet = 0; sheet < 20; sheet++) {
+                final File file = File.createTempFile("cuelib", ".cue");
+                final Writer writer = new FileWriter(file);
+                try {
+                    writer.write(text);
+                } finally {
+                    writer.close();
+                }
+                sheets.put(file, CueParser.newParser(createFastOptions()).parse(file));
+            }
+
+            final ParseStatistics statistics = validator.validateAll(sheets, 4);
+            Assert.assertEquals(sheets.size(), statistics.getFiles());
+            for (CueSheet sheet : sheets.values()) {
+                Assert.assertEquals(CueParserTest.describe(parsedSheet), CueParserTest.describe(sheet));
+            }
+        } finally {
+            for (File file : sheets.keySet()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * A sheet that was not parsed must be validated against the rules that apply to the sheet itself.
+     */
+    @Test
+    public void testValidateSheet() {
+        final CueSheet sheet = new CueSheet();
+        sheet.setCatalog("123");
+        final FileData fileData = new FileData(sheet, "track.wav", "WAVE");
+        sheet.getFileData().add(fileData);
+        final TrackData trackData = new TrackData(fileData, 2, "AUDIO");
+        fileData.getTrackData().add(trackData);
+        trackData.getIndices().add(new Index(1, new Position(0, 70, 0)));
+
+        new CueSheetValidator().validate(sheet);
+        final Set<String> expected = new TreeSet<String>();
+        expected.add(ParseWarning.INVALID_CATALOG_NUMBER.getMessage());
+        expected.add(ParseWarning.INVALID_TRACK_NUMBER.getMessage());
+        expected.add(ParseWarning.INVALID_SECONDS_VALUE.getMessage());
+        expected.add(ParseWarning.INVALID_FIRST_POSITION.getMessage());
+        Assert.assertEquals(expected, new TreeSet<String>(getMessages(sheet)));
+        Assert.assertEquals("CATALOG 123", sheet.getMessages().get(0).getInput());
+    }
+
+    /**
+     * Check that parsing without rules and validating afterward gives the same warnings as parsing with all rules.
+     * The rules over the input must give exactly the same warnings. The rules over the sheet must give one warning
+     * for every offending value in the sheet: exactly the warnings of parsing the serialized sheet, in which every
+     * value appears once, but without line numbers. Input that cannot be parsed at all must fail in the same way.
+     *
+     * @param input The cue sheet to parse.
+     */
+    private static void assertSameWarnings(final String input) throws IOException {
+        final CueSheet sheet;
+        try {
+            sheet = CueParser.newParser(createFastOptions()).parse(new LineNumberReader(new StringReader(input)));
+        } catch (NumberFormatException e) {
+            try {
+                CueParser.parse(new LineNumberReader(new StringReader(input)));
+                Assert.fail("Parsing with rules must fail as without on input:\n" + input);
+            } catch (NumberFormatException expected) {
+                // Expected.
+            }
+            return;
+        }
+        Assert.assertTrue(sheet.getMessages().isEmpty());
+
+        final CueSheet inputSheet = CueParser.newParser(createOptions(CueSheetValidator.INPUT_RULES))
+                .parse(new LineNumberReader(new StringReader(input)));
+        new CueSheetValidator(CueSheetValidator.INPUT_RULES).validate(sheet, new LineNumberReader(new StringReader(input)));
+        Assert.assertEquals("Validation differs on input:\n" + input,
+                CueParserTest.describe(inputSheet), CueParserTest.describe(sheet));
+
+        final Set<ParseWarning> sheetRules = EnumSet.complementOf(EnumSet.copyOf(CueSheetValidator.INPUT_RULES));
+        final CueSheet modelSheet = CueParser.newParser(createFastOptions()).parse(new LineNumberReader(new StringReader(input)));
+        final String serialized = new CueSheetSerializer().serializeCueSheet(modelSheet);
+        final CueSheet serializedSheet = CueParser.newParser(createOptions(sheetRules))
+                .parse(new LineNumberReader(new StringReader(serialized)));
+        new CueSheetValidator(sheetRules).validate(modelSheet);
+        Assert.assertEquals("Validation differs on input:\n" + input + "serialized as:\n" + serialized,
+                getWarnings(serializedSheet), getWarnings(modelSheet));
+        for (Message message : modelSheet.getMessages()) {
+            Assert.assertEquals(-1, message.getLineNumber());
+        }
+
+        // Values that are repeated in the input may be reported more often while parsing, but not differently.
+        final CueSheet parsedSheet = CueParser.newParser(createOptions(sheetRules))
+                .parse(new LineNumberReader(new StringReader(input)));
+        Assert.assertEquals("Validation differs on input:\n" + input,
+                new TreeSet<String>(getMessages(parsedSheet)), new TreeSet<String>(getMessages(modelSheet)));
+    }
+
+    /**
+     * Get the warnings of a sheet, without regard for the lines they were raised on and their order.
+     *
+     * @param sheet The sheet.
+     *
+     * @return The warnings of the sheet, with their input, in sorted order.
+     */
+    private static List<String> getWarnings(final CueSheet sheet) {
+        final List<String> result = new ArrayList<String>();
+        for (Message message : sheet.getMessages()) {
+            result.add(message.getMessage() + " [" + message.getInput().trim() + "]");
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Get the messages of the warnings of a sheet.
+     *
+     * @param sheet The sheet.
+     *
+     * @return The messages of the warnings of the sheet, in order.
+     */
+    private static List<String> getMessages(final CueSheet sheet) {
+        final List<String> result = new ArrayList<String>();
+        for (Message message : sheet.getMessages()) {
+            result.add(message.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Create options for parsing while checking the specified rules.
+     *
+     * @param rules The rules to check.
+     *
+     * @return Options for parsing while checking the specified rules.
+     */
+    private static ParserOptions createOptions(final Set<ParseWarning> rules) {
+        final ParserOptions options = new ParserOptions();
+        options.setRules(rules);
+        return options;
+    }
+
+    /**
+     * Create options for parsing without checking any rules.
+     *
+     * @return Options for parsing without checking any rules.
+     */
+    private static ParserOptions createFastOptions() {
+        return createOptions(EnumSet.noneOf(ParseWarning.class));
+    }
+}
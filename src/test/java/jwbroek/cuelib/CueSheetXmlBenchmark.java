@@ -0,0 +1,88 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Compares reading the XML representation of cue sheets with {@link CueSheetXmlReader} to the older route of
+ * transforming the XML to cue text with doc/xslt/cuesheet-2008-1_to_text.xslt and parsing that text. Not a unit test;
+ * run it with {@link #main(String[])} from the project directory.
+ *
+ * @author jwbroek
+ */
+public class CueSheetXmlBenchmark {
+
+    /**
+     * Number of sheets to read per round.
+     */
+    private final static int SHEETS = 2000;
+    /**
+     * Number of rounds. The first rounds serve as warm-up.
+     */
+    private final static int ROUNDS = 5;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args Not used.
+     *
+     * @throws Exception
+     */
+    public static void main(final String[] args) throws Exception {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new CueSheetToXmlSerializer().serializeCueSheet(sheet, output);
+        final byte[] document = output.toByteArray();
+
+        final Templates templates = TransformerFactory.newInstance().newTemplates(
+                new StreamSource(new File("doc/xslt/cuesheet-2008-1_to_text.xslt")));
+        final CueSheetXmlReader reader = new CueSheetXmlReader();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int count = 0; count < SHEETS; count++) {
+                final Transformer transformer = templates.newTransformer();
+                final StringWriter text = new StringWriter();
+                transformer.transform(new StreamSource(new ByteArrayInputStream(document)), new StreamResult(text));
+                CueParser.parse(new LineNumberReader(new StringReader(text.toString())));
+            }
+            final long transformTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int count = 0; count < SHEETS; count++) {
+                reader.read(new ByteArrayInputStream(document));
+            }
+            final long readTime = System.nanoTime() - start;
+
+            System.out.println(String.format("Round %d: XSLT and parse %.1f us per sheet, reader %.1f us per sheet.",
+                    round + 1, transformTime / 1000.0 / SHEETS, readTime / 1000.0 / SHEETS));
+        }
+    }
+}
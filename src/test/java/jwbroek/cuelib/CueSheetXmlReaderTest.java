@@ -0,0 +1,130 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.CueSheetXmlReader}.
+ *
+ * @author jwbroek
+ */
+public class CueSheetXmlReaderTest {
+
+    /**
+     * Reading the XML representation of a sheet must give back all its data, with and without validation.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final CueSheetToXmlSerializer serializer = new CueSheetToXmlSerializer();
+        final CueSheetXmlReader reader = new CueSheetXmlReader();
+        final CueSheetXmlReader validatingReader = new CueSheetXmlReader(CueSheetXmlReaderTest.loadSchema());
+
+        assertRoundTrip(serializer, reader, CueParserTest.SAMPLE_SHEET);
+        assertRoundTrip(serializer, validatingReader, CueParserTest.SAMPLE_SHEET);
+        for (String line : CueParserTest.EDGE_CASES) {
+            assertRoundTrip(serializer, reader, CueParserTest.SAMPLE_SHEET + line + "\n");
+        }
+    }
+
+    /**
+     * All sheets in a document with many sheets must be read.
+     */
+    @Test
+    public void testMultipleSheets() throws Exception {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CueSheetXmlWriter writer = new CueSheetXmlWriter(output);
+        for (int count = 0; count < 3; count++) {
+            writer.write(sheet);
+        }
+        writer.close();
+
+        final List<CueSheet> sheets = new CueSheetXmlReader(CueSheetXmlReaderTest.loadSchema())
+                .read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals(3, sheets.size());
+        final String expected = new CueSheetSerializer().serializeCueSheet(sheet);
+        for (CueSheet readSheet : sheets) {
+            Assert.assertEquals(expected, new CueSheetSerializer().serializeCueSheet(readSheet));
+        }
+    }
+
+    /**
+     * A sheet that does not conform to the schema must be rejected when validating, and read leniently otherwise.
+     */
+    @Test
+    public void testValidation() throws Exception {
+        final String document = "<cuesheet xmlns=\"" + CueSheetXmlReader.NAMESPACE + "\" title=\"x\">"
+                + "<unknown/><file file=\"a.wav\"/></cuesheet>";
+
+        final List<CueSheet> sheets = new CueSheetXmlReader().read(new ByteArrayInputStream(document.getBytes("UTF-8")));
+        Assert.assertEquals(1, sheets.size());
+        Assert.assertEquals("x", sheets.get(0).getTitle());
+        Assert.assertEquals("a.wav", sheets.get(0).getFileData().get(0).getFile());
+
+        try {
+            new CueSheetXmlReader(CueSheetXmlReaderTest.loadSchema()).read(
+                    new ByteArrayInputStream(document.getBytes("UTF-8")));
+            Assert.fail("Invalid sheet was accepted.");
+        } catch (XMLStreamException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Assert that a sheet survives being written as XML and read back.
+     *
+     * @param serializer The serializer to write the XML with.
+     * @param reader     The reader to read the XML with.
+     * @param text       The text of the sheet.
+     */
+    private static void assertRoundTrip(final CueSheetToXmlSerializer serializer, final CueSheetXmlReader reader,
+                                        final String text) throws Exception {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(text)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        serializer.serializeCueSheet(sheet, output);
+
+        final List<CueSheet> sheets = reader.read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals(1, sheets.size());
+        Assert.assertEquals(new CueSheetSerializer().serializeCueSheet(sheet),
+                new CueSheetSerializer().serializeCueSheet(sheets.get(0)));
+    }
+
+    /**
+     * Load the schema for the cue sheet namespace.
+     *
+     * @return The schema for the cue sheet namespace.
+     */
+    private static Schema loadSchema() throws Exception {
+        return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(new File("doc/xsd/cuesheet-2008-1.xsd"));
+    }
+}
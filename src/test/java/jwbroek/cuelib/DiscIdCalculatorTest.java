@@ -0,0 +1,165 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.DiscIdCalculator} and {@link jwbroek.cuelib.DiscToc}.
+ *
+ * @author jwbroek
+ */
+public class DiscIdCalculatorTest {
+
+    /**
+     * Both disc ids must be computed as specified by FreeDB and MusicBrainz.
+     */
+    @Test
+    public void testDiscIds() {
+        final DiscToc toc = new DiscToc(1, new int[]{150, 22767, 41887, 58317, 72102, 91375, 104652, 115380, 132165,
+                143932, 159870, 174597}, 267257);
+        Assert.assertEquals("A70DE90C", toc.getFreedbId());
+        Assert.assertEquals("I5l9cCSFccLKFEKS.7wqSZAorPU-", toc.getMusicBrainzId());
+        Assert.assertEquals(12, toc.getTrackCount());
+        Assert.assertEquals(22767, toc.getOffset(2));
+
+        try {
+            new DiscToc(1, new int[]{150, 150}, 300);
+            Assert.fail("Offsets must be ascending.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Tables of contents must be built from the sheet and the lengths of the audio files, and the lengths must be
+     * cached until the audio file changes.
+     */
+    @Test
+    public void testCreateToc() throws IOException {
+        final File audioFile = File.createTempFile("cuelib", ".wav");
+        try {
+            writeWave(audioFile, 3);
+            final CueSheet sheet = parse("FILE \"" + audioFile.getName() + "\" WAVE\n  TRACK 01 AUDIO\n"
+                    + "    INDEX 01 00:00:00\n  TRACK 02 AUDIO\n    INDEX 00 00:00:50\n    INDEX 01 00:01:00\n");
+            final DiscIdCalculator calculator = new DiscIdCalculator();
+
+            final DiscToc toc = calculator.createToc(sheet, audioFile.getParentFile());
+            Assert.assertEquals("1 2 375 150 225", toc.toString());
+
+            // The length is cached, so the changed contents go unnoticed as long as the file looks the same.
+            final long lastModified = audioFile.lastModified();
+            final FileOutputStream output = new FileOutputStream(audioFile, true);
+            output.getChannel().truncate(0);
+            output.write(new byte[3 * 44100 * 4 + 44]);
+            output.close();
+            Assert.assertTrue(audioFile.setLastModified(lastModified));
+            Assert.assertEquals(toc.toString(), calculator.createToc(sheet, audioFile.getParentFile()).toString());
+
+            writeWave(audioFile, 4);
+            Assert.assertEquals("1 2 450 150 225",
+                    calculator.createToc(sheet.getFileData().get(0), audioFile.getParentFile()).toString());
+        } finally {
+            audioFile.delete();
+        }
+    }
+
+    /**
+     * Pregaps and postgaps are not in the audio files, but are on the disc, so they must move the tracks after them
+     * and the lead-out.
+     */
+    @Test
+    public void testGaps() throws IOException {
+        final File audioFile = File.createTempFile("cuelib", ".wav");
+        try {
+            writeWave(audioFile, 3);
+            final CueSheet sheet = parse("FILE \"" + audioFile.getName() + "\" WAVE\n  TRACK 01 AUDIO\n"
+                    + "    INDEX 01 00:00:00\n    POSTGAP 00:00:10\n  TRACK 02 AUDIO\n    PREGAP 00:02:00\n"
+                    + "    INDEX 01 00:01:00\n");
+            Assert.assertEquals("1 2 535 150 385",
+                    new DiscIdCalculator().createToc(sheet, audioFile.getParentFile()).toString());
+        } finally {
+            audioFile.delete();
+        }
+    }
+
+    /**
+     * Batches of sheets must be handled in parallel, leaving out the sheets that fail.
+     */
+    @Test
+    public void testCreateTocs() throws Exception {
+        final File audioFile = File.createTempFile("cuelib", ".wav");
+        try {
+            writeWave(audioFile, 2);
+            final Map<File, CueSheet> sheets = new HashMap<File, CueSheet>();
+            for (int index = 0; index < 20; index++) {
+                sheets.put(new File(audioFile.getParentFile(), "sheet" + index + ".cue"), parse("FILE \""
+                        + audioFile.getName() + "\" WAVE\n  TRACK 01 AUDIO\n    INDEX 01 00:00:" + index + "\n"));
+            }
+            final File missing = new File(audioFile.getParentFile(), "missing.cue");
+            sheets.put(missing, parse("FILE \"missing.wav\" WAVE\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n"));
+
+            final Map<File, DiscToc> tocs = new DiscIdCalculator().createTocs(sheets, 4);
+            Assert.assertEquals(20, tocs.size());
+            Assert.assertFalse(tocs.containsKey(missing));
+            Assert.assertEquals("1 1 300 157",
+                    tocs.get(new File(audioFile.getParentFile(), "sheet7.cue")).toString());
+        } finally {
+            audioFile.delete();
+        }
+    }
+
+    /**
+     * Write a silent wave file of CD quality.
+     *
+     * @param file    The file to write.
+     * @param seconds The length of the file in seconds.
+     */
+    private static void writeWave(final File file, final int seconds) throws IOException {
+        final AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+        final byte[] samples = new byte[seconds * 44100 * format.getFrameSize()];
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), format, seconds * 44100L),
+                AudioFileFormat.Type.WAVE, file);
+    }
+
+    /**
+     * Parse a sheet.
+     *
+     * @param text The text of the sheet.
+     *
+     * @return The parsed sheet.
+     */
+    private static CueSheet parse(final String text) throws IOException {
+        return CueParser.parse(new LineNumberReader(new StringReader(text)));
+    }
+}
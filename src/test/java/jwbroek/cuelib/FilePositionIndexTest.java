@@ -0,0 +1,90 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.FilePositionIndex}.
+ *
+ * @author jwbroek
+ */
+public class FilePositionIndexTest {
+
+    /**
+     * Positions must map to the track and index playing there, with pregaps belonging to the next track.
+     */
+    @Test
+    public void testLookup() throws IOException {
+        final FileData fileData = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET))).getFileData().get(0);
+        final List<TrackData> tracks = fileData.getTrackData();
+        final FilePositionIndex index = fileData.getPositionIndex();
+
+        Assert.assertEquals(4, index.size());
+        Assert.assertSame(tracks.get(0), index.getTrackAt(0));
+        Assert.assertSame(tracks.get(0), index.getTrackAt(15009));
+        Assert.assertSame(tracks.get(1), index.getTrackAt(15010));
+        Assert.assertEquals(0, index.getIndexAt(15010).getNumber());
+        Assert.assertEquals(1, index.getIndexAt(15197).getNumber());
+        Assert.assertSame(tracks.get(2), index.getTrackAt(Integer.MAX_VALUE));
+        Assert.assertNull(index.getTrackAt(-1));
+
+        Assert.assertEquals(15197, index.getTrackStart(tracks.get(1)));
+        Assert.assertEquals(15010, index.getTrackEnd(tracks.get(0)));
+        Assert.assertEquals(35387, index.getTrackEnd(tracks.get(1)));
+        Assert.assertEquals(-1, index.getTrackEnd(tracks.get(2)));
+
+        Assert.assertEquals(15010, index.getNextBoundary(0));
+        Assert.assertEquals(15197, index.getNextBoundary(15010));
+        Assert.assertEquals(-1, index.getNextBoundary(35387));
+        Assert.assertEquals(15010, index.getPreviousBoundary(15197));
+        Assert.assertEquals(-1, index.getPreviousBoundary(0));
+
+        Assert.assertSame(index, fileData.getPositionIndex());
+    }
+
+    /**
+     * The index must be rebuilt after changes to the tracks, their indices, or the positions of the indices.
+     */
+    @Test
+    public void testRebuild() throws IOException {
+        final FileData fileData = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET))).getFileData().get(0);
+        final List<TrackData> tracks = fileData.getTrackData();
+
+        tracks.get(1).getIndex(0).setPosition(new Position(3, 0, 0));
+        Assert.assertEquals(13500, fileData.getPositionIndex().getTrackEnd(tracks.get(0)));
+
+        tracks.get(1).getIndices().remove(0);
+        Assert.assertEquals(15197, fileData.getPositionIndex().getTrackEnd(tracks.get(0)));
+
+        final TrackData extra = new TrackData(fileData, 4, "AUDIO");
+        extra.getIndices().add(new Index(1, new Position(9, 0, 0)));
+        tracks.add(extra);
+        Assert.assertEquals(40500, fileData.getPositionIndex().getTrackEnd(tracks.get(2)));
+
+        tracks.set(3, tracks.get(0));
+        Assert.assertEquals(-1, fileData.getPositionIndex().getTrackEnd(tracks.get(2)));
+    }
+}
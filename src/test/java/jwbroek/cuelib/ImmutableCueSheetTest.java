@@ -0,0 +1,98 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.ImmutableCueSheet}.
+ *
+ * @author jwbroek
+ */
+public class ImmutableCueSheetTest {
+
+    /**
+     * A snapshot must hold all data of the sheet, must not change when the sheet changes, and must give back an
+     * equal mutable sheet.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET
+                + "TITLE again\n    INDEX 02 99:99:99\n")));
+        final String expected = CueParserTest.describe(sheet);
+        final ImmutableCueSheet snapshot = sheet.toImmutable();
+
+        sheet.setTitle("Changed");
+        sheet.getAllTrackData().get(0).getIndices().clear();
+        sheet.getMessages().clear();
+
+        Assert.assertEquals(expected, CueParserTest.describe(snapshot.toCueSheet()));
+        Assert.assertEquals("Stoosh", snapshot.getTitle());
+        Assert.assertEquals("Stoosh", snapshot.getMetaData(CueSheet.MetaDataField.ALBUMTITLE));
+        Assert.assertEquals(3, snapshot.getMessages().size());
+
+        final ImmutableTrackData track = snapshot.getAllTrackData().get(1);
+        Assert.assertEquals("All I Want", track.getMetaData(CueSheet.MetaDataField.TITLE));
+        Assert.assertEquals("Skunk Anansie", track.getMetaData(CueSheet.MetaDataField.PERFORMER));
+        Assert.assertSame(snapshot, track.getParent().getParent());
+        Assert.assertEquals(new Position(3, 22, 47).getTotalFrames(), track.getStart());
+        Assert.assertEquals(new Position(7, 51, 62).getTotalFrames() - track.getStart(), track.getDuration());
+        Assert.assertEquals(-1, snapshot.getAllTrackData().get(2).getDuration());
+    }
+
+    /**
+     * A snapshot must not be changeable through its lists or positions.
+     */
+    @Test
+    public void testImmutable() throws IOException {
+        final ImmutableCueSheet snapshot = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET
+                + "    INDEX 02 99:99:99\n"))).toImmutable();
+        final ImmutableTrackData track = snapshot.getAllTrackData().get(2);
+
+        try {
+            snapshot.getFileData().clear();
+            Assert.fail("File data must be unmodifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+        try {
+            track.getIndices().remove(0);
+            Assert.fail("Indices must be unmodifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+        try {
+            snapshot.getAllTrackData().get(0).getFlags().add("DATA");
+            Assert.fail("Flags must be unmodifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+
+        // Also positions that cannot be packed must be copied.
+        track.getIndex(2).getPosition().setMinutes(0);
+        Assert.assertEquals(99, track.getIndex(2).getPosition().getMinutes());
+        track.getPregap().setSeconds(0);
+        Assert.assertEquals(2, track.getPregap().getSeconds());
+    }
+}
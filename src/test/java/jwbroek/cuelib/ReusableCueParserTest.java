@@ -0,0 +1,109 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.ReusableCueParser}.
+ *
+ * @author jwbroek
+ */
+public class ReusableCueParserTest {
+
+    /**
+     * A parser that is reused must give the same results as a new parser every time, and must leave the sheets it
+     * returned earlier intact.
+     */
+    @Test
+    public void testReuse() throws IOException {
+        final ReusableCueParser parser = CueParser.newParser(new ParserOptions());
+        final List<CueSheet> sheets = new ArrayList<CueSheet>();
+        final List<String> expected = new ArrayList<String>();
+
+        for (int sheet = 0; sheet < 50; sheet++) {
+            // Alternate small and large sheets, so that the buffers must grow, and include unpackable positions.
+            final StringBuilder text = new StringBuilder(CueParserTest.SAMPLE_SHEET);
+            for (int line = 0; line < (sheet % 2) * 500; line++) {
+                text.append("REM COMMENT \"Line ").append(line).append("\"\n");
+            }
+            text.append("TRACK 99 AUDIO\n  INDEX 01 ").append(sheet).append(":99:").append(sheet).append('\n');
+
+            expected.add(CueParserTest.describe(CueParser.parse(new LineNumberReader(new StringReader(text.toString())))));
+            switch (sheet % 3) {
+                case 0:
+                    sheets.add(parser.parse(new LineNumberReader(new StringReader(text.toString()))));
+                    break;
+                case 1:
+                    sheets.add(parser.parse(new ByteArrayInputStream(text.toString().getBytes())));
+                    break;
+                default:
+                    sheets.add(parser.parse(ByteBuffer.wrap(text.toString().getBytes())));
+                    break;
+            }
+        }
+
+        for (int sheet = 0; sheet < sheets.size(); sheet++) {
+            Assert.assertEquals(expected.get(sheet), CueParserTest.describe(sheets.get(sheet)));
+        }
+    }
+
+    /**
+     * When positions may be reused, the same position must be reported every time, with the values of the line.
+     */
+    @Test
+    public void testReusePositions() throws IOException {
+        final ParserOptions options = new ParserOptions();
+        options.setReusePositions(true);
+        final ReusableCueParser parser = CueParser.newParser(options);
+        final List<Position> positions = new ArrayList<Position>();
+        final StringBuilder values = new StringBuilder();
+
+        parser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)), new CueEventAdapter() {
+            @Override
+            public void onIndex(final LineOfInput input, final int number, final Position position) {
+                positions.add(position);
+                values.append(position.getTotalFrames()).append(' ');
+            }
+        });
+
+        Assert.assertTrue(positions.size() > 1);
+        for (Position position : positions) {
+            Assert.assertSame(positions.get(0), position);
+        }
+
+        final StringBuilder expectedValues = new StringBuilder();
+        CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)), new CueEventAdapter() {
+            @Override
+            public void onIndex(final LineOfInput input, final int number, final Position position) {
+                expectedValues.append(position.getTotalFrames()).append(' ');
+            }
+        });
+        Assert.assertEquals(expectedValues.toString(), values.toString());
+    }
+}
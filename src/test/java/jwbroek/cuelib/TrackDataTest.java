@@ -0,0 +1,156 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.TrackData}.
+ *
+ * @author jwbroek
+ */
+public class TrackDataTest {
+
+    /**
+     * The flags must behave as a sorted set of strings, whether or not they are in the specification.
+     */
+    @Test
+    public void testFlags() {
+        final TrackData trackData = new TrackData(null);
+        final Set<String> flags = trackData.getFlags();
+        final Set<String> expected = new TreeSet<String>();
+        for (String flag : Arrays.asList("PRE", "dcp", "4CH", "SCMS", "ZZZ", "PRE", "DATA", "0")) {
+            Assert.assertEquals(expected.add(flag), flags.add(flag));
+        }
+        Assert.assertEquals(expected.toString(), trackData.getFlags().toString());
+        Assert.assertTrue(trackData.hasFlag(TrackData.Flag.FOUR_CHANNEL));
+        Assert.assertFalse(trackData.hasFlag(TrackData.Flag.DIGITAL_COPY_PERMITTED));
+
+        final Iterator<String> iterator = flags.iterator();
+        while (iterator.hasNext()) {
+            final String flag = iterator.next();
+            if (flag.length() == 4) {
+                iterator.remove();
+                expected.remove(flag);
+            }
+        }
+        Assert.assertEquals(expected.toString(), trackData.getFlags().toString());
+        Assert.assertEquals(expected.size(), trackData.getFlags().size());
+    }
+
+    /**
+     * The indices must behave as a list, and positions must be kept exactly, normalized or not.
+     */
+    @Test
+    public void testIndices() {
+        final TrackData trackData = new TrackData(null);
+        trackData.getIndices().add(new Index(1, new Position(1, 2, 3)));
+        trackData.getIndices().add(0, new Index(0, new Position(0, 75, 80)));
+        trackData.getIndices().add(new Index(2, null));
+        Assert.assertEquals(3, trackData.getIndices().size());
+        Assert.assertEquals(0, trackData.getIndices().get(0).getNumber());
+        Assert.assertEquals(80, trackData.getIndex(0).getPosition().getFrames());
+        Assert.assertEquals(75, trackData.getIndex(0).getPosition().getSeconds());
+        Assert.assertEquals(4653, trackData.getIndex(1).getPosition().getTotalFrames());
+        Assert.assertNull(trackData.getIndex(2).getPosition());
+
+        trackData.getIndices().remove(1);
+        Assert.assertNull(trackData.getIndex(1));
+        trackData.getIndices().clear();
+        Assert.assertTrue(trackData.getIndices().isEmpty());
+    }
+
+    /**
+     * Positions must be returned as live views, also when they cannot be packed: changing them must change the
+     * model, without changing the positions that were set.
+     */
+    @Test
+    public void testPositionViews() {
+        final FileData fileData = new FileData(null);
+        final TrackData trackData = new TrackData(fileData);
+        fileData.getTrackData().add(trackData);
+        for (Position position : new Position[]{new Position(0, 10, 0), new Position(0, 70, 0)}) {
+            final int seconds = position.getSeconds();
+            final Index index = new Index(1, position);
+            trackData.getIndices().add(index);
+            Assert.assertSame(index, fileData.getPositionIndex().getIndexAt(position.getTotalFrames()));
+            Assert.assertSame(index.getPosition(), index.getPosition());
+            index.getPosition().setSeconds(5);
+            Assert.assertEquals(5, index.getPosition().getSeconds());
+            Assert.assertEquals(5 * 75, index.getPosition().getTotalFrames());
+            Assert.assertEquals(seconds, position.getSeconds());
+            Assert.assertSame(index, fileData.getPositionIndex().getIndexAt(5 * 75));
+            index.getPosition().setMinutes(99);
+            index.getPosition().setSeconds(70);
+            Assert.assertEquals(99, index.getPosition().getMinutes());
+            Assert.assertEquals(70, index.getPosition().getSeconds());
+            trackData.getIndices().clear();
+
+            trackData.setPregap(position);
+            trackData.getPregap().setSeconds(5);
+            Assert.assertEquals(5, trackData.getPregap().getSeconds());
+            trackData.setPostgap(position);
+            trackData.getPostgap().setFrames(5);
+            Assert.assertEquals(5, trackData.getPostgap().getFrames());
+            Assert.assertEquals(seconds, trackData.getPostgap().getSeconds());
+        }
+        trackData.setPregap(null);
+        Assert.assertNull(trackData.getPregap());
+    }
+
+    /**
+     * Resolved metadata must inherit from the sheet as before, and must follow changes to both track and sheet.
+     */
+    @Test
+    public void testResolvedMetaData() throws IOException {
+        final CueSheet sheet = CueParser.parse(new LineNumberReader(new StringReader(CueParserTest.SAMPLE_SHEET)));
+        final TrackData trackData = sheet.getAllTrackData().get(1);
+        final ResolvedMetaData metaData = trackData.getResolvedMetaData();
+        Assert.assertSame(metaData, trackData.getResolvedMetaData());
+        Assert.assertEquals("Skunk Anansie", trackData.getMetaData(CueSheet.MetaDataField.PERFORMER));
+        Assert.assertEquals("", trackData.getMetaData(CueSheet.MetaDataField.TRACKPERFORMER));
+        Assert.assertNull(trackData.getMetaData(CueSheet.MetaDataField.TRACKSONGWRITER));
+        Assert.assertEquals("1996", trackData.getMetaData(CueSheet.MetaDataField.YEAR));
+        Assert.assertEquals("2", trackData.getMetaData(CueSheet.MetaDataField.TRACKNUMBER));
+
+        sheet.setYear(1997);
+        Assert.assertEquals("1997", trackData.getMetaData(CueSheet.MetaDataField.YEAR));
+        trackData.setPerformer("Skin");
+        Assert.assertEquals("Skin", trackData.getMetaData(CueSheet.MetaDataField.PERFORMER));
+        Assert.assertEquals("Skunk Anansie", sheet.getMetaData(CueSheet.MetaDataField.PERFORMER));
+        Assert.assertFalse(sheet.getResolvedMetaData().toMap().containsKey(CueSheet.MetaDataField.TRACKNUMBER));
+    }
+
+    /**
+     * Fields that only apply to tracks must not be supported by the sheet.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedMetaData() {
+        new CueSheet().getMetaData(CueSheet.MetaDataField.TRACKNUMBER);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import jwbroek.cuelib.CueParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.tools.trackcutter.PcmFileCutter}.
+ *
+ * @author jwbroek
+ */
+public class PcmFileCutterTest {
+
+    /**
+     * The format of the test audio: CD quality.
+     */
+    final static AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    /**
+     * The number of sample frames of the test audio.
+     */
+    final static int FRAMES = 44100;
+
+    /**
+     * Cuts of WAVE files must hold exactly the samples in the range, in a header that javax.sound.sampled reads.
+     */
+    @Test
+    public void testWave() throws Exception {
+        testCut(AudioFileFormat.Type.WAVE, ".wav");
+    }
+
+    /**
+     * Cuts of AIFF files must hold exactly the samples in the range, in a header that javax.sound.sampled reads.
+     */
+    @Test
+    public void testAiff() throws Exception {
+        testCut(AudioFileFormat.Type.AIFF, ".aiff");
+    }
+
+    /**
+     * The track cutter must cut directly when source and target are of the same type.
+     */
+    @Test
+    public void testTrackCutter() throws Exception {
+        final File directory = File.createTempFile("cuelib", ".cut");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        final File source = new File(directory, "source.wav");
+        try {
+            final byte[] samples = createSamples();
+            writeAudio(source, AudioFileFormat.Type.WAVE, samples);
+
+            final TrackCutterConfiguration configuration = new TrackCutterConfiguration();
+            configuration.setParentDirectory(directory);
+            configuration.setCutFileNameTemplate("<track>.wav");
+            new TrackCutter(configuration).cutTracksInCueSheet(CueParser.parse(new LineNumberReader(new StringReader(
+                    "FILE \"source.wav\" WAVE\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n"
+                            + "  TRACK 02 AUDIO\n    INDEX 01 00:00:30\n"))));
+
+            final int boundary = 30 * PcmFileCutterTest.FRAMES / 75 * PcmFileCutterTest.FORMAT.getFrameSize();
+            Assert.assertArrayEquals(range(samples, 0, boundary), readAudio(new File(directory, "1.wav")));
+            Assert.assertArrayEquals(range(samples, boundary, samples.length),
+                    readAudio(new File(directory, "2.wav")));
+        } finally {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Cutting tracks concurrently from raw CD audio must give the same files as cutting them one after the other.
+     */
+    @Test
+    public void testParallel() throws Exception {
+        final File directory = File.createTempFile("cuelib", ".cut");
+        Assert.assertTrue(directory.delete());
+        final File sequential = new File(directory, "sequential");
+        final File parallel = new File(directory, "parallel");
+        Assert.assertTrue(sequential.mkdirs());
+        Assert.assertTrue(parallel.mkdirs());
+        try {
+            final byte[] samples = createSamples();
+            final File source = new File(directory, "source.bin");
+            final FileOutputStream output = new FileOutputStream(source);
+            output.write(samples);
+            output.close();
+
+            final StringBuilder sheet = new StringBuilder("FILE \"" + source.getAbsolutePath() + "\" BINARY\n");
+            for (int track = 1; track <= 9; track++) {
+                sheet.append("  TRACK 0").append(track).append(" AUDIO\n    INDEX 01 00:00:").append(track * 7 - 7).append('\n');
+            }
+            for (int threads = 1; threads <= 4; threads += 3) {
+                final TrackCutterConfiguration configuration = new TrackCutterConfiguration();
+                configuration.setParentDirectory(threads == 1 ? sequential : parallel);
+                configuration.setCutFileNameTemplate("<track>.wav");
+                configuration.setThreads(directory, Integer.valueOf(threads));
+                Assert.assertEquals(threads, configuration.getThreads(source));
+                new TrackCutter(configuration).cutTracksInCueSheet(CueParser.parse(new LineNumberReader(
+                        new StringReader(sheet.toString()))));
+            }
+
+            final ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            for (int track = 1; track <= 9; track++) {
+                final byte[] expected = readFile(new File(sequential, track + ".wav"));
+                Assert.assertArrayEquals(expected, readFile(new File(parallel, track + ".wav")));
+                joined.write(readAudio(new File(parallel, track + ".wav")));
+            }
+            Assert.assertArrayEquals(samples, joined.toByteArray());
+        } finally {
+            for (File subdirectory : new File[]{sequential, parallel, directory}) {
+                final File[] files = subdirectory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+            }
+            sequential.delete();
+            parallel.delete();
+            directory.delete();
+        }
+    }
+
+    /**
+     * Cut a file of the specified type, and check the result.
+     *
+     * @param type      The type of file.
+     * @param extension The extension of the file.
+     */
+    private void testCut(final AudioFileFormat.Type type, final String extension) throws Exception {
+        final File source = File.createTempFile("cuelib", extension);
+        final File target = File.createTempFile("cuelib", extension);
+        try {
+            final byte[] samples = createSamples();
+            writeAudio(source, type, samples);
+
+            final PcmFileCutter cutter = PcmFileCutter.open(source, null);
+            Assert.assertNotNull(cutter);
+            try {
+                Assert.assertEquals(type, cutter.getType());
+                Assert.assertEquals(PcmFileCutterTest.FRAMES, cutter.getFrameLength());
+                Assert.assertEquals(44100f, cutter.getFormat().getSampleRate(), 0f);
+
+                cutter.cut(1000, 3000, target);
+                final int frameSize = PcmFileCutterTest.FORMAT.getFrameSize();
+                Assert.assertArrayEquals(range(samples, 1000 * frameSize, 3000 * frameSize),
+                        readAudio(target));
+
+                cutter.cut(40000, Long.MAX_VALUE, target);
+                Assert.assertArrayEquals(range(samples, 40000 * frameSize, samples.length),
+                        readAudio(target));
+            } finally {
+                cutter.close();
+            }
+
+            final FileOutputStream output = new FileOutputStream(target);
+            output.write("FILE \"source.wav\" WAVE\n".getBytes("US-ASCII"));
+            output.close();
+            Assert.assertNull(PcmFileCutter.open(target, "WAVE"));
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+
+    /**
+     * Create samples that differ from frame to frame.
+     *
+     * @return The samples.
+     */
+    static byte[] createSamples() {
+        final byte[] samples = new byte[PcmFileCutterTest.FRAMES * PcmFileCutterTest.FORMAT.getFrameSize()];
+        for (int index = 0; index < samples.length; index++) {
+            samples[index] = (byte) (index * 7 + index / 251);
+        }
+        return samples;
+    }
+
+    /**
+     * Get a range of samples.
+     *
+     * @param samples The samples.
+     * @param from    The index of the first byte of the range.
+     * @param to      The index after the last byte of the range.
+     *
+     * @return A new array with the bytes in the range.
+     */
+    static byte[] range(final byte[] samples, final int from, final int to) {
+        final byte[] result = new byte[to - from];
+        System.arraycopy(samples, from, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Write samples to an audio file.
+     *
+     * @param file    The file to write.
+     * @param type    The type of file.
+     * @param samples The samples, in the little endian format of {@link #FORMAT}.
+     */
+    static void writeAudio(final File file, final AudioFileFormat.Type type, final byte[] samples)
+            throws IOException {
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), PcmFileCutterTest.FORMAT,
+                PcmFileCutterTest.FRAMES), type, file);
+    }
+
+    /**
+     * Read all bytes of a file.
+     *
+     * @param file The file to read.
+     *
+     * @return The bytes of the file.
+     */
+    private static byte[] readFile(final File file) throws IOException {
+        final InputStream input = new FileInputStream(file);
+        try {
+            return readAll(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Read the samples of an audio file, in the little endian format of {@link #FORMAT}.
+     *
+     * @param file The file to read.
+     *
+     * @return The samples.
+     */
+    static byte[] readAudio(final File file) throws IOException, UnsupportedAudioFileException {
+        final InputStream input = AudioSystem.getAudioInputStream(PcmFileCutterTest.FORMAT,
+                AudioSystem.getAudioInputStream(file));
+        try {
+            return readAll(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Read all bytes from a stream.
+     *
+     * @param input The stream to read.
+     *
+     * @return The bytes of the stream.
+     */
+    private static byte[] readAll(final InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.tools.trackcutter.StreamAudioSource}.
+ *
+ * @author jwbroek
+ */
+public class StreamAudioSourceTest {
+
+    /**
+     * 16 bit stereo, so that frames are larger than a byte.
+     */
+    private final static AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+
+    /**
+     * Going to a frame past the end of the stream must give an empty stream, rather than fail.
+     */
+    @Test
+    public void testPastEnd() throws IOException {
+        final StreamAudioSource source = new StreamAudioSource(createStream(100, false));
+        final AudioInputStream stream = source.getStream(200, 300);
+        Assert.assertEquals(-1, stream.read(new byte[FORMAT.getFrameSize()]));
+        source.close();
+    }
+
+    /**
+     * When the stream does not skip, frames must be read instead, to arrive at the same frame.
+     */
+    @Test
+    public void testSkipNothing() throws IOException {
+        final StreamAudioSource source = new StreamAudioSource(createStream(100, true));
+        final AudioInputStream stream = source.getStream(10, 20);
+        final byte[] frame = new byte[FORMAT.getFrameSize()];
+        Assert.assertEquals(frame.length, stream.read(frame));
+        Assert.assertEquals(10, frame[0]);
+        Assert.assertEquals(-1, source.getStream(120, 130).read(frame));
+        source.close();
+    }
+
+    /**
+     * Create a stream of audio where the first byte of every frame is the number of the frame.
+     *
+     * @param frames      The number of frames.
+     * @param skipNothing Whether skipping the underlying stream should skip nothing, as some decoders do.
+     *
+     * @return A stream of audio.
+     */
+    private static AudioInputStream createStream(final int frames, final boolean skipNothing) {
+        final byte[] bytes = new byte[frames * FORMAT.getFrameSize()];
+        for (int frame = 0; frame < frames; frame++) {
+            bytes[frame * FORMAT.getFrameSize()] = (byte) frame;
+        }
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized long skip(final long count) {
+                return skipNothing ? 0 : super.skip(count);
+            }
+        };
+        return new AudioInputStream(input, FORMAT, frames);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.cuelib.tools.trackcutter;
+
+import jwbroek.cuelib.CueParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Unit test for {@link jwbroek.cuelib.tools.trackcutter.TrackCutter}.
+ *
+ * @author jwbroek
+ */
+public class TrackCutterTest {
+
+    /**
+     * Only the selected tracks must be cut, both when cutting directly and when converting.
+     */
+    @Test
+    public void testSelectedTracks() throws Exception {
+        final File directory = File.createTempFile("cuelib", ".cut");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        final File source = new File(directory, "source.wav");
+        try {
+            final byte[] samples = PcmFileCutterTest.createSamples();
+            PcmFileCutterTest.writeAudio(source, AudioFileFormat.Type.WAVE, samples);
+            final String sheet = "FILE \"source.wav\" WAVE\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n"
+                    + "  TRACK 02 AUDIO\n    INDEX 00 00:00:20\n    INDEX 01 00:00:30\n"
+                    + "  TRACK 03 AUDIO\n    INDEX 01 00:00:60\n";
+            final int frameSize = PcmFileCutterTest.FORMAT.getFrameSize();
+            final int start = 30 * PcmFileCutterTest.FRAMES / 75 * frameSize;
+            final int end = 60 * PcmFileCutterTest.FRAMES / 75 * frameSize;
+
+            for (AudioFileFormat.Type type : new AudioFileFormat.Type[]{AudioFileFormat.Type.WAVE, AudioFileFormat.Type.AIFF}) {
+                final TrackCutterConfiguration configuration = new TrackCutterConfiguration();
+                configuration.setParentDirectory(directory);
+                configuration.setTargetType(type);
+                configuration.setCutFileNameTemplate("<track>." + type.getExtension());
+                configuration.setSelectedTracks(new TreeSet<Integer>(Arrays.asList(Integer.valueOf(2))));
+                new TrackCutter(configuration).cutTracksInCueSheet(CueParser.parse(new LineNumberReader(
+                        new StringReader(sheet))));
+
+                Assert.assertFalse(new File(directory, "1." + type.getExtension()).exists());
+                Assert.assertFalse(new File(directory, "3." + type.getExtension()).exists());
+                Assert.assertArrayEquals(PcmFileCutterTest.range(samples, start, end),
+                        PcmFileCutterTest.readAudio(new File(directory, "2." + type.getExtension())));
+            }
+        } finally {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Every post-processing process must be waited for, and its exit status and timeout reported.
+     */
+    @Test
+    public void testPostProcessing() throws Exception {
+        final File directory = File.createTempFile("cuelib", ".post");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        final File source = new File(directory, "source.wav");
+        try {
+            PcmFileCutterTest.writeAudio(source, AudioFileFormat.Type.WAVE, PcmFileCutterTest.createSamples());
+            final String sheet = "FILE \"source.wav\" WAVE\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n"
+                    + "  TRACK 02 AUDIO\n    INDEX 01 00:00:30\n  TRACK 03 AUDIO\n    INDEX 01 00:00:60\n";
+
+            final TrackCutterConfiguration configuration = new TrackCutterConfiguration();
+            configuration.setParentDirectory(directory);
+            configuration.setCutFileNameTemplate("<track>.wav");
+            configuration.setPostProcessFileNameTemplate("<track>.out");
+            configuration.setPostProcessCommandTemplate("test <track> = 2");
+            configuration.setDoPostProcessing(true);
+            configuration.setPostProcessingProcesses(2);
+            configuration.setPostProcessingQueueSize(0);
+            final TrackCutter trackCutter = new TrackCutter(configuration);
+            trackCutter.cutTracksInCueSheet(CueParser.parse(new LineNumberReader(new StringReader(sheet))));
+
+            Assert.assertEquals(3, trackCutter.getPostProcessingResults().size());
+            int succeeded = 0;
+            for (PostProcessingResult result : trackCutter.getPostProcessingResults()) {
+                Assert.assertFalse(result.isTimedOut());
+                Assert.assertNotNull(result.getExitCode());
+                Assert.assertEquals(0, result.getOutputBytes());
+                Assert.assertEquals(0, result.getErrorBytes());
+                if (result.isSuccess()) {
+                    succeeded++;
+                    Assert.assertEquals(Integer.valueOf(0), result.getExitCode());
+                }
+            }
+            Assert.assertEquals(1, succeeded);
+
+            configuration.setPostProcessCommandTemplate("sleep 10");
+            configuration.setPostProcessingTimeout(200);
+            configuration.setPostProcessingOrder(TrackCutterConfiguration.PostProcessingOrder.LONGEST_FIRST);
+            final long start = System.currentTimeMillis();
+            trackCutter.cutTracksInCueSheet(CueParser.parse(new LineNumberReader(new StringReader(sheet))));
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+            Assert.assertEquals(3, trackCutter.getPostProcessingResults().size());
+            for (PostProcessingResult result : trackCutter.getPostProcessingResults()) {
+                Assert.assertTrue(result.isTimedOut());
+                Assert.assertFalse(result.isSuccess());
+            }
+        } finally {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Sources that are not seekable must skip to the start of every range, and must not go back.
+     */
+    @Test
+    public void testStreamAudioSource() throws Exception {
+        final byte[] samples = PcmFileCutterTest.createSamples();
+        final int frameSize = PcmFileCutterTest.FORMAT.getFrameSize();
+        final AudioSource source = new StreamAudioSource(new AudioInputStream(new ByteArrayInputStream(samples),
+                PcmFileCutterTest.FORMAT, PcmFileCutterTest.FRAMES));
+        Assert.assertFalse(source.isSeekable());
+
+        final AudioInputStream first = source.getStream(100, 200);
+        final byte[] firstBytes = new byte[100 * frameSize];
+        Assert.assertEquals(firstBytes.length, first.read(firstBytes));
+        Assert.assertArrayEquals(PcmFileCutterTest.range(samples, 100 * frameSize, 200 * frameSize), firstBytes);
+
+        final AudioInputStream last = source.getStream(PcmFileCutterTest.FRAMES - 10, AudioSystem.NOT_SPECIFIED);
+        Assert.assertEquals(10, last.getFrameLength());
+        try {
+            source.getStream(0, 10);
+            Assert.fail("A stream cannot go back.");
+        } catch (IOException e) {
+            // Expected.
+        }
+        source.close();
+    }
+
+    /**
+     * Track selections must be parsed and formatted with ranges.
+     */
+    @Test
+    public void testTrackSelection() {
+        Assert.assertEquals("[1, 2, 3, 7, 17]", TrackCutterConfiguration.parseTrackSelection("1-3, 7,17").toString());
+        Assert.assertEquals("1-3,7,17", TrackCutterConfiguration.formatTrackSelection(
+                TrackCutterConfiguration.parseTrackSelection("17,1-3,7")));
+        Assert.assertNull(TrackCutterConfiguration.parseTrackSelection(""));
+
+        final TrackCutterConfiguration configuration = new TrackCutterConfiguration();
+        configuration.setSelectedTracks(TrackCutterConfiguration.parseTrackSelection("4-5"));
+        final TrackCutterConfiguration loaded = new TrackCutterConfiguration();
+        loaded.loadProperties(configuration.getPropertiesSnapshot());
+        Assert.assertTrue(loaded.isSelected(5));
+        Assert.assertFalse(loaded.isSelected(6));
+        Assert.assertTrue(new TrackCutterConfiguration().isSelected(6));
+
+        try {
+            TrackCutterConfiguration.parseTrackSelection("3-1");
+            Assert.fail("Ranges must be ascending.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
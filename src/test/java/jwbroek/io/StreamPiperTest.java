@@ -0,0 +1,141 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package jwbroek.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+/**
+ * Unit test for {@link jwbroek.io.StreamPiper}.
+ *
+ * @author jwbroek
+ */
+public class StreamPiperTest {
+
+    /**
+     * All input must be piped to a stream, and counted.
+     */
+    @Test
+    public void testPipeToStream() {
+        final byte[] data = StreamPiperTest.createData(200000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final StreamPiper piper = new StreamPiper(new ByteArrayInputStream(data), out);
+        Assert.assertEquals(Long.valueOf(data.length), piper.call());
+        Assert.assertEquals(data.length, piper.getBytesPiped());
+        Assert.assertArrayEquals(data, out.toByteArray());
+    }
+
+    /**
+     * Input must be discarded when there is no output, but still counted.
+     */
+    @Test
+    public void testDiscard() {
+        final StreamPiper piper = new StreamPiper(new ByteArrayInputStream(new byte[100001]), null);
+        piper.run();
+        Assert.assertEquals(100001, piper.getBytesPiped());
+    }
+
+    /**
+     * Threads of the shared pool must not be daemons, so that piping completes before the JVM exits.
+     */
+    @Test
+    public void testNoDaemons() throws Exception {
+        final List<Boolean> daemons = new ArrayList<Boolean>();
+        final InputStream input = new ByteArrayInputStream(new byte[10]) {
+            @Override
+            public synchronized int read(final byte[] buffer, final int offset, final int length) {
+                daemons.add(Boolean.valueOf(Thread.currentThread().isDaemon()));
+                return super.read(buffer, offset, length);
+            }
+        };
+        Assert.assertEquals(Long.valueOf(10), StreamPiper.submit(new StreamPiper(input, null)).get());
+        Assert.assertFalse(daemons.isEmpty());
+        Assert.assertFalse(daemons.contains(Boolean.TRUE));
+    }
+
+    /**
+     * Input must be piped to files on the shared pool, also when there are more streams than pooled threads.
+     */
+    @Test
+    public void testPipeToFiles() throws Exception {
+        final List<File> files = new ArrayList<File>();
+        final List<Future<Long>> results = new ArrayList<Future<Long>>();
+        try {
+            for (int count = 0; count < 40; count++) {
+                final File file = File.createTempFile("cuelib", ".pipe");
+                files.add(file);
+                results.add(StreamPiper.submit(new ByteArrayInputStream(StreamPiperTest.createData(70000 + count)), file));
+            }
+            for (int count = 0; count < files.size(); count++) {
+                final byte[] expected = StreamPiperTest.createData(70000 + count);
+                Assert.assertEquals(Long.valueOf(expected.length), results.get(count).get());
+                Assert.assertArrayEquals(expected, StreamPiperTest.readFile(files.get(count)));
+            }
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Create test data.
+     *
+     * @param length The length of the data.
+     *
+     * @return Pseudo-random data of the specified length, the same for every length.
+     */
+    private static byte[] createData(final int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Read the contents of a file.
+     *
+     * @param file The file.
+     *
+     * @return The contents of the file.
+     *
+     * @throws IOException
+     */
+    private static byte[] readFile(final File file) throws IOException {
+        final byte[] contents = new byte[(int) file.length()];
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(contents);
+        } finally {
+            in.close();
+        }
+        return contents;
+    }
+}